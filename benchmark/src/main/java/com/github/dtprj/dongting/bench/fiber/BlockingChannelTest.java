@@ -0,0 +1,88 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.fiber;
+
+import com.github.dtprj.dongting.bench.BenchBase;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.fiber.BlockingRunner;
+import com.github.dtprj.dongting.fiber.Dispatcher;
+import com.github.dtprj.dongting.fiber.FiberChannel;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Same as ChannelCrossThreadTest, but the consumer is a BlockingRunner task instead of a fiber, to compare the
+ * cost of the blocking style code with the FiberFrame style. Pass Thread.ofVirtual().factory() to the runner on
+ * JDK 21 or later.
+ *
+ * @author huangli
+ */
+public class BlockingChannelTest extends BenchBase {
+
+    private final Dispatcher dispatcher = new Dispatcher("testDispatcher");
+    private final FiberGroup group = new FiberGroup("testGroup", dispatcher);
+    private final FiberChannel<Object> channel = group.newChannel();
+
+    // limit the pending items, otherwise the producers may run faster than the consumer and fill the heap
+    private static final int MAX_PENDING = 10_000;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        new BlockingChannelTest(1, 500, 100).start();
+    }
+
+    public BlockingChannelTest(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+    }
+
+    @Override
+    public void init() {
+        dispatcher.start();
+        dispatcher.startGroup(group).join();
+        BlockingRunner runner = new BlockingRunner(group, Thread::new);
+        runner.start("consumer", () -> {
+            while (true) {
+                runner.take(channel);
+                pending.decrementAndGet();
+                int s = state.getOpaque();
+                if (s <= STATE_TEST) {
+                    success(s);
+                } else {
+                    return;
+                }
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        // wake up the consumer if it's waiting, so it can exit
+        channel.fireOffer(this);
+        dispatcher.stop(new DtTime(3, TimeUnit.SECONDS));
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        if (pending.get() >= MAX_PENDING) {
+            Thread.yield();
+            return;
+        }
+        pending.incrementAndGet();
+        channel.fireOffer(this);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.fiber;
+
+import com.github.dtprj.dongting.bench.BenchBase;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.fiber.Dispatcher;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberCondition;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many fibers wait a condition with timeout, and they are signaled one by one. Each signal removes the fiber
+ * from the schedule queue of dispatcher, and the fiber waits again with a new timeout.
+ *
+ * @author huangli
+ */
+public class ScheduleTest extends BenchBase {
+
+    private static final int WAIT_FIBERS = 10000;
+
+    private final Dispatcher dispatcher = new Dispatcher("testDispatcher");
+    private final FiberGroup group = new FiberGroup("testGroup", dispatcher);
+    private final FiberCondition condition = group.newCondition("testCondition");
+
+    public static void main(String[] args) throws Exception {
+        new ScheduleTest(1, 5000, 1000).start();
+    }
+
+    public ScheduleTest(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+    }
+
+    @Override
+    public void init() {
+        dispatcher.start();
+        dispatcher.startGroup(group).join();
+        group.fireFiber("init", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                Random r = new Random();
+                for (int i = 0; i < WAIT_FIBERS; i++) {
+                    long timeout = 10_000 + r.nextInt(10_000);
+                    Fiber f = new Fiber("waiter" + i, group, new FiberFrame<>() {
+                        @Override
+                        public FrameCallResult execute(Void input) {
+                            if (isGroupShouldStopPlain()) {
+                                return Fiber.frameReturn();
+                            }
+                            return condition.await(timeout, this::resume);
+                        }
+
+                        private FrameCallResult resume(Void v) {
+                            success(state.getOpaque());
+                            return execute(null);
+                        }
+                    }, true);
+                    f.start();
+                }
+                Fiber signalFiber = new Fiber("signal", group, new FiberFrame<>() {
+                    @Override
+                    public FrameCallResult execute(Void input) {
+                        if (isGroupShouldStopPlain()) {
+                            return Fiber.frameReturn();
+                        }
+                        condition.signal();
+                        return Fiber.yield(this);
+                    }
+                });
+                signalFiber.start();
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        dispatcher.stop(new DtTime(3, TimeUnit.SECONDS));
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
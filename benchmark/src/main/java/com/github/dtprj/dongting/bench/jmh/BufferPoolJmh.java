@@ -0,0 +1,85 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.common.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Borrow and release buffers of SimpleByteBufferPool.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferPoolJmh {
+
+    @Param({"1024", "65536"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean direct;
+
+    private SimpleByteBufferPool pool;
+
+    // several buffers in use at same time, like a io worker
+    private final ByteBuffer[] buffers = new ByteBuffer[4];
+
+    @Setup
+    public void setup() {
+        pool = new SimpleByteBufferPool(new Timestamp(), direct);
+    }
+
+    @Benchmark
+    public ByteBuffer borrowRelease() {
+        ByteBuffer buf = pool.borrow(size);
+        pool.release(buf);
+        return buf;
+    }
+
+    @Benchmark
+    public int borrowReleaseBatch() {
+        ByteBuffer[] buffers = this.buffers;
+        int sum = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.borrow(size);
+            sum += buffers[i].capacity();
+        }
+        for (int i = 0; i < buffers.length; i++) {
+            pool.release(buffers[i]);
+            buffers[i] = null;
+        }
+        return sum;
+    }
+}
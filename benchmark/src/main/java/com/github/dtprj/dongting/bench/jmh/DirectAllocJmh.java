@@ -0,0 +1,72 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.buf.DirectArena;
+import com.github.dtprj.dongting.common.VersionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a pool miss for direct buffers: ByteBuffer.allocateDirect and free by cleaner, compare with
+ * DirectArena allocate and free.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectAllocJmh {
+
+    @Param({"65536", "524288"})
+    private int size;
+
+    private DirectArena arena;
+
+    @Setup
+    public void setup() {
+        arena = new DirectArena(DirectArena.DEFAULT_CHUNK_SIZE, DirectArena.DEFAULT_CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public ByteBuffer allocateDirect() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(size);
+        VersionFactory.getInstance().releaseDirectBuffer(buf);
+        return buf;
+    }
+
+    @Benchmark
+    public ByteBuffer arena() {
+        ByteBuffer buf = arena.allocate(size);
+        arena.free(buf);
+        return buf;
+    }
+}
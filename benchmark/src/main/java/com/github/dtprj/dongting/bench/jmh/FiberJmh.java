@@ -0,0 +1,133 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.fiber.Dispatcher;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberChannel;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fiber scheduling in the dispatcher thread: yield, and offer/take between 2 fibers through FiberChannel.
+ * Each invocation runs a batch in the dispatcher, so the cost of the cross thread submit is amortized.
+ * <p>
+ * The allocation rate reported by the gc profiler only contains the benchmark thread, use -prof gc with
+ * care, or see bench.raft.IdxLoadPosBenchmark for the way to measure the dispatcher thread.
+ *
+ * @author huangli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FiberJmh {
+
+    private static final int BATCH = 1000;
+
+    private Dispatcher dispatcher;
+    private FiberGroup group;
+
+    @Setup
+    public void setup() {
+        dispatcher = new Dispatcher("jmhDispatcher");
+        group = new FiberGroup("jmhGroup", dispatcher);
+        dispatcher.start();
+        dispatcher.startGroup(group).join();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.stop(new DtTime(3, TimeUnit.SECONDS));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void yield() {
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        group.fireFiber("yield", new FiberFrame<>() {
+            private int count;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (count++ < BATCH) {
+                    return Fiber.yield(this);
+                }
+                f.complete(null);
+                return Fiber.frameReturn();
+            }
+        });
+        f.join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void channel() {
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        group.fireFiber("channel", new FiberFrame<>() {
+            private final FiberChannel<Integer> channel = group.newChannel();
+            private int count;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                Fiber consumer = new Fiber("consumer", group, new FiberFrame<>() {
+                    @Override
+                    public FrameCallResult execute(Void input) {
+                        return channel.take(this::resume);
+                    }
+
+                    private FrameCallResult resume(Integer v) {
+                        if (v == BATCH) {
+                            f.complete(null);
+                            return Fiber.frameReturn();
+                        }
+                        return execute(null);
+                    }
+                });
+                consumer.start();
+                return produce(null);
+            }
+
+            private FrameCallResult produce(Void v) {
+                if (count++ < BATCH) {
+                    channel.offer(count);
+                    return Fiber.yield(this::produce);
+                }
+                return Fiber.frameReturn();
+            }
+        });
+        f.join();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.codec.ByteArrayDecoder;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.Decoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work of a follower to get the byte[] body of a replicated log item from the read buffer:
+ * <ul>
+ *     <li>decodeInIoThread: decode the body to byte[] when parse the append request</li>
+ *     <li>copyOnApply: keep the raw bytes when parse (AppendReqCallback), and decode them to byte[] on apply</li>
+ *     <li>adoptOnApply: keep the raw bytes when parse, and adopt the array on apply (ApplyManager)</li>
+ * </ul>
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FollowerBodyDecodeJmh {
+
+    @Param({"128", "4096", "65536"})
+    private int bodySize;
+
+    private final DecodeContext context = new DecodeContext();
+    private ByteBuffer readBuffer;
+
+    @Setup
+    public void setup() {
+        byte[] body = new byte[bodySize];
+        new Random().nextBytes(body);
+        readBuffer = ByteBuffer.allocateDirect(bodySize);
+        readBuffer.put(body);
+    }
+
+    @Benchmark
+    public byte[] decodeInIoThread() {
+        readBuffer.clear();
+        byte[] result = ByteArrayDecoder.INSTANCE.decode(context, readBuffer, bodySize, 0);
+        context.reset();
+        return result;
+    }
+
+    @Benchmark
+    public byte[] copyOnApply() {
+        readBuffer.clear();
+        ByteBuffer raw = Decoder.decodeToByteBuffer(readBuffer, bodySize, 0, null);
+        ByteBuffer buf = raw.duplicate();
+        byte[] result = ByteArrayDecoder.INSTANCE.decode(context, buf, buf.remaining(), 0);
+        context.reset();
+        return result;
+    }
+
+    @Benchmark
+    public byte[] adoptOnApply() {
+        readBuffer.clear();
+        ByteBuffer raw = Decoder.decodeToByteBuffer(readBuffer, bodySize, 0, null);
+        return raw.array();
+    }
+}
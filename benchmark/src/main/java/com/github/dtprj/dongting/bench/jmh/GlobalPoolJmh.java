@@ -0,0 +1,98 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.buf.ByteBufferPool;
+import com.github.dtprj.dongting.buf.MagazinePool;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPoolConfig;
+import com.github.dtprj.dongting.buf.TwoLevelPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.dtprj.dongting.buf.SimpleByteBufferPool.calcTotalSize;
+
+/**
+ * Borrow and release the large buffers (32KB-512KB) of the global pool shared by all threads, compare the
+ * thread safe SimpleByteBufferPool (synchronized) with MagazinePool. Change the thread count by -t.
+ *
+ * @author huangli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class GlobalPoolJmh {
+
+    private static final int[] SIZES = new int[]{32 * 1024, 64 * 1024, 128 * 1024, 256 * 1024, 512 * 1024};
+
+    @Param({"simple", "magazine"})
+    private String type;
+
+    private ByteBufferPool pool;
+
+    @Setup
+    public void setup() {
+        if ("simple".equals(type)) {
+            SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(null, false, 0, true);
+            c.setBufSizes(TwoLevelPool.DEFAULT_GLOBAL_SIZE);
+            c.setMinCount(TwoLevelPool.DEFAULT_GLOBAL_MIN_COUNT);
+            c.setMaxCount(TwoLevelPool.DEFAULT_GLOBAL_MAX_COUNT);
+            c.setTimeoutMillis(30000);
+            c.setShareSize(calcTotalSize(c.getBufSizes(), c.getMaxCount()) / 2);
+            pool = new SimpleByteBufferPool(c);
+        } else {
+            pool = new MagazinePool(false, TwoLevelPool.DEFAULT_GLOBAL_SIZE, TwoLevelPool.DEFAULT_GLOBAL_MIN_COUNT,
+                    TwoLevelPool.DEFAULT_GLOBAL_MAX_COUNT, 30000);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        // several buffers are held by each thread, and released in random order
+        final ByteBuffer[] holds = new ByteBuffer[4];
+    }
+
+    @Benchmark
+    public ByteBuffer borrowRelease(ThreadState ts) {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        int k = r.nextInt(ts.holds.length);
+        ByteBuffer old = ts.holds[k];
+        if (old != null) {
+            pool.release(old);
+        }
+        ByteBuffer buf = pool.borrow(SIZES[r.nextInt(SIZES.length)]);
+        ts.holds[k] = buf;
+        return buf;
+    }
+}
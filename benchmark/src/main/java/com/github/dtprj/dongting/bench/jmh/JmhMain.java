@@ -0,0 +1,41 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the JMH benchmarks (classes named *Jmh, some are in the package of the tested class) with the gc
+ * profiler, which reports the allocation rate (gc.alloc.rate.norm is bytes per op). The first argument is an optional regexp to select benchmarks,
+ * for example "PbParserJmh" or "BufferPoolJmh.borrowRelease".
+ * <p>
+ * The JMH command line is also supported: java -cp ... org.openjdk.jmh.Main -prof gc PbParserJmh
+ *
+ * @author huangli
+ */
+public class JmhMain {
+    public static void main(String[] args) throws Exception {
+        String include = args.length > 0 ? args[0] : ".*Jmh\\..*";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.queue.MpscLinkedQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offer a batch of elements then poll them, compare MpscLinkedQueue with ConcurrentLinkedQueue. The
+ * cross thread throughput is measured by bench.queue.MpscQueueTest.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MpscQueueJmh {
+
+    private static final int BATCH = 64;
+    private static final Object DATA = new Object();
+
+    private final MpscLinkedQueue<Object> mpsc = MpscLinkedQueue.newInstance();
+    private final ConcurrentLinkedQueue<Object> clq = new ConcurrentLinkedQueue<>();
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int mpscLinkedQueue() {
+        for (int i = 0; i < BATCH; i++) {
+            mpsc.offer(DATA);
+        }
+        int count = 0;
+        while (mpsc.relaxedPoll() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int concurrentLinkedQueue() {
+        for (int i = 0; i < BATCH; i++) {
+            clq.offer(DATA);
+        }
+        int count = 0;
+        while (clq.poll() != null) {
+            count++;
+        }
+        return count;
+    }
+}
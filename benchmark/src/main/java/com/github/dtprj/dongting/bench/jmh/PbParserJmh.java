@@ -0,0 +1,142 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.codec.PbCallback;
+import com.github.dtprj.dongting.codec.PbParser;
+import com.github.dtprj.dongting.codec.PbUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode a frame with var int, fix64 and bytes fields by PbParser.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PbParserJmh {
+
+    @Param({"16", "1024"})
+    private int bytesLen;
+
+    private ByteBuffer buf;
+    private PbParser parser;
+    private Callback callback;
+
+    private ByteBuffer varNumberBuf;
+    private PbParser varNumberParser;
+    private Callback varNumberCallback;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = new byte[bytesLen];
+        new Random().nextBytes(bytes);
+        // the read buffer of the io worker is little endian
+        ByteBuffer body = ByteBuffer.allocate(1024 + bytesLen).order(ByteOrder.LITTLE_ENDIAN);
+        PbUtil.writeUnsignedInt32(body, 1, 100);
+        PbUtil.writeUnsignedInt64(body, 2, Long.MAX_VALUE / 3);
+        PbUtil.writeFix64(body, 3, System.nanoTime());
+        PbUtil.writeUnsignedInt32(body, 4, Integer.MAX_VALUE);
+        PbUtil.writeBytes(body, 5, bytes);
+        PbUtil.writeAscii(body, 6, "key_abcdefg_0123456789");
+        body.flip();
+
+        buf = ByteBuffer.allocate(4 + body.remaining());
+        // the length prefix is big endian
+        buf.putInt(body.remaining());
+        buf.put(body);
+        buf.flip();
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        callback = new Callback();
+        parser = PbParser.multiParser(callback, buf.capacity());
+
+        // 32 var number fields of 1 to 8 bytes, with 1 to 3 bytes tags
+        ByteBuffer varNumberBody = ByteBuffer.allocate(1024);
+        for (int i = 0; i < 32; i++) {
+            PbUtil.writeUnsignedInt64(varNumberBody, 1 << (i % 3 * 7), 1L << (i % 8 * 7));
+        }
+        varNumberBody.flip();
+        varNumberBuf = ByteBuffer.allocate(4 + varNumberBody.remaining());
+        varNumberBuf.putInt(varNumberBody.remaining());
+        varNumberBuf.put(varNumberBody);
+        varNumberBuf.flip();
+        varNumberBuf.order(ByteOrder.LITTLE_ENDIAN);
+        varNumberCallback = new Callback();
+        varNumberParser = PbParser.multiParser(varNumberCallback, varNumberBuf.capacity());
+    }
+
+    @Benchmark
+    public long parse() {
+        buf.clear();
+        parser.parse(buf);
+        return callback.sum;
+    }
+
+    @Benchmark
+    public long parseVarNumbers() {
+        varNumberBuf.clear();
+        varNumberParser.parse(varNumberBuf);
+        return varNumberCallback.sum;
+    }
+
+    private static class Callback extends PbCallback<Object> {
+        long sum;
+
+        @Override
+        public void begin(int len, PbParser parser) {
+            super.begin(len, parser);
+            sum = 0;
+        }
+
+        @Override
+        public boolean readVarNumber(int index, long value) {
+            sum += value;
+            return true;
+        }
+
+        @Override
+        public boolean readFix64(int index, long value) {
+            sum += value;
+            return true;
+        }
+
+        @Override
+        public boolean readBytes(int index, ByteBuffer buf, int fieldLen, int currentPos) {
+            sum += buf.remaining();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.jmh;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.codec.RefBufferDecoder;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.net.ByteBufferWriteFrame;
+import com.github.dtprj.dongting.net.Commands;
+import com.github.dtprj.dongting.net.HostPort;
+import com.github.dtprj.dongting.net.NioClient;
+import com.github.dtprj.dongting.net.NioClientConfig;
+import com.github.dtprj.dongting.net.NioServer;
+import com.github.dtprj.dongting.net.NioServerConfig;
+import com.github.dtprj.dongting.net.ReadFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ping round trip through the loopback network, the caller waits the response. For the async throughput
+ * see bench.rpc.RpcBenchmark.
+ *
+ * @author huangli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RpcJmh {
+
+    private static final int PORT = 9000;
+
+    @Param({"128"})
+    private int dataLen;
+
+    private NioServer server;
+    private NioClient client;
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        NioServerConfig serverConfig = new NioServerConfig();
+        serverConfig.setIoThreads(1);
+        serverConfig.setBizThreads(0);
+        serverConfig.setPort(PORT);
+        server = new NioServer(serverConfig);
+        server.start();
+
+        NioClientConfig clientConfig = new NioClientConfig();
+        clientConfig.setHostPorts(Collections.singletonList(new HostPort("127.0.0.1", PORT)));
+        client = new NioClient(clientConfig);
+        client.start();
+        client.waitStart();
+
+        data = new byte[dataLen];
+        new Random().nextBytes(data);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.stop(new DtTime(3, TimeUnit.SECONDS));
+        server.stop(new DtTime(3, TimeUnit.SECONDS));
+    }
+
+    @Benchmark
+    public int ping() {
+        ByteBufferWriteFrame req = new ByteBufferWriteFrame(ByteBuffer.wrap(data));
+        req.setCommand(Commands.CMD_PING);
+        ReadFrame<RefBuffer> rf = client.sendRequest(req, RefBufferDecoder.PLAIN_INSTANCE,
+                new DtTime(3, TimeUnit.SECONDS)).join();
+        RefBuffer rc = rf.getBody();
+        int len = rc.getBuffer().remaining();
+        rc.release();
+        return len;
+    }
+}
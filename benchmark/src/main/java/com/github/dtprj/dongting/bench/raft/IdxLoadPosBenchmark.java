@@ -0,0 +1,214 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.bench.raft;
+
+import com.github.dtprj.dongting.bench.BenchBase;
+import com.github.dtprj.dongting.buf.TwoLevelPool;
+import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.Pair;
+import com.github.dtprj.dongting.fiber.Dispatcher;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
+import com.github.dtprj.dongting.raft.impl.TailCache;
+import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
+import com.github.dtprj.dongting.raft.store.IdxFileQueue;
+import com.github.dtprj.dongting.raft.store.StatusManager;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load log positions from the idx files (not in cache) by several fibers, and print the bytes allocated by the
+ * dispatcher thread per load.
+ *
+ * @author huangli
+ */
+public class IdxLoadPosBenchmark extends BenchBase {
+
+    private static final int ITEMS = 100_000;
+    private static final int MAX_CACHE_ITEMS = 1024;
+    private static final int LOAD_FIBERS = 8;
+
+    private final Dispatcher dispatcher = new Dispatcher("IdxLoadDispatcher");
+    private final FiberGroup fiberGroup = new FiberGroup("idx load group", dispatcher);
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private StatusManager statusManager;
+    private IdxFileQueue idxFileQueue;
+
+    private final LongAdder testOps = new LongAdder();
+    private volatile long allocStart = -1;
+    private volatile long allocEnd = -1;
+
+    public static void main(String[] args) throws Exception {
+        new IdxLoadPosBenchmark(1, 5000, 1000).start();
+    }
+
+    public IdxLoadPosBenchmark(int threadCount, long testTime, long warmupTime) {
+        super(threadCount, testTime, warmupTime);
+    }
+
+    @Override
+    public void init() throws Exception {
+        File dir = Files.createTempDirectory("idxload").toFile();
+        dispatcher.start();
+        dispatcher.startGroup(fiberGroup).join();
+        RaftGroupConfigEx c = new RaftGroupConfigEx(1, "1", "1");
+        c.setIoExecutor(MockExecutors.ioExecutor());
+        RaftStatusImpl raftStatus = new RaftStatusImpl(dispatcher.getTs());
+        raftStatus.setTailCache(new TailCache(c, raftStatus));
+        c.setRaftStatus(raftStatus);
+        c.setTs(dispatcher.getTs());
+        c.setFiberGroup(fiberGroup);
+        c.setDataDir(dir.getAbsolutePath());
+        c.setDirectPool(TwoLevelPool.getDefaultFactory().apply(c.getTs(), true));
+        statusManager = new StatusManager(c);
+        idxFileQueue = new IdxFileQueue(dir, statusManager, c, 16 * 1024, MAX_CACHE_ITEMS);
+
+        CompletableFuture<Void> initFuture = new CompletableFuture<>();
+        fiberGroup.fireFiber("init", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return Fiber.call(statusManager.initStatusFile(), this::afterStatusInit);
+            }
+
+            private FrameCallResult afterStatusInit(Void v) throws Exception {
+                return Fiber.call(idxFileQueue.initRestorePos(), this::afterIdxInit);
+            }
+
+            private FrameCallResult afterIdxInit(Pair<Long, Long> p) {
+                idxFileQueue.setInitialized(true);
+                for (int i = 1; i <= ITEMS; i++) {
+                    raftStatus.setCommitIndex(i - 1);
+                    idxFileQueue.put(i, i * 100L);
+                    if (idxFileQueue.needWaitFlush()) {
+                        int next = i + 1;
+                        return Fiber.call(idxFileQueue.waitFlush(), v -> continuePut(next));
+                    }
+                }
+                return afterPut();
+            }
+
+            private FrameCallResult continuePut(int start) {
+                for (int i = start; i <= ITEMS; i++) {
+                    raftStatus.setCommitIndex(i - 1);
+                    idxFileQueue.put(i, i * 100L);
+                    if (idxFileQueue.needWaitFlush()) {
+                        int next = i + 1;
+                        return Fiber.call(idxFileQueue.waitFlush(), v -> continuePut(next));
+                    }
+                }
+                return afterPut();
+            }
+
+            private FrameCallResult afterPut() {
+                raftStatus.setCommitIndex(ITEMS);
+                return waitPersist(null);
+            }
+
+            private FrameCallResult waitPersist(Void v) {
+                if (idxFileQueue.getNextPersistIndex() <= ITEMS - MAX_CACHE_ITEMS) {
+                    return Fiber.sleep(1, this::waitPersist);
+                }
+                initFuture.complete(null);
+                return Fiber.frameReturn();
+            }
+        });
+        initFuture.get(60, TimeUnit.SECONDS);
+
+        for (int i = 0; i < LOAD_FIBERS; i++) {
+            fiberGroup.fireFiber("load" + i, new LoadFrame());
+        }
+    }
+
+    private class LoadFrame extends FiberFrame<Void> {
+        private final Random r = new Random();
+        private long index;
+
+        @Override
+        public FrameCallResult execute(Void input) {
+            int s = state.getOpaque();
+            if (s >= STATE_BEFORE_SHUTDOWN) {
+                if (allocEnd == -1) {
+                    allocEnd = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                }
+                return Fiber.frameReturn();
+            }
+            if (s == STATE_TEST && allocStart == -1) {
+                allocStart = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            // the items in the cache are not loaded from file
+            index = 1 + r.nextInt(ITEMS - 2 * MAX_CACHE_ITEMS);
+            return idxFileQueue.loadLogPos(index, this::afterLoad);
+        }
+
+        private FrameCallResult afterLoad(Long pos) {
+            if (pos != index * 100) {
+                throw new IllegalStateException("index=" + index + ", pos=" + pos);
+            }
+            int s = state.getOpaque();
+            success(s);
+            if (s == STATE_TEST && allocStart != -1) {
+                testOps.increment();
+            }
+            return execute(null);
+        }
+    }
+
+    @Override
+    public void test(int threadIndex, long startTime, int state) {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void shutdown() throws Exception {
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        fiberGroup.fireFiber("shutdown", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return idxFileQueue.close().await(this::afterIdxClose);
+            }
+
+            private FrameCallResult afterIdxClose(Void v) {
+                return statusManager.close().await(this::afterStatusClose);
+            }
+
+            private FrameCallResult afterStatusClose(Void v) {
+                f.complete(null);
+                return Fiber.frameReturn();
+            }
+        });
+        f.get(5, TimeUnit.SECONDS);
+        dispatcher.stop(new DtTime(3, TimeUnit.SECONDS));
+        long ops = testOps.sum();
+        if (ops > 0 && allocEnd != -1) {
+            System.out.printf("dispatcher thread allocated %,d bytes/op%n", (allocEnd - allocStart) / ops);
+        }
+    }
+}
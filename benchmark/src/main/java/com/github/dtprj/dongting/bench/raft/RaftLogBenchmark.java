@@ -66,6 +66,10 @@ import java.util.concurrent.TimeUnit;
  */
 public class RaftLogBenchmark extends RpcBenchmark {
 
+    private static final int DATA_LEN = 1024;
+    // set to true to compute the crc32c of log write buffers in io threads, see RaftGroupConfig.logCrcInIoThread
+    private static final boolean CRC_IN_IO_THREAD = false;
+
     private final BenchRaftLogProcessor processor = new BenchRaftLogProcessor();
 
     public static void main(String[] args) throws Exception {
@@ -78,6 +82,11 @@ public class RaftLogBenchmark extends RpcBenchmark {
         super(threadCount, testTime, warmupTime, cmd);
     }
 
+    @Override
+    protected int dataLen() {
+        return DATA_LEN;
+    }
+
     @Override
     protected void registerProcessor(NioServer server) {
         server.register(BenchRaftLogProcessor.COMMAND, processor, null);
@@ -126,6 +135,7 @@ public class RaftLogBenchmark extends RpcBenchmark {
             groupConfig.setFiberGroup(fiberGroup);
             groupConfig.setDataDir(DATA_DIR);
             groupConfig.setIoExecutor(MockExecutors.ioExecutor());
+            groupConfig.setLogCrcInIoThread(CRC_IN_IO_THREAD);
             groupConfig.setTs(dispatcher.getTs());
             groupConfig.setDirectPool(TwoLevelPool.getDefaultFactory().apply(groupConfig.getTs(), true));
             groupConfig.setHeapPool(new RefBufferFactory(TwoLevelPool.getDefaultFactory().apply(groupConfig.getTs(), false), 128));
@@ -233,6 +243,8 @@ public class RaftLogBenchmark extends RpcBenchmark {
 
             private FrameCallResult afterTake(Void v) {
                 for (ReqData reqData : list) {
+                    // the body is released by both the log item and the response frame
+                    reqData.frame.getBody().retain();
                     LogItem item = createItems(nextIndex++, ts, reqData.frame.getBody());
                     RaftInput ri = new RaftInput(0, null, null, null, 0);
                     RaftTask rt = new RaftTask(ts, LogItem.TYPE_NORMAL, ri, null);
@@ -76,13 +76,17 @@ public class RpcBenchmark extends BenchBase {
         client.start();
         client.waitStart();
 
-        data = new byte[DATA_LEN];
+        data = new byte[dataLen()];
         new Random().nextBytes(data);
     }
 
     protected void registerProcessor(NioServer server) {
     }
 
+    protected int dataLen() {
+        return DATA_LEN;
+    }
+
     @Override
     public void shutdown() {
         client.stop(new DtTime(3, TimeUnit.SECONDS));
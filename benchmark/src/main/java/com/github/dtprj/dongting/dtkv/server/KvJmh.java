@@ -0,0 +1,80 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Put and get of the state machine of DtKV, without raft. It is in the package of KvImpl since KvImpl is not
+ * public, the benchmark module runs in the class path.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KvJmh {
+
+    @Param({"100000"})
+    private int keyCount;
+
+    private KvImpl kv;
+    private String[] keys;
+    private final byte[] value = new byte[64];
+    private long raftIndex;
+    private int keyIndex;
+
+    @Setup
+    public void setup() {
+        kv = new KvImpl(false);
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key_" + i;
+            kv.put(++raftIndex, keys[i], value, 0);
+        }
+    }
+
+    private String nextKey() {
+        int i = keyIndex;
+        keyIndex = i + 1 == keys.length ? 0 : i + 1;
+        return keys[i];
+    }
+
+    @Benchmark
+    public void put() {
+        kv.put(++raftIndex, nextKey(), value, 0);
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return kv.get(nextKey());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.raft.server.LogItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode log items into the write buffer by the LogEncoder of LogAppender, include the crc computed by the
+ * CrcBatch before write. The file io is not included. It is in the package of LogEncoder since LogEncoder is
+ * not public, the benchmark module runs in the class path.
+ *
+ * @author huangli
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogEncodeJmh {
+
+    private static final int BATCH = 32;
+
+    @Param({"128", "4096"})
+    private int bodySize;
+
+    private final LogEncoder encoder = new LogEncoder(null, new EncodeContext(null)) {
+        @Override
+        protected ByteBuffer flush(ByteBuffer buffer) {
+            // the buffer is large enough to hold all items
+            throw new IllegalStateException();
+        }
+    };
+    private final LogItem[] items = new LogItem[BATCH];
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() {
+        byte[] body = new byte[bodySize];
+        new Random().nextBytes(body);
+        SimpleByteBufferPool heapPool = new SimpleByteBufferPool(new Timestamp(), false);
+        for (int i = 0; i < BATCH; i++) {
+            LogItem li = new LogItem(heapPool);
+            li.setType(LogItem.TYPE_NORMAL);
+            li.setTerm(1);
+            li.setPrevLogTerm(1);
+            li.setIndex(i + 1);
+            li.setTimestamp(System.currentTimeMillis());
+            li.setBodyBuffer(ByteBuffer.wrap(body));
+            li.setActualBodySize(bodySize);
+            items[i] = li;
+        }
+        buffer = ByteBuffer.allocateDirect(BATCH * LogHeader.computeTotalLen(0, 0, bodySize));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int encode() {
+        ByteBuffer buffer = this.buffer;
+        LogEncoder encoder = this.encoder;
+        buffer.clear();
+        encoder.reset();
+        for (LogItem li : items) {
+            buffer = encoder.encode(li, buffer);
+        }
+        encoder.crcBatch.compute(buffer);
+        encoder.crcBatch.clear();
+        return buffer.position();
+    }
+}
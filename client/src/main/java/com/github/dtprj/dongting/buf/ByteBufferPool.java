@@ -30,6 +30,12 @@ public abstract class ByteBufferPool {
 
     public abstract void clean();
 
-    // TODO return a stat object, not a string
     public abstract String formatStat();
+
+    /**
+     * Return a snapshot of the stat, or null if the pool does not support it.
+     */
+    public PoolStat getStat() {
+        return null;
+    }
 }
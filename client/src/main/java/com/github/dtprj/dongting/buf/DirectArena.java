@@ -0,0 +1,268 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Carve direct buffers out of large direct chunks, so a buffer costs no malloc and no Cleaner. The chunks are
+ * allocated on demand until maxBytes is reached, then allocate() returns null and the caller should allocate
+ * the buffer by itself.
+ * <p>
+ * Each chunk is a slab of one buffer size, the size classes have their own chunks and locks. free() returns
+ * the slice to its chunk, a chunk whose slices are all free since the previous call of clean() is released
+ * by clean(), then the bytes can be used by the chunks of any size. The released chunk is dropped and the
+ * memory is freed by GC (after all the slices of the chunk are unreachable). So the arena is suitable for a
+ * small set of buffer sizes, such as the size classes of a pool. Never call
+ * VersionFactory.releaseDirectBuffer() on the sliced buffer.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author huangli
+ */
+public class DirectArena {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final int chunkSize;
+    private final long maxBytes;
+
+    private final AtomicLong reservedBytes = new AtomicLong();
+    // copy on write, there are only a few sizes
+    private volatile SizeClass[] sizeClasses = new SizeClass[0];
+
+    public DirectArena(int chunkSize, long maxBytes) {
+        if (chunkSize <= 0 || maxBytes < chunkSize) {
+            throw new IllegalArgumentException("chunkSize=" + chunkSize + ", maxBytes=" + maxBytes);
+        }
+        this.chunkSize = chunkSize;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Return null if the size is larger than chunk size, or the arena is exhausted.
+     */
+    public ByteBuffer allocate(int size) {
+        if (size <= 0 || size > chunkSize) {
+            return null;
+        }
+        SizeClass sc = findSizeClass(size);
+        if (sc == null) {
+            sc = addSizeClass(size);
+        }
+        return sc.allocate();
+    }
+
+    private SizeClass findSizeClass(int size) {
+        for (SizeClass sc : sizeClasses) {
+            if (sc.size == size) {
+                return sc;
+            }
+        }
+        return null;
+    }
+
+    private synchronized SizeClass addSizeClass(int size) {
+        SizeClass sc = findSizeClass(size);
+        if (sc == null) {
+            SizeClass[] old = sizeClasses;
+            SizeClass[] newArray = Arrays.copyOf(old, old.length + 1);
+            sc = new SizeClass(size);
+            newArray[old.length] = sc;
+            sizeClasses = newArray;
+        }
+        return sc;
+    }
+
+    /**
+     * Return false if the buffer is not allocated by this arena, the caller should release it by itself.
+     */
+    public boolean free(ByteBuffer buf) {
+        SizeClass sc = findSizeClass(buf.capacity());
+        return sc != null && sc.free(buf);
+    }
+
+    /**
+     * Release the chunks which are empty since the previous call, the caller should call it periodically.
+     */
+    public void clean() {
+        for (SizeClass sc : sizeClasses) {
+            sc.clean();
+        }
+    }
+
+    private ByteBuffer newChunk() {
+        while (true) {
+            long reserved = reservedBytes.get();
+            if (reserved + chunkSize > maxBytes) {
+                return null;
+            }
+            if (reservedBytes.compareAndSet(reserved, reserved + chunkSize)) {
+                return ByteBuffer.allocateDirect(chunkSize);
+            }
+        }
+    }
+
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    public String formatStat() {
+        long used = 0, allocate = 0, reuse = 0, exhausted = 0, releasedChunks = 0;
+        int chunks = 0;
+        for (SizeClass sc : sizeClasses) {
+            synchronized (sc) {
+                for (Chunk c : sc.chunks) {
+                    used += (long) (c.carved - c.freeCount) * sc.size;
+                }
+                chunks += sc.chunks.size();
+                allocate += sc.statAllocateCount;
+                reuse += sc.statReuseCount;
+                exhausted += sc.statExhaustedCount;
+                releasedChunks += sc.statReleasedChunks;
+            }
+        }
+        return "reserved " + reservedBytes.get() + " bytes, used " + used + " bytes in " + chunks
+                + " chunks, allocate " + allocate + "(reuse " + reuse + ", exhausted " + exhausted
+                + "), released chunks " + releasedChunks;
+    }
+
+    private final class SizeClass {
+        final int size;
+        final int slicesPerChunk;
+        // the chunks of this size, which are not full are at the tail
+        final ArrayList<Chunk> chunks = new ArrayList<>();
+        // the slices carved by this arena, used to check the buffer and find its chunk in free()
+        final IdentityHashMap<ByteBuffer, Chunk> sliceToChunk = new IdentityHashMap<>();
+
+        long statAllocateCount;
+        long statReuseCount;
+        long statExhaustedCount;
+        long statReleasedChunks;
+
+        SizeClass(int size) {
+            this.size = size;
+            this.slicesPerChunk = chunkSize / size;
+        }
+
+        synchronized ByteBuffer allocate() {
+            statAllocateCount++;
+            Chunk c = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (c == null || c.isFull()) {
+                ByteBuffer mem = newChunk();
+                if (mem == null) {
+                    statExhaustedCount++;
+                    return null;
+                }
+                c = new Chunk(mem, slicesPerChunk);
+                chunks.add(c);
+            }
+            boolean reuse = c.freeCount > 0;
+            ByteBuffer slice = c.take(size);
+            if (reuse) {
+                statReuseCount++;
+            } else {
+                sliceToChunk.put(slice, c);
+            }
+            if (c.isFull()) {
+                // move the full chunk to the head, so the tail is a chunk which has free slices if any
+                chunks.remove(chunks.size() - 1);
+                chunks.add(0, c);
+            }
+            return slice;
+        }
+
+        synchronized boolean free(ByteBuffer buf) {
+            Chunk c = sliceToChunk.get(buf);
+            if (c == null) {
+                return false;
+            }
+            buf.clear();
+            boolean wasFull = c.isFull();
+            c.put(buf);
+            if (wasFull) {
+                chunks.remove(c);
+                chunks.add(c);
+            }
+            return true;
+        }
+
+        synchronized void clean() {
+            for (int i = chunks.size() - 1; i >= 0; i--) {
+                Chunk c = chunks.get(i);
+                if (!c.isEmpty()) {
+                    c.idle = false;
+                } else if (!c.idle) {
+                    c.idle = true;
+                } else {
+                    chunks.remove(i);
+                    for (int j = 0; j < c.freeCount; j++) {
+                        sliceToChunk.remove(c.freeSlices[j]);
+                    }
+                    statReleasedChunks++;
+                    // the slices may still be referenced by mistake, so leave the memory to GC
+                    reservedBytes.addAndGet(-chunkSize);
+                }
+            }
+        }
+    }
+
+    private static final class Chunk {
+        final ByteBuffer mem;
+        final ByteBuffer[] freeSlices;
+        int freeCount;
+        // count of slices carved from mem
+        int carved;
+        // empty since previous clean
+        boolean idle;
+
+        Chunk(ByteBuffer mem, int slicesPerChunk) {
+            this.mem = mem;
+            this.freeSlices = new ByteBuffer[slicesPerChunk];
+        }
+
+        boolean isFull() {
+            return freeCount == 0 && carved == freeSlices.length;
+        }
+
+        boolean isEmpty() {
+            return freeCount == carved;
+        }
+
+        ByteBuffer take(int size) {
+            idle = false;
+            if (freeCount > 0) {
+                freeCount--;
+                ByteBuffer buf = freeSlices[freeCount];
+                freeSlices[freeCount] = null;
+                return buf;
+            }
+            ByteBuffer dup = mem.duplicate();
+            int offset = carved * size;
+            dup.limit(offset + size);
+            dup.position(offset);
+            carved++;
+            return dup.slice();
+        }
+
+        void put(ByteBuffer buf) {
+            freeSlices[freeCount++] = buf;
+        }
+    }
+}
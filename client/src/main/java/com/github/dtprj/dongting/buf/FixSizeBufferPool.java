@@ -27,8 +27,9 @@ class FixSizeBufferPool {
     private static final int MAGIC_INDEX = 0;
     private static final int RETURN_TIME_INDEX = 4;
     private final int bufferSize;
-    private final int maxCount;
-    private final int minCount;
+    // changed by SimpleByteBufferPool in adaptive mode
+    int maxCount;
+    int minCount;
     private final SimpleByteBufferPool p;
     private final boolean direct;
     private final long shareSize;
@@ -41,6 +42,16 @@ class FixSizeBufferPool {
     long statReleaseCount;
     long statReleaseHitCount;
 
+    // the buffers borrowed and not released, and the peak value since last adapt
+    int inUse;
+    int peakInUse;
+
+    // the counters at last adapt
+    long lastBorrowCount;
+    long lastBorrowHitCount;
+    long lastReleaseCount;
+    long lastReleaseHitCount;
+
     public FixSizeBufferPool(SimpleByteBufferPool p, boolean direct, long shareSize, int minCount, int maxCount, int bufferSize) {
         this.p = p;
         this.direct = direct;
@@ -56,6 +67,9 @@ class FixSizeBufferPool {
 
     public ByteBuffer borrow() {
         statBorrowCount++;
+        if (++inUse > peakInUse) {
+            peakInUse = inUse;
+        }
         ByteBuffer buf = bufferStack.removeLast();
         if (buf != null) {
             int bufMagic = buf.getInt(MAGIC_INDEX);
@@ -70,6 +84,9 @@ class FixSizeBufferPool {
 
     public void release(ByteBuffer buf, long nanos) {
         statReleaseCount++;
+        if (inUse > 0) {
+            inUse--;
+        }
         IndexedQueue<ByteBuffer> bufferStack = this.bufferStack;
         // ByteBuffer.getLong may check limit, so we clear buffer first
         buf.clear();
@@ -104,6 +121,10 @@ class FixSizeBufferPool {
         bufferStack.addLast(buf);
     }
 
+    int pooledCount() {
+        return bufferStack.size();
+    }
+
     public void clean(long expireNanos) {
         IndexedQueue<ByteBuffer> stack = this.bufferStack;
         int size = stack.size();
@@ -0,0 +1,124 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampling leak detector of RefBuffer. If a sampled RefBuffer is garbage collected before it's released
+ * (the reference count reaches 0), the stack of allocation and the stack of last touch are logged. The check
+ * is performed when the next sampled RefBuffer is created, or when reportLeaks() is called.
+ * <p>
+ * The sampling interval is set by system property "dt.leakSamplingInterval" or setSamplingInterval(). 0 (the
+ * default) disables the detector, 100 tracks 1% of RefBuffers. The RefBuffers not sampled only cost a random
+ * number, so it's ok to keep a large interval in production.
+ *
+ * @author huangli
+ */
+public class LeakDetector {
+    private static final DtLog log = DtLogs.getLogger(LeakDetector.class);
+
+    private static int samplingInterval = Integer.getInteger("dt.leakSamplingInterval", 0);
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+    // hold the traces until closed
+    private static final Set<Trace> TRACES = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong LEAK_COUNT = new AtomicLong();
+
+    /**
+     * Should be set before the RefBuffers are created.
+     */
+    public static void setSamplingInterval(int samplingInterval) {
+        LeakDetector.samplingInterval = samplingInterval;
+    }
+
+    public static int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    public static long getLeakCount() {
+        return LEAK_COUNT.get();
+    }
+
+    static Trace track(Object obj) {
+        int interval = samplingInterval;
+        if (interval <= 0 || (interval > 1 && ThreadLocalRandom.current().nextInt(interval) != 0)) {
+            return null;
+        }
+        reportLeaks();
+        Trace t = new Trace(obj);
+        TRACES.add(t);
+        return t;
+    }
+
+    /**
+     * Log the leaks found since last call, return the count of them.
+     */
+    public static int reportLeaks() {
+        int count = 0;
+        Trace t;
+        while ((t = (Trace) QUEUE.poll()) != null) {
+            if (!TRACES.remove(t)) {
+                // closed
+                continue;
+            }
+            count++;
+            LEAK_COUNT.incrementAndGet();
+            Throwable ex = t.allocation;
+            Throwable touch = t.lastTouch;
+            if (touch != null) {
+                ex.addSuppressed(touch);
+            }
+            log.error("LEAK: RefBuffer is garbage collected before release, allocation and last touch:", ex);
+        }
+        return count;
+    }
+
+    static final class Trace extends PhantomReference<Object> {
+        private final Record allocation;
+        private volatile Record lastTouch;
+
+        Trace(Object referent) {
+            super(referent, QUEUE);
+            this.allocation = new Record("allocate");
+        }
+
+        void touch(String hint) {
+            lastTouch = new Record(hint);
+        }
+
+        void close() {
+            TRACES.remove(this);
+            clear();
+        }
+    }
+
+    private static final class Record extends Throwable {
+        private static final long serialVersionUID = 2937845235512437460L;
+
+        Record(String hint) {
+            super(hint + " in thread " + Thread.currentThread().getName());
+        }
+    }
+}
@@ -0,0 +1,637 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+import com.github.dtprj.dongting.common.DtException;
+import com.github.dtprj.dongting.common.IndexedQueue;
+
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Thread safe ByteBuffer pool shared by all threads, for the large buffers.
+ * <p>
+ * Each thread has a small cache (magazine) for each buffer size, borrow and release in the magazine need no
+ * lock. When the magazine is empty (or full), half of it is refilled from (or flushed to) the depots, each
+ * thread uses the depot selected by thread id first, so the threads seldom contend on the same lock.
+ * <p>
+ * The buffer sizes which are too large to put in magazine are borrowed from (and released to) the depots
+ * directly. The buffers in the magazine of dead threads, and of the live threads which are idle longer than the
+ * timeout, are moved to depots in clean(). The min/max count of each buffer size is split across the depots,
+ * a buffer that can't put in its home depot goes to other depots.
+ * <p>
+ * A direct pool can use a DirectArena, then the pooled buffers are sliced from large chunks instead of
+ * allocated one by one.
+ *
+ * @author huangli
+ */
+public class MagazinePool extends ByteBufferPool {
+    private static final int MAGIC_INDEX = 0;
+    static final int RETURN_TIME_INDEX = 4;
+    private static final int MAGIC = 0x5D3A9E21;
+
+    public static final int DEFAULT_MAGAZINE_BYTES = 256 * 1024;
+    public static final int MAX_MAGAZINE_SIZE = 8;
+
+    private final boolean direct;
+    private final int[] bufSizes;
+    private final int[] minCount;
+    private final int[] maxCount;
+    private final int[] magazineSizes;
+    private final long timeoutNanos;
+    private final Depot[] depots;
+    private final int depotMask;
+    private final DirectArena arena;
+
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<>();
+    // guarded by itself
+    private final ArrayList<ThreadCache> allCaches = new ArrayList<>();
+    private final AtomicLong lastCleanNanos = new AtomicLong(System.nanoTime());
+    // not final for unit test
+    long cleanIntervalNanos = 1000L * 1000 * 1000;
+
+    // guarded by this
+    private long statBorrowTooLargeCount;
+    // the released buffers discarded since the depots are full, guarded by this
+    private final long[] statDiscardCount;
+
+    // stat of dead threads, guarded by allCaches
+    private final long[] statDeadBorrowCount;
+    private final long[] statDeadBorrowHitCount;
+    private final long[] statDeadReleaseCount;
+    private long statDeadMagazineHitCount;
+
+    public MagazinePool(boolean direct, int[] bufSizes, int[] minCount, int[] maxCount, long timeoutMillis) {
+        this(direct, bufSizes, minCount, maxCount, timeoutMillis,
+                Runtime.getRuntime().availableProcessors(), DEFAULT_MAGAZINE_BYTES);
+    }
+
+    /**
+     * @param minCount      min count of each buffer size in depots (total of all stripes)
+     * @param maxCount      max count of each buffer size in depots (total of all stripes)
+     * @param stripes       the depot count, round to power of 2
+     * @param magazineBytes max bytes of each buffer size cached in each thread
+     */
+    public MagazinePool(boolean direct, int[] bufSizes, int[] minCount, int[] maxCount, long timeoutMillis,
+                        int stripes, int magazineBytes) {
+        this(direct, bufSizes, minCount, maxCount, timeoutMillis, stripes, magazineBytes, null);
+    }
+
+    /**
+     * @param arena if not null, the pooled direct buffers are carved from the arena, and the buffers discarded
+     *              by the pool are returned to the arena
+     */
+    public MagazinePool(boolean direct, int[] bufSizes, int[] minCount, int[] maxCount, long timeoutMillis,
+                        int stripes, int magazineBytes, DirectArena arena) {
+        Objects.requireNonNull(bufSizes);
+        Objects.requireNonNull(minCount);
+        Objects.requireNonNull(maxCount);
+        if (bufSizes.length != minCount.length || bufSizes.length != maxCount.length) {
+            throw new IllegalArgumentException();
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeout<=0. timeout=" + timeoutMillis);
+        }
+        if (stripes <= 0 || magazineBytes < 0) {
+            throw new IllegalArgumentException("stripes=" + stripes + ", magazineBytes=" + magazineBytes);
+        }
+        for (int i = 0; i < bufSizes.length; i++) {
+            if (bufSizes[i] < 16) {
+                throw new IllegalArgumentException("buffer size too small: " + bufSizes[i]);
+            }
+            if (i > 0 && bufSizes[i] <= bufSizes[i - 1]) {
+                throw new IllegalArgumentException("bufSizes should be ascending");
+            }
+            if (minCount[i] < 0 || maxCount[i] <= 0 || maxCount[i] < minCount[i]) {
+                throw new IllegalArgumentException("minCount=" + minCount[i] + ", maxCount=" + maxCount[i]);
+            }
+        }
+        if (arena != null && !direct) {
+            throw new IllegalArgumentException("arena is only for direct pool");
+        }
+        this.direct = direct;
+        this.arena = arena;
+        this.bufSizes = bufSizes;
+        this.minCount = minCount;
+        this.maxCount = maxCount;
+        this.statDiscardCount = new long[bufSizes.length];
+        this.statDeadBorrowCount = new long[bufSizes.length];
+        this.statDeadBorrowHitCount = new long[bufSizes.length];
+        this.statDeadReleaseCount = new long[bufSizes.length];
+        this.timeoutNanos = timeoutMillis * 1000 * 1000;
+        this.magazineSizes = new int[bufSizes.length];
+        for (int i = 0; i < bufSizes.length; i++) {
+            magazineSizes[i] = Math.min(MAX_MAGAZINE_SIZE, magazineBytes / bufSizes[i]);
+        }
+
+        int depotCount = 1;
+        while (depotCount < stripes) {
+            depotCount <<= 1;
+        }
+        this.depotMask = depotCount - 1;
+        this.depots = new Depot[depotCount];
+        for (int i = 0; i < depotCount; i++) {
+            int[] depotMin = new int[bufSizes.length];
+            int[] depotMax = new int[bufSizes.length];
+            for (int j = 0; j < bufSizes.length; j++) {
+                // the total of all depots is the configured count, the remainder goes to the first depots
+                depotMin[j] = minCount[j] / depotCount + (i < minCount[j] % depotCount ? 1 : 0);
+                depotMax[j] = maxCount[j] / depotCount + (i < maxCount[j] % depotCount ? 1 : 0);
+            }
+            depots[i] = new Depot(i, depotMin, depotMax);
+        }
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+        return this.direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private ByteBuffer allocatePooled(int size) {
+        if (arena != null) {
+            ByteBuffer buf = arena.allocate(size);
+            if (buf != null) {
+                return buf;
+            }
+        }
+        return allocate(size);
+    }
+
+    private int borrowIndex(int requestSize) {
+        int[] bufSizes = this.bufSizes;
+        for (int i = 0; i < bufSizes.length; i++) {
+            if (bufSizes[i] >= requestSize) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int releaseIndex(int capacity) {
+        int[] bufSizes = this.bufSizes;
+        for (int i = 0; i < bufSizes.length; i++) {
+            if (bufSizes[i] == capacity) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private ThreadCache getThreadCache() {
+        ThreadCache tc = threadCache.get();
+        if (tc == null) {
+            Thread t = Thread.currentThread();
+            tc = new ThreadCache(t, depots[(int) t.getId() & depotMask], magazineSizes);
+            threadCache.set(tc);
+            synchronized (allCaches) {
+                allCaches.add(tc);
+            }
+        }
+        return tc;
+    }
+
+    @Override
+    public ByteBuffer borrow(int requestSize) {
+        int index = borrowIndex(requestSize);
+        if (index < 0) {
+            synchronized (this) {
+                statBorrowTooLargeCount++;
+            }
+            return allocate(requestSize);
+        }
+        ThreadCache tc = getThreadCache();
+        tc.statBorrowCount[index]++;
+        ByteBuffer buf;
+        int magazineSize = magazineSizes[index];
+        if (magazineSize == 0 || !tc.tryLock()) {
+            buf = borrowFromDepots(tc.home, index);
+        } else {
+            try {
+                ByteBuffer[] magazine = tc.magazines[index];
+                int count = tc.counts[index];
+                if (count == 0) {
+                    count = refill(tc, index, Math.max(1, magazineSize >> 1));
+                } else {
+                    tc.statMagazineHitCount++;
+                }
+                if (count > 0) {
+                    count--;
+                    buf = magazine[count];
+                    magazine[count] = null;
+                    tc.counts[index] = count;
+                } else {
+                    buf = null;
+                }
+            } finally {
+                tc.unlock();
+            }
+        }
+        if (buf == null) {
+            return allocatePooled(bufSizes[index]);
+        }
+        tc.statBorrowHitCount[index]++;
+        if (buf.getInt(MAGIC_INDEX) != MAGIC) {
+            throw new DtException("A bug may exist where the buffer is written to after release.");
+        }
+        buf.putInt(MAGIC_INDEX, 0);
+        return buf;
+    }
+
+    private ByteBuffer borrowFromDepots(Depot home, int index) {
+        ByteBuffer buf = home.borrow(index);
+        for (int i = 1; buf == null && i <= depotMask; i++) {
+            buf = depots[(home.index + i) & depotMask].borrow(index);
+        }
+        return buf;
+    }
+
+    private int refill(ThreadCache tc, int index, int batch) {
+        int count = tc.home.take(index, tc.magazines[index], batch);
+        if (count == 0 && depotMask > 0) {
+            for (int i = 1; count == 0 && i <= depotMask; i++) {
+                count = depots[(tc.home.index + i) & depotMask].take(index, tc.magazines[index], batch);
+            }
+        }
+        tc.counts[index] = count;
+        return count;
+    }
+
+    @Override
+    public void release(ByteBuffer buf) {
+        if (buf.isDirect() != direct) {
+            throw new DtException("buffer released to wrong pool");
+        }
+        int index = releaseIndex(buf.capacity());
+        if (index < 0) {
+            // buffer too large or too small, release it without pool
+            if (direct && (arena == null || !arena.free(buf))) {
+                SimpleByteBufferPool.VF.releaseDirectBuffer(buf);
+            }
+            return;
+        }
+        // ByteBuffer.putLong may check limit, so we clear buffer first
+        buf.clear();
+        buf.putInt(MAGIC_INDEX, MAGIC);
+        ThreadCache tc = getThreadCache();
+        tc.statReleaseCount[index]++;
+        int magazineSize = magazineSizes[index];
+        if (magazineSize == 0 || !tc.tryLock()) {
+            if (!putToDepots(tc.home, index, buf)) {
+                discard(buf);
+                addDiscardStat(index, 1);
+            }
+            return;
+        }
+        try {
+            int count = tc.counts[index];
+            if (count == magazineSize) {
+                count = flush(tc, index, Math.max(1, magazineSize >> 1));
+            } else {
+                tc.statMagazineHitCount++;
+            }
+            tc.magazines[index][count] = buf;
+            tc.counts[index] = count + 1;
+        } finally {
+            tc.unlock();
+        }
+    }
+
+    private boolean putToDepots(Depot home, int index, ByteBuffer buf) {
+        long now = System.nanoTime();
+        boolean success = home.put(index, buf, now);
+        for (int i = 1; !success && i <= depotMask; i++) {
+            success = depots[(home.index + i) & depotMask].put(index, buf, now);
+        }
+        return success;
+    }
+
+    // should hold the lock of the thread cache
+    private int flush(ThreadCache tc, int index, int batch) {
+        ByteBuffer[] magazine = tc.magazines[index];
+        int count = tc.counts[index];
+        long now = System.nanoTime();
+        int discardStart = tc.home.putAll(index, magazine, count - batch, count, now);
+        for (int i = 1; discardStart < count && i <= depotMask; i++) {
+            discardStart = depots[(tc.home.index + i) & depotMask].putAll(index, magazine, discardStart, count, now);
+        }
+        for (int i = discardStart; i < count; i++) {
+            discard(magazine[i]);
+        }
+        if (discardStart < count) {
+            addDiscardStat(index, count - discardStart);
+        }
+        for (int i = count - batch; i < count; i++) {
+            magazine[i] = null;
+        }
+        count -= batch;
+        tc.counts[index] = count;
+        return count;
+    }
+
+    private synchronized void addDiscardStat(int index, int count) {
+        statDiscardCount[index] += count;
+    }
+
+    private void discard(ByteBuffer buf) {
+        buf.putInt(MAGIC_INDEX, 0);
+        if (direct && (arena == null || !arena.free(buf))) {
+            SimpleByteBufferPool.VF.releaseDirectBuffer(buf);
+        }
+    }
+
+    /**
+     * Can call in any thread, the pool does the clean work at most once per second, so it's cheap to call
+     * this method frequently in many threads.
+     */
+    @Override
+    public void clean() {
+        long now = System.nanoTime();
+        long last = lastCleanNanos.get();
+        if (now - last < cleanIntervalNanos || !lastCleanNanos.compareAndSet(last, now)) {
+            return;
+        }
+        synchronized (allCaches) {
+            Iterator<ThreadCache> it = allCaches.iterator();
+            while (it.hasNext()) {
+                ThreadCache tc = it.next();
+                if (!tc.thread.isAlive()) {
+                    it.remove();
+                    flushAll(tc);
+                    addDeadThreadStat(tc);
+                } else {
+                    // the stat is written by the owner thread, it's enough to find out the idle thread
+                    long ops = tc.opsForStat();
+                    if (ops != tc.lastOps) {
+                        tc.lastOps = ops;
+                        tc.lastActiveNanos = now;
+                    } else if (now - tc.lastActiveNanos >= timeoutNanos && tc.tryLock()) {
+                        // the thread may never borrow or release again, don't keep the buffers in its magazine
+                        try {
+                            flushAll(tc);
+                        } finally {
+                            tc.unlock();
+                        }
+                    }
+                }
+            }
+        }
+        long expireNanos = now - timeoutNanos;
+        for (Depot d : depots) {
+            d.clean(expireNanos, this::discard);
+        }
+        if (arena != null) {
+            arena.clean();
+        }
+    }
+
+    private void flushAll(ThreadCache tc) {
+        for (int i = 0; i < bufSizes.length; i++) {
+            if (tc.counts[i] > 0) {
+                flush(tc, i, tc.counts[i]);
+            }
+        }
+    }
+
+    private void addDeadThreadStat(ThreadCache tc) {
+        for (int i = 0; i < bufSizes.length; i++) {
+            statDeadBorrowCount[i] += tc.statBorrowCount[i];
+            statDeadBorrowHitCount[i] += tc.statBorrowHitCount[i];
+            statDeadReleaseCount[i] += tc.statReleaseCount[i];
+        }
+        statDeadMagazineHitCount += tc.statMagazineHitCount;
+    }
+
+    /**
+     * The stat of live threads is read without synchronization, so it's not accurate. The release hit count is
+     * the count of released buffers which are not discarded because the depots are full, the pooled count
+     * includes the buffers in the magazines.
+     */
+    @Override
+    public PoolStat getStat() {
+        int n = bufSizes.length;
+        int[] pooledCount = new int[n];
+        long[] borrowCount = new long[n];
+        long[] borrowHitCount = new long[n];
+        long[] releaseCount = new long[n];
+        long[] releaseHitCount = new long[n];
+        synchronized (allCaches) {
+            for (int i = 0; i < n; i++) {
+                borrowCount[i] = statDeadBorrowCount[i];
+                borrowHitCount[i] = statDeadBorrowHitCount[i];
+                releaseCount[i] = statDeadReleaseCount[i];
+            }
+            for (ThreadCache tc : allCaches) {
+                for (int i = 0; i < n; i++) {
+                    borrowCount[i] += tc.statBorrowCount[i];
+                    borrowHitCount[i] += tc.statBorrowHitCount[i];
+                    releaseCount[i] += tc.statReleaseCount[i];
+                    pooledCount[i] += tc.counts[i];
+                }
+            }
+        }
+        for (Depot d : depots) {
+            synchronized (d) {
+                for (int i = 0; i < n; i++) {
+                    pooledCount[i] += d.stacks[i].size();
+                }
+            }
+        }
+        long tooLarge;
+        synchronized (this) {
+            tooLarge = statBorrowTooLargeCount;
+            for (int i = 0; i < n; i++) {
+                releaseHitCount[i] = Math.max(0, releaseCount[i] - statDiscardCount[i]);
+            }
+        }
+        return new PoolStat(bufSizes.clone(), minCount.clone(), maxCount.clone(), pooledCount, borrowCount,
+                borrowHitCount, releaseCount, releaseHitCount, 0, tooLarge);
+    }
+
+    /**
+     * The stat of live threads is read without synchronization, so it's not accurate.
+     */
+    @Override
+    public String formatStat() {
+        long borrow, borrowHit, release, magazineHit;
+        int threads;
+        synchronized (allCaches) {
+            borrow = sum(statDeadBorrowCount);
+            borrowHit = sum(statDeadBorrowHitCount);
+            release = sum(statDeadReleaseCount);
+            magazineHit = statDeadMagazineHitCount;
+            threads = allCaches.size();
+            for (ThreadCache tc : allCaches) {
+                borrow += sum(tc.statBorrowCount);
+                borrowHit += sum(tc.statBorrowHitCount);
+                release += sum(tc.statReleaseCount);
+                magazineHit += tc.statMagazineHitCount;
+            }
+        }
+        long depotBuffers = 0;
+        long depotBytes = 0;
+        for (Depot d : depots) {
+            synchronized (d) {
+                for (int i = 0; i < bufSizes.length; i++) {
+                    int size = d.stacks[i].size();
+                    depotBuffers += size;
+                    depotBytes += (long) size * bufSizes[i];
+                }
+            }
+        }
+        long tooLarge;
+        synchronized (this) {
+            tooLarge = statBorrowTooLargeCount;
+        }
+        DecimalFormat f = new DecimalFormat("#,###");
+        return "borrow " + f.format(borrow) + "(hit " + f.format(borrowHit) + "), release " + f.format(release)
+                + ", magazine hit " + f.format(magazineHit) + ", borrow too large " + f.format(tooLarge)
+                + ", threads " + threads + ", depots " + depots.length + ", depot buffers " + f.format(depotBuffers)
+                + "(" + f.format(depotBytes) + " bytes)" + (arena == null ? "" : ", arena: " + arena.formatStat());
+    }
+
+    private static long sum(long[] array) {
+        long s = 0;
+        for (long v : array) {
+            s += v;
+        }
+        return s;
+    }
+
+    private static final class ThreadCache {
+        private static final AtomicIntegerFieldUpdater<ThreadCache> LOCK =
+                AtomicIntegerFieldUpdater.newUpdater(ThreadCache.class, "lock");
+
+        final Thread thread;
+        final Depot home;
+        // guarded by lock, the owner thread use them without lock contention except when clean() flushes them
+        final ByteBuffer[][] magazines;
+        final int[] counts;
+
+        private volatile int lock;
+
+        // written by owner thread only, indexed by buffer size
+        final long[] statBorrowCount;
+        final long[] statBorrowHitCount;
+        final long[] statReleaseCount;
+        long statMagazineHitCount;
+
+        // guarded by allCaches, used by clean() to find out the idle thread
+        long lastOps;
+        long lastActiveNanos;
+
+        ThreadCache(Thread thread, Depot home, int[] magazineSizes) {
+            this.thread = thread;
+            this.home = home;
+            this.lastActiveNanos = System.nanoTime();
+            this.magazines = new ByteBuffer[magazineSizes.length][];
+            for (int i = 0; i < magazineSizes.length; i++) {
+                magazines[i] = new ByteBuffer[magazineSizes[i]];
+            }
+            this.counts = new int[magazineSizes.length];
+            this.statBorrowCount = new long[magazineSizes.length];
+            this.statBorrowHitCount = new long[magazineSizes.length];
+            this.statReleaseCount = new long[magazineSizes.length];
+        }
+
+        long opsForStat() {
+            return sum(statBorrowCount) + sum(statReleaseCount);
+        }
+
+        // never block, if failed, the caller should use the depots directly
+        boolean tryLock() {
+            return LOCK.compareAndSet(this, 0, 1);
+        }
+
+        void unlock() {
+            LOCK.lazySet(this, 0);
+        }
+    }
+
+    private static final class Depot {
+        private final int index;
+        private final int[] minCount;
+        private final int[] maxCount;
+        private final IndexedQueue<ByteBuffer>[] stacks;
+
+        @SuppressWarnings("unchecked")
+        Depot(int index, int[] minCount, int[] maxCount) {
+            this.index = index;
+            this.minCount = minCount;
+            this.maxCount = maxCount;
+            this.stacks = new IndexedQueue[minCount.length];
+            for (int i = 0; i < stacks.length; i++) {
+                stacks[i] = new IndexedQueue<>(Math.max(8, maxCount[i]));
+            }
+        }
+
+        synchronized ByteBuffer borrow(int index) {
+            return stacks[index].removeLast();
+        }
+
+        synchronized int take(int index, ByteBuffer[] dest, int count) {
+            IndexedQueue<ByteBuffer> stack = stacks[index];
+            int n = Math.min(count, stack.size());
+            for (int i = 0; i < n; i++) {
+                dest[i] = stack.removeLast();
+            }
+            return n;
+        }
+
+        synchronized boolean put(int index, ByteBuffer buf, long nanos) {
+            IndexedQueue<ByteBuffer> stack = stacks[index];
+            if (stack.size() >= maxCount[index]) {
+                return false;
+            }
+            buf.putLong(RETURN_TIME_INDEX, nanos);
+            stack.addLast(buf);
+            return true;
+        }
+
+        // return the start index of the buffers that can't put in the depot
+        synchronized int putAll(int index, ByteBuffer[] src, int start, int end, long nanos) {
+            IndexedQueue<ByteBuffer> stack = stacks[index];
+            int max = maxCount[index];
+            for (int i = start; i < end; i++) {
+                if (stack.size() >= max) {
+                    return i;
+                }
+                src[i].putLong(RETURN_TIME_INDEX, nanos);
+                stack.addLast(src[i]);
+            }
+            return end;
+        }
+
+        synchronized void clean(long expireNanos, Consumer<ByteBuffer> discard) {
+            for (int i = 0; i < stacks.length; i++) {
+                IndexedQueue<ByteBuffer> stack = stacks[i];
+                while (stack.size() > minCount[i]) {
+                    ByteBuffer buf = stack.get(0);
+                    if (buf.getLong(RETURN_TIME_INDEX) - expireNanos > 0) {
+                        break;
+                    }
+                    stack.removeFirst();
+                    discard.accept(buf);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+/**
+ * A snapshot of the stat of a pool, the counters are accumulated since the pool is created, and the arrays are
+ * indexed by the buffer size class.
+ *
+ * @author huangli
+ */
+public class PoolStat {
+    private final int[] bufSizes;
+    private final int[] minCount;
+    private final int[] maxCount;
+    private final int[] pooledCount;
+    private final long[] borrowCount;
+    private final long[] borrowHitCount;
+    private final long[] releaseCount;
+    private final long[] releaseHitCount;
+    private final long borrowTooSmallCount;
+    private final long borrowTooLargeCount;
+
+    PoolStat(int[] bufSizes, int[] minCount, int[] maxCount, int[] pooledCount, long[] borrowCount,
+             long[] borrowHitCount, long[] releaseCount, long[] releaseHitCount,
+             long borrowTooSmallCount, long borrowTooLargeCount) {
+        this.bufSizes = bufSizes;
+        this.minCount = minCount;
+        this.maxCount = maxCount;
+        this.pooledCount = pooledCount;
+        this.borrowCount = borrowCount;
+        this.borrowHitCount = borrowHitCount;
+        this.releaseCount = releaseCount;
+        this.releaseHitCount = releaseHitCount;
+        this.borrowTooSmallCount = borrowTooSmallCount;
+        this.borrowTooLargeCount = borrowTooLargeCount;
+    }
+
+    /**
+     * Combine the stat of 2 pools, the size classes of the first are all smaller than the second. The borrow too
+     * small count is taken from the first, and the borrow too large count is taken from the second.
+     */
+    static PoolStat concat(PoolStat small, PoolStat large) {
+        return new PoolStat(concat(small.bufSizes, large.bufSizes), concat(small.minCount, large.minCount),
+                concat(small.maxCount, large.maxCount), concat(small.pooledCount, large.pooledCount),
+                concat(small.borrowCount, large.borrowCount), concat(small.borrowHitCount, large.borrowHitCount),
+                concat(small.releaseCount, large.releaseCount), concat(small.releaseHitCount, large.releaseHitCount),
+                small.borrowTooSmallCount, large.borrowTooLargeCount);
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] r = new int[a.length + b.length];
+        System.arraycopy(a, 0, r, 0, a.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        return r;
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] r = new long[a.length + b.length];
+        System.arraycopy(a, 0, r, 0, a.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        return r;
+    }
+
+    private static double rate(long hit, long count) {
+        return count == 0 ? 0 : (double) hit / count;
+    }
+
+    private static long sum(long[] array) {
+        long s = 0;
+        for (long v : array) {
+            s += v;
+        }
+        return s;
+    }
+
+    public double getBorrowHitRate() {
+        return rate(sum(borrowHitCount), sum(borrowCount));
+    }
+
+    public double getBorrowHitRate(int index) {
+        return rate(borrowHitCount[index], borrowCount[index]);
+    }
+
+    public double getReleaseHitRate() {
+        return rate(sum(releaseHitCount), sum(releaseCount));
+    }
+
+    public double getReleaseHitRate(int index) {
+        return rate(releaseHitCount[index], releaseCount[index]);
+    }
+
+    /**
+     * the bytes of the buffers in the pool, not including the borrowed ones.
+     */
+    public long getPooledBytes() {
+        long s = 0;
+        for (int i = 0; i < bufSizes.length; i++) {
+            s += (long) bufSizes[i] * pooledCount[i];
+        }
+        return s;
+    }
+
+    public int[] getBufSizes() {
+        return bufSizes;
+    }
+
+    public int[] getMinCount() {
+        return minCount;
+    }
+
+    public int[] getMaxCount() {
+        return maxCount;
+    }
+
+    public int[] getPooledCount() {
+        return pooledCount;
+    }
+
+    public long[] getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long[] getBorrowHitCount() {
+        return borrowHitCount;
+    }
+
+    public long[] getReleaseCount() {
+        return releaseCount;
+    }
+
+    public long[] getReleaseHitCount() {
+        return releaseHitCount;
+    }
+
+    public long getBorrowTooSmallCount() {
+        return borrowTooSmallCount;
+    }
+
+    public long getBorrowTooLargeCount() {
+        return borrowTooLargeCount;
+    }
+}
@@ -27,6 +27,8 @@ public class RefBuffer extends RefCount {
     private ByteBuffer buffer;
     private final ByteBufferPool pool;
     private final boolean direct;
+    // not null if sampled by LeakDetector
+    private final LeakDetector.Trace leakTrace;
 
     RefBuffer(boolean plain, ByteBufferPool pool, int requestSize, int threshold) {
         super(plain);
@@ -38,6 +40,8 @@ public class RefBuffer extends RefCount {
             this.pool = pool;
         }
         this.direct = buffer.isDirect();
+        // the small heap buffer need not release
+        this.leakTrace = (this.pool == null && !direct) ? null : LeakDetector.track(this);
     }
 
     @Override
@@ -46,6 +50,9 @@ public class RefBuffer extends RefCount {
             return;
         }
         super.retain(increment);
+        if (leakTrace != null) {
+            leakTrace.touch("retain");
+        }
     }
 
     @Override
@@ -53,11 +60,28 @@ public class RefBuffer extends RefCount {
         if (pool == null && !direct) {
             return false;
         }
-        return super.release(decrement);
+        boolean result = super.release(decrement);
+        if (!result && leakTrace != null) {
+            leakTrace.touch("release");
+        }
+        return result;
+    }
+
+    /**
+     * Record the stack of current thread as last touch if this buffer is sampled by LeakDetector, call it when
+     * the buffer is passed to other component.
+     */
+    public void touch(String hint) {
+        if (leakTrace != null) {
+            leakTrace.touch(hint);
+        }
     }
 
     @Override
     protected void doClean() {
+        if (leakTrace != null) {
+            leakTrace.close();
+        }
         if (pool != null) {
             pool.release(buffer);
         } else {
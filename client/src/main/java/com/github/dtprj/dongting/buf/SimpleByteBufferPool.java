@@ -40,6 +40,11 @@ public class SimpleByteBufferPool extends ByteBufferPool {
     private final boolean direct;
     private final boolean threadSafe;
 
+    private final boolean adaptive;
+    private final long adaptIntervalNanos;
+    private final long memoryBudget;
+    private long lastAdaptNanos;
+
     private long statBorrowTooSmallCount;
     private long statBorrowTooLargeCount;
 
@@ -65,6 +70,8 @@ public class SimpleByteBufferPool extends ByteBufferPool {
 
     public static final long DEFAULT_TIME_OUT_MILLIS = 10 * 1000;
 
+    public static final long DEFAULT_ADAPT_INTERVAL_MILLIS = 60 * 1000;
+
     public SimpleByteBufferPool(Timestamp ts, boolean direct, int threshold) {
         this(new SimpleByteBufferPoolConfig(ts, direct, threshold, false));
     }
@@ -124,6 +131,15 @@ public class SimpleByteBufferPool extends ByteBufferPool {
             this.pools[i] = new FixSizeBufferPool(this, direct, config.getShareSize(),
                     minCount[i], maxCount[i], bufSizes[i]);
         }
+
+        this.adaptive = config.isAdaptive();
+        if (adaptive && config.getAdaptIntervalMillis() <= 0) {
+            throw new IllegalArgumentException("adaptIntervalMillis<=0. adaptIntervalMillis="
+                    + config.getAdaptIntervalMillis());
+        }
+        this.adaptIntervalNanos = config.getAdaptIntervalMillis() * 1000 * 1000;
+        this.memoryBudget = config.getMemoryBudget() > 0 ? config.getMemoryBudget() : calcTotalSize(bufSizes, maxCount);
+        this.lastAdaptNanos = ts.getNanoTime();
     }
 
     @Override
@@ -232,12 +248,101 @@ public class SimpleByteBufferPool extends ByteBufferPool {
     }
 
     private void clean0() {
-        long expireNanos = ts.getNanoTime() - this.timeoutNanos;
+        long now = ts.getNanoTime();
+        if (adaptive && now - lastAdaptNanos >= adaptIntervalNanos) {
+            lastAdaptNanos = now;
+            adapt();
+        }
+        long expireNanos = now - this.timeoutNanos;
         for (FixSizeBufferPool pool : pools) {
             pool.clean(expireNanos);
         }
     }
 
+    /**
+     * Resize the min/max count of each buffer size by the borrow/release of last period:
+     * <ul>
+     *     <li>if the stack is empty on some borrow and full on some release, double the maxCount</li>
+     *     <li>if there is no borrow, halve the maxCount</li>
+     *     <li>the minCount is the peak count of borrowed buffers, so the buffers of the working set are not
+     *     expired by clean()</li>
+     * </ul>
+     * Then the maxCount is scaled down proportionally if the total size exceeds the memory budget. The maxCount
+     * is at least 1, so the budget may be exceeded by one buffer per size.
+     */
+    private void adapt() {
+        FixSizeBufferPool[] pools = this.pools;
+        int n = pools.length;
+        int[] newMin = new int[n];
+        int[] newMax = new int[n];
+        for (int i = 0; i < n; i++) {
+            FixSizeBufferPool p = pools[i];
+            long borrow = p.statBorrowCount - p.lastBorrowCount;
+            long borrowMiss = borrow - (p.statBorrowHitCount - p.lastBorrowHitCount);
+            long releaseMiss = (p.statReleaseCount - p.lastReleaseCount)
+                    - (p.statReleaseHitCount - p.lastReleaseHitCount);
+            long max = p.maxCount;
+            if (borrowMiss > 0 && releaseMiss > 0) {
+                max = max * 2;
+            } else if (borrow == 0) {
+                max = max / 2;
+            }
+            newMax[i] = (int) Math.max(1, Math.min(max, Integer.MAX_VALUE / 2));
+            newMin[i] = p.peakInUse;
+
+            p.peakInUse = p.inUse;
+            p.lastBorrowCount = p.statBorrowCount;
+            p.lastBorrowHitCount = p.statBorrowHitCount;
+            p.lastReleaseCount = p.statReleaseCount;
+            p.lastReleaseHitCount = p.statReleaseHitCount;
+        }
+        long total = calcTotalSize(bufSizes, newMax);
+        if (total > memoryBudget) {
+            double scale = (double) memoryBudget / total;
+            for (int i = 0; i < n; i++) {
+                newMax[i] = Math.max(1, (int) (newMax[i] * scale));
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            pools[i].maxCount = newMax[i];
+            pools[i].minCount = Math.min(newMin[i], newMax[i]);
+        }
+    }
+
+    @Override
+    public PoolStat getStat() {
+        if (threadSafe) {
+            synchronized (this) {
+                return getStat0();
+            }
+        } else {
+            return getStat0();
+        }
+    }
+
+    private PoolStat getStat0() {
+        int n = pools.length;
+        int[] minCount = new int[n];
+        int[] maxCount = new int[n];
+        int[] pooledCount = new int[n];
+        long[] borrowCount = new long[n];
+        long[] borrowHitCount = new long[n];
+        long[] releaseCount = new long[n];
+        long[] releaseHitCount = new long[n];
+        for (int i = 0; i < n; i++) {
+            FixSizeBufferPool p = pools[i];
+            minCount[i] = p.minCount;
+            maxCount[i] = p.maxCount;
+            pooledCount[i] = p.pooledCount();
+            borrowCount[i] = p.statBorrowCount;
+            borrowHitCount[i] = p.statBorrowHitCount;
+            releaseCount[i] = p.statReleaseCount;
+            releaseHitCount[i] = p.statReleaseHitCount;
+        }
+        return new PoolStat(bufSizes.clone(), minCount, maxCount, pooledCount, borrowCount, borrowHitCount,
+                releaseCount, releaseHitCount, statBorrowTooSmallCount, statBorrowTooLargeCount);
+    }
+
     public String formatStat() {
         if (threadSafe) {
             synchronized (this) {
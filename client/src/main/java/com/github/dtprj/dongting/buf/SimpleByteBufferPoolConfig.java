@@ -30,6 +30,9 @@ public class SimpleByteBufferPoolConfig {
     private int[] maxCount = SimpleByteBufferPool.DEFAULT_MAX_COUNT;
     private long timeoutMillis = SimpleByteBufferPool.DEFAULT_TIME_OUT_MILLIS;
     private long shareSize = 0;
+    private boolean adaptive = false;
+    private long adaptIntervalMillis = SimpleByteBufferPool.DEFAULT_ADAPT_INTERVAL_MILLIS;
+    private long memoryBudget = 0;
 
     public SimpleByteBufferPoolConfig() {
     }
@@ -117,4 +120,36 @@ public class SimpleByteBufferPoolConfig {
     public void setShareSize(long shareSize) {
         this.shareSize = shareSize;
     }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * In adaptive mode, the minCount and maxCount are initial values, and the pool resizes them in clean()
+     * according to the observed borrow/release of each buffer size.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public long getAdaptIntervalMillis() {
+        return adaptIntervalMillis;
+    }
+
+    public void setAdaptIntervalMillis(long adaptIntervalMillis) {
+        this.adaptIntervalMillis = adaptIntervalMillis;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * The max bytes of the maxCount of all buffer sizes in adaptive mode, 0 means the total size of the initial
+     * maxCount.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
 }
@@ -36,7 +36,8 @@ public class TwoLevelPool extends ByteBufferPool {
     private final Consumer<ByteBuffer> releaseCallback;
     private final Thread owner;
 
-    private static SimpleByteBufferPool GLOBAL_POOL;
+    private static MagazinePool GLOBAL_HEAP_POOL;
+    private static MagazinePool GLOBAL_DIRECT_POOL;
 
     public static final int[] DEFAULT_GLOBAL_SIZE = new int[]{32 * 1024, 64 * 1024, 128 * 1024, 256 * 1024, 512 * 1024,
             1024 * 1024, 2 * 1024 * 1024, 4 * 1024 * 1024};
@@ -52,17 +53,23 @@ public class TwoLevelPool extends ByteBufferPool {
     public static final int[] DEFAULT_SMALL_MAX_COUNT = new int[]{8192, 4096, 2048, 1024, 1024, 1024, 512, 256};
 
     private static BiFunction<Timestamp, Boolean, ByteBufferPool> DEFAULT_FACTORY = (ts, direct) -> {
+        MagazinePool globalPool;
         synchronized (TwoLevelPool.class) {
-            if (GLOBAL_POOL == null) {
-                // Thread safe pool should use a dedicated timestamp
-                SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(
-                        null, direct, 0, true);
-                c.setBufSizes(DEFAULT_GLOBAL_SIZE);
-                c.setMinCount(DEFAULT_GLOBAL_MIN_COUNT);
-                c.setMaxCount(DEFAULT_GLOBAL_MAX_COUNT);
-                c.setTimeoutMillis(30000);
-                c.setShareSize(calcTotalSize(c.getBufSizes(), c.getMaxCount()) / 2);
-                GLOBAL_POOL = new SimpleByteBufferPool(c);
+            if (direct) {
+                if (GLOBAL_DIRECT_POOL == null) {
+                    DirectArena arena = new DirectArena(DirectArena.DEFAULT_CHUNK_SIZE,
+                            calcTotalSize(DEFAULT_GLOBAL_SIZE, DEFAULT_GLOBAL_MAX_COUNT));
+                    GLOBAL_DIRECT_POOL = new MagazinePool(true, DEFAULT_GLOBAL_SIZE,
+                            DEFAULT_GLOBAL_MIN_COUNT, DEFAULT_GLOBAL_MAX_COUNT, 30000,
+                            Runtime.getRuntime().availableProcessors(), MagazinePool.DEFAULT_MAGAZINE_BYTES, arena);
+                }
+                globalPool = GLOBAL_DIRECT_POOL;
+            } else {
+                if (GLOBAL_HEAP_POOL == null) {
+                    GLOBAL_HEAP_POOL = new MagazinePool(false, DEFAULT_GLOBAL_SIZE,
+                            DEFAULT_GLOBAL_MIN_COUNT, DEFAULT_GLOBAL_MAX_COUNT, 30000);
+                }
+                globalPool = GLOBAL_HEAP_POOL;
             }
         }
         SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(
@@ -73,7 +80,7 @@ public class TwoLevelPool extends ByteBufferPool {
         c.setTimeoutMillis(10000);
         c.setShareSize(calcTotalSize(c.getBufSizes(), c.getMaxCount()) / 2);
         SimpleByteBufferPool p1 = new SimpleByteBufferPool(c);
-        return new TwoLevelPool(direct, p1, GLOBAL_POOL, 16 * 1024);
+        return new TwoLevelPool(direct, p1, globalPool, 16 * 1024);
     };
 
     public TwoLevelPool(boolean direct, ByteBufferPool smallPool, ByteBufferPool largePool, int threshold) {
@@ -132,7 +139,21 @@ public class TwoLevelPool extends ByteBufferPool {
 
     @Override
     public String formatStat() {
-        return smallPool.formatStat();
+        return smallPool.formatStat() + "; large pool: " + largePool.formatStat();
+    }
+
+    /**
+     * The size classes of the small pool are followed by the large pool. If one of the pools has no stat, return
+     * the stat of the other.
+     */
+    @Override
+    public PoolStat getStat() {
+        PoolStat small = smallPool.getStat();
+        PoolStat large = largePool.getStat();
+        if (small == null || large == null) {
+            return small == null ? large : small;
+        }
+        return PoolStat.concat(small, large);
     }
 
     public TwoLevelPool toReleaseInOtherThreadInstance(Thread owner, Consumer<ByteBuffer> releaseCallback) {
@@ -155,7 +176,10 @@ public class TwoLevelPool extends ByteBufferPool {
 
     @SuppressWarnings("unused")
     public static void setDefaultFactory(BiFunction<Timestamp, Boolean, ByteBufferPool> defaultFactory) {
-        GLOBAL_POOL = null;
+        synchronized (TwoLevelPool.class) {
+            GLOBAL_HEAP_POOL = null;
+            GLOBAL_DIRECT_POOL = null;
+        }
         DEFAULT_FACTORY = defaultFactory;
     }
 }
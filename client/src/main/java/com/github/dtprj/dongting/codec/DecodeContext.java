@@ -26,6 +26,7 @@ public class DecodeContext {
 
     private RefBufferFactory heapPool;
     private Object status;
+    private StrCache strCache;
 
     // only use by PbNoCopyDecoder
     PbParser parser;
@@ -55,6 +56,14 @@ public class DecodeContext {
         this.status = status;
     }
 
+    public StrCache getStrCache() {
+        return strCache;
+    }
+
+    public void setStrCache(StrCache strCache) {
+        this.strCache = strCache;
+    }
+
     public byte[] getThreadLocalBuffer() {
         return threadLocalBuffer;
     }
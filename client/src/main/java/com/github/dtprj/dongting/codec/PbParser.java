@@ -22,6 +22,7 @@ import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Objects;
 
 /**
@@ -241,17 +242,58 @@ public class PbParser {
         }
     }
 
+    /**
+     * Return the byte count of the var number in the little endian word, 9 if it's longer than 8 bytes.
+     */
+    private static int varNumberLen(long word) {
+        // the stop bit of the last byte is 0
+        long stopBits = ~word & 0x8080808080808080L;
+        return (Long.numberOfTrailingZeros(stopBits) >>> 3) + 1;
+    }
+
+    /**
+     * Decode the first len (1-8) bytes of the little endian long as var number.
+     */
+    private static long decodeVarNumber(long word, int len) {
+        long x = word & (-1L >>> (64 - (len << 3)));
+        // remove the stop bits and merge the 7 bits groups, in 16/32/64 bits lanes
+        x = ((x & 0x7F007F007F007F00L) >>> 1) | (x & 0x007F007F007F007FL);
+        x = ((x & 0x3FFF00003FFF0000L) >>> 2) | (x & 0x00003FFF00003FFFL);
+        return ((x & 0x0FFFFFFF00000000L) >>> 4) | (x & 0x000000000FFFFFFFL);
+    }
+
     private int parseVarInt(ByteBuffer buf, int remain) {
+        // max 5 bytes for 32bit number in proto buffer
+        final int MAX_BYTES = 5;
+        int pendingBytes = this.pendingBytes;
+        if (pendingBytes == 0 && remain > 0) {
+            // fast path, the var int is not split by buffer boundary
+            int pos = buf.position();
+            int x = buf.get(pos);
+            if (x >= 0) {
+                buf.position(pos + 1);
+                onVarIntParsed(x, 1);
+                return remain - 1;
+            }
+            if (remain >= 8 && buf.order() == ByteOrder.LITTLE_ENDIAN) {
+                long word = buf.getLong(pos);
+                int len = varNumberLen(word);
+                if (len > MAX_BYTES) {
+                    throw new PbException("var int too long: " + len);
+                }
+                buf.position(pos + len);
+                onVarIntParsed((int) decodeVarNumber(word, len), len);
+                return remain - len;
+            }
+        }
+
         int value = 0;
         int bitIndex = 0;
-        int pendingBytes = this.pendingBytes;
         if (pendingBytes > 0) {
             value = (int) this.tempValue;
             bitIndex = pendingBytes * 7;
         }
 
-        // max 5 bytes for 32bit number in proto buffer
-        final int MAX_BYTES = 5;
         int i = 1;
         int frameLen = this.frameLen;
         int parsedBytes = this.parsedBytes;
@@ -263,32 +305,8 @@ public class PbParser {
                 if (pendingBytes + i > MAX_BYTES) {
                     throw new PbException("var int too long: " + (pendingBytes + i + 1));
                 }
-                parsedBytes += i;
-                if (parsedBytes > frameLen) {
-                    throw new PbException("frame exceed " + frameLen);
-                }
-
-                /////////////////////////////////////
-                switch (status) {
-                    case STATUS_PARSE_TAG:
-                        afterTagParsed(value);
-                        break;
-                    case STATUS_PARSE_FILED_LEN:
-                        if (value < 0) {
-                            throw new PbException("bad field len: " + fieldLen);
-                        }
-                        if (parsedBytes + value > frameLen) {
-                            throw new PbException("field length overflow frame length. len=" + value + ",index=" + fieldIndex);
-                        }
-                        this.fieldLen = value;
-                        this.status = STATUS_PARSE_FILED_BODY;
-                        break;
-                    default:
-                        throw new PbException("invalid status: " + status);
-                }
-                this.parsedBytes = parsedBytes;
                 this.pendingBytes = 0;
-                /////////////////////////////////////
+                onVarIntParsed(value, i);
                 return remain - i;
             } else {
                 bitIndex += 7;
@@ -308,6 +326,35 @@ public class PbParser {
         return 0;
     }
 
+    /**
+     * @param len the bytes of the var int read in this round
+     */
+    private void onVarIntParsed(int value, int len) {
+        int parsedBytes = this.parsedBytes + len;
+        int frameLen = this.frameLen;
+        if (parsedBytes > frameLen) {
+            throw new PbException("frame exceed " + frameLen);
+        }
+        switch (status) {
+            case STATUS_PARSE_TAG:
+                afterTagParsed(value);
+                break;
+            case STATUS_PARSE_FILED_LEN:
+                if (value < 0) {
+                    throw new PbException("bad field len: " + fieldLen);
+                }
+                if (parsedBytes + value > frameLen) {
+                    throw new PbException("field length overflow frame length. len=" + value + ",index=" + fieldIndex);
+                }
+                this.fieldLen = value;
+                this.status = STATUS_PARSE_FILED_BODY;
+                break;
+            default:
+                throw new PbException("invalid status: " + status);
+        }
+        this.parsedBytes = parsedBytes;
+    }
+
     private void afterTagParsed(int value) {
         int type = value & 0x07;
         this.fieldType = type;
@@ -332,9 +379,29 @@ public class PbParser {
     }
 
     private int parseVarLong(ByteBuffer buf, PbCallback<?> callback, int remain) {
+        int pendingBytes = this.pendingBytes;
+        if (pendingBytes == 0 && remain > 0) {
+            // fast path, the var long is not split by buffer boundary and not longer than 8 bytes
+            int pos = buf.position();
+            int x = buf.get(pos);
+            if (x >= 0) {
+                buf.position(pos + 1);
+                onVarLongParsed(callback, x, 1);
+                return remain - 1;
+            }
+            if (remain >= 8 && buf.order() == ByteOrder.LITTLE_ENDIAN) {
+                long word = buf.getLong(pos);
+                int len = varNumberLen(word);
+                if (len <= 8) {
+                    buf.position(pos + len);
+                    onVarLongParsed(callback, decodeVarNumber(word, len), len);
+                    return remain - len;
+                }
+            }
+        }
+
         long value = 0;
         int bitIndex = 0;
-        int pendingBytes = this.pendingBytes;
         if (pendingBytes > 0) {
             value = this.tempValue;
             bitIndex = pendingBytes * 7;
@@ -353,24 +420,8 @@ public class PbParser {
                 if (pendingBytes + i > MAX_BYTES) {
                     throw new PbException("var long too long: " + (pendingBytes + i + 1));
                 }
-                parsedBytes += i;
-                if (parsedBytes > frameLen) {
-                    throw new PbException("frame exceed " + frameLen);
-                }
-
-                try {
-                    if (callback.readVarNumber(this.fieldIndex, value)) {
-                        this.status = STATUS_PARSE_TAG;
-                    } else {
-                        this.status = STATUS_SKIP_REST;
-                    }
-                } catch (Throwable e) {
-                    log.error("proto buffer parse callback readVarInt() fail. fieldIndex={}, error={}", this.fieldIndex, e.toString());
-                    this.status = STATUS_SKIP_REST;
-                }
-
                 this.pendingBytes = 0;
-                this.parsedBytes = parsedBytes;
+                onVarLongParsed(callback, value, i);
                 return remain - i;
             } else {
                 bitIndex += 7;
@@ -390,6 +441,27 @@ public class PbParser {
         return 0;
     }
 
+    /**
+     * @param len the bytes of the var long read in this round
+     */
+    private void onVarLongParsed(PbCallback<?> callback, long value, int len) {
+        int parsedBytes = this.parsedBytes + len;
+        if (parsedBytes > frameLen) {
+            throw new PbException("frame exceed " + frameLen);
+        }
+        try {
+            if (callback.readVarNumber(this.fieldIndex, value)) {
+                this.status = STATUS_PARSE_TAG;
+            } else {
+                this.status = STATUS_SKIP_REST;
+            }
+        } catch (Throwable e) {
+            log.error("proto buffer parse callback readVarInt() fail. fieldIndex={}, error={}", this.fieldIndex, e.toString());
+            this.status = STATUS_SKIP_REST;
+        }
+        this.parsedBytes = parsedBytes;
+    }
+
     private int onStatusParseFieldBody(ByteBuffer buf, PbCallback<?> callback, int remain) {
         switch (this.fieldType) {
             case PbUtil.TYPE_VAR_INT:
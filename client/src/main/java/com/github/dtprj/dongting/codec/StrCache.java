@@ -0,0 +1,108 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small fixed size cache which maps the utf8 bytes to the decoded String, so the repeated strings (such as the
+ * hot keys of dtkv) can be decoded without allocation. The cache is direct mapped, a new string evicts the old
+ * one in the same slot.
+ * <p>
+ * This class is not thread safe, each io thread should have its own instance.
+ *
+ * @author huangli
+ */
+public class StrCache {
+
+    public static final int MAX_STR_BYTES = 128;
+
+    private final Entry[] entries;
+    private final int mask;
+
+    private long hitCount;
+    private long missCount;
+
+    private static final class Entry {
+        final int hash;
+        final byte[] bytes;
+        final String str;
+
+        Entry(int hash, byte[] bytes, String str) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.str = str;
+        }
+    }
+
+    public StrCache(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size: " + size);
+        }
+        int n = size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        this.entries = new Entry[n];
+        this.mask = n - 1;
+    }
+
+    /**
+     * read len bytes from the buffer (the position is advanced) and return the decoded string.
+     */
+    public String get(ByteBuffer buf, int len) {
+        if (len > MAX_STR_BYTES) {
+            throw new IllegalArgumentException("string too long: " + len);
+        }
+        int pos = buf.position();
+        int h = 0;
+        for (int i = 0; i < len; i++) {
+            h = 31 * h + buf.get(pos + i);
+        }
+        // spread the high bits, like HashMap
+        int idx = (h ^ (h >>> 16)) & mask;
+        Entry e = entries[idx];
+        if (e != null && e.hash == h && equals(e.bytes, buf, pos, len)) {
+            hitCount++;
+            buf.position(pos + len);
+            return e.str;
+        }
+        missCount++;
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        String s = new String(bytes, StandardCharsets.UTF_8);
+        entries[idx] = new Entry(h, bytes, s);
+        return s;
+    }
+
+    private static boolean equals(byte[] bytes, ByteBuffer buf, int pos, int len) {
+        if (bytes.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (bytes[i] != buf.get(pos + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+}
@@ -25,9 +25,17 @@ import java.nio.charset.StandardCharsets;
  */
 public class StrFiledDecoder implements Decoder<String> {
 
-    public static final StrFiledDecoder INSTANCE = new StrFiledDecoder();
+    public static final StrFiledDecoder INSTANCE = new StrFiledDecoder(false);
 
-    private StrFiledDecoder() {
+    /**
+     * Use the StrCache of the DecodeContext (if any) for the short strings which are likely to repeat, such as keys.
+     */
+    public static final StrFiledDecoder CACHED_INSTANCE = new StrFiledDecoder(true);
+
+    private final boolean useCache;
+
+    private StrFiledDecoder(boolean useCache) {
+        this.useCache = useCache;
     }
 
     @Override
@@ -35,6 +43,12 @@ public class StrFiledDecoder implements Decoder<String> {
         boolean start = currentPos == 0;
         boolean end = buf.remaining() >= fieldLen - currentPos;
         if (start && end) {
+            if (useCache && fieldLen <= StrCache.MAX_STR_BYTES) {
+                StrCache cache = decodeContext.getStrCache();
+                if (cache != null) {
+                    return cache.get(buf, fieldLen);
+                }
+            }
             byte[] threadLocalBuffer = decodeContext.getThreadLocalBuffer();
             if (fieldLen <= threadLocalBuffer.length) {
                 buf.get(threadLocalBuffer, 0, fieldLen);
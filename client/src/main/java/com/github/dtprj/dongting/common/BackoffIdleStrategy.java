@@ -0,0 +1,53 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+/**
+ * Busy spin some iterations, then spin with Thread.onSpinWait(), then Thread.yield(), and block at last.
+ * Spinning saves the futex/epoll round trip when the work comes soon, at the cost of cpu.
+ *
+ * @author huangli
+ */
+public class BackoffIdleStrategy implements IdleStrategy {
+
+    private final int spinEnd;
+    private final int spinWaitEnd;
+    private final int yieldEnd;
+
+    public BackoffIdleStrategy(int spins, int spinWaits, int yields) {
+        DtUtil.checkNotNegative(spins, "spins");
+        DtUtil.checkNotNegative(spinWaits, "spinWaits");
+        DtUtil.checkNotNegative(yields, "yields");
+        this.spinEnd = spins;
+        this.spinWaitEnd = spinEnd + spinWaits;
+        this.yieldEnd = spinWaitEnd + yields;
+    }
+
+    @Override
+    public boolean idle(int idleCount) {
+        if (idleCount < spinEnd) {
+            return false;
+        } else if (idleCount < spinWaitEnd) {
+            VersionFactory.getInstance().onSpinWait();
+            return false;
+        } else if (idleCount < yieldEnd) {
+            Thread.yield();
+            return false;
+        } else {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+/**
+ * The strategy of a thread (fiber dispatcher or io worker) when there is no work to do. The thread calls
+ * idle() in each idle iteration and checks the work again if it returns false, the idleCount starts from 0
+ * and is reset when the thread finds some work.
+ *
+ * @author huangli
+ */
+public interface IdleStrategy {
+
+    /**
+     * @param idleCount the count of continuous idle iterations
+     * @return true if the thread should block (park or select) now, false if it should check the work again
+     */
+    boolean idle(int idleCount);
+}
@@ -35,6 +35,8 @@ public abstract class VersionFactory {
     public abstract <E> MpscLinkedQueue<E> newMpscLinkedQueue();
 
     public abstract void releaseDirectBuffer(ByteBuffer buffer);
+
+    public abstract void onSpinWait();
 }
 
 class VfHolder {
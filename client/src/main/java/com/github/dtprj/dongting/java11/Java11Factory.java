@@ -42,4 +42,9 @@ public class Java11Factory extends VersionFactory {
     public void releaseDirectBuffer(ByteBuffer buffer) {
         DtUnsafe.freeDirectBuffer(buffer);
     }
+
+    @Override
+    public void onSpinWait() {
+        Thread.onSpinWait();
+    }
 }
@@ -80,4 +80,9 @@ public class Java8Factory extends VersionFactory {
             }
         }
     }
+
+    @Override
+    public void onSpinWait() {
+        // Thread.onSpinWait() is not available in java 8
+    }
 }
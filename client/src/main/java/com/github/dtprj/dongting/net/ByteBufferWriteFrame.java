@@ -36,28 +36,29 @@ public class ByteBufferWriteFrame extends WriteFrame {
         return body == null ? 0 : body.remaining();
     }
 
+    /**
+     * Copy the bytes of src from markedPosition to dest, and return the next markedPosition. The position and limit
+     * of src are not changed, so a src shared by several writers (e.g. the buffer of a log item, which is written
+     * to the log file and replicated to followers) can be copied concurrently.
+     */
     public static int copy(ByteBuffer src, ByteBuffer dest, int markedPosition) {
         int srcStart = src.position();
         if (markedPosition < srcStart) {
             markedPosition = srcStart;
-        } else {
-            src.position(markedPosition);
         }
-        int destRemaining = dest.remaining();
-        if (src.remaining() > destRemaining) {
-            int srcLimit = src.limit();
-            src.limit(markedPosition + destRemaining);
-            dest.put(src);
-
-            src.limit(srcLimit);
-            src.position(srcStart);
-            return markedPosition + destRemaining;
-        } else {
-            dest.put(src);
-            markedPosition = src.position();
-            src.position(srcStart);
+        int len = Math.min(src.limit() - markedPosition, dest.remaining());
+        if (len <= 0) {
             return markedPosition;
         }
+        if (src.hasArray()) {
+            dest.put(src.array(), src.arrayOffset() + markedPosition, len);
+        } else {
+            ByteBuffer dup = src.duplicate();
+            dup.limit(markedPosition + len);
+            dup.position(markedPosition);
+            dest.put(dup);
+        }
+        return markedPosition + len;
     }
 
     @Override
@@ -98,6 +98,7 @@ class DtChannel extends PbCallback<Object> {
 
         this.decodeContext = new DecodeContext();
         decodeContext.setHeapPool(refBufferFactory);
+        decodeContext.setStrCache(workerStatus.getStrCache());
 
         this.subQueue = new IoChannelQueue(nioConfig, workerStatus, this, refBufferFactory);
     }
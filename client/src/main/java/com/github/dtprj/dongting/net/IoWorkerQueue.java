@@ -52,6 +52,11 @@ class IoWorkerQueue {
         }
     }
 
+    // called by io thread
+    public boolean hasPending() {
+        return !queue.isEmpty();
+    }
+
     public void dispatchActions() {
         Object data;
         while ((data = queue.relaxedPoll()) != null) {
@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.net;
 
 import com.github.dtprj.dongting.buf.ByteBufferPool;
 import com.github.dtprj.dongting.buf.TwoLevelPool;
+import com.github.dtprj.dongting.common.IdleStrategy;
 import com.github.dtprj.dongting.common.Timestamp;
 
 import java.util.function.BiFunction;
@@ -35,6 +36,8 @@ public abstract class NioConfig {
 
     private long selectTimeout = 50;
     private long cleanInterval = 100;
+    // spin before block in select, null means block in select directly
+    private IdleStrategy idleStrategy;
 
     private int maxFrameSize = 5 * 1024 * 1024;
     private int maxBodySize = 4 * 1024 * 1024;
@@ -46,6 +49,9 @@ public abstract class NioConfig {
 
     private boolean finishPendingImmediatelyWhenChannelClose = false;
 
+    // the size of the per io thread StrCache, 0 means disabled
+    private int strCacheSize = 0;
+
     public int getBizThreads() {
         return bizThreads;
     }
@@ -149,4 +155,20 @@ public abstract class NioConfig {
     public void setFinishPendingImmediatelyWhenChannelClose(boolean finishPendingImmediatelyWhenChannelClose) {
         this.finishPendingImmediatelyWhenChannelClose = finishPendingImmediatelyWhenChannelClose;
     }
+
+    public int getStrCacheSize() {
+        return strCacheSize;
+    }
+
+    public void setStrCacheSize(int strCacheSize) {
+        this.strCacheSize = strCacheSize;
+    }
+
+    public IdleStrategy getIdleStrategy() {
+        return idleStrategy;
+    }
+
+    public void setIdleStrategy(IdleStrategy idleStrategy) {
+        this.idleStrategy = idleStrategy;
+    }
 }
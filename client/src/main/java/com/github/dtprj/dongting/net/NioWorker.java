@@ -17,9 +17,11 @@ package com.github.dtprj.dongting.net;
 
 import com.github.dtprj.dongting.buf.ByteBufferPool;
 import com.github.dtprj.dongting.codec.Decoder;
+import com.github.dtprj.dongting.codec.StrCache;
 import com.github.dtprj.dongting.common.AbstractLifeCircle;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.common.IdleStrategy;
 import com.github.dtprj.dongting.common.IntObjMap;
 import com.github.dtprj.dongting.common.LongObjMap;
 import com.github.dtprj.dongting.common.Pair;
@@ -53,6 +55,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 class NioWorker extends AbstractLifeCircle implements Runnable {
     private static final DtLog log = DtLogs.getLogger(NioWorker.class);
+    private static final Runnable NOOP = () -> {
+    };
 
     private int statMarkReadCount;
     private int statMarkWriteCount;
@@ -67,7 +71,9 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
     private final NioConfig config;
     private final NioClient client;
     private Selector selector;
-    private final AtomicInteger notified = new AtomicInteger(0);
+    // 0: the worker may block in select, the biz threads should call selector.wakeup() after enqueue
+    // 1: the worker is running, or selector.wakeup() is already called, so the biz threads need not call it
+    private final AtomicInteger selectState = new AtomicInteger(1);
 
     private int channelIndex;
     private final ArrayList<DtChannel> channelsList;
@@ -117,6 +123,9 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
         workerStatus.setDirectPool(directPool);
         workerStatus.setHeapPool(heapPool);
         workerStatus.setTs(timestamp);
+        if (config.getStrCacheSize() > 0) {
+            workerStatus.setStrCache(new StrCache(config.getStrCacheSize()));
+        }
     }
 
     @Override
@@ -305,7 +314,16 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
 
     private boolean select(Selector selector, long selectTimeoutMillis) {
         try {
-            if (selectTimeoutMillis > 0) {
+            IdleStrategy idleStrategy = config.getIdleStrategy();
+            if (idleStrategy != null && spinSelect(selector, idleStrategy)) {
+                return true;
+            }
+            // publish the state before check the queue, the biz threads enqueue before check the state, so
+            // either we see the new actions here, or they see state 0 and call selector.wakeup()
+            selectState.set(0);
+            if (ioWorkerQueue.hasPending()) {
+                selector.selectNow();
+            } else if (selectTimeoutMillis > 0) {
                 selector.select(selectTimeoutMillis);
             } else {
                 // for unit test find more problem
@@ -316,15 +334,31 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
             log.error("select failed: {}", workerName, e);
             return false;
         } finally {
-            notified.lazySet(0);
+            selectState.lazySet(1);
+        }
+    }
+
+    // return true if there are some selected keys or actions, so no need to block in select.
+    // the biz threads don't call selector.wakeup() when spinning, since the state is 1.
+    private boolean spinSelect(Selector selector, IdleStrategy idleStrategy) throws IOException {
+        int idleCount = 0;
+        while (true) {
+            if (selector.selectNow() > 0 || ioWorkerQueue.hasPending()) {
+                return true;
+            }
+            if (idleStrategy.idle(idleCount++)) {
+                return false;
+            }
         }
     }
 
+    // called after enqueue to ioWorkerQueue, the selector.wakeup() is a system call, so only the first
+    // biz thread calls it when the worker is (or is going to) blocking in select.
     private void wakeup() {
         if (Thread.currentThread() == thread) {
             return;
         }
-        if (notified.incrementAndGet() == 1) {
+        if (selectState.get() == 0 && selectState.compareAndSet(0, 1)) {
             selector.wakeup();
         }
     }
@@ -654,13 +688,14 @@ class NioWorker extends AbstractLifeCircle implements Runnable {
     @Override
     protected CompletableFuture<Void> prepareStop() {
         CompletableFuture<Void> f = super.prepareStop();
-        wakeup();
+        // the empty action wakes up the worker (even if it's spinning) to check the status
+        doInIoThread(NOOP, null);
         return f;
     }
 
     @Override
     public void doStop(DtTime timeout, boolean force) {
-        wakeup();
+        doInIoThread(NOOP, null);
     }
 
     public Thread getThread() {
@@ -16,6 +16,7 @@
 package com.github.dtprj.dongting.net;
 
 import com.github.dtprj.dongting.buf.ByteBufferPool;
+import com.github.dtprj.dongting.codec.StrCache;
 import com.github.dtprj.dongting.common.LongObjMap;
 import com.github.dtprj.dongting.common.Timestamp;
 
@@ -30,6 +31,7 @@ class WorkerStatus {
     private ByteBufferPool heapPool;
     private int framesToWrite;
     private Timestamp ts;
+    private StrCache strCache;
 
     public WorkerStatus() {
     }
@@ -89,4 +91,12 @@ class WorkerStatus {
     public void setTs(Timestamp ts) {
         this.ts = ts;
     }
+
+    public StrCache getStrCache() {
+        return strCache;
+    }
+
+    public void setStrCache(StrCache strCache) {
+        this.strCache = strCache;
+    }
 }
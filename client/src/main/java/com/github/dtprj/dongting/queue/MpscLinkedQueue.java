@@ -67,6 +67,14 @@ public abstract class MpscLinkedQueue<E> {
         return null;
     }
 
+    /**
+     * Should be called by consumer. Return false if some producer has offered, even if the element is not
+     * visible to relaxedPoll() yet.
+     */
+    public boolean isEmpty() {
+        return tail == head;
+    }
+
     public boolean offer(E value) {
         Objects.requireNonNull(value);
         // set plain
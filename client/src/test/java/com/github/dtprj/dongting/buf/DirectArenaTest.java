@@ -0,0 +1,107 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class DirectArenaTest {
+
+    @Test
+    public void testAllocate() {
+        assertThrows(IllegalArgumentException.class, () -> new DirectArena(1024, 1023));
+        DirectArena arena = new DirectArena(1024, 2048);
+        assertNull(arena.allocate(1025));
+        ByteBuffer b1 = arena.allocate(512);
+        ByteBuffer b2 = arena.allocate(512);
+        assertTrue(b1.isDirect());
+        assertEquals(512, b1.capacity());
+        assertEquals(0, b1.position());
+        assertEquals(512, b1.limit());
+        assertEquals(1024, arena.getReservedBytes());
+
+        // the slices don't overlap
+        b1.put(0, (byte) 1);
+        b1.put(511, (byte) 1);
+        assertEquals(0, b2.get(0));
+        b2.put(0, (byte) 2);
+        assertEquals(1, b1.get(511));
+
+        // each size has its own chunks
+        ByteBuffer b3 = arena.allocate(768);
+        assertNotNull(b3);
+        assertEquals(2048, arena.getReservedBytes());
+        // exhausted
+        assertNull(arena.allocate(512));
+        arena.formatStat();
+    }
+
+    @Test
+    public void testFree() {
+        DirectArena arena = new DirectArena(1024, 1024);
+        ByteBuffer b1 = arena.allocate(512);
+        ByteBuffer b2 = arena.allocate(512);
+        assertNull(arena.allocate(512));
+
+        assertFalse(arena.free(ByteBuffer.allocateDirect(512)));
+        b1.position(10);
+        assertTrue(arena.free(b1));
+        ByteBuffer b3 = arena.allocate(512);
+        assertSame(b1, b3);
+        assertEquals(0, b3.position());
+        assertTrue(arena.free(b2));
+        // can't reuse the slice of other size before the whole chunk is free
+        assertNull(arena.allocate(256));
+        assertTrue(arena.free(b3));
+        // the empty chunk is released after it is idle in 2 clean
+        arena.clean();
+        assertNull(arena.allocate(256));
+        arena.clean();
+        assertEquals(0, arena.getReservedBytes());
+        assertFalse(arena.free(b3));
+        ByteBuffer b4 = arena.allocate(256);
+        assertEquals(256, b4.capacity());
+        assertEquals(1024, arena.getReservedBytes());
+    }
+
+    @Test
+    public void testReleaseChunk() {
+        DirectArena arena = new DirectArena(1024, 2048);
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = arena.allocate(512);
+        }
+        assertEquals(2048, arena.getReservedBytes());
+        assertTrue(arena.free(buffers[0]));
+        assertTrue(arena.free(buffers[1]));
+        assertTrue(arena.free(buffers[2]));
+        arena.clean();
+        // allocate from the second chunk which is not full
+        buffers[2] = arena.allocate(512);
+        arena.clean();
+        // the first chunk is released
+        assertEquals(1024, arena.getReservedBytes());
+        assertNotNull(arena.allocate(1024));
+        assertNull(arena.allocate(1024));
+        arena.formatStat();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+import com.github.dtprj.dongting.common.Timestamp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class LeakDetectorTest {
+
+    private final SimpleByteBufferPool pool = new SimpleByteBufferPool(new Timestamp(), false);
+
+    @BeforeEach
+    public void setup() {
+        LeakDetector.setSamplingInterval(1);
+        LeakDetector.reportLeaks();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        LeakDetector.setSamplingInterval(0);
+    }
+
+    private int gcAndReport() throws InterruptedException {
+        int count = 0;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(10);
+            count += LeakDetector.reportLeaks();
+        }
+        return count;
+    }
+
+    @SuppressWarnings("UnusedAssignment")
+    @Test
+    public void testLeak() throws Exception {
+        long leakCount = LeakDetector.getLeakCount();
+        RefBuffer rb = new RefBuffer(false, pool, 1024, 128);
+        rb.retain();
+        rb.touch("test");
+        rb.release();
+        rb = null;
+        assertEquals(1, gcAndReport());
+        assertEquals(leakCount + 1, LeakDetector.getLeakCount());
+    }
+
+    @SuppressWarnings("UnusedAssignment")
+    @Test
+    public void testNoLeak() throws Exception {
+        RefBuffer rb = new RefBuffer(true, pool, 1024, 128);
+        rb.retain();
+        rb.release();
+        rb.release();
+        rb = null;
+
+        // not sampled
+        LeakDetector.setSamplingInterval(0);
+        rb = new RefBuffer(false, pool, 1024, 128);
+        rb = null;
+
+        // the small heap buffer need not release
+        LeakDetector.setSamplingInterval(1);
+        rb = new RefBuffer(false, pool, 100, 128);
+        rb = null;
+
+        assertEquals(0, gcAndReport());
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.buf;
+
+import com.github.dtprj.dongting.common.DtException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class MagazinePoolTest {
+
+    // magazine size of 1024 is 4, 2048 is 2, 8192 is 0 (not cached in thread)
+    private static MagazinePool create(int stripes, int timeoutMillis) {
+        return new MagazinePool(false, new int[]{1024, 2048, 8192}, new int[]{0, 0, 0},
+                new int[]{4, 4, 2}, timeoutMillis, stripes, 4096);
+    }
+
+    private static ByteBuffer borrowInOtherThread(MagazinePool pool, int size) throws Exception {
+        AtomicReference<ByteBuffer> ref = new AtomicReference<>();
+        Thread t = new Thread(() -> ref.set(pool.borrow(size)));
+        t.start();
+        t.join();
+        return ref.get();
+    }
+
+    @Test
+    public void testConstructor() {
+        int[] sizes = new int[]{1024};
+        int[] count = new int[]{1};
+        assertThrows(IllegalArgumentException.class, () -> new MagazinePool(false, new int[]{1024, 2048},
+                count, count, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new MagazinePool(false, new int[]{8}, count, count, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new MagazinePool(false, new int[]{2048, 1024},
+                new int[]{1, 1}, new int[]{1, 1}, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new MagazinePool(false, sizes,
+                new int[]{2}, count, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new MagazinePool(false, sizes, count, count, 0));
+        assertThrows(IllegalArgumentException.class, () -> new MagazinePool(false, sizes, count, count,
+                1000, 0, 1024));
+    }
+
+    @Test
+    public void testBorrowRelease() {
+        MagazinePool pool = create(1, 1000);
+        ByteBuffer b1 = pool.borrow(1);
+        assertEquals(1024, b1.capacity());
+        assertFalse(b1.isDirect());
+        ByteBuffer b2 = pool.borrow(1025);
+        assertEquals(2048, b2.capacity());
+        ByteBuffer b3 = pool.borrow(8192);
+        assertEquals(8192, b3.capacity());
+        ByteBuffer b4 = pool.borrow(8193);
+        assertEquals(8193, b4.capacity());
+
+        b1.putInt(100);
+        pool.release(b1);
+        pool.release(b2);
+        pool.release(b3);
+        pool.release(b4);
+        assertSame(b1, pool.borrow(1000));
+        assertEquals(0, b1.position());
+        assertEquals(0, b1.getInt(0));
+        assertSame(b2, pool.borrow(2000));
+        assertSame(b3, pool.borrow(8000));
+        assertNotSame(b4, pool.borrow(8193));
+
+        assertThrows(DtException.class, () -> pool.release(ByteBuffer.allocateDirect(1024)));
+        pool.formatStat();
+    }
+
+    @Test
+    public void testWriteAfterRelease() {
+        MagazinePool pool = create(1, 1000);
+        ByteBuffer buf = pool.borrow(1024);
+        pool.release(buf);
+        buf.putInt(0, 1);
+        assertThrows(DtException.class, () -> pool.borrow(1024));
+    }
+
+    @Test
+    public void testCrossThread() throws Exception {
+        MagazinePool pool = create(1, 1000);
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.borrow(1024);
+        }
+        // the magazine (size 4) is full after 4 release
+        for (ByteBuffer buf : buffers) {
+            pool.release(buf);
+        }
+        assertNull(getFromDepot(pool));
+        // flush 2 buffers to depot
+        pool.release(pool.allocate(1024));
+        ByteBuffer b = getFromDepot(pool);
+        assertTrue(b == buffers[2] || b == buffers[3]);
+
+        // the buffers not cached in thread are in depot
+        ByteBuffer large = pool.borrow(8192);
+        pool.release(large);
+        assertSame(large, borrowInOtherThread(pool, 8192));
+    }
+
+    private static ByteBuffer getFromDepot(MagazinePool pool) throws Exception {
+        ByteBuffer buf = borrowInOtherThread(pool, 1024);
+        // the return time is written when put to depot, and the new allocated buffer is zero filled
+        return buf.getLong(MagazinePool.RETURN_TIME_INDEX) == 0 ? null : buf;
+    }
+
+    @Test
+    public void testDepotFull() throws Exception {
+        MagazinePool pool = create(1, 1000);
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.borrow(8192);
+        }
+        for (ByteBuffer buf : buffers) {
+            pool.release(buf);
+        }
+        // max count of 8192 is 2
+        IdentityHashMap<ByteBuffer, Boolean> map = new IdentityHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            map.put(borrowInOtherThread(pool, 8192), Boolean.TRUE);
+        }
+        int hit = 0;
+        for (ByteBuffer buf : buffers) {
+            if (map.containsKey(buf)) {
+                hit++;
+            }
+        }
+        assertEquals(2, hit);
+    }
+
+    @Test
+    public void testSplitCount() throws Exception {
+        // max count of 8192 is 2, split to 4 depots: 1, 1, 0, 0
+        MagazinePool pool = create(4, 1000);
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.borrow(8192);
+        }
+        // the buffer that can't put in home depot goes to other depots
+        for (ByteBuffer buf : buffers) {
+            pool.release(buf);
+        }
+        IdentityHashMap<ByteBuffer, Boolean> map = new IdentityHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            map.put(borrowInOtherThread(pool, 8192), Boolean.TRUE);
+        }
+        int hit = 0;
+        for (ByteBuffer buf : buffers) {
+            if (map.containsKey(buf)) {
+                hit++;
+            }
+        }
+        assertEquals(2, hit);
+    }
+
+    @Test
+    public void testClean() throws Exception {
+        MagazinePool pool = create(2, 1);
+        pool.cleanIntervalNanos = 0;
+        CompletableFuture<ByteBuffer> f = new CompletableFuture<>();
+        Thread t = new Thread(() -> {
+            ByteBuffer buf = pool.borrow(1024);
+            pool.release(buf);
+            f.complete(buf);
+        });
+        t.start();
+        t.join();
+        ByteBuffer buf = f.get();
+        // the thread is dead, its magazine is moved to depot by clean
+        pool.clean();
+        assertSame(buf, pool.borrow(1024));
+        pool.release(buf);
+
+        // flush to depot, then expired
+        Thread t2 = new Thread(() -> {
+            ByteBuffer b = pool.borrow(8192);
+            pool.release(b);
+        });
+        t2.start();
+        t2.join();
+        Thread.sleep(2);
+        pool.clean();
+        ByteBuffer b = borrowInOtherThread(pool, 8192);
+        assertEquals(0, b.getLong(MagazinePool.RETURN_TIME_INDEX));
+    }
+
+    @Test
+    public void testFlushIdleThread() throws Exception {
+        MagazinePool pool = create(1, 1);
+        pool.cleanIntervalNanos = 0;
+        CountDownLatch released = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicReference<ByteBuffer> ref = new AtomicReference<>();
+        Thread t = new Thread(() -> {
+            ByteBuffer buf = pool.borrow(1024);
+            pool.release(buf);
+            ref.set(buf);
+            released.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        });
+        t.start();
+        try {
+            released.await();
+            // the thread is alive, its magazine is kept before it is idle longer than timeout
+            pool.clean();
+            assertNull(getFromDepot(pool));
+            Thread.sleep(2);
+            pool.clean();
+            assertSame(ref.get(), borrowInOtherThread(pool, 1024));
+        } finally {
+            finish.countDown();
+            t.join();
+        }
+    }
+
+    @Test
+    public void testArena() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> new MagazinePool(false, new int[]{1024},
+                new int[]{0}, new int[]{1}, 1000, 1, 0, new DirectArena(1024, 1024)));
+        DirectArena arena = new DirectArena(2048, 4096);
+        // no magazine, max 1 buffer in depot
+        MagazinePool pool = new MagazinePool(true, new int[]{1024, 2048}, new int[]{0, 0}, new int[]{1, 1},
+                1, 1, 0, arena);
+        ByteBuffer b1 = pool.borrow(1024);
+        ByteBuffer b2 = pool.borrow(1024);
+        ByteBuffer b3 = pool.borrow(2048);
+        assertEquals(4096, arena.getReservedBytes());
+        // the arena is exhausted
+        ByteBuffer b4 = pool.borrow(1024);
+        assertTrue(b4.isDirect());
+
+        pool.release(b1);
+        // the depot is full, return to arena
+        pool.release(b2);
+        // not from arena, released by cleaner
+        pool.release(b4);
+        assertSame(b1, pool.borrow(1024));
+        assertSame(b2, pool.borrow(1024));
+
+        // expired in depot, return to arena, and the chunk of it is free for other size
+        pool.cleanIntervalNanos = 0;
+        pool.release(b3);
+        Thread.sleep(2);
+        pool.clean();
+        // the chunk is released in next clean
+        pool.clean();
+        assertFalse(arena.free(b3));
+        assertEquals(2048, arena.getReservedBytes());
+        assertNotNull(arena.allocate(512));
+        assertEquals(4096, arena.getReservedBytes());
+        pool.formatStat();
+    }
+
+    @Test
+    public void testStat() throws Exception {
+        MagazinePool pool = create(1, 1000);
+        ByteBuffer b1 = pool.borrow(1024);
+        pool.release(b1);
+        assertSame(b1, pool.borrow(1024));
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.borrow(8192);
+        }
+        // max count of 8192 is 2, the third one is discarded
+        for (ByteBuffer buf : buffers) {
+            pool.release(buf);
+        }
+        pool.borrow(10000);
+        // the stat of dead thread is kept
+        borrowInOtherThread(pool, 2048);
+        pool.cleanIntervalNanos = 0;
+        pool.clean();
+
+        PoolStat s = pool.getStat();
+        assertArrayEquals(new int[]{1024, 2048, 8192}, s.getBufSizes());
+        assertArrayEquals(new int[]{4, 4, 2}, s.getMaxCount());
+        assertArrayEquals(new long[]{2, 1, 3}, s.getBorrowCount());
+        assertArrayEquals(new long[]{1, 0, 0}, s.getBorrowHitCount());
+        assertArrayEquals(new long[]{1, 0, 3}, s.getReleaseCount());
+        assertArrayEquals(new long[]{1, 0, 2}, s.getReleaseHitCount());
+        assertArrayEquals(new int[]{0, 0, 2}, s.getPooledCount());
+        assertEquals(1, s.getBorrowTooLargeCount());
+    }
+
+    @Test
+    public void testMultiThread() throws Exception {
+        MagazinePool pool = new MagazinePool(false, new int[]{1024, 2048, 4096, 8192},
+                new int[]{1, 1, 1, 1}, new int[]{16, 16, 16, 16}, 1000, 2, 8192);
+        // ByteBuffer.equals compares the content, so use IdentityHashMap
+        Map<ByteBuffer, Boolean> inUse = Collections.synchronizedMap(new IdentityHashMap<>());
+        int threads = 4;
+        CompletableFuture<?>[] futures = new CompletableFuture[threads];
+        for (int i = 0; i < threads; i++) {
+            futures[i] = CompletableFuture.runAsync(() -> {
+                Random r = new Random();
+                ByteBuffer[] holds = new ByteBuffer[4];
+                for (int j = 0; j < 20000; j++) {
+                    int k = r.nextInt(holds.length);
+                    if (holds[k] == null) {
+                        holds[k] = pool.borrow(r.nextInt(8192) + 1);
+                        assertNull(inUse.put(holds[k], Boolean.TRUE));
+                    } else {
+                        inUse.remove(holds[k]);
+                        pool.release(holds[k]);
+                        holds[k] = null;
+                    }
+                }
+                for (ByteBuffer b : holds) {
+                    if (b != null) {
+                        inUse.remove(b);
+                        pool.release(b);
+                    }
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).get(10, TimeUnit.SECONDS);
+        pool.formatStat();
+    }
+}
@@ -331,6 +331,95 @@ public class SimpleByteBufferPoolTest {
         }
     }
 
+    private void borrowAndRelease(int size, int count) {
+        ByteBuffer[] bufs = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            bufs[i] = pool.borrow(size);
+        }
+        for (ByteBuffer buf : bufs) {
+            pool.release(buf);
+        }
+    }
+
+    @Test
+    public void testStat() {
+        SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(TS, false, 10, false);
+        c.setBufSizes(new int[]{100, 200});
+        c.setMaxCount(new int[]{2, 2});
+        c.setMinCount(new int[]{0, 0});
+        pool = new SimpleByteBufferPool(c);
+        borrowAndRelease(100, 4);
+        pool.borrow(5);
+        pool.borrow(300);
+        PoolStat s = pool.getStat();
+        assertArrayEquals(new long[]{4, 0}, s.getBorrowCount());
+        assertEquals(0, s.getBorrowHitRate(0));
+        assertEquals(0.5, s.getReleaseHitRate(0));
+        assertEquals(0.5, s.getReleaseHitRate());
+        assertArrayEquals(new int[]{2, 0}, s.getPooledCount());
+        assertEquals(200, s.getPooledBytes());
+        assertEquals(1, s.getBorrowTooSmallCount());
+        assertEquals(1, s.getBorrowTooLargeCount());
+
+        borrowAndRelease(100, 2);
+        assertEquals(2.0 / 6, pool.getStat().getBorrowHitRate(), 0.0001);
+        TwoLevelPool p2 = new TwoLevelPool(false, pool, pool, 150);
+        // the stat of both levels
+        assertArrayEquals(new long[]{6, 0, 6, 0}, p2.getStat().getBorrowCount());
+    }
+
+    @Test
+    public void testAdaptive() {
+        SimpleByteBufferPoolConfig c = new SimpleByteBufferPoolConfig(TS, false, 0, false);
+        c.setBufSizes(new int[]{100, 200});
+        c.setMaxCount(new int[]{2, 2});
+        c.setMinCount(new int[]{0, 0});
+        c.setAdaptive(true);
+        c.setAdaptIntervalMillis(1000);
+        pool = new SimpleByteBufferPool(c);
+
+        borrowAndRelease(100, 4);
+        plus(pool, 999);
+        pool.clean();
+        assertArrayEquals(new int[]{2, 2}, pool.getStat().getMaxCount());
+        plus(pool, 1);
+        pool.clean();
+        // misses on both borrow and release
+        assertArrayEquals(new int[]{4, 1}, pool.getStat().getMaxCount());
+        assertArrayEquals(new int[]{4, 0}, pool.getStat().getMinCount());
+
+        borrowAndRelease(100, 4);
+        assertArrayEquals(new int[]{4, 0}, pool.getStat().getPooledCount());
+        plus(pool, 1000);
+        pool.clean();
+        assertArrayEquals(new int[]{4, 1}, pool.getStat().getMaxCount());
+
+        // no borrow
+        plus(pool, 1000);
+        pool.clean();
+        assertArrayEquals(new int[]{2, 1}, pool.getStat().getMaxCount());
+        assertArrayEquals(new int[]{0, 0}, pool.getStat().getMinCount());
+
+        SimpleByteBufferPoolConfig c2 = new SimpleByteBufferPoolConfig(TS, false, 0, false);
+        c2.setBufSizes(new int[]{100, 200});
+        c2.setMaxCount(new int[]{2, 2});
+        c2.setMinCount(new int[]{0, 0});
+        c2.setAdaptive(true);
+        c2.setAdaptIntervalMillis(1000);
+        c2.setMemoryBudget(300);
+        pool = new SimpleByteBufferPool(c2);
+        borrowAndRelease(100, 4);
+        plus(pool, 1000);
+        pool.clean();
+        // scaled down from {4, 1} by the budget
+        assertArrayEquals(new int[]{2, 1}, pool.getStat().getMaxCount());
+
+        SimpleByteBufferPoolConfig c3 = new SimpleByteBufferPoolConfig(TS, false);
+        c3.setAdaptive(true);
+        c3.setAdaptIntervalMillis(0);
+        assertThrows(IllegalArgumentException.class, () -> new SimpleByteBufferPool(c3));
+    }
+
     @Test
     public void testBadUsage() {
         pool = new SimpleByteBufferPool(TS, false);
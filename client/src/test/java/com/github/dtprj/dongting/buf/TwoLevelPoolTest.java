@@ -23,6 +23,7 @@ import org.junit.jupiter.api.Test;
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -68,6 +69,24 @@ public class TwoLevelPoolTest {
         p.release(b3);
     }
 
+    @Test
+    public void testStat() {
+        MagazinePool large = new MagazinePool(false, new int[]{128, 256}, new int[]{0, 0}, new int[]{2, 2},
+                1000, 1, 0);
+        TwoLevelPool p = new TwoLevelPool(false, p1, large, 32);
+        p.release(p.borrow(16));
+        p.release(p.borrow(200));
+        p.borrow(300);
+        PoolStat s = p.getStat();
+        assertArrayEquals(new int[]{16, 32, 128, 256}, s.getBufSizes());
+        assertArrayEquals(new int[]{2, 2, 2, 2}, s.getMaxCount());
+        assertArrayEquals(new long[]{1, 0, 0, 1}, s.getBorrowCount());
+        assertArrayEquals(new long[]{1, 0, 0, 1}, s.getReleaseCount());
+        assertEquals(1, s.getPooledCount()[3]);
+        assertEquals(1, s.getBorrowTooLargeCount());
+        p.formatStat();
+    }
+
     @Test
     public void testBorrowInOtherThread() {
         TwoLevelPool p = new TwoLevelPool(false, p1, p2, 32);
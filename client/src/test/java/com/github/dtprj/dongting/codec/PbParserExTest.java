@@ -18,6 +18,8 @@ package com.github.dtprj.dongting.codec;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -330,4 +332,71 @@ public class PbParserExTest {
         assertEquals(1, callback.endFailCount);
     }
 
+    @Test
+    public void testVarNumberFastPath() {
+        ArrayList<Long> values = new ArrayList<>();
+        // 1 to 10 bytes
+        for (int i = 1; i <= 9; i++) {
+            values.add((1L << (7 * i)) - 1);
+            values.add(1L << (7 * (i - 1)));
+        }
+        values.add(-1L);
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        int index = 1;
+        for (long v : values) {
+            PbUtil.writeUnsignedInt64(buf, index, v);
+            // multi bytes tag
+            index = index * 2 + 1;
+        }
+        byte[] bytes = new byte[300];
+        PbUtil.writeBytes(buf, 100000, bytes);
+        buf.flip();
+        int len = buf.remaining();
+
+        for (int round = 0; round < 2; round++) {
+            ArrayList<Long> result = new ArrayList<>();
+            ArrayList<Integer> indexes = new ArrayList<>();
+            int[] bytesLen = new int[1];
+            PbCallback<Object> c = new PbCallback<>() {
+                @Override
+                public boolean readVarNumber(int index, long value) {
+                    indexes.add(index);
+                    result.add(value);
+                    return true;
+                }
+
+                @Override
+                public boolean readBytes(int index, ByteBuffer buf, int fieldLen, int currentPos) {
+                    assertEquals(100000, index);
+                    bytesLen[0] = fieldLen;
+                    buf.position(buf.limit());
+                    return true;
+                }
+            };
+            PbParser parser = PbParser.singleParser(c, len);
+            ByteBuffer b = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            if (round == 0) {
+                parser.parse(b);
+            } else {
+                parseByByte(b, parser);
+            }
+            assertEquals(values, result);
+            index = 1;
+            for (int i : indexes) {
+                assertEquals(index, i);
+                index = index * 2 + 1;
+            }
+            assertEquals(300, bytesLen[0]);
+        }
+    }
+
+    @Test
+    public void testVarIntTooLong() {
+        // 6 bytes tag, and enough bytes for the fast path
+        byte[] bs = new byte[]{(byte) 0x88, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0, 0, 0, 0};
+        EmptyCallback callback = new EmptyCallback();
+        PbParser parser = PbParser.singleParser(callback, bs.length);
+        assertThrows(PbException.class, () -> parser.parse(ByteBuffer.wrap(bs).order(ByteOrder.LITTLE_ENDIAN)));
+        assertEquals(1, callback.endFailCount);
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class StrCacheTest {
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(("xx" + s + "yy").getBytes(StandardCharsets.UTF_8), 2, s.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void testHitAndEvict() {
+        StrCache cache = new StrCache(1);
+        ByteBuffer b = buf("key1");
+        String s1 = cache.get(b, 4);
+        assertEquals("key1", s1);
+        assertEquals(6, b.position());
+        assertEquals(1, cache.getMissCount());
+
+        b = buf("key1");
+        assertSame(s1, cache.get(b, 4));
+        assertEquals(6, b.position());
+        assertEquals(1, cache.getHitCount());
+
+        // evict key1
+        assertEquals("key2", cache.get(buf("key2"), 4));
+        String s3 = cache.get(buf("key1"), 4);
+        assertEquals("key1", s3);
+        assertNotSame(s1, s3);
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testUtf8AndEmpty() {
+        StrCache cache = new StrCache(16);
+        String s = "中文";
+        int len = s.getBytes(StandardCharsets.UTF_8).length;
+        String s1 = cache.get(buf(s), len);
+        assertEquals(s, s1);
+        assertSame(s1, cache.get(buf(s), len));
+        assertEquals("", cache.get(buf(""), 0));
+        assertThrows(IllegalArgumentException.class, () -> cache.get(ByteBuffer.allocate(200), 200));
+    }
+
+    @Test
+    public void testCachedDecoder() {
+        DecodeContext c = new DecodeContext();
+        ByteBuffer b = buf("key1");
+        assertNotSame(StrFiledDecoder.CACHED_INSTANCE.decode(c, b, 4, 0), StrFiledDecoder.CACHED_INSTANCE.decode(c, buf("key1"), 4, 0));
+
+        c.setStrCache(new StrCache(16));
+        String s1 = StrFiledDecoder.CACHED_INSTANCE.decode(c, buf("key1"), 4, 0);
+        assertSame(s1, StrFiledDecoder.CACHED_INSTANCE.decode(c, buf("key1"), 4, 0));
+        assertNotSame(s1, StrFiledDecoder.INSTANCE.decode(c, buf("key1"), 4, 0));
+    }
+}
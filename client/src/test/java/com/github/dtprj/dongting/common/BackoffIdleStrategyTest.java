@@ -0,0 +1,40 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author huangli
+ */
+public class BackoffIdleStrategyTest {
+    @Test
+    public void testIdle() {
+        BackoffIdleStrategy s = new BackoffIdleStrategy(2, 3, 1);
+        for (int i = 0; i < 6; i++) {
+            assertFalse(s.idle(i));
+        }
+        assertTrue(s.idle(6));
+        assertTrue(s.idle(100));
+
+        assertTrue(new BackoffIdleStrategy(0, 0, 0).idle(0));
+        assertThrows(IllegalArgumentException.class, () -> new BackoffIdleStrategy(-1, 0, 0));
+    }
+}
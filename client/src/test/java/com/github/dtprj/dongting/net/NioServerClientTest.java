@@ -18,6 +18,7 @@ package com.github.dtprj.dongting.net;
 import com.github.dtprj.dongting.buf.RefBuffer;
 import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
 import com.github.dtprj.dongting.codec.RefBufferDecoder;
+import com.github.dtprj.dongting.common.BackoffIdleStrategy;
 import com.github.dtprj.dongting.common.DtTime;
 import com.github.dtprj.dongting.common.TestUtil;
 import org.junit.jupiter.api.Assertions;
@@ -56,6 +57,61 @@ public class NioServerClientTest {
         }
     }
 
+    @Test
+    public void spinIdleTest() throws Exception {
+        NioServerConfig serverConfig = new NioServerConfig();
+        serverConfig.setPort(9000);
+        serverConfig.setIdleStrategy(new BackoffIdleStrategy(10, 100, 10));
+        NioServer server = new NioServer(serverConfig);
+        NioClientConfig clientConfig = new NioClientConfig();
+        clientConfig.setHostPorts(Collections.singletonList(new HostPort("127.0.0.1", 9000)));
+        clientConfig.setIdleStrategy(new BackoffIdleStrategy(0, 10, 0));
+        NioClient client = new NioClient(clientConfig);
+        try {
+            server.start();
+            client.start();
+            client.waitStart();
+            for (int i = 0; i < 20; i++) {
+                invoke(client);
+            }
+        } finally {
+            TestUtil.stop(client, server);
+        }
+    }
+
+    @Test
+    public void concurrentWakeupTest() throws Exception {
+        NioServerConfig serverConfig = new NioServerConfig();
+        serverConfig.setPort(9000);
+        // block in select without timeout, so a lost wakeup causes the invoke timeout
+        serverConfig.setSelectTimeout(0);
+        NioServer server = new NioServer(serverConfig);
+        NioClientConfig clientConfig = new NioClientConfig();
+        clientConfig.setHostPorts(Collections.singletonList(new HostPort("127.0.0.1", 9000)));
+        clientConfig.setSelectTimeout(0);
+        NioClient client = new NioClient(clientConfig);
+        try {
+            server.start();
+            client.start();
+            client.waitStart();
+            CompletableFuture<?>[] futures = new CompletableFuture[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = CompletableFuture.runAsync(() -> {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            invoke(client);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+            CompletableFuture.allOf(futures).get(10, TimeUnit.SECONDS);
+        } finally {
+            TestUtil.stop(client, server);
+        }
+    }
+
     static void invoke(NioClient client) throws Exception {
         Random r = new Random();
         int len = (r.nextInt(10) == 0) ? 0 : r.nextInt(3000);
@@ -0,0 +1,72 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+/**
+ * The supported field types and how they map to the PbCallback/PbUtil methods.
+ *
+ * @author huangli
+ */
+enum FieldKind {
+    // int32 and uint32 are both encoded as unsigned int, as the hand-written encoders do
+    VAR_INT("int", "readVarNumber"),
+    VAR_LONG("long", "readVarNumber"),
+    BOOL("boolean", "readVarNumber"),
+    FIX32("int", "readFix32"),
+    FLOAT("float", "readFix32"),
+    FIX64("long", "readFix64"),
+    DOUBLE("double", "readFix64"),
+    STRING("String", "readBytes"),
+    BYTES("byte[]", "readBytes"),
+    MESSAGE(null, "readBytes");
+
+    final String javaType;
+    final String readMethod;
+
+    FieldKind(String javaType, String readMethod) {
+        this.javaType = javaType;
+        this.readMethod = readMethod;
+    }
+
+    static FieldKind of(String protoType) {
+        switch (protoType) {
+            case "int32":
+            case "uint32":
+                return VAR_INT;
+            case "int64":
+            case "uint64":
+                return VAR_LONG;
+            case "bool":
+                return BOOL;
+            case "fixed32":
+            case "sfixed32":
+                return FIX32;
+            case "float":
+                return FLOAT;
+            case "fixed64":
+            case "sfixed64":
+                return FIX64;
+            case "double":
+                return DOUBLE;
+            case "string":
+                return STRING;
+            case "bytes":
+                return BYTES;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Generate the codec classes from the .proto files in the directory specified by the processor option
+ * "dt.protoDir", for example:
+ * <pre>
+ * &lt;annotationProcessorPaths&gt;
+ *     &lt;path&gt;
+ *         &lt;groupId&gt;com.github.dtprj.dongting&lt;/groupId&gt;
+ *         &lt;artifactId&gt;dongting-codegen&lt;/artifactId&gt;
+ *         &lt;version&gt;${project.version}&lt;/version&gt;
+ *     &lt;/path&gt;
+ * &lt;/annotationProcessorPaths&gt;
+ * &lt;compilerArgs&gt;
+ *     &lt;arg&gt;-Adt.protoDir=${project.basedir}/src/main/dtproto&lt;/arg&gt;
+ * &lt;/compilerArgs&gt;
+ * </pre>
+ * Don't put the files in src/main/proto, which is used by protobuf-maven-plugin.
+ *
+ * @author huangli
+ */
+public class PbCodeGenProcessor extends AbstractProcessor {
+
+    public static final String OPTION_PROTO_DIR = "dt.protoDir";
+
+    private boolean generated;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // run without any annotation
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_PROTO_DIR);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (generated) {
+            return false;
+        }
+        generated = true;
+        Messager messager = processingEnv.getMessager();
+        String dir = processingEnv.getOptions().get(OPTION_PROTO_DIR);
+        if (dir == null) {
+            return false;
+        }
+        File[] files = new File(dir).listFiles((d, name) -> name.endsWith(".proto"));
+        if (files == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "proto dir not exists: " + dir);
+            return false;
+        }
+        Arrays.sort(files);
+        for (File f : files) {
+            try {
+                String content = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+                ProtoFile pf = ProtoParser.parse(f.getName(), content);
+                for (ProtoMessage m : pf.messages) {
+                    String className = pf.javaPackage + "." + m.name;
+                    JavaFileObject jfo = processingEnv.getFiler().createSourceFile(className);
+                    try (Writer w = jfo.openWriter()) {
+                        w.write(PbCodeGenerator.generate(pf, m));
+                    }
+                }
+            } catch (IllegalArgumentException | IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "generate code fail: " + e.getMessage());
+            }
+        }
+        return false;
+    }
+}
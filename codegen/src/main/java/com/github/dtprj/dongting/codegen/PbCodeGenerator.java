@@ -0,0 +1,499 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generate a java class for each message. The class contains the fields with getters/setters, a Callback (for
+ * PbParser) and a WriteFrame (SmallNoCopyWriteFrame) nested class.
+ * <p>
+ * The generated code follows the hand-written ones: numbers are encoded as unsigned, default values and empty
+ * string/bytes/messages are omitted, so an empty element in a repeated field is lost.
+ *
+ * @author huangli
+ */
+public class PbCodeGenerator {
+
+    private final ProtoFile file;
+    private final StringBuilder sb = new StringBuilder(8192);
+    private int indent;
+
+    private PbCodeGenerator(ProtoFile file) {
+        this.file = file;
+    }
+
+    public static String generate(ProtoFile file, ProtoMessage m) {
+        return new PbCodeGenerator(file).gen(m);
+    }
+
+    static String camel(String name, boolean upperFirst) {
+        StringBuilder s = new StringBuilder(name.length());
+        boolean upper = upperFirst;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '_') {
+                upper = s.length() > 0 || upperFirst;
+            } else if (upper) {
+                s.append(Character.toUpperCase(c));
+                upper = false;
+            } else {
+                s.append(c);
+            }
+        }
+        return s.toString();
+    }
+
+    private static String fieldName(ProtoField f) {
+        return camel(f.name, false);
+    }
+
+    private static String bytesCacheName(ProtoField f) {
+        return fieldName(f) + "Bytes";
+    }
+
+    private static String callbackName(ProtoField f) {
+        return fieldName(f) + "Callback";
+    }
+
+    private static String declType(ProtoField f) {
+        return f.repeated ? "List<" + f.javaType() + ">" : f.javaType();
+    }
+
+    private PbCodeGenerator line(String s) {
+        if (s.startsWith("}")) {
+            indent--;
+        }
+        for (int i = 0; i < indent; i++) {
+            sb.append("    ");
+        }
+        sb.append(s).append('\n');
+        if (s.endsWith("{")) {
+            indent++;
+        }
+        return this;
+    }
+
+    private PbCodeGenerator line() {
+        sb.append('\n');
+        return this;
+    }
+
+    private String gen(ProtoMessage m) {
+        boolean hasStr = m.hasField(FieldKind.STRING);
+        boolean hasBytes = m.hasField(FieldKind.BYTES);
+        boolean hasRepeated = false;
+        for (ProtoField f : m.fields) {
+            hasRepeated |= f.repeated;
+        }
+        line("// Generated by dongting-codegen from " + file.fileName + ", do not edit.");
+        line("package " + file.javaPackage + ";");
+        line();
+        if (hasBytes) {
+            line("import com.github.dtprj.dongting.codec.ByteArrayDecoder;");
+        }
+        line("import com.github.dtprj.dongting.codec.DecodeContext;");
+        line("import com.github.dtprj.dongting.codec.PbCallback;");
+        line("import com.github.dtprj.dongting.codec.PbParser;");
+        line("import com.github.dtprj.dongting.codec.PbUtil;");
+        if (hasStr) {
+            line("import com.github.dtprj.dongting.codec.StrFiledDecoder;");
+        }
+        line("import com.github.dtprj.dongting.net.SmallNoCopyWriteFrame;");
+        line();
+        line("import java.nio.ByteBuffer;");
+        if (hasStr) {
+            line("import java.nio.charset.StandardCharsets;");
+        }
+        if (hasRepeated) {
+            line("import java.util.ArrayList;");
+            line("import java.util.List;");
+        }
+        line();
+        line("/**");
+        line(" * Generated from message " + m.name + " in " + file.fileName + ".");
+        line(" */");
+        line("public class " + m.name + " {");
+        for (ProtoField f : m.fields) {
+            if (f.repeated) {
+                line("private " + declType(f) + " " + fieldName(f) + " = new ArrayList<>();");
+            } else {
+                line("private " + declType(f) + " " + fieldName(f) + ";");
+            }
+        }
+        line();
+        line("// computed by pbSize(), used by pbEncode()");
+        line("int pbCachedSize;");
+        for (ProtoField f : m.fields) {
+            if (f.kind == FieldKind.STRING) {
+                line("private byte[]" + (f.repeated ? "[] " : " ") + bytesCacheName(f) + ";");
+            }
+        }
+        line();
+        genReset(m);
+        line();
+        genSize(m);
+        line();
+        genEncode(m);
+        line();
+        genCallback(m, hasStr);
+        line();
+        genWriteFrame(m);
+        for (ProtoField f : m.fields) {
+            line();
+            genGetterSetter(f);
+        }
+        line("}");
+        return sb.toString();
+    }
+
+    private void genReset(ProtoMessage m) {
+        line("public void reset() {");
+        for (ProtoField f : m.fields) {
+            String n = "this." + fieldName(f);
+            if (f.repeated) {
+                line(n + ".clear();");
+                continue;
+            }
+            switch (f.kind) {
+                case BOOL:
+                    line(n + " = false;");
+                    break;
+                case STRING:
+                case BYTES:
+                case MESSAGE:
+                    line(n + " = null;");
+                    break;
+                default:
+                    line(n + " = 0;");
+            }
+        }
+        line("}");
+    }
+
+    private static String numberValue(ProtoField f, String v) {
+        switch (f.kind) {
+            case BOOL:
+                return v + " ? 1 : 0";
+            case FLOAT:
+                return "Float.floatToRawIntBits(" + v + ")";
+            case DOUBLE:
+                return "Double.doubleToRawLongBits(" + v + ")";
+            default:
+                return v;
+        }
+    }
+
+    private static String numberMethod(ProtoField f, boolean write) {
+        switch (f.kind) {
+            case VAR_INT:
+            case BOOL:
+                return write ? "writeUnsignedInt32" : "accurateUnsignedIntSize";
+            case VAR_LONG:
+                return write ? "writeUnsignedInt64" : "accurateUnsignedLongSize";
+            case FIX32:
+            case FLOAT:
+                return write ? "writeFix32" : "accurateFix32Size";
+            default:
+                return write ? "writeFix64" : "accurateFix64Size";
+        }
+    }
+
+    private void genSize(ProtoMessage m) {
+        line("/**");
+        line(" * Compute the encoded size, the size and the UTF-8 bytes of strings are cached for pbEncode().");
+        line(" */");
+        line("public int pbSize() {");
+        line("int size = 0;");
+        for (ProtoField f : m.fields) {
+            String n = "this." + fieldName(f);
+            int idx = f.index;
+            switch (f.kind) {
+                case STRING:
+                    if (f.repeated) {
+                        String cache = "this." + bytesCacheName(f);
+                        line(cache + " = new byte[" + n + ".size()][];");
+                        line("for (int i = 0, count = " + n + ".size(); i < count; i++) {");
+                        line("byte[] bs = " + n + ".get(i).getBytes(StandardCharsets.UTF_8);");
+                        line(cache + "[i] = bs;");
+                        line("size += PbUtil.accurateLengthDelimitedSize(" + idx + ", bs.length);");
+                        line("}");
+                    } else {
+                        String cache = "this." + bytesCacheName(f);
+                        line(cache + " = " + n + " == null ? null : " + n + ".getBytes(StandardCharsets.UTF_8);");
+                        line("size += PbUtil.accurateLengthDelimitedSize(" + idx + ", " + cache + " == null ? 0 : "
+                                + cache + ".length);");
+                    }
+                    break;
+                case BYTES:
+                    if (f.repeated) {
+                        line("for (int i = 0, count = " + n + ".size(); i < count; i++) {");
+                        line("size += PbUtil.accurateLengthDelimitedSize(" + idx + ", " + n + ".get(i).length);");
+                        line("}");
+                    } else {
+                        line("size += PbUtil.accurateLengthDelimitedSize(" + idx + ", " + n + " == null ? 0 : "
+                                + n + ".length);");
+                    }
+                    break;
+                case MESSAGE:
+                    if (f.repeated) {
+                        line("for (int i = 0, count = " + n + ".size(); i < count; i++) {");
+                        line("size += PbUtil.accurateLengthDelimitedSize(" + idx + ", " + n + ".get(i).pbSize());");
+                        line("}");
+                    } else {
+                        line("if (" + n + " != null) {");
+                        line("size += PbUtil.accurateLengthDelimitedSize(" + idx + ", " + n + ".pbSize());");
+                        line("}");
+                    }
+                    break;
+                default:
+                    line("size += PbUtil." + numberMethod(f, false) + "(" + idx + ", " + numberValue(f, n) + ");");
+            }
+        }
+        line("this.pbCachedSize = size;");
+        line("return size;");
+        line("}");
+    }
+
+    private void genEncode(ProtoMessage m) {
+        line("/**");
+        line(" * Encode the message, pbSize() must be called before, and the message should not be modified after that.");
+        line(" */");
+        line("public void pbEncode(ByteBuffer buf) {");
+        for (ProtoField f : m.fields) {
+            String n = "this." + fieldName(f);
+            int idx = f.index;
+            switch (f.kind) {
+                case STRING:
+                case BYTES: {
+                    String v = f.kind == FieldKind.STRING ? "this." + bytesCacheName(f) : n;
+                    if (f.repeated) {
+                        String get = f.kind == FieldKind.STRING ? v + "[i]" : v + ".get(i)";
+                        line("for (int i = 0, count = " + n + ".size(); i < count; i++) {");
+                        line("PbUtil.writeBytes(buf, " + idx + ", " + get + ");");
+                        line("}");
+                    } else {
+                        line("PbUtil.writeBytes(buf, " + idx + ", " + v + ");");
+                    }
+                    break;
+                }
+                case MESSAGE:
+                    if (f.repeated) {
+                        line("for (int i = 0, count = " + n + ".size(); i < count; i++) {");
+                        line(f.javaType() + " e = " + n + ".get(i);");
+                        line("PbUtil.writeLengthDelimitedPrefix(buf, " + idx + ", e.pbCachedSize);");
+                        line("e.pbEncode(buf);");
+                        line("}");
+                    } else {
+                        line("if (" + n + " != null) {");
+                        line("PbUtil.writeLengthDelimitedPrefix(buf, " + idx + ", " + n + ".pbCachedSize);");
+                        line(n + ".pbEncode(buf);");
+                        line("}");
+                    }
+                    break;
+                default:
+                    line("PbUtil." + numberMethod(f, true) + "(buf, " + idx + ", " + numberValue(f, n) + ");");
+            }
+        }
+        line("}");
+    }
+
+    private void genCallback(ProtoMessage m, boolean hasStr) {
+        String t = m.name;
+        line("public static class Callback extends PbCallback<" + t + "> {");
+        line("private final DecodeContext context;");
+        line("private " + t + " result;");
+        for (ProtoField f : m.fields) {
+            if (f.kind == FieldKind.MESSAGE) {
+                line("private " + f.javaType() + ".Callback " + callbackName(f) + ";");
+            }
+        }
+        line();
+        line("/**");
+        line(" * The context is used to decode string, bytes and message fields.");
+        line(" */");
+        line("public Callback(DecodeContext context) {");
+        line("this(context, new " + t + "());");
+        line("}");
+        line();
+        line("public Callback(DecodeContext context, " + t + " result) {");
+        line("this.context = context;");
+        line("this.result = result;");
+        line("}");
+        line();
+        line("/**");
+        line(" * Decode into another object, so the callback and the message objects can be reused.");
+        line(" */");
+        line("public void setResult(" + t + " result) {");
+        line("this.result = result;");
+        line("}");
+        line();
+        line("@Override");
+        line("public void begin(int len, PbParser parser) {");
+        line("super.begin(len, parser);");
+        line("result.reset();");
+        line("}");
+        if (hasStr) {
+            line();
+            line("@Override");
+            line("public void end(boolean success) {");
+            line("if (!success) {");
+            line("StrFiledDecoder.INSTANCE.finish(context);");
+            line("}");
+            line("super.end(success);");
+            line("}");
+        }
+        genRead(m, "readVarNumber", "long value", FieldKind.VAR_INT, FieldKind.VAR_LONG, FieldKind.BOOL);
+        genRead(m, "readFix32", "int value", FieldKind.FIX32, FieldKind.FLOAT);
+        genRead(m, "readFix64", "long value", FieldKind.FIX64, FieldKind.DOUBLE);
+        genRead(m, "readBytes", "ByteBuffer buf, int fieldLen, int currentPos",
+                FieldKind.STRING, FieldKind.BYTES, FieldKind.MESSAGE);
+        line();
+        line("@Override");
+        line("public " + t + " getResult() {");
+        line("return result;");
+        line("}");
+        line("}");
+    }
+
+    private void genRead(ProtoMessage m, String method, String params, FieldKind... kinds) {
+        List<ProtoField> fields = new ArrayList<>();
+        for (ProtoField f : m.fields) {
+            for (FieldKind k : kinds) {
+                if (f.kind == k) {
+                    fields.add(f);
+                }
+            }
+        }
+        if (fields.isEmpty()) {
+            return;
+        }
+        line();
+        line("@Override");
+        line("public boolean " + method + "(int index, " + params + ") {");
+        line("switch (index) {");
+        for (ProtoField f : fields) {
+            line("case " + f.index + ": {");
+            genReadField(f);
+            line("break;");
+            line("}");
+        }
+        line("}");
+        line("return true;");
+        line("}");
+    }
+
+    private void genReadField(ProtoField f) {
+        String n = "result." + fieldName(f);
+        switch (f.kind) {
+            case VAR_INT:
+                line(n + " = (int) value;");
+                break;
+            case VAR_LONG:
+            case FIX32:
+            case FIX64:
+                line(n + " = value;");
+                break;
+            case BOOL:
+                line(n + " = value != 0;");
+                break;
+            case FLOAT:
+                line(n + " = Float.intBitsToFloat(value);");
+                break;
+            case DOUBLE:
+                line(n + " = Double.longBitsToDouble(value);");
+                break;
+            case STRING:
+            case BYTES: {
+                String decode = f.kind == FieldKind.STRING
+                        ? "StrFiledDecoder.INSTANCE.decode(context, buf, fieldLen, currentPos)"
+                        : "ByteArrayDecoder.decodeToArray(context, buf, fieldLen, currentPos)";
+                if (f.repeated) {
+                    line(f.javaType() + " v = " + decode + ";");
+                    line("if (v != null) {");
+                    line(n + ".add(v);");
+                    line("}");
+                } else {
+                    line(n + " = " + decode + ";");
+                }
+                break;
+            }
+            case MESSAGE: {
+                String type = f.javaType();
+                String cb = callbackName(f);
+                line("PbParser p;");
+                line("if (currentPos == 0) {");
+                if (f.repeated) {
+                    line(type + " e = new " + type + "();");
+                    line(n + ".add(e);");
+                } else {
+                    line(type + " e = new " + type + "();");
+                    line(n + " = e;");
+                }
+                line("if (" + cb + " == null) {");
+                line(cb + " = new " + type + ".Callback(context, e);");
+                line("} else {");
+                line(cb + ".setResult(e);");
+                line("}");
+                line("p = parser.createOrGetNestedParser(" + cb + ", fieldLen);");
+                line("} else {");
+                line("p = parser.getNestedParser();");
+                line("}");
+                line("p.parse(buf);");
+                break;
+            }
+        }
+    }
+
+    private void genWriteFrame(ProtoMessage m) {
+        String t = m.name;
+        line("/**");
+        line(" * The body should be small, since it's encoded into a single buffer.");
+        line(" */");
+        line("public static class " + t + "WriteFrame extends SmallNoCopyWriteFrame {");
+        line("private final " + t + " data;");
+        line();
+        line("public " + t + "WriteFrame(" + t + " data) {");
+        line("this.data = data;");
+        line("}");
+        line();
+        line("@Override");
+        line("protected int calcActualBodySize() {");
+        line("return data.pbSize();");
+        line("}");
+        line();
+        line("@Override");
+        line("protected void encodeBody(ByteBuffer buf) {");
+        line("data.pbEncode(buf);");
+        line("}");
+        line("}");
+    }
+
+    private void genGetterSetter(ProtoField f) {
+        String n = fieldName(f);
+        String upper = camel(f.name, true);
+        String type = declType(f);
+        String getter = f.kind == FieldKind.BOOL && !f.repeated ? "is" + upper : "get" + upper;
+        line("public " + type + " " + getter + "() {");
+        line("return " + n + ";");
+        line("}");
+        line();
+        line("public void set" + upper + "(" + type + " " + n + ") {");
+        line("this." + n + " = " + n + ";");
+        line("}");
+    }
+}
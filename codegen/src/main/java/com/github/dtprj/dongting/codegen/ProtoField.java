@@ -0,0 +1,59 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+/**
+ * @author huangli
+ */
+public class ProtoField {
+    final String name;
+    final String protoType;
+    final int index;
+    final boolean repeated;
+    final int line;
+
+    FieldKind kind;
+    // not null if the kind is MESSAGE
+    ProtoMessage messageType;
+
+    ProtoField(String name, String protoType, int index, boolean repeated, int line) {
+        this.name = name;
+        this.protoType = protoType;
+        this.index = index;
+        this.repeated = repeated;
+        this.line = line;
+    }
+
+    String javaType() {
+        return kind == FieldKind.MESSAGE ? messageType.name : kind.javaType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getProtoType() {
+        return protoType;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isRepeated() {
+        return repeated;
+    }
+}
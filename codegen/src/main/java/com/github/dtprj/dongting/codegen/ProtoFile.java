@@ -0,0 +1,53 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author huangli
+ */
+public class ProtoFile {
+    final String fileName;
+    String javaPackage;
+    final List<ProtoMessage> messages = new ArrayList<>();
+
+    ProtoFile(String fileName) {
+        this.fileName = fileName;
+    }
+
+    ProtoMessage findMessage(String name) {
+        for (ProtoMessage m : messages) {
+            if (m.name.equals(name)) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getJavaPackage() {
+        return javaPackage;
+    }
+
+    public List<ProtoMessage> getMessages() {
+        return messages;
+    }
+}
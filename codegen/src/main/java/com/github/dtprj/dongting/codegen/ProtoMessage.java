@@ -0,0 +1,48 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author huangli
+ */
+public class ProtoMessage {
+    final String name;
+    final List<ProtoField> fields = new ArrayList<>();
+
+    ProtoMessage(String name) {
+        this.name = name;
+    }
+
+    boolean hasField(FieldKind kind) {
+        for (ProtoField f : fields) {
+            if (f.kind == kind) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<ProtoField> getFields() {
+        return fields;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Parse a subset of proto3: messages with scalar, string, bytes and message fields. Repeated fields can only be
+ * string, bytes or message. Enums, oneof, maps, imports and nested declarations are not supported.
+ *
+ * @author huangli
+ */
+public class ProtoParser {
+
+    private static final int MAX_FIELD_INDEX = 536870911;
+
+    private final String fileName;
+    private final List<Token> tokens;
+    private int pos;
+
+    private static class Token {
+        final String text;
+        final boolean str;
+        final int line;
+
+        Token(String text, boolean str, int line) {
+            this.text = text;
+            this.str = str;
+            this.line = line;
+        }
+    }
+
+    private ProtoParser(String fileName, String content) {
+        this.fileName = fileName;
+        this.tokens = tokenize(content);
+    }
+
+    public static ProtoFile parse(String fileName, String content) {
+        return new ProtoParser(fileName, content).parseFile();
+    }
+
+    private IllegalArgumentException error(int line, String msg) {
+        return new IllegalArgumentException(fileName + ":" + line + ": " + msg);
+    }
+
+    private List<Token> tokenize(String s) {
+        ArrayList<Token> list = new ArrayList<>();
+        int line = 1;
+        int i = 0;
+        int len = s.length();
+        while (i < len) {
+            char c = s.charAt(i);
+            if (c == '\n') {
+                line++;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else if (s.startsWith("//", i)) {
+                while (i < len && s.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (s.startsWith("/*", i)) {
+                int end = s.indexOf("*/", i + 2);
+                if (end < 0) {
+                    throw error(line, "unclosed comment");
+                }
+                for (int j = i; j < end; j++) {
+                    if (s.charAt(j) == '\n') {
+                        line++;
+                    }
+                }
+                i = end + 2;
+            } else if (c == '"' || c == '\'') {
+                int end = s.indexOf(c, i + 1);
+                if (end < 0) {
+                    throw error(line, "unclosed string");
+                }
+                list.add(new Token(s.substring(i + 1, end), true, line));
+                i = end + 1;
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '.') {
+                int start = i;
+                while (i < len && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_' || s.charAt(i) == '.')) {
+                    i++;
+                }
+                list.add(new Token(s.substring(start, i), false, line));
+            } else {
+                list.add(new Token(String.valueOf(c), false, line));
+                i++;
+            }
+        }
+        return list;
+    }
+
+    private Token next() {
+        if (pos >= tokens.size()) {
+            int line = tokens.isEmpty() ? 1 : tokens.get(tokens.size() - 1).line;
+            throw error(line, "unexpected end of file");
+        }
+        return tokens.get(pos++);
+    }
+
+    private Token peek() {
+        return pos < tokens.size() ? tokens.get(pos) : null;
+    }
+
+    private Token expect(String text) {
+        Token t = next();
+        if (t.str || !t.text.equals(text)) {
+            throw error(t.line, "expect '" + text + "' but was '" + t.text + "'");
+        }
+        return t;
+    }
+
+    private void skipStatement() {
+        while (!next().text.equals(";")) {
+            // skip
+        }
+    }
+
+    private ProtoFile parseFile() {
+        ProtoFile file = new ProtoFile(fileName);
+        String protoPackage = null;
+        while (peek() != null) {
+            Token t = next();
+            switch (t.text) {
+                case "syntax": {
+                    expect("=");
+                    Token v = next();
+                    if (!"proto3".equals(v.text)) {
+                        throw error(v.line, "only proto3 is supported");
+                    }
+                    expect(";");
+                    break;
+                }
+                case "package":
+                    protoPackage = next().text;
+                    expect(";");
+                    break;
+                case "option": {
+                    Token name = next();
+                    if ("java_package".equals(name.text)) {
+                        expect("=");
+                        file.javaPackage = next().text;
+                        expect(";");
+                    } else {
+                        skipStatement();
+                    }
+                    break;
+                }
+                case "message":
+                    parseMessage(file);
+                    break;
+                case ";":
+                    break;
+                default:
+                    throw error(t.line, "not supported: " + t.text);
+            }
+        }
+        if (file.javaPackage == null) {
+            file.javaPackage = protoPackage;
+        }
+        if (file.javaPackage == null) {
+            throw error(1, "no java_package or package declared");
+        }
+        resolveTypes(file);
+        return file;
+    }
+
+    private void parseMessage(ProtoFile file) {
+        Token name = next();
+        if (file.findMessage(name.text) != null) {
+            throw error(name.line, "duplicate message: " + name.text);
+        }
+        ProtoMessage m = new ProtoMessage(name.text);
+        file.messages.add(m);
+        expect("{");
+        HashSet<Integer> indexes = new HashSet<>();
+        HashSet<String> names = new HashSet<>();
+        while (true) {
+            Token t = next();
+            switch (t.text) {
+                case "}":
+                    return;
+                case ";":
+                    continue;
+                case "option":
+                case "reserved":
+                    skipStatement();
+                    continue;
+                case "message":
+                case "enum":
+                case "oneof":
+                case "map":
+                case "extensions":
+                    throw error(t.line, "not supported: " + t.text);
+            }
+            boolean repeated = false;
+            Token type = t;
+            if ("repeated".equals(t.text)) {
+                repeated = true;
+                type = next();
+            } else if ("optional".equals(t.text)) {
+                type = next();
+            }
+            Token fieldName = next();
+            expect("=");
+            Token indexToken = next();
+            int index;
+            try {
+                index = Integer.parseInt(indexToken.text);
+            } catch (NumberFormatException e) {
+                throw error(indexToken.line, "bad field number: " + indexToken.text);
+            }
+            if (index <= 0 || index > MAX_FIELD_INDEX) {
+                throw error(indexToken.line, "bad field number: " + index);
+            }
+            if (!indexes.add(index)) {
+                throw error(indexToken.line, "duplicate field number: " + index);
+            }
+            if (!names.add(fieldName.text)) {
+                throw error(fieldName.line, "duplicate field name: " + fieldName.text);
+            }
+            Token end = next();
+            if (end.text.equals("[")) {
+                // field options such as packed or deprecated, ignored
+                while (!next().text.equals("]")) {
+                    // skip
+                }
+                end = next();
+            }
+            if (!end.text.equals(";")) {
+                throw error(end.line, "expect ';' but was '" + end.text + "'");
+            }
+            m.fields.add(new ProtoField(fieldName.text, type.text, index, repeated, type.line));
+        }
+    }
+
+    private void resolveTypes(ProtoFile file) {
+        for (ProtoMessage m : file.messages) {
+            for (ProtoField f : m.fields) {
+                FieldKind kind = FieldKind.of(f.protoType);
+                if (kind == null) {
+                    f.messageType = file.findMessage(f.protoType);
+                    if (f.messageType == null) {
+                        throw error(f.line, "unknown or unsupported type: " + f.protoType);
+                    }
+                    kind = FieldKind.MESSAGE;
+                }
+                f.kind = kind;
+                if (f.repeated && kind != FieldKind.STRING && kind != FieldKind.BYTES && kind != FieldKind.MESSAGE) {
+                    throw error(f.line, "repeated " + f.protoType + " is not supported");
+                }
+            }
+        }
+    }
+}
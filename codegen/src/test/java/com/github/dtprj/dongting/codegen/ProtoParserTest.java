@@ -0,0 +1,94 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.codegen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class ProtoParserTest {
+
+    private static final String HEAD = "syntax = \"proto3\";\noption java_package = \"a.b\";\n";
+
+    private static IllegalArgumentException parseFail(String content) {
+        return assertThrows(IllegalArgumentException.class, () -> ProtoParser.parse("t.proto", HEAD + content));
+    }
+
+    @Test
+    public void testParse() {
+        String content = HEAD + "// comment\n"
+                + "message M1 {\n"
+                + "  uint32 group_id = 1; /* comment */\n"
+                + "  repeated M2 items = 2;\n"
+                + "  repeated string names = 3 [deprecated = true];\n"
+                + "  reserved 4;\n"
+                + "}\n"
+                + "message M2 { fixed64 index = 1; bool ok = 2; }\n";
+        ProtoFile f = ProtoParser.parse("t.proto", content);
+        assertEquals("a.b", f.getJavaPackage());
+        assertEquals(2, f.getMessages().size());
+        ProtoMessage m1 = f.getMessages().get(0);
+        assertEquals("M1", m1.getName());
+        assertEquals(3, m1.getFields().size());
+        ProtoField items = m1.getFields().get(1);
+        assertTrue(items.isRepeated());
+        assertEquals(FieldKind.MESSAGE, items.kind);
+        assertSame(f.getMessages().get(1), items.messageType);
+        assertEquals(FieldKind.BOOL, f.getMessages().get(1).getFields().get(1).kind);
+
+        String code = PbCodeGenerator.generate(f, m1);
+        assertTrue(code.contains("package a.b;"));
+        assertTrue(code.contains("public class M1 {"));
+        assertTrue(code.contains("public int getGroupId()"));
+        assertTrue(code.contains("public List<M2> getItems()"));
+        assertTrue(code.contains("public static class M1WriteFrame extends SmallNoCopyWriteFrame {"));
+    }
+
+    @Test
+    public void testPackage() {
+        ProtoFile f = ProtoParser.parse("t.proto", "syntax = \"proto3\";\npackage x.y;\nmessage M {}");
+        assertEquals("x.y", f.getJavaPackage());
+        assertThrows(IllegalArgumentException.class, () -> ProtoParser.parse("t.proto", "message M {}"));
+    }
+
+    @Test
+    public void testError() {
+        assertTrue(parseFail("message M {\n  sint32 a = 1;\n}").getMessage().startsWith("t.proto:4:"));
+        parseFail("message M { repeated uint32 a = 1; }");
+        parseFail("message M { Unknown a = 1; }");
+        parseFail("message M { uint32 a = 1; uint32 b = 1; }");
+        parseFail("message M { uint32 a = 1; uint32 a = 2; }");
+        parseFail("message M { uint32 a = 0; }");
+        parseFail("message M { message N {} }");
+        parseFail("message M {} message M {}");
+        parseFail("enum E { A = 0; }");
+        parseFail("message M { uint32 a = 1 }");
+        parseFail("message M { uint32 a = 1;");
+        assertThrows(IllegalArgumentException.class,
+                () -> ProtoParser.parse("t.proto", "syntax = \"proto2\";"));
+    }
+
+    @Test
+    public void testCamel() {
+        assertEquals("groupId", PbCodeGenerator.camel("group_id", false));
+        assertEquals("GroupId", PbCodeGenerator.camel("group_id", true));
+        assertEquals("bizType", PbCodeGenerator.camel("bizType", false));
+        assertEquals("BizType", PbCodeGenerator.camel("bizType", true));
+    }
+}
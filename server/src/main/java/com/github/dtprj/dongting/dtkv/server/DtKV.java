@@ -53,12 +53,20 @@ public class DtKV implements StateMachine {
     private final ArrayList<Snapshot> openSnapshots = new ArrayList<>();
     private long minOpenSnapshotIndex;
 
-    private volatile KvStatus kvStatus = new KvStatus(KvStatus.RUNNING, new KvImpl(), 0);
+    private final boolean deltaSnapshot;
+    // the delta snapshot should base on a snapshot which contains the installed snapshot
+    private long installSnapshotIndex;
+    // the removed keys of delta snapshots, removed from the map after install finished
+    private ArrayList<Value> installTombstones;
+
+    private volatile KvStatus kvStatus;
 
     public DtKV(RaftGroupConfigEx groupConfig) {
         this.groupConfig = groupConfig;
         this.raftStatus = groupConfig.getRaftStatus();
         this.heapPool = groupConfig.getHeapPool().getPool();
+        this.deltaSnapshot = groupConfig.getMaxDeltaSnapshots() > 0;
+        this.kvStatus = new KvStatus(KvStatus.RUNNING, new KvImpl(deltaSnapshot), 0);
     }
 
     @Override
@@ -67,7 +75,7 @@ public class DtKV implements StateMachine {
             case BIZ_TYPE_GET:
             case BIZ_TYPE_REMOVE:
             case BIZ_TYPE_PUT:
-                return StrFiledDecoder.INSTANCE;
+                return StrFiledDecoder.CACHED_INSTANCE;
             default:
                 throw new IllegalArgumentException("unknown bizType " + bizType);
         }
@@ -141,33 +149,61 @@ public class DtKV implements StateMachine {
                                              boolean done, RefBuffer data) {
         try {
             if (offset == 0) {
-                newStatus(KvStatus.INSTALLING_SNAPSHOT, new KvImpl());
+                newStatus(KvStatus.INSTALLING_SNAPSHOT, new KvImpl(deltaSnapshot));
+                installTombstones = new ArrayList<>();
             } else if (kvStatus.status != KvStatus.INSTALLING_SNAPSHOT) {
                 return FiberFuture.failedFuture(FiberGroup.currentGroup(), new IllegalStateException(
                         "current status error: " + kvStatus.status));
             }
-            ByteBuffer bb = data.getBuffer();
+            ByteBuffer bb = data == null ? null : data.getBuffer();
             KvImpl kvImpl = kvStatus.kvImpl;
             ConcurrentSkipListMap<String, Value> map = kvImpl.getMap();
-            while (bb.hasRemaining()) {
+            while (bb != null && bb.hasRemaining()) {
                 long raftIndex = bb.getLong();
                 int keyLen = bb.getInt();
                 ByteBuffer keyBuf = heapPool.borrow(keyLen);
                 String key;
                 try {
                     keyBuf.limit(keyLen);
+                    int limit = bb.limit();
+                    // only copy the key, there may be more entries in the buffer
+                    bb.limit(bb.position() + keyLen);
                     keyBuf.put(bb);
+                    bb.limit(limit);
                     key = new String(keyBuf.array(), 0, keyLen, StandardCharsets.UTF_8);
                 } finally {
                     heapPool.release(keyBuf);
                 }
                 int valueLen = bb.getInt();
-                byte[] value = new byte[valueLen];
-                bb.get(value);
-                map.put(key, new Value(raftIndex, value));
+                Value old = map.get(key);
+                if (old != null && old.getRaftIndex() > raftIndex) {
+                    // the shards are installed concurrently when restore, so the full snapshot may be installed
+                    // after the delta snapshots, skip the entry if the key is updated or removed by a later one.
+                    if (valueLen != KvSnapshot.TOMBSTONE_VALUE_LEN) {
+                        bb.position(bb.position() + valueLen);
+                    }
+                    continue;
+                }
+                Value v;
+                if (valueLen == KvSnapshot.TOMBSTONE_VALUE_LEN) {
+                    // removed key in delta snapshot, keep the tombstone until install finished
+                    v = new Value(key, raftIndex, null);
+                    installTombstones.add(v);
+                } else {
+                    byte[] value = new byte[valueLen];
+                    bb.get(value);
+                    v = new Value(key, raftIndex, value);
+                }
+                map.put(key, v);
             }
             if (done) {
+                for (Value v : installTombstones) {
+                    // not removed if the key is put by later delta snapshot
+                    map.remove(v.getKey(), v);
+                }
+                installTombstones = null;
                 newStatus(KvStatus.RUNNING, kvImpl);
+                installSnapshotIndex = lastIncludeIndex;
             }
             return FiberFuture.completedFuture(FiberGroup.currentGroup(), null);
         } catch (Throwable ex) {
@@ -177,13 +213,35 @@ public class DtKV implements StateMachine {
 
     @Override
     public FiberFrame<Snapshot> takeSnapshot(int currentTerm) {
+        return FiberFrame.completedFrame(openSnapshot(0));
+    }
+
+    @Override
+    public FiberFrame<Snapshot> takeDeltaSnapshot(int currentTerm, long baseIndex) {
+        if (!deltaSnapshot || baseIndex < installSnapshotIndex) {
+            return null;
+        }
+        return FiberFrame.completedFrame(openSnapshot(baseIndex));
+    }
+
+    @Override
+    public void afterSnapshotSaved(long lastIncludedIndex) {
+        KvStatus kvStatus = this.kvStatus;
+        if (kvStatus.status == KvStatus.RUNNING) {
+            // the changes before lastIncludedIndex are saved, don't need keep them any more
+            kvStatus.kvImpl.trimChanges(lastIncludedIndex, minOpenSnapshotIndex);
+        }
+    }
+
+    private KvSnapshot openSnapshot(long baseIndex) {
         KvStatus kvStatus = this.kvStatus;
         ensureRunning(kvStatus);
         KvSnapshot snapshot = new KvSnapshot(raftStatus.getLastApplied(), raftStatus.getCurrentTerm(), () -> kvStatus,
-                kvStatus, groupConfig.getHeapPool(), this::closeSnapshot);
+                kvStatus, groupConfig.getHeapPool(), this::closeSnapshot, baseIndex,
+                groupConfig.getSnapshotShardCount());
         openSnapshots.add(snapshot);
         updateMin();
-        return FiberFrame.completedFrame(snapshot);
+        return snapshot;
     }
 
     private void closeSnapshot(Snapshot snapshot) {
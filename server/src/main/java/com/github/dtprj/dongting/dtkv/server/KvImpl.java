@@ -15,8 +15,11 @@
  */
 package com.github.dtprj.dongting.dtkv.server;
 
+import com.github.dtprj.dongting.common.IndexedQueue;
+
 import java.util.LinkedList;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
 
 /**
  * @author huangli
@@ -24,6 +27,16 @@ import java.util.concurrent.ConcurrentSkipListMap;
 class KvImpl {
     private final ConcurrentSkipListMap<String, Value> map = new ConcurrentSkipListMap<>();
     private final LinkedList<Value> needCleanList = new LinkedList<>();
+    // keep the removed keys for delta snapshot
+    private final boolean keepTombstone;
+    // the changed keys in order of raft index, used by delta snapshot, null if keepTombstone is false.
+    // only the key and raft index are kept, so the overwritten values can be collected.
+    private final IndexedQueue<Change> changes;
+
+    public KvImpl(boolean keepTombstone) {
+        this.keepTombstone = keepTombstone;
+        this.changes = keepTombstone ? new IndexedQueue<>(1024) : null;
+    }
 
     public byte[] get(String key) {
         if (key == null) {
@@ -44,8 +57,11 @@ class KvImpl {
         if (data == null) {
             throw new IllegalArgumentException("value is null");
         }
-        Value newValue = new Value(index, data);
+        Value newValue = new Value(key, index, data);
         Value oldValue = map.put(key, newValue);
+        if (changes != null) {
+            changes.addLast(new Change(key, index));
+        }
         if (minOpenSnapshotIndex != 0 && oldValue != null) {
             newValue.setPrevious(oldValue);
             needCleanList.add(newValue);
@@ -71,7 +87,7 @@ class KvImpl {
             throw new IllegalArgumentException("key is null");
         }
         Value oldValue = map.remove(key);
-        if (minOpenSnapshotIndex == 0) {
+        if (minOpenSnapshotIndex == 0 && !keepTombstone) {
             gc(minOpenSnapshotIndex);
             return oldValue != null && oldValue.getData() != null;
         } else {
@@ -79,17 +95,83 @@ class KvImpl {
                 gc(minOpenSnapshotIndex);
                 return false;
             } else {
-                Value newValue = new Value(index, null);
-                newValue.setPrevious(oldValue);
+                Value newValue = new Value(key, index, null);
                 map.put(key, newValue);
-                needCleanList.add(newValue);
+                if (changes != null) {
+                    changes.addLast(new Change(key, index));
+                }
+                if (minOpenSnapshotIndex != 0) {
+                    newValue.setPrevious(oldValue);
+                    needCleanList.add(newValue);
+                }
                 gc(minOpenSnapshotIndex);
                 return oldValue.getData() != null;
             }
         }
     }
 
+    /**
+     * Remove the changes which is included in saved snapshot, and the tombstones of them if not used by open
+     * snapshots. Only the changes are scanned, not the whole map.
+     */
+    public void trimChanges(long savedSnapshotIndex, long minOpenSnapshotIndex) {
+        IndexedQueue<Change> changes = this.changes;
+        if (changes == null) {
+            return;
+        }
+        while (changes.size() > 0) {
+            Change c = changes.get(0);
+            if (c.raftIndex > savedSnapshotIndex) {
+                break;
+            }
+            Value v = map.get(c.key);
+            // not removed if the key is put again
+            if (v != null && v.getRaftIndex() == c.raftIndex && v.getData() == null) {
+                if (minOpenSnapshotIndex != 0 && c.raftIndex >= minOpenSnapshotIndex) {
+                    // the previous value is used by open snapshot, clean it later
+                    break;
+                }
+                map.remove(c.key, v);
+            }
+            changes.removeFirst();
+        }
+    }
+
+    /**
+     * iterate the keys changed after baseIndex in order of raft index, a key is repeated if changed many times.
+     */
+    public void forEachChange(long baseIndex, Consumer<Change> consumer) {
+        IndexedQueue<Change> changes = this.changes;
+        int low = 0;
+        int high = changes.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (changes.get(mid).raftIndex <= baseIndex) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low, size = changes.size(); i < size; i++) {
+            consumer.accept(changes.get(i));
+        }
+    }
+
     public ConcurrentSkipListMap<String, Value> getMap() {
         return map;
     }
+
+    int getChangeCount() {
+        return changes == null ? 0 : changes.size();
+    }
+
+    static final class Change {
+        final String key;
+        final long raftIndex;
+
+        Change(String key, long raftIndex) {
+            this.key = key;
+            this.raftIndex = raftIndex;
+        }
+    }
 }
@@ -24,33 +24,129 @@ import com.github.dtprj.dongting.raft.sm.Snapshot;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
+ * Each entry is encoded as: raftIndex(8 bytes), keyLen(4 bytes), key, valueLen(4 bytes), value.
+ * If baseIndex is not 0, this is a delta snapshot which only contains the entries changed after
+ * baseIndex, and the removed keys are encoded with valueLen -1. The changed values of a delta snapshot are
+ * collected from the change list of KvImpl when the snapshot is opened, the map is not scanned.
+ * <p>
+ * The shards of a full snapshot share one iterator of the map, each readNext(int) call takes the next entries
+ * from it, so the map is iterated only once and the shards have disjoint keys. The shards of a delta snapshot
+ * are partitioned by hash code of the keys. A key may be in different shards of the full snapshot and the delta
+ * snapshots, so DtKV compares the raft index of the entries when install, and the shards can be installed in
+ * any order.
+ *
  * @author huangli
  */
 class KvSnapshot extends Snapshot {
+    static final int TOMBSTONE_VALUE_LEN = -1;
+    private static final int BUFFER_SIZE = 128 * 1024;
+
     private final Supplier<KvStatus> statusSupplier;
     private final RefBufferFactory heapPool;
     private final Consumer<Snapshot> closeCallback;
-    private final Iterator<Map.Entry<String, Value>> iterator;
     private final int epoch;
+    private final long baseIndex;
+    private final int shardCount;
+
+    // for full snapshot, shared by all shards
+    private final Iterator<Value> iterator;
+    // for delta snapshot
+    private final ArrayList<Value>[] deltaValues;
+    private final int[] deltaPos;
+
+    private final Value[] pendingValues;
 
+    private int currentShard;
+
+    @SuppressWarnings("unchecked")
     public KvSnapshot(long lastIncludedIndex, int lastIncludedTerm, Supplier<KvStatus> statusSupplier,
-                      KvStatus kvStatus, RefBufferFactory heapPool, Consumer<Snapshot> closeCallback) {
+                      KvStatus kvStatus, RefBufferFactory heapPool, Consumer<Snapshot> closeCallback,
+                      long baseIndex, int shardCount) {
         super(lastIncludedIndex, lastIncludedTerm);
         this.statusSupplier = statusSupplier;
         this.heapPool = heapPool;
         this.closeCallback = closeCallback;
-        this.iterator = kvStatus.kvImpl.getMap().entrySet().iterator();
         this.epoch = kvStatus.epoch;
+        this.baseIndex = baseIndex;
+        this.shardCount = shardCount;
+        this.pendingValues = new Value[shardCount];
+        KvImpl kvImpl = kvStatus.kvImpl;
+        if (baseIndex == 0) {
+            this.iterator = kvImpl.getMap().values().iterator();
+            this.deltaValues = null;
+            this.deltaPos = null;
+        } else {
+            this.iterator = null;
+            this.deltaValues = new ArrayList[shardCount];
+            this.deltaPos = new int[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                deltaValues[i] = new ArrayList<>();
+            }
+            kvImpl.forEachChange(baseIndex, c -> {
+                Value current = kvImpl.getMap().get(c.key);
+                while (current != null && current.getRaftIndex() > lastIncludedIndex) {
+                    current = current.getPrevious();
+                }
+                // only the last change of the key is included
+                if (current != null && current.getRaftIndex() == c.raftIndex) {
+                    deltaValues[shardOf(c.key, shardCount)].add(current);
+                }
+            });
+        }
+    }
+
+    static int shardOf(String key, int shardCount) {
+        return Math.floorMod(key.hashCode(), shardCount);
+    }
+
+    @Override
+    public int getShardCount() {
+        return shardCount;
     }
 
     @Override
     public FiberFuture<RefBuffer> readNext() {
+        while (true) {
+            FiberFuture<RefBuffer> f = readNext(currentShard);
+            if (f.getEx() != null || f.getResult() != null || currentShard >= shardCount - 1) {
+                return f;
+            }
+            currentShard++;
+        }
+    }
+
+    private Value nextValue(int shard) {
+        Value v = pendingValues[shard];
+        if (v != null) {
+            pendingValues[shard] = null;
+            return v;
+        }
+        if (baseIndex == 0) {
+            while (iterator.hasNext()) {
+                Value value = iterator.next();
+                while (value != null && value.getRaftIndex() > lastIncludedIndex) {
+                    value = value.getPrevious();
+                }
+                // full snapshot not contains removed keys
+                if (value != null && value.getData() != null) {
+                    return value;
+                }
+            }
+            return null;
+        } else {
+            ArrayList<Value> list = deltaValues[shard];
+            return deltaPos[shard] < list.size() ? list.get(deltaPos[shard]++) : null;
+        }
+    }
+
+    @Override
+    public FiberFuture<RefBuffer> readNext(int shard) {
         FiberGroup fiberGroup = FiberGroup.currentGroup();
         KvStatus current = statusSupplier.get();
         if (current.status != KvStatus.RUNNING || current.epoch != epoch) {
@@ -58,34 +154,37 @@ class KvSnapshot extends Snapshot {
         }
 
         RefBuffer refBuffer = null;
-        Map.Entry<String, Value> en;
-        while ((en = iterator.next()) != null) {
-            Value value = en.getValue();
-            while (value != null && value.getRaftIndex() > lastIncludedIndex) {
-                value = value.getPrevious();
-            }
-            if (value == null) {
-                continue;
-            }
-            String key = en.getKey();
-            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        Value value;
+        while ((value = nextValue(shard)) != null) {
+            byte[] keyBytes = value.getKey().getBytes(StandardCharsets.UTF_8);
             byte[] data = value.getData();
-            int len = 16 + keyBytes.length + data.length;
+            int len = 16 + keyBytes.length + (data == null ? 0 : data.length);
             if (len < 0) {
+                if (refBuffer != null) {
+                    refBuffer.release();
+                }
                 return FiberFuture.failedFuture(fiberGroup, new RaftException("key + value overflow"));
             }
             if (refBuffer == null) {
-                refBuffer = heapPool.create(Math.min(128 * 1024, len));
+                refBuffer = heapPool.create(Math.max(BUFFER_SIZE, len));
             }
             ByteBuffer bb = refBuffer.getBuffer();
             if (bb.remaining() < len) {
-                return FiberFuture.completedFuture(fiberGroup, refBuffer);
+                pendingValues[shard] = value;
+                break;
             }
             bb.putLong(value.getRaftIndex());
             bb.putInt(keyBytes.length);
             bb.put(keyBytes);
-            bb.putInt(data.length);
-            bb.put(data);
+            if (data == null) {
+                bb.putInt(TOMBSTONE_VALUE_LEN);
+            } else {
+                bb.putInt(data.length);
+                bb.put(data);
+            }
+        }
+        if (refBuffer != null) {
+            refBuffer.getBuffer().flip();
         }
         return FiberFuture.completedFuture(fiberGroup, refBuffer);
     }
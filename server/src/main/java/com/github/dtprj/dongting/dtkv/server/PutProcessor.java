@@ -55,7 +55,7 @@ public class PutProcessor extends AbstractRaftBizProcessor<PutReq> {
         @Override
         public boolean readBytes(int index, ByteBuffer buf, int fieldLen, int currentPos) {
             if (index == 2) {
-                result.setKey(StrFiledDecoder.INSTANCE.decode(c, buf, fieldLen, currentPos));
+                result.setKey(StrFiledDecoder.CACHED_INSTANCE.decode(c, buf, fieldLen, currentPos));
             } else if (index == 3) {
                 result.setValue(ByteArrayDecoder.decodeToArray(c, buf, fieldLen, currentPos));
             }
@@ -53,7 +53,7 @@ public class RemoveProcessor extends AbstractRaftBizProcessor<RemoveReq> {
         @Override
         public boolean readBytes(int index, ByteBuffer buf, int fieldLen, int currentPos) {
             if (index == 2) {
-                result.setKey(StrFiledDecoder.INSTANCE.decode(c, buf, fieldLen, currentPos));
+                result.setKey(StrFiledDecoder.CACHED_INSTANCE.decode(c, buf, fieldLen, currentPos));
             }
             return true;
         }
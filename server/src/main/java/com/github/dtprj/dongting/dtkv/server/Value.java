@@ -19,16 +19,22 @@ package com.github.dtprj.dongting.dtkv.server;
  * @author huangli
  */
 class Value {
+    private final String key;
     private final byte[] data;
     private final long raftIndex;
 
     private Value previous;
 
-    public Value(long raftIndex, byte[] data) {
+    public Value(String key, long raftIndex, byte[] data) {
+        this.key = key;
         this.raftIndex = raftIndex;
         this.data = data;
     }
 
+    public String getKey() {
+        return key;
+    }
+
     public byte[] getData() {
         return data;
     }
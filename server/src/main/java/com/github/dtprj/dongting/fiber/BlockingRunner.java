@@ -0,0 +1,257 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import com.github.dtprj.dongting.common.RunnableEx;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Run blocking style code for a fiber group, as an alternative to write FiberFrames. Each task runs in a thread
+ * created by the ThreadFactory (on JDK 21 or later use Thread.ofVirtual().factory() so that blocking is cheap),
+ * and is bound to a daemon fiber of the group. The task thread runs concurrently with the dispatcher, the fiber of
+ * the task is suspended on a FiberFuture and never blocks the dispatcher thread. The methods of this class pass
+ * a FiberFrame to the fiber through the share queue of the dispatcher, wake up the fiber to run it, and wait the
+ * result in the task thread.
+ * <p>
+ * So the task should only read and write the state shared with the fibers in the frames passed to call(), which
+ * run in the dispatcher thread. The fiber APIs that should be called in the dispatcher thread, such as
+ * FiberFuture.complete() or FiberCondition.signal(), can be called in these frames too. The methods of this class
+ * can only be called in the task thread, they wait uninterruptibly, and throw FiberException if the group is
+ * finished.
+ *
+ * @author huangli
+ */
+public class BlockingRunner {
+    private static final DtLog log = DtLogs.getLogger(BlockingRunner.class);
+
+    private final FiberGroup group;
+    private final ThreadFactory threadFactory;
+
+    private final Set<Task> tasks = ConcurrentHashMap.newKeySet();
+    private volatile boolean groupFinished;
+
+    // the task of current thread, each runner has its own
+    private final ThreadLocal<Task> currentTask = new ThreadLocal<>();
+
+    public BlockingRunner(FiberGroup group, ThreadFactory threadFactory) {
+        this.group = group;
+        this.threadFactory = threadFactory;
+        group.getShutdownFuture().whenComplete((v, ex) -> {
+            groupFinished = true;
+            // the task fibers are daemon and never resume, wake up the task threads
+            for (Task t : tasks) {
+                t.ex = new FiberException("group finished: " + group.getName());
+                t.taskTurn.release();
+            }
+        });
+    }
+
+    /**
+     * can call in any thread
+     */
+    public Thread start(String name, RunnableEx<Exception> task) {
+        Task t = new Task(name, task);
+        t.thread = threadFactory.newThread(t);
+        t.thread.setName(name);
+        tasks.add(t);
+        if (groupFinished || !group.fireFiber(new Fiber(name, group, new TaskFrame(t), true))) {
+            tasks.remove(t);
+            throw new FiberException("dispatcher or group is shutdown: " + group.getName());
+        }
+        try {
+            t.thread.start();
+        } catch (Throwable e) {
+            // let the fiber exit
+            tasks.remove(t);
+            t.wakeup.fireComplete(null);
+            throw e;
+        }
+        return t.thread;
+    }
+
+    /**
+     * Run the frame in the fiber of current task, and wait the result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T call(FiberFrame<T> frame) {
+        Task t = currentTask.get();
+        if (t == null) {
+            throw new FiberException("not called in the task thread of this runner");
+        }
+        t.result = null;
+        t.ex = null;
+        // check after reset ex, so the ex set by the shutdown callback is not lost
+        if (groupFinished) {
+            throw new FiberException("group finished: " + group.getName());
+        }
+        t.wakeup.fireComplete((FiberFrame<Object>) frame);
+        t.taskTurn.acquireUninterruptibly();
+        Throwable ex = t.ex;
+        if (ex != null) {
+            if (ex instanceof FiberException) {
+                throw (FiberException) ex;
+            }
+            throw new FiberException("blocking call failed", ex);
+        }
+        return (T) t.result;
+    }
+
+    public <T> T await(FiberFuture<T> future) {
+        return call(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return future.await(this::justReturn);
+            }
+        });
+    }
+
+    public void await(FiberCondition condition) {
+        call(new FiberFrame<Void>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return condition.await(this::justReturn);
+            }
+        });
+    }
+
+    public <T> T take(FiberChannel<T> channel) {
+        return call(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return channel.take(this::justReturn);
+            }
+        });
+    }
+
+    /**
+     * Acquire the lock, the lock is held by the fiber of current task until the returned handle closed.
+     */
+    public LockHandle lock(Lock lock) {
+        call(new FiberFrame<Void>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return lock.lock(this::justReturn);
+            }
+        });
+        return () -> call(new FiberFrame<Void>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                lock.unlock();
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
+    public interface LockHandle extends AutoCloseable {
+        /**
+         * release the lock, should call in the task which acquires the lock
+         */
+        @Override
+        void close();
+    }
+
+    private final class Task implements Runnable {
+        private final String name;
+        private final RunnableEx<Exception> body;
+        private final Semaphore taskTurn = new Semaphore(0);
+        private Thread thread;
+
+        // the fiber waits on it, the task thread completes it with the frame to run, or null if the task finished.
+        // replaced by the fiber before the result handed over to the task thread.
+        private volatile FiberFuture<FiberFrame<Object>> wakeup = group.newFuture();
+
+        // the fields below are handed over from the dispatcher thread to the task thread by the semaphore
+        private Object result;
+        private Throwable ex;
+
+        Task(String name, RunnableEx<Exception> body) {
+            this.name = name;
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            currentTask.set(this);
+            try {
+                body.run();
+            } catch (Throwable e) {
+                log.error("blocking task failed, group={}, task={}", group.getName(), name, e);
+            } finally {
+                currentTask.remove();
+                tasks.remove(this);
+                wakeup.fireComplete(null);
+            }
+        }
+    }
+
+    private final class TaskFrame extends FiberFrame<Void> {
+        private final Task task;
+
+        TaskFrame(Task task) {
+            this.task = task;
+        }
+
+        @Override
+        public FrameCallResult execute(Void input) {
+            return task.wakeup.await(this::afterWakeup);
+        }
+
+        private FrameCallResult afterWakeup(FiberFrame<Object> c) {
+            if (c == null) {
+                return Fiber.frameReturn();
+            }
+            return Fiber.call(new CallFrame(task, c), this::afterCall);
+        }
+
+        private FrameCallResult afterCall(Void v) {
+            task.wakeup = group.newFuture();
+            task.taskTurn.release();
+            return execute(null);
+        }
+    }
+
+    private static final class CallFrame extends FiberFrame<Void> {
+        private final Task task;
+        private final FiberFrame<Object> frame;
+
+        CallFrame(Task task, FiberFrame<Object> frame) {
+            this.task = task;
+            this.frame = frame;
+        }
+
+        @Override
+        public FrameCallResult execute(Void input) {
+            return Fiber.call(frame, this::afterCall);
+        }
+
+        private FrameCallResult afterCall(Object result) {
+            task.result = result;
+            return Fiber.frameReturn();
+        }
+
+        @Override
+        protected FrameCallResult handle(Throwable ex) {
+            task.ex = ex;
+            return Fiber.frameReturn();
+        }
+    }
+}
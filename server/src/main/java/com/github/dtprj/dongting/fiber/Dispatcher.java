@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.fiber;
 
 import com.github.dtprj.dongting.common.AbstractLifeCircle;
 import com.github.dtprj.dongting.common.DtTime;
+import com.github.dtprj.dongting.common.IdleStrategy;
 import com.github.dtprj.dongting.common.IndexedQueue;
 import com.github.dtprj.dongting.common.Timestamp;
 import com.github.dtprj.dongting.log.BugLog;
@@ -26,7 +27,7 @@ import com.github.dtprj.dongting.log.DtLogs;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
-import java.util.PriorityQueue;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -41,13 +42,17 @@ public class Dispatcher extends AbstractLifeCircle {
     private final ArrayList<FiberGroup> groups = new ArrayList<>();
     private final ArrayList<FiberGroup> finishedGroups = new ArrayList<>();
     final IndexedQueue<FiberGroup> readyGroups = new IndexedQueue<>(8);
-    private final PriorityQueue<Fiber> scheduleQueue = new PriorityQueue<>(this::compareFiberByScheduleTime);
 
     private final Timestamp ts = new Timestamp();
 
+    private final TimingWheel timingWheel = new TimingWheel(ts.getNanoTime());
+    private final ArrayList<Fiber> expiredFibers = new ArrayList<>();
+
     final DispatcherThread thread;
 
     private boolean poll = true;
+    // accessed in dispatcher thread, see setProfileEnabled()
+    boolean profile;
     private long pollTimeout = TimeUnit.MILLISECONDS.toNanos(50);
 
     @SuppressWarnings("FieldMayBeFinal")
@@ -72,6 +77,35 @@ public class Dispatcher extends AbstractLifeCircle {
         thread = new DispatcherThread(this::run, name);
     }
 
+    /**
+     * Set the strategy when the dispatcher has nothing to do before it parks, the default is spin 100 times with
+     * Thread.onSpinWait(). Should be called before start.
+     */
+    public void setIdleStrategy(IdleStrategy idleStrategy) {
+        shareQueue.idleStrategy = Objects.requireNonNull(idleStrategy);
+    }
+
+    /**
+     * Enable or disable the profile of the fibers run in this dispatcher, which account the run time, resume
+     * count, and the wait time of each fiber by the wait source type. The result can be read by
+     * FiberGroup.fireProfileSnapshot(). Disabling the profile discards the collected statistics.
+     * <p>
+     * The profile calls System.nanoTime() several times for each fiber resume. Can call in any thread.
+     */
+    public void setProfileEnabled(boolean enabled) {
+        doInDispatcherThread(new FiberQueueTask(null) {
+            @Override
+            protected void run() {
+                if (profile && !enabled) {
+                    for (int i = 0, size = groups.size(); i < size; i++) {
+                        groups.get(i).clearProfile();
+                    }
+                }
+                profile = enabled;
+            }
+        });
+    }
+
     public CompletableFuture<Void> startGroup(FiberGroup fiberGroup) {
         CompletableFuture<Void> future = new CompletableFuture<>();
         boolean b = shareQueue.offer(new FiberQueueTask(fiberGroup) {
@@ -154,14 +188,10 @@ public class Dispatcher extends AbstractLifeCircle {
     }
 
     private void processScheduleFibers() {
-        long now = ts.getNanoTime();
-        PriorityQueue<Fiber> scheduleQueue = this.scheduleQueue;
-        while (true) {
-            Fiber f = scheduleQueue.peek();
-            if (f == null || f.scheduleNanoTime - now > 0) {
-                break;
-            }
-            scheduleQueue.poll();
+        ArrayList<Fiber> expiredFibers = this.expiredFibers;
+        timingWheel.advance(ts.getNanoTime(), expiredFibers);
+        for (int len = expiredFibers.size(), i = 0; i < len; i++) {
+            Fiber f = expiredFibers.get(i);
             if (f.fiberGroup.finished) {
                 if (!f.daemon) {
                     BugLog.getLog().error("group finished, but suspend fiber is not daemon: {}", f.getFiberName());
@@ -176,6 +206,7 @@ public class Dispatcher extends AbstractLifeCircle {
             f.cleanSchedule();
             f.fiberGroup.tryMakeFiberReady(f, true);
         }
+        expiredFibers.clear();
     }
 
     private void execGroup(FiberGroup g) {
@@ -210,6 +241,17 @@ public class Dispatcher extends AbstractLifeCircle {
     }
 
     private void execFiber(FiberGroup g, Fiber fiber) {
+        FiberStat stat = null;
+        long startNanos = 0;
+        if (profile) {
+            stat = fiber.stat;
+            if (stat == null) {
+                stat = new FiberStat(fiber.getFiberName(), false);
+                fiber.stat = stat;
+            }
+            startNanos = System.nanoTime();
+            stat.onRun(startNanos);
+        }
         try {
             g.currentFiber = fiber;
             fiber.lastWaitFor = null;
@@ -256,6 +298,22 @@ public class Dispatcher extends AbstractLifeCircle {
         } finally {
             g.currentFiber = null;
             fatalError = null;
+            if (stat != null) {
+                afterExecProfile(g, fiber, stat, startNanos);
+            }
+        }
+    }
+
+    private void afterExecProfile(FiberGroup g, Fiber fiber, FiberStat stat, long startNanos) {
+        long now = System.nanoTime();
+        stat.runNanos += now - startNanos;
+        if (fiber.finished) {
+            g.addFinishedStat(stat);
+        } else if (fiber.ready) {
+            // yield, or interrupted/signaled in the execution
+            stat.readyStartNanos = now;
+        } else {
+            stat.onSuspend(now, FiberStat.waitType(fiber));
         }
     }
 
@@ -400,7 +458,7 @@ public class Dispatcher extends AbstractLifeCircle {
     private void addToScheduleQueue(long millis, Fiber fiber) {
         if (millis > 0) {
             fiber.scheduleNanoTime = ts.getNanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
-            scheduleQueue.add(fiber);
+            timingWheel.add(fiber);
         }
     }
 
@@ -444,7 +502,7 @@ public class Dispatcher extends AbstractLifeCircle {
     }
 
     void removeFromScheduleQueue(Fiber f) {
-        scheduleQueue.remove(f);
+        timingWheel.remove(f);
     }
 
     void interrupt(Fiber fiber) {
@@ -467,7 +525,7 @@ public class Dispatcher extends AbstractLifeCircle {
             fiber.interrupted = false;
             fiber.inputEx = new FiberInterruptException("fiber is interrupted during wait " + str);
             if (fiber.scheduleTimeoutMillis > 0) {
-                scheduleQueue.remove(fiber);
+                timingWheel.remove(fiber);
                 fiber.cleanSchedule();
             }
             fiber.fiberGroup.tryMakeFiberReady(fiber, false);
@@ -481,11 +539,8 @@ public class Dispatcher extends AbstractLifeCircle {
             if (!poll || readyGroups.size() > 0) {
                 shareQueue.drainTo(localData);
             } else {
-                Fiber f = scheduleQueue.peek();
-                long t = 0;
-                if (f != null) {
-                    t = f.scheduleNanoTime - oldNanos;
-                }
+                // Long.MAX_VALUE if there is no scheduled fiber
+                long t = timingWheel.nextExpireDelay(oldNanos);
                 if (t > 0) {
                     FiberQueueTask o = shareQueue.poll(Math.min(t, pollTimeout), TimeUnit.NANOSECONDS);
                     if (o != null) {
@@ -518,11 +573,6 @@ public class Dispatcher extends AbstractLifeCircle {
         }
     }
 
-    private int compareFiberByScheduleTime(Fiber f1, Fiber f2) {
-        long diff = f1.scheduleNanoTime - f2.scheduleNanoTime;
-        return diff < 0 ? -1 : diff > 0 ? 1 : 0;
-    }
-
     public Timestamp getTs() {
         return ts;
     }
@@ -32,6 +32,12 @@ public class Fiber extends WaitSource {
     long scheduleTimeoutMillis;
     long scheduleNanoTime;
 
+    // used by TimingWheel
+    Fiber schedulePrev;
+    Fiber scheduleNext;
+    int wheelLevel = -1;
+    int wheelSlot;
+
     Fiber previousWaiter;
     Fiber nextWaiter;
 
@@ -52,6 +58,9 @@ public class Fiber extends WaitSource {
     boolean signalInThisRound;
     String lastWaitFor;
 
+    // not null if the profile of dispatcher is enabled, see Dispatcher.setProfileEnabled()
+    FiberStat stat;
+
     public Fiber(String fiberName, FiberGroup fiberGroup, FiberFrame<Void> entryFrame) {
         this(fiberName, fiberGroup, entryFrame, false);
     }
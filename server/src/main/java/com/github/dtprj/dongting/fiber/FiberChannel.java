@@ -18,9 +18,14 @@ package com.github.dtprj.dongting.fiber;
 import com.github.dtprj.dongting.common.IndexedQueue;
 
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * This queue is unbound and only block consumer.
+ * The channel is unbounded by default and only block consumer. If the channel is created with a capacity
+ * (see FiberGroup.newChannel(int)), the producers get backpressure when it's full: offer(T, FrameCall) suspends
+ * the producer fiber, fireOffer(T) fails fast, and fireOffer(T, long) blocks the producer thread. The offer(T)
+ * method never suspends or fails, the channel may exceed the capacity by it.
  *
  * @author huangli
  */
@@ -30,29 +35,105 @@ public class FiberChannel<T> {
     final IndexedQueue<T> queue;
     private final FiberCondition notEmptyCondition;
 
+    // 0 if the channel is unbounded
+    private final int capacity;
+    // the fields below are null if the channel is unbounded
+    // the items in queue, and the items offered by fireOffer but not added to queue yet
+    private final AtomicInteger count;
+    private final FiberCondition notFullCondition;
+    // the monitor of the threads blocked in fireOffer(T, long)
+    private final Object fullLock;
+    private volatile int blockedProducers;
+
     FiberChannel(FiberGroup groupOfConsumer) {
-        this(groupOfConsumer, 64);
+        this(groupOfConsumer, 64, 0);
     }
 
-    FiberChannel(FiberGroup groupOfConsumer, int initSize) {
+    FiberChannel(FiberGroup groupOfConsumer, int initSize, int capacity) {
         this.groupOfConsumer = groupOfConsumer;
         this.dispatcherOfConsumer = groupOfConsumer.dispatcher;
         this.queue = new IndexedQueue<>(initSize);
         this.notEmptyCondition = groupOfConsumer.newCondition("FiberChannelNotEmpty");
+        this.capacity = capacity;
+        if (capacity > 0) {
+            this.count = new AtomicInteger();
+            this.notFullCondition = groupOfConsumer.newCondition("FiberChannelNotFull");
+            this.fullLock = new Object();
+        } else {
+            this.count = null;
+            this.notFullCondition = null;
+            this.fullLock = null;
+        }
     }
 
+    /**
+     * Offer the data in any thread. Return false if the dispatcher is shutdown, or the channel is bounded and full.
+     */
     public boolean fireOffer(T data) {
-        return dispatcherOfConsumer.doInDispatcherThread(new FiberQueueTask(groupOfConsumer) {
+        if (count != null && !tryReserve()) {
+            return false;
+        }
+        return fireOffer0(data);
+    }
+
+    /**
+     * Offer the data in any thread except dispatcher threads, if the channel is bounded and full, block current
+     * thread until the channel has space. Return false if timeout or the dispatcher is shutdown.
+     */
+    public boolean fireOffer(T data, long timeoutMillis) throws InterruptedException {
+        if (count != null && !tryReserve()) {
+            if (Thread.currentThread() instanceof DispatcherThread) {
+                throw new FiberException("can't block in dispatcher thread");
+            }
+            if (!waitReserve(timeoutMillis)) {
+                return false;
+            }
+        }
+        return fireOffer0(data);
+    }
+
+    private boolean fireOffer0(T data) {
+        boolean b = dispatcherOfConsumer.doInDispatcherThread(new FiberQueueTask(groupOfConsumer) {
             @Override
             protected void run() {
+                if (groupOfConsumer.finished) {
+                    // the data is dropped, give back the reserved slot
+                    if (count != null) {
+                        releaseCount(1);
+                    }
+                    return;
+                }
                 offer0(data);
             }
         });
+        if (!b && count != null) {
+            releaseCount(1);
+        }
+        return b;
     }
 
+    /**
+     * Offer the data in the fiber of consumer group, never suspend.
+     */
     public void offer(T data) {
         groupOfConsumer.checkGroup();
+        if (count != null) {
+            count.incrementAndGet();
+        }
+        offer0(data);
+    }
+
+    /**
+     * Offer the data in the fiber of consumer group, if the channel is bounded and full, suspend current fiber
+     * until the channel has space.
+     */
+    public FrameCallResult offer(T data, FrameCall<Void> resumePoint) {
+        groupOfConsumer.checkGroup();
+        if (count != null && !tryReserve()) {
+            return notFullCondition.await(noUseVoid -> offer(data, resumePoint));
+        }
         offer0(data);
+        return Fiber.resume(null, resumePoint);
     }
 
     void offer0(T data) {
@@ -62,6 +143,57 @@ public class FiberChannel<T> {
         }
     }
 
+    private boolean tryReserve() {
+        AtomicInteger count = this.count;
+        while (true) {
+            int c = count.get();
+            if (c >= capacity) {
+                return false;
+            }
+            if (count.compareAndSet(c, c + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @SuppressWarnings("NonAtomicOperationOnVolatileField")
+    private boolean waitReserve(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (fullLock) {
+            // modified in the lock, and read by consumer without lock
+            blockedProducers++;
+            try {
+                // the consumer releases count before it reads blockedProducers, so no lost wakeup
+                while (!tryReserve()) {
+                    long rest = deadline - System.nanoTime();
+                    if (rest <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(fullLock, rest);
+                }
+                return true;
+            } finally {
+                blockedProducers--;
+            }
+        }
+    }
+
+    private void releaseCount(int n) {
+        count.addAndGet(-n);
+        if (blockedProducers > 0) {
+            synchronized (fullLock) {
+                fullLock.notifyAll();
+            }
+        }
+    }
+
+    private void afterTake(int n) {
+        if (count != null && n > 0) {
+            releaseCount(n);
+            notFullCondition.signalAll0(true);
+        }
+    }
+
     public FrameCallResult take(FrameCall<T> resumePoint) {
         return take(-1, resumePoint);
     }
@@ -70,6 +202,7 @@ public class FiberChannel<T> {
         groupOfConsumer.checkGroup();
         T data = queue.removeFirst();
         if (data != null) {
+            afterTake(1);
             return Fiber.resume(data, resumePoint);
         } else {
             if (millis > 0) {
@@ -81,23 +214,44 @@ public class FiberChannel<T> {
     }
 
     public FrameCallResult takeAll(Collection<T> c, FrameCall<Void> resumePoint) {
-        return takeAll(-1, c, resumePoint);
+        return takeAll(-1, c, Integer.MAX_VALUE, resumePoint);
     }
 
     public FrameCallResult takeAll(long millis, Collection<T> c, FrameCall<Void> resumePoint) {
+        return takeAll(millis, c, Integer.MAX_VALUE, resumePoint);
+    }
+
+    public FrameCallResult takeAll(Collection<T> c, int maxItems, FrameCall<Void> resumePoint) {
+        return takeAll(-1, c, maxItems, resumePoint);
+    }
+
+    /**
+     * Take at most maxItems items to the collection, suspend current fiber if the channel is empty.
+     */
+    public FrameCallResult takeAll(long millis, Collection<T> c, int maxItems, FrameCall<Void> resumePoint) {
         groupOfConsumer.checkGroup();
         if (queue.size() > 0) {
+            int n = 0;
             T data;
-            while ((data = queue.removeFirst()) != null) {
+            while (n < maxItems && (data = queue.removeFirst()) != null) {
                 c.add(data);
+                n++;
             }
+            afterTake(n);
             return Fiber.resume(null, resumePoint);
         } else {
             if (millis > 0) {
-                return notEmptyCondition.await(millis, noUseVoid -> takeAll(c, resumePoint));
+                return notEmptyCondition.await(millis, noUseVoid -> takeAll(c, maxItems, resumePoint));
             } else {
-                return notEmptyCondition.await(noUseVoid -> takeAll(c, resumePoint));
+                return notEmptyCondition.await(noUseVoid -> takeAll(c, maxItems, resumePoint));
             }
         }
     }
+
+    /**
+     * Return the capacity of the channel, 0 if unbounded.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
 }
@@ -16,6 +16,7 @@
 package com.github.dtprj.dongting.fiber;
 
 import com.github.dtprj.dongting.common.DtException;
+import com.github.dtprj.dongting.common.DtUtil;
 import com.github.dtprj.dongting.common.IndexedQueue;
 import com.github.dtprj.dongting.common.LongObjMap;
 import com.github.dtprj.dongting.log.BugLog;
@@ -24,6 +25,9 @@ import com.github.dtprj.dongting.log.DtLogs;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -66,6 +70,9 @@ public class FiberGroup {
 
     Fiber currentFiber;
 
+    // the stat of finished fibers merged by name, see Dispatcher.setProfileEnabled()
+    private HashMap<String, FiberStat> finishedStats;
+
     final FiberCondition shouldStopCondition;
     private final GroupExecutor executor;
 
@@ -138,6 +145,14 @@ public class FiberGroup {
         return new FiberChannel<>(this);
     }
 
+    /**
+     * Create a bounded channel, see FiberChannel for the behaviors when it's full.
+     */
+    public <T> FiberChannel<T> newChannel(int capacity) {
+        DtUtil.checkPositive(capacity, "capacity");
+        return new FiberChannel<>(this, Math.min(capacity, 64), capacity);
+    }
+
     public FiberLock newLock() {
         return new FiberLock(this);
     }
@@ -164,6 +179,9 @@ public class FiberGroup {
             return;
         }
         f.started = true;
+        if (dispatcher.profile) {
+            f.stat = new FiberStat(f.getFiberName(), false);
+        }
         long id = nextId++;
         f.id = id;
         if (f.daemon) {
@@ -197,6 +215,9 @@ public class FiberGroup {
         }
         if (!f.ready) {
             f.ready = true;
+            if (f.stat != null) {
+                f.stat.onReady(System.nanoTime());
+            }
             if (f.signalInThisRound) {
                 if (addFirst) {
                     readyFibersNextRound.addFirst(f);
@@ -286,6 +307,71 @@ public class FiberGroup {
         }
     }
 
+    /**
+     * Get the profile statistics of the fibers in this group, including the live fibers and the finished
+     * fibers (merged by name). The profile should be enabled by Dispatcher.setProfileEnabled(), otherwise the
+     * result is empty. If reset is true, the statistics are cleared after the snapshot taken.
+     * <p>
+     * can call in any thread
+     */
+    public CompletableFuture<List<FiberStat>> fireProfileSnapshot(boolean reset) {
+        CompletableFuture<List<FiberStat>> f = new CompletableFuture<>();
+        boolean b = dispatcher.doInDispatcherThread(new FiberQueueTask(this) {
+            @Override
+            protected void run() {
+                f.complete(profileSnapshot0(reset));
+            }
+        });
+        if (!b) {
+            f.completeExceptionally(new FiberException("dispatcher or group is shutdown"));
+        }
+        return f;
+    }
+
+    private List<FiberStat> profileSnapshot0(boolean reset) {
+        ArrayList<FiberStat> list = new ArrayList<>();
+        LongObjMap.ReadOnlyVisitor<Fiber> visitor = (id, f) -> {
+            FiberStat s = f.stat;
+            if (s != null) {
+                list.add(s.copy(false, f.lastWaitFor));
+                if (reset) {
+                    s.reset();
+                }
+            }
+        };
+        normalFibers.forEach(visitor);
+        daemonFibers.forEach(visitor);
+        if (finishedStats != null) {
+            for (FiberStat s : finishedStats.values()) {
+                list.add(s.copy(true, null));
+            }
+            if (reset) {
+                finishedStats.clear();
+            }
+        }
+        return list;
+    }
+
+    void addFinishedStat(FiberStat stat) {
+        if (finishedStats == null) {
+            finishedStats = new HashMap<>();
+        }
+        FiberStat s = finishedStats.get(stat.getFiberName());
+        if (s == null) {
+            finishedStats.put(stat.getFiberName(), stat.copy(true, null));
+        } else {
+            s.add(stat);
+        }
+    }
+
+    // called when the profile of dispatcher is disabled
+    void clearProfile() {
+        LongObjMap.ReadOnlyVisitor<Fiber> visitor = (id, f) -> f.stat = null;
+        normalFibers.forEach(visitor);
+        daemonFibers.forEach(visitor);
+        finishedStats = null;
+    }
+
     private void logGroupInfo0(String msg) {
         StringBuilder sb = new StringBuilder(256);
         sb.append(msg).append("\ngroup ").append(name)
@@ -302,7 +388,11 @@ public class FiberGroup {
         sb.append("normalFibers:\n");
         normalFibers.forEach((key, f) -> {
             concatFiberName(sb, f);
-            sb.append(", waitOn=").append(f.source).append('\n');
+            sb.append(", waitOn=").append(f.source);
+            if (f.stat != null) {
+                sb.append(", ").append(f.stat);
+            }
+            sb.append('\n');
         });
         sb.append("--------------------------------------------------\n");
         log.info(sb.toString());
@@ -15,6 +15,8 @@
  */
 package com.github.dtprj.dongting.fiber;
 
+import com.github.dtprj.dongting.common.BackoffIdleStrategy;
+import com.github.dtprj.dongting.common.IdleStrategy;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
 
@@ -24,10 +26,13 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * The consumer runs the idle strategy (spin by default) before wait on the condition if the queue is empty.
+ *
  * @author huangli
  */
 class FiberQueue {
     private static final DtLog log = DtLogs.getLogger(FiberQueue.class);
+    private static final IdleStrategy DEFAULT_IDLE_STRATEGY = new BackoffIdleStrategy(0, 100, 0);
 
     private static final FiberQueueTask TAIL = new FiberQueueTask(null) {
         @Override
@@ -38,10 +43,14 @@ class FiberQueue {
     final ReentrantLock lock = new ReentrantLock();
     private final Condition notEmpty = lock.newCondition();
 
-    private FiberQueueTask head = TAIL;
+    // written in lock, volatile so that the consumer can check it without lock when spin
+    private volatile FiberQueueTask head = TAIL;
     private FiberQueueTask tail = TAIL;
     private boolean shutdown;
 
+    // set by dispatcher before start
+    IdleStrategy idleStrategy = DEFAULT_IDLE_STRATEGY;
+
     public FiberQueue() {
     }
 
@@ -75,12 +84,26 @@ class FiberQueue {
     }
 
     public FiberQueueTask poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        long rest = timeUnit.toNanos(timeout);
+        if (head == TAIL) {
+            long deadline = System.nanoTime() + rest;
+            IdleStrategy idleStrategy = this.idleStrategy;
+            int idleCount = 0;
+            while (head == TAIL && !idleStrategy.idle(idleCount++)) {
+                rest = deadline - System.nanoTime();
+                if (rest <= 0) {
+                    return null;
+                }
+            }
+            rest = deadline - System.nanoTime();
+        }
         lock.lock();
         try {
-            if (head == TAIL) {
-                if (!notEmpty.await(timeout, timeUnit)) {
+            while (head == TAIL) {
+                if (rest <= 0) {
                     return null;
                 }
+                rest = notEmpty.awaitNanos(rest);
             }
             FiberQueueTask result = head;
             if (result.next == TAIL) {
@@ -96,6 +119,9 @@ class FiberQueue {
     }
 
     public void drainTo(ArrayList<FiberQueueTask> list) {
+        if (head == TAIL) {
+            return;
+        }
         lock.lock();
         try {
             FiberQueueTask task = head;
@@ -120,4 +146,3 @@ class FiberQueue {
         }
     }
 }
-
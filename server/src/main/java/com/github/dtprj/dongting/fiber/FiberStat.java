@@ -0,0 +1,199 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+/**
+ * The run and wait time of a fiber, collected when the profile of the dispatcher is enabled, see
+ * Dispatcher.setProfileEnabled(). The stat of finished fibers are merged by fiber name. All times are in nanos.
+ * <p>
+ * The instances returned by FiberGroup.fireProfileSnapshot() are copies, and can be read in any thread.
+ *
+ * @author huangli
+ */
+public class FiberStat {
+    static final int WAIT_CONDITION = 0;
+    static final int WAIT_FUTURE = 1;
+    static final int WAIT_LOCK = 2;
+    static final int WAIT_JOIN = 3;
+    static final int WAIT_SLEEP = 4;
+    private static final int WAIT_TYPES = 5;
+
+    private final String fiberName;
+    private final boolean finished;
+    int fiberCount;
+    long runNanos;
+    long resumeCount;
+    long readyWaitNanos;
+    final long[] waitNanos = new long[WAIT_TYPES];
+    String lastWaitFor;
+
+    // the fields below are the state of the live fiber, accessed in dispatcher thread
+    long readyStartNanos;
+    long waitStartNanos;
+    int waitType;
+
+    FiberStat(String fiberName, boolean finished) {
+        this.fiberName = fiberName;
+        this.finished = finished;
+        this.fiberCount = 1;
+    }
+
+    static int waitType(Fiber f) {
+        WaitSource s = f.source;
+        if (s == null) {
+            return WAIT_SLEEP;
+        } else if (s instanceof FiberFuture) {
+            return WAIT_FUTURE;
+        } else if (s instanceof Lock) {
+            return WAIT_LOCK;
+        } else if (s instanceof Fiber) {
+            return WAIT_JOIN;
+        } else {
+            return WAIT_CONDITION;
+        }
+    }
+
+    // the fiber is suspended
+    void onSuspend(long nowNanos, int waitType) {
+        this.waitStartNanos = nowNanos;
+        this.waitType = waitType;
+    }
+
+    // the fiber is added to ready queue
+    void onReady(long nowNanos) {
+        if (waitStartNanos != 0) {
+            waitNanos[waitType] += nowNanos - waitStartNanos;
+            waitStartNanos = 0;
+        }
+        readyStartNanos = nowNanos;
+    }
+
+    // the fiber is picked by dispatcher to run
+    void onRun(long nowNanos) {
+        if (readyStartNanos != 0) {
+            readyWaitNanos += nowNanos - readyStartNanos;
+            readyStartNanos = 0;
+        }
+        resumeCount++;
+    }
+
+    void add(FiberStat s) {
+        fiberCount += s.fiberCount;
+        runNanos += s.runNanos;
+        resumeCount += s.resumeCount;
+        readyWaitNanos += s.readyWaitNanos;
+        for (int i = 0; i < WAIT_TYPES; i++) {
+            waitNanos[i] += s.waitNanos[i];
+        }
+    }
+
+    FiberStat copy(boolean finished, String lastWaitFor) {
+        FiberStat s = new FiberStat(fiberName, finished);
+        s.fiberCount = 0;
+        s.add(this);
+        s.lastWaitFor = lastWaitFor;
+        return s;
+    }
+
+    void reset() {
+        fiberCount = 1;
+        runNanos = 0;
+        resumeCount = 0;
+        readyWaitNanos = 0;
+        for (int i = 0; i < WAIT_TYPES; i++) {
+            waitNanos[i] = 0;
+        }
+    }
+
+    public String getFiberName() {
+        return fiberName;
+    }
+
+    /**
+     * Return true if this is the merged stat of the finished fibers with the same name.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * The number of fibers merged in this stat, 1 for a live fiber.
+     */
+    public int getFiberCount() {
+        return fiberCount;
+    }
+
+    public long getRunNanos() {
+        return runNanos;
+    }
+
+    /**
+     * The times the fiber is picked by the dispatcher to run, including the first run.
+     */
+    public long getResumeCount() {
+        return resumeCount;
+    }
+
+    /**
+     * The time the fiber is ready but not run by the dispatcher yet (including yield), a high value means
+     * the dispatcher is busy.
+     */
+    public long getReadyWaitNanos() {
+        return readyWaitNanos;
+    }
+
+    public long getConditionWaitNanos() {
+        return waitNanos[WAIT_CONDITION];
+    }
+
+    public long getFutureWaitNanos() {
+        return waitNanos[WAIT_FUTURE];
+    }
+
+    public long getLockWaitNanos() {
+        return waitNanos[WAIT_LOCK];
+    }
+
+    public long getJoinWaitNanos() {
+        return waitNanos[WAIT_JOIN];
+    }
+
+    public long getSleepNanos() {
+        return waitNanos[WAIT_SLEEP];
+    }
+
+    /**
+     * The last wait reason of the live fiber, null if not set or the fiber is finished.
+     */
+    public String getLastWaitFor() {
+        return lastWaitFor;
+    }
+
+    @Override
+    public String toString() {
+        return "FiberStat{" + fiberName +
+                (finished ? ", finished, count=" + fiberCount : "") +
+                ", run=" + runNanos / 1000 + "us" +
+                ", resume=" + resumeCount +
+                ", readyWait=" + readyWaitNanos / 1000 + "us" +
+                ", condition=" + waitNanos[WAIT_CONDITION] / 1000 + "us" +
+                ", future=" + waitNanos[WAIT_FUTURE] / 1000 + "us" +
+                ", lock=" + waitNanos[WAIT_LOCK] / 1000 + "us" +
+                ", join=" + waitNanos[WAIT_JOIN] / 1000 + "us" +
+                ", sleep=" + waitNanos[WAIT_SLEEP] / 1000 + "us" +
+                '}';
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timing wheel for the scheduled fibers of a dispatcher, the add/remove operation is O(1).
+ * The tick is 1ms, level 0 has 256 slots, and other 3 levels have 64 slots, so it covers about 18.6 hours,
+ * the fibers beyond that are placed in the last slot and re-placed when cascade.
+ * <p>
+ * The fibers in one slot are linked by Fiber.schedulePrev/scheduleNext. The tick of a fiber is rounded down,
+ * when its tick is processed but the scheduleNanoTime is not reached, it's moved to the due list, which is
+ * checked by every advance() with the exact nanos. So a fiber expires in the first advance() whose nowNanos is
+ * not less than its scheduleNanoTime, and nextExpireDelay() never returns a time later than that.
+ * <p>
+ * This class is not thread safe, it's only accessed in dispatcher thread.
+ *
+ * @author huangli
+ */
+class TimingWheel {
+    static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int LEVEL0_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 4;
+    private static final int TOTAL_BITS = LEVEL0_BITS + (LEVELS - 1) * LEVEL_BITS;
+    // re-place all fibers instead of advancing tick by tick, if the time jumps too much
+    private static final long REBUILD_THRESHOLD_TICKS = 1 << 16;
+    private static final int DUE_LIST = LEVELS;
+
+    // the last one is the due list, which has only 1 slot
+    private final Fiber[][] slots = new Fiber[LEVELS + 1][];
+    private final long startNanos;
+
+    // the ticks before or equal to this is processed
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long nowNanos) {
+        this.startNanos = nowNanos;
+        for (int i = 0; i < LEVELS; i++) {
+            slots[i] = new Fiber[mask(i) + 1];
+        }
+        slots[DUE_LIST] = new Fiber[1];
+    }
+
+    private static int shift(int level) {
+        return level == 0 ? 0 : LEVEL0_BITS + (level - 1) * LEVEL_BITS;
+    }
+
+    private static int mask(int level) {
+        return level == 0 ? (1 << LEVEL0_BITS) - 1 : (1 << LEVEL_BITS) - 1;
+    }
+
+    private long expireTick(Fiber f) {
+        return Math.floorDiv(f.scheduleNanoTime - startNanos, TICK_NANOS);
+    }
+
+    void add(Fiber f) {
+        long expireTick = expireTick(f);
+        if (expireTick <= currentTick) {
+            // the slot of currentTick is processed
+            link(f, DUE_LIST, 0);
+        } else {
+            place(f, expireTick, currentTick + 1);
+        }
+        size++;
+    }
+
+    void remove(Fiber f) {
+        if (f.wheelLevel < 0) {
+            return;
+        }
+        unlink(f);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void place(Fiber f, long expireTick, long minTick) {
+        long current = currentTick;
+        long rotationEnd = (((current >>> TOTAL_BITS) + 1) << TOTAL_BITS) - 1;
+        // if truncated, re-placed when cascade or processed in level 0, see advance()
+        expireTick = Math.max(Math.min(expireTick, rotationEnd), minTick);
+        int level = 0;
+        while (level < LEVELS - 1 && (expireTick >>> shift(level + 1)) != (current >>> shift(level + 1))) {
+            level++;
+        }
+        link(f, level, (int) ((expireTick >>> shift(level)) & mask(level)));
+    }
+
+    private void link(Fiber f, int level, int slot) {
+        Fiber[] levelSlots = slots[level];
+        Fiber head = levelSlots[slot];
+        f.wheelLevel = level;
+        f.wheelSlot = slot;
+        f.schedulePrev = null;
+        f.scheduleNext = head;
+        if (head != null) {
+            head.schedulePrev = f;
+        }
+        levelSlots[slot] = f;
+    }
+
+    private void unlink(Fiber f) {
+        Fiber prev = f.schedulePrev;
+        Fiber next = f.scheduleNext;
+        if (prev == null) {
+            slots[f.wheelLevel][f.wheelSlot] = next;
+        } else {
+            prev.scheduleNext = next;
+        }
+        if (next != null) {
+            next.schedulePrev = prev;
+        }
+        f.schedulePrev = null;
+        f.scheduleNext = null;
+        f.wheelLevel = -1;
+    }
+
+    /**
+     * advance to nowNanos, and add the expired fibers to the list (removed from the wheel).
+     */
+    void advance(long nowNanos, ArrayList<Fiber> expired) {
+        long nowTick = Math.floorDiv(nowNanos - startNanos, TICK_NANOS);
+        if (size == 0) {
+            currentTick = Math.max(nowTick, currentTick);
+            return;
+        }
+        if (nowTick < currentTick || nowTick - currentTick > REBUILD_THRESHOLD_TICKS) {
+            rebuild(nowNanos, nowTick, expired);
+            return;
+        }
+        Fiber f = detachSlot(DUE_LIST, 0);
+        while (f != null) {
+            Fiber next = f.scheduleNext;
+            f.scheduleNext = null;
+            expireOrDue(f, nowNanos, expired);
+            f = next;
+        }
+        while (currentTick < nowTick && size > 0) {
+            long tick = ++currentTick;
+            // cascade from the highest level, the fibers may be moved to lower levels which cascade later
+            int level = LEVELS - 1;
+            while (level > 0 && (tick & ((1L << shift(level)) - 1)) != 0) {
+                level--;
+            }
+            for (; level > 0; level--) {
+                int slot = (int) ((tick >>> shift(level)) & mask(level));
+                f = detachSlot(level, slot);
+                while (f != null) {
+                    Fiber next = f.scheduleNext;
+                    f.scheduleNext = null;
+                    // the level 0 slot of current tick is processed later
+                    place(f, expireTick(f), tick);
+                    f = next;
+                }
+            }
+            f = detachSlot(0, (int) (tick & mask(0)));
+            while (f != null) {
+                Fiber next = f.scheduleNext;
+                f.scheduleNext = null;
+                if (expireTick(f) > tick) {
+                    // placed with a truncated tick
+                    place(f, expireTick(f), tick + 1);
+                } else {
+                    expireOrDue(f, nowNanos, expired);
+                }
+                f = next;
+            }
+        }
+        currentTick = Math.max(nowTick, currentTick);
+    }
+
+    private void expireOrDue(Fiber f, long nowNanos, ArrayList<Fiber> expired) {
+        if (f.scheduleNanoTime - nowNanos <= 0) {
+            f.wheelLevel = -1;
+            size--;
+            expired.add(f);
+        } else {
+            // in the tick of nowNanos, but not reached
+            link(f, DUE_LIST, 0);
+        }
+    }
+
+    private Fiber detachSlot(int level, int slot) {
+        Fiber head = slots[level][slot];
+        slots[level][slot] = null;
+        return head;
+    }
+
+    private void rebuild(long nowNanos, long nowTick, ArrayList<Fiber> expired) {
+        ArrayList<Fiber> all = new ArrayList<>(size);
+        for (int level = 0; level < slots.length; level++) {
+            for (int slot = 0; slot < slots[level].length; slot++) {
+                Fiber f = detachSlot(level, slot);
+                while (f != null) {
+                    Fiber next = f.scheduleNext;
+                    f.schedulePrev = null;
+                    f.scheduleNext = null;
+                    f.wheelLevel = -1;
+                    all.add(f);
+                    f = next;
+                }
+            }
+        }
+        currentTick = nowTick;
+        size = 0;
+        for (Fiber f : all) {
+            if (f.scheduleNanoTime - nowNanos <= 0) {
+                expired.add(f);
+            } else {
+                add(f);
+            }
+        }
+    }
+
+    /**
+     * Return the nanos from nowNanos to the earliest scheduleNanoTime in the due list, or to the next tick that
+     * may contain expired fibers. The result may be less than 0 if it's already expired. Return Long.MAX_VALUE
+     * if there is no scheduled fiber.
+     */
+    long nextExpireDelay(long nowNanos) {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        Fiber f = slots[DUE_LIST][0];
+        if (f != null) {
+            // the due list contains the fibers in one tick only, it's short
+            long min = f.scheduleNanoTime;
+            for (f = f.scheduleNext; f != null; f = f.scheduleNext) {
+                if (f.scheduleNanoTime - min < 0) {
+                    min = f.scheduleNanoTime;
+                }
+            }
+            return min - nowNanos;
+        }
+        long rotationEnd = currentTick | mask(0);
+        Fiber[] level0 = slots[0];
+        long tick = currentTick + 1;
+        for (; tick <= rotationEnd; tick++) {
+            if (level0[(int) (tick & mask(0))] != null) {
+                break;
+            }
+        }
+        // if not found in level 0, tick is the start of next rotation, when the higher levels cascade
+        return startNanos + tick * TICK_NANOS - nowNanos;
+    }
+}
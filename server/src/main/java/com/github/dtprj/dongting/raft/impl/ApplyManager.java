@@ -15,6 +15,7 @@
  */
 package com.github.dtprj.dongting.raft.impl;
 
+import com.github.dtprj.dongting.codec.ByteArrayDecoder;
 import com.github.dtprj.dongting.codec.DecodeContext;
 import com.github.dtprj.dongting.codec.Decoder;
 import com.github.dtprj.dongting.common.DtUtil;
@@ -56,6 +57,7 @@ public class ApplyManager {
     private StateMachine stateMachine;
 
     private final DecodeContext decodeContext;
+    private final LogBodyCompressor compressor;
 
     private boolean configChanging = false;
 
@@ -70,6 +72,7 @@ public class ApplyManager {
         this.gc = gc;
         this.decodeContext = new DecodeContext();
         this.decodeContext.setHeapPool(gc.getGroupConfig().getHeapPool());
+        this.compressor = new LogBodyCompressor(gc.getGroupConfig());
     }
 
     public void postInit() {
@@ -139,13 +142,16 @@ public class ApplyManager {
     }
 
     @SuppressWarnings("rawtypes")
-    private RaftTask buildRaftTask(LogItem item) {
+    private RaftTask buildRaftTask(LogItem item, boolean findReader) {
         try {
             ByteBuffer headerRbb = item.getHeaderBuffer();
             if (headerRbb != null) {
                 if (item.getType() == LogItem.TYPE_NORMAL) {
                     Decoder decoder = stateMachine.createHeaderDecoder(item.getBizType());
-                    Object o = decoder.decode(decodeContext, headerRbb, headerRbb.remaining(), 0);
+                    // the buffer of the item in tail cache may be read by other threads (such as the log
+                    // write and the replication), so never change its position
+                    ByteBuffer buf = headerRbb.duplicate();
+                    Object o = decoder.decode(decodeContext, buf, buf.remaining(), 0);
                     item.setHeader(o);
                 } else {
                     item.setHeader(RaftUtil.copy(headerRbb));
@@ -153,9 +159,22 @@ public class ApplyManager {
             }
             ByteBuffer bodyRbb = item.getBodyBuffer();
             if (bodyRbb != null) {
+                boolean owned = !item.isBufferPooled();
+                if (item.isBodyCompressed()) {
+                    bodyRbb = compressor.decompress(bodyRbb);
+                    owned = true;
+                }
                 if (item.getType() == LogItem.TYPE_NORMAL) {
                     Decoder decoder = stateMachine.createBodyDecoder(item.getBizType());
-                    Object o = decoder.decode(decodeContext, bodyRbb, bodyRbb.remaining(), 0);
+                    Object o;
+                    if (decoder == ByteArrayDecoder.INSTANCE && owned && isWholeArray(bodyRbb)) {
+                        // the buffer decoded by AppendReqCallback (or LogBodyCompressor) is never reused and
+                        // the others only read it, so the byte[] body can share its array without copy
+                        o = bodyRbb.array();
+                    } else {
+                        ByteBuffer buf = bodyRbb.duplicate();
+                        o = decoder.decode(decodeContext, buf, buf.remaining(), 0);
+                    }
                     item.setBody(o);
                 } else {
                     item.setBody(RaftUtil.copy(bodyRbb));
@@ -165,7 +184,7 @@ public class ApplyManager {
                     null, item.getActualBodySize());
             RaftTask result = new RaftTask(ts, item.getType(), input, null);
             result.setItem(item);
-            RaftTask reader = raftStatus.getTailCache().get(item.getIndex());
+            RaftTask reader = findReader ? raftStatus.getTailCache().get(item.getIndex()) : null;
             if (reader != null) {
                 if (reader.getInput().isReadOnly()) {
                     result.setNextReader(reader);
@@ -179,6 +198,11 @@ public class ApplyManager {
         }
     }
 
+    private static boolean isWholeArray(ByteBuffer buf) {
+        return buf.hasArray() && buf.arrayOffset() == 0 && buf.position() == 0
+                && buf.limit() == buf.array().length;
+    }
+
     public void apply() {
         condition.signal();
     }
@@ -271,7 +295,13 @@ public class ApplyManager {
                     return Fiber.call(ff, items -> afterLoad(items, stateMachineEpoch));
                 } else {
                     closeIterator();
-                    rt.getItem().retain();
+                    LogItem item = rt.getItem();
+                    item.retain();
+                    if (rt.getInput().getHeader() == null && rt.getInput().getBody() == null
+                            && (item.getHeaderBuffer() != null || item.getBodyBuffer() != null)) {
+                        // the item replicated from leader is not decoded in AppendProcessor
+                        rt = buildRaftTask(item, false);
+                    }
                     taskList.add(rt);
                     index++;
                     diff--;
@@ -302,7 +332,7 @@ public class ApplyManager {
             //noinspection ForLoopReplaceableByForEach
             for (int i = 0, readCount = items.size(); i < readCount; i++) {
                 LogItem item = items.get(i);
-                RaftTask rt = buildRaftTask(item);
+                RaftTask rt = buildRaftTask(item, true);
                 taskList.add(rt);
             }
             return exec(null);
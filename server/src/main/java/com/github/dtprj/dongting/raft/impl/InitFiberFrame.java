@@ -151,6 +151,10 @@ class RecoverStateMachineFiberFrame extends FiberFrame<Pair<Integer, Long>> {
     private long offset;
     private RefBuffer rb;
 
+    private FiberChannel<ShardBlock> shardChannel;
+    private int runningShards;
+    private ShardBlock currentBlock;
+
     public RecoverStateMachineFiberFrame(GroupComponents gc) {
         this.snapshotManager = gc.getSnapshotManager();
         this.stateMachine = gc.getStateMachine();
@@ -181,9 +185,55 @@ class RecoverStateMachineFiberFrame extends FiberFrame<Pair<Integer, Long>> {
         }
         this.snapshot = snapshot;
 
+        if (snapshot.getShardCount() > 1) {
+            return startShardReaders();
+        }
         return read(null);
     }
 
+    // the shards are read (and crc checked) concurrently, and installed one block by one block
+    private FrameCallResult startShardReaders() {
+        int shardCount = snapshot.getShardCount();
+        shardChannel = getFiberGroup().newChannel();
+        runningShards = shardCount;
+        for (int i = 0; i < shardCount; i++) {
+            Fiber f = new Fiber("loadSnapshotShard-" + i, getFiberGroup(), new ShardReadFrame(i), true);
+            f.start();
+        }
+        return shardChannel.take(this::afterShardRead);
+    }
+
+    private FrameCallResult afterShardRead(ShardBlock block) throws Throwable {
+        RaftUtil.checkStop(getFiberGroup());
+        if (block.ex != null) {
+            throw block.ex;
+        }
+        if (block.rb == null) {
+            runningShards--;
+            if (runningShards == 0) {
+                FiberFuture<Void> fu = stateMachine.installSnapshot(snapshot.getLastIncludedIndex(),
+                        snapshot.getLastIncludedTerm(), offset, true, null);
+                return fu.await(this::finish);
+            }
+            return shardChannel.take(this::afterShardRead);
+        }
+        this.rb = block.rb;
+        this.currentBlock = block;
+        long count = rb.getBuffer().remaining();
+        FiberFuture<Void> fu = stateMachine.installSnapshot(snapshot.getLastIncludedIndex(),
+                snapshot.getLastIncludedTerm(), offset, false, rb);
+        offset += count;
+        return fu.await(this::afterShardBlockInstalled);
+    }
+
+    private FrameCallResult afterShardBlockInstalled(Void v) {
+        releaseReadBuffer();
+        // let the shard reader read next block
+        currentBlock.consumed.complete(null);
+        currentBlock = null;
+        return shardChannel.take(this::afterShardRead);
+    }
+
     private FrameCallResult read(Void v) {
         RaftUtil.checkStop(getFiberGroup());
         releaseReadBuffer();
@@ -218,4 +268,53 @@ class RecoverStateMachineFiberFrame extends FiberFrame<Pair<Integer, Long>> {
             rb = null;
         }
     }
+
+    private static class ShardBlock {
+        final RefBuffer rb;
+        final FiberFuture<Void> consumed;
+        final Throwable ex;
+
+        ShardBlock(RefBuffer rb, FiberFuture<Void> consumed, Throwable ex) {
+            this.rb = rb;
+            this.consumed = consumed;
+            this.ex = ex;
+        }
+    }
+
+    private class ShardReadFrame extends FiberFrame<Void> {
+        private final int shard;
+
+        ShardReadFrame(int shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        protected FrameCallResult handle(Throwable ex) {
+            shardChannel.offer(new ShardBlock(null, null, ex));
+            return Fiber.frameReturn();
+        }
+
+        @Override
+        public FrameCallResult execute(Void input) {
+            if (isGroupShouldStopPlain()) {
+                return Fiber.frameReturn();
+            }
+            return snapshot.readNext(shard).await(this::afterRead);
+        }
+
+        private FrameCallResult afterRead(RefBuffer rb) {
+            if (rb == null || rb.getBuffer() == null || !rb.getBuffer().hasRemaining()) {
+                if (rb != null) {
+                    rb.release();
+                }
+                // shard finished
+                shardChannel.offer(new ShardBlock(null, null, null));
+                return Fiber.frameReturn();
+            }
+            ShardBlock block = new ShardBlock(rb, getFiberGroup().newFuture(), null);
+            shardChannel.offer(block);
+            // at most one block of each shard is waiting for install
+            return block.consumed.await(this::execute);
+        }
+    }
 }
@@ -55,6 +55,8 @@ public class LinearTaskRunner {
 
     private final Timestamp ts;
 
+    private final LogBodyCompressor compressor;
+
     private FiberChannel<RaftTask> taskChannel;
 
     public LinearTaskRunner(GroupComponents gc) {
@@ -63,6 +65,7 @@ public class LinearTaskRunner {
         this.groupConfig = gc.getGroupConfig();
         this.raftStatus = gc.getRaftStatus();
         this.ts = raftStatus.getTs();
+        this.compressor = new LogBodyCompressor(groupConfig);
     }
 
     public void postInit() {
@@ -171,6 +174,8 @@ public class LinearTaskRunner {
 
                 item.setHeader(input.getHeader());
                 item.setBody(input.getBody());
+                // compress before put into tail cache, since the item is shared by LogAppender and replication
+                compressor.compress(item, groupConfig.getCodecFactory());
 
                 rt.setItem(item);
 
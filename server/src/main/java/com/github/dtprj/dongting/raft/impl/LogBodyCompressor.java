@@ -0,0 +1,158 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.impl;
+
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.Encoder;
+import com.github.dtprj.dongting.raft.RaftException;
+import com.github.dtprj.dongting.raft.server.LogItem;
+import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
+import com.github.dtprj.dongting.raft.sm.RaftCodecFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compress/decompress the biz body of log items. The compressed body is the 4 bytes raw size
+ * followed by deflate data, and marked by LogItem.FLAG_BODY_COMPRESSED.
+ * Not thread safe, should be used in raft thread only.
+ *
+ * @author huangli
+ */
+public class LogBodyCompressor {
+
+    private static final int RAW_SIZE_LEN = 4;
+    // the larger temp buffers used by compress() are not cached
+    private static final int MAX_CACHED_BUFFER_SIZE = 1024 * 1024;
+
+    private final int threshold;
+    private final int level;
+    private final EncodeContext encodeContext;
+
+    private Deflater deflater;
+    private Inflater inflater;
+
+    // reused by compress()
+    private byte[] rawBytes;
+    private byte[] outBytes;
+
+    public LogBodyCompressor(RaftGroupConfigEx groupConfig) {
+        this.threshold = groupConfig.getLogCompressThreshold();
+        this.level = groupConfig.getLogCompressLevel();
+        this.encodeContext = new EncodeContext(groupConfig.getHeapPool());
+    }
+
+    /**
+     * encode the body of the item and compress it if the encoded size reach the threshold, the compressed result
+     * is set to body buffer of the item, so LogAppender and replication can write it directly. If the body can't
+     * be compressed, the body buffer is not set and the body is encoded by LogAppender and replication as usual.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void compress(LogItem item, RaftCodecFactory codecFactory) {
+        if (threshold <= 0 || item.getType() != LogItem.TYPE_NORMAL || item.getBody() == null
+                || item.getBodyBuffer() != null) {
+            return;
+        }
+        Encoder encoder = codecFactory.createBodyEncoder(item.getBizType());
+        int rawSize = encoder.actualSize(item.getBody());
+        item.setActualBodySize(rawSize);
+        if (rawSize < threshold) {
+            return;
+        }
+        byte[] rawBytes = this.rawBytes;
+        if (rawBytes == null || rawBytes.length < rawSize) {
+            rawBytes = new byte[rawSize];
+            if (rawSize <= MAX_CACHED_BUFFER_SIZE) {
+                this.rawBytes = rawBytes;
+            }
+        }
+        ByteBuffer raw = ByteBuffer.wrap(rawBytes, 0, rawSize);
+        try {
+            if (!encoder.encode(encodeContext, raw, item.getBody()) || raw.hasRemaining()) {
+                throw new RaftException("encode body failed, index=" + item.getIndex());
+            }
+        } finally {
+            encodeContext.reset();
+        }
+
+        Deflater deflater = this.deflater;
+        if (deflater == null) {
+            deflater = new Deflater(level);
+            this.deflater = deflater;
+        } else {
+            deflater.reset();
+        }
+        deflater.setInput(rawBytes, 0, rawSize);
+        deflater.finish();
+        byte[] out = this.outBytes;
+        if (out == null || out.length < rawSize) {
+            out = new byte[rawSize];
+            if (rawSize <= MAX_CACHED_BUFFER_SIZE) {
+                this.outBytes = out;
+            }
+        }
+        // give up if the compressed body is not smaller than the raw body
+        int len = RAW_SIZE_LEN;
+        while (!deflater.finished() && len < rawSize) {
+            len += deflater.deflate(out, len, rawSize - len);
+        }
+        if (deflater.finished()) {
+            ByteBuffer compressed = ByteBuffer.wrap(Arrays.copyOf(out, len));
+            compressed.putInt(0, rawSize);
+            item.setBodyBuffer(compressed);
+            item.setActualBodySize(len);
+            item.setFlags(item.getFlags() | LogItem.FLAG_BODY_COMPRESSED);
+        }
+    }
+
+    public ByteBuffer decompress(ByteBuffer compressed) {
+        int rawSize = compressed.getInt(compressed.position());
+        if (rawSize < 0) {
+            throw new RaftException("bad raw size of compressed body: " + rawSize);
+        }
+        ByteBuffer in = compressed.duplicate();
+        in.position(in.position() + RAW_SIZE_LEN);
+
+        Inflater inflater = this.inflater;
+        if (inflater == null) {
+            inflater = new Inflater();
+            this.inflater = inflater;
+        } else {
+            inflater.reset();
+        }
+        inflater.setInput(in);
+        byte[] out = new byte[rawSize];
+        int len = 0;
+        try {
+            while (len < rawSize) {
+                int count = inflater.inflate(out, len, rawSize - len);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                len += count;
+            }
+        } catch (DataFormatException e) {
+            throw new RaftException("decompress log body failed", e);
+        }
+        if (len != rawSize) {
+            throw new RaftException("decompress log body failed, expect size " + rawSize + ", actual size " + len);
+        }
+        return ByteBuffer.wrap(out);
+    }
+}
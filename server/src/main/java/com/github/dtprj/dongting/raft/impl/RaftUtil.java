@@ -259,10 +259,9 @@ public class RaftUtil {
 
     public static ByteBuffer copy(ByteBuffer src) {
         ByteBuffer dest = ByteBuffer.allocate(src.remaining());
-        int pos = src.position();
-        dest.put(src);
+        // the src may be shared by other threads, don't change its position
+        dest.put(src.duplicate());
         dest.flip();
-        src.position(pos);
         return dest;
     }
 
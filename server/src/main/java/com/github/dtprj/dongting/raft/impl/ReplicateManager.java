@@ -39,11 +39,15 @@ import com.github.dtprj.dongting.raft.rpc.InstallSnapshotResp;
 import com.github.dtprj.dongting.raft.server.LogItem;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
 import com.github.dtprj.dongting.raft.server.RaftServerConfig;
+import com.github.dtprj.dongting.raft.sm.MappedSnapshotFile;
 import com.github.dtprj.dongting.raft.sm.Snapshot;
+import com.github.dtprj.dongting.raft.sm.SnapshotManager;
 import com.github.dtprj.dongting.raft.sm.StateMachine;
 import com.github.dtprj.dongting.raft.store.RaftLog;
 import com.github.dtprj.dongting.raft.store.StatusManager;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -64,6 +68,7 @@ public class ReplicateManager {
 
     RaftLog raftLog;
     StateMachine stateMachine;
+    SnapshotManager snapshotManager;
     private CommitManager commitManager;
     private StatusManager statusManager;
 
@@ -79,6 +84,7 @@ public class ReplicateManager {
     public void postInit() {
         this.raftLog = gc.getRaftLog();
         this.stateMachine = gc.getStateMachine();
+        this.snapshotManager = gc.getSnapshotManager();
         this.commitManager = gc.getCommitManager();
         this.statusManager = gc.getStatusManager();
     }
@@ -598,6 +604,7 @@ class InstallFrame extends AbstractRepFrame {
 
     private final RaftLog raftLog;
     private final StateMachine stateMachine;
+    private final SnapshotManager snapshotManager;
     private final RaftGroupConfigEx groupConfig;
     private final RaftServerConfig serverConfig;
     private final NioClient client;
@@ -607,7 +614,12 @@ class InstallFrame extends AbstractRepFrame {
     private boolean readFinish;
     private boolean installFinish;
 
+    // use saved snapshot file if exists, otherwise take snapshot from state machine
+    private MappedSnapshotFile savedSnapshot;
+    private MappedSnapshotFile.Reader savedSnapshotReader;
     private Snapshot snapshot;
+    private long lastIncludedIndex;
+    private int lastIncludedTerm;
     private long nextPosAfterInstallFinish;
     private long snapshotOffset;
 
@@ -619,6 +631,7 @@ class InstallFrame extends AbstractRepFrame {
     public InstallFrame(ReplicateManager replicateManager, RaftMember member) {
         super(replicateManager, member);
         this.stateMachine = replicateManager.stateMachine;
+        this.snapshotManager = replicateManager.snapshotManager;
         this.raftLog = replicateManager.raftLog;
         this.groupConfig = replicateManager.groupConfig;
         this.serverConfig = replicateManager.serverConfig;
@@ -639,38 +652,64 @@ class InstallFrame extends AbstractRepFrame {
             snapshot.close();
             snapshot = null;
         }
+        if (savedSnapshot != null) {
+            savedSnapshot.release();
+            savedSnapshot = null;
+            savedSnapshotReader = null;
+        }
         return Fiber.frameReturn();
     }
 
     @Override
     public FrameCallResult execute(Void input) throws Throwable {
+        if (snapshotManager != null) {
+            try {
+                // the next item of the snapshot is loaded in afterSnapshotOpen(), so it should not be truncated
+                savedSnapshot = snapshotManager.openSavedSnapshot(raftLog.getFirstIndex());
+            } catch (IOException e) {
+                log.warn("open saved snapshot fail, take snapshot from state machine. group={}", groupId, e);
+            }
+        }
+        if (savedSnapshot != null) {
+            savedSnapshotReader = savedSnapshot.newReader();
+            return afterSnapshotOpen(savedSnapshot.getLastIncludedIndex(), savedSnapshot.getLastIncludedTerm());
+        }
         return Fiber.call(stateMachine.takeSnapshot(raftStatus.getCurrentTerm()), this::afterTakeSnapshot);
     }
 
     private FrameCallResult afterTakeSnapshot(Snapshot snapshot) {
         if (shouldStopReplicate()) {
+            if (snapshot != null) {
+                snapshot.close();
+            }
             return Fiber.frameReturn();
         }
         if (snapshot == null) {
             log.error("open recent snapshot fail, return null");
             return Fiber.frameReturn();
         }
-        FiberFrame<Long> f = raftLog.loadNextItemPos(snapshot.getLastIncludedIndex());
-        return Fiber.call(f, result -> afterLoadNextItemPos(result, snapshot));
+        this.snapshot = snapshot;
+        return afterSnapshotOpen(snapshot.getLastIncludedIndex(), snapshot.getLastIncludedTerm());
+    }
+
+    private FrameCallResult afterSnapshotOpen(long lastIncludedIndex, int lastIncludedTerm) {
+        this.lastIncludedIndex = lastIncludedIndex;
+        this.lastIncludedTerm = lastIncludedTerm;
+        FiberFrame<Long> f = raftLog.loadNextItemPos(lastIncludedIndex);
+        return Fiber.call(f, this::afterLoadNextItemPos);
     }
 
-    private FrameCallResult afterLoadNextItemPos(Long nextPos, Snapshot snapshot) {
+    private FrameCallResult afterLoadNextItemPos(Long nextPos) throws IOException {
         if (shouldStopReplicate()) {
             return Fiber.frameReturn();
         }
-        log.info("begin install snapshot for member: nodeId={}, groupId={}",
-                member.getNode().getNodeId(), groupId);
-        this.snapshot = snapshot;
+        log.info("begin install snapshot for member: nodeId={}, groupId={}, useSavedSnapshot={}",
+                member.getNode().getNodeId(), groupId, savedSnapshot != null);
         this.nextPosAfterInstallFinish = nextPos;
         return installSnapshot();
     }
 
-    private FrameCallResult installSnapshot() {
+    private FrameCallResult installSnapshot() throws IOException {
         if (shouldStopReplicate()) {
             return Fiber.frameReturn();
         }
@@ -681,32 +720,45 @@ class InstallFrame extends AbstractRepFrame {
             // wait rpc finish
             return repCondition.await(1000, v -> installSnapshot());
         }
+        if (savedSnapshotReader != null) {
+            // only map the file region, the data is read by io thread when encoding the request
+            sendInstallSnapshotReq(member, null, savedSnapshotReader.next());
+            return installSnapshot();
+        }
         FiberFuture<RefBuffer> ff = snapshot.readNext();
-        // TODO optimise performance, fiber blocked here
         return ff.await(this::afterSnapshotRead);
     }
 
-    private FrameCallResult afterSnapshotRead(RefBuffer rb) {
+    private FrameCallResult afterSnapshotRead(RefBuffer rb) throws IOException {
         if (shouldStopReplicate()) {
-            rb.release();
+            if (rb != null) {
+                rb.release();
+            }
             return Fiber.frameReturn();
         }
         // rb release in InstallReqWriteFrame.doClean()
-        sendInstallSnapshotReq(member, rb);
+        sendInstallSnapshotReq(member, rb, null);
         return installSnapshot();
     }
 
-    private void sendInstallSnapshotReq(RaftMember member, RefBuffer data) {
+    private void sendInstallSnapshotReq(RaftMember member, RefBuffer data, ByteBuffer mappedData) {
         InstallSnapshotReq req = new InstallSnapshotReq();
         req.groupId = groupId;
         req.term = raftStatus.getCurrentTerm();
         req.leaderId = serverConfig.getNodeId();
-        req.lastIncludedIndex = snapshot.getLastIncludedIndex();
-        req.lastIncludedTerm = snapshot.getLastIncludedTerm();
+        req.lastIncludedIndex = lastIncludedIndex;
+        req.lastIncludedTerm = lastIncludedTerm;
         req.offset = snapshotOffset;
         req.nextWritePos = nextPosAfterInstallFinish;
         req.data = data;
-        req.done = data == null || data.getBuffer() == null || !data.getBuffer().hasRemaining();
+        req.mappedData = mappedData;
+        int bytes;
+        if (mappedData != null) {
+            bytes = mappedData.remaining();
+        } else {
+            bytes = data == null || data.getBuffer() == null ? 0 : data.getBuffer().remaining();
+        }
+        req.done = bytes == 0;
 
         if (req.done) {
             readFinish = true;
@@ -717,8 +769,8 @@ class InstallFrame extends AbstractRepFrame {
         DtTime timeout = new DtTime(serverConfig.getRpcTimeout(), TimeUnit.MILLISECONDS);
         CompletableFuture<ReadFrame<InstallSnapshotResp>> future = client.sendRequest(
                 member.getNode().getPeer(), wf, INSTALL_SNAPSHOT_RESP_DECODER, timeout);
-        int bytes = data == null ? 0 : data.getBuffer().remaining();
         snapshotOffset += bytes;
+        pendingBytes += bytes;
         future.whenCompleteAsync((rf, ex) -> replicateManager.afterInstallRpc(
                         rf, ex, this, req.offset, bytes, req.done, req.lastIncludedIndex),
                 getFiberGroup().getExecutor());
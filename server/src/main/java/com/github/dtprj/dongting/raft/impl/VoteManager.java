@@ -63,7 +63,7 @@ public class VoteManager {
     private HashSet<Integer> votes;
     private int currentVoteId;
 
-    private static final Decoder<VoteResp> RESP_DECODER = new PbNoCopyDecoder<>(c -> new VoteResp.Callback());
+    private static final Decoder<VoteResp> RESP_DECODER = new PbNoCopyDecoder<>(VoteResp.Callback::new);
 
     public VoteManager(NioClient client, GroupComponents gc) {
         this.gc = gc;
@@ -115,7 +115,7 @@ public class AppendReqCallback extends PbCallback<AppendReqCallback> {
                     }
                 }
                 // since AppendReqCallback not use context (to save status), we can use it in sub parser
-                callback = new LogItemCallback(context, raftCodecFactory);
+                callback = new LogItemCallback(context);
                 logItemParser = parser.createOrGetNestedParser(callback, len);
             } else {
                 logItemParser = parser.getNestedParser();
@@ -173,25 +173,20 @@ public class AppendReqCallback extends PbCallback<AppendReqCallback> {
     //  fixed64 timestamp = 6;
     //  bytes header = 7;
     //  bytes body = 8;
+    //  uint32 flags = 9;
     //}
     static class LogItemCallback extends PbCallback<Object> {
         private final LogItem item = new LogItem(null);
         private final DecodeContext context;
-        private final RaftCodecFactory codecFactory;
-        private Decoder<?> currentDecoder;
 
-        public LogItemCallback(DecodeContext context, RaftCodecFactory codecFactory) {
+        public LogItemCallback(DecodeContext context) {
             this.context = context;
-            this.codecFactory = codecFactory;
         }
 
         @Override
         public void end(boolean success) {
             if (!success) {
                 item.release();
-                if (currentDecoder != null) {
-                    currentDecoder.finish(context);
-                }
             }
             context.reset();
             super.end(success);
@@ -212,6 +207,9 @@ public class AppendReqCallback extends PbCallback<AppendReqCallback> {
                 case 5:
                     item.setPrevLogTerm((int) value);
                     break;
+                case 9:
+                    item.setFlags((int) value);
+                    break;
             }
             return true;
         }
@@ -231,42 +229,26 @@ public class AppendReqCallback extends PbCallback<AppendReqCallback> {
 
         @Override
         public boolean readBytes(int index, ByteBuffer buf, int len, int currentPos) {
+            if (index != 7 && index != 8) {
+                return true;
+            }
+            // keep the raw bytes, LogAppender write them to log file unchanged, and ApplyManager decode
+            // them (with the decoders of the state machine) when apply
             boolean begin = currentPos == 0;
             boolean end = buf.remaining() >= len - currentPos;
-            if (index == 7) {
-                if (begin) {
-                    item.setActualHeaderSize(len);
-                }
-                Object result;
-                if (item.getType() == LogItem.TYPE_NORMAL) {
-                    currentDecoder = codecFactory.createHeaderDecoder(item.getBizType());
-                    result = currentDecoder.decode(context, buf, len, currentPos);
-                } else {
-                    result = Decoder.decodeToByteBuffer(buf, len, currentPos, (ByteBuffer) context.getStatus());
-                    context.setStatus(result);
-                }
-                if (end) {
-                    currentDecoder = null;
+            ByteBuffer status = begin ? null : (ByteBuffer) context.getStatus();
+            ByteBuffer result = Decoder.decodeToByteBuffer(buf, len, currentPos, status);
+            if (end) {
+                context.setStatus(null);
+                if (index == 7) {
                     item.setActualHeaderSize(len);
-                    item.setHeader(result);
-                }
-            } else if (index == 8) {
-                if (begin) {
-                    item.setActualBodySize(len);
-                }
-                Object result;
-                if (item.getType() == LogItem.TYPE_NORMAL) {
-                    currentDecoder = codecFactory.createBodyDecoder(item.getBizType());
-                    result = currentDecoder.decode(context, buf, len, currentPos);
+                    item.setHeaderBuffer(result);
                 } else {
-                    result = Decoder.decodeToByteBuffer(buf, len, currentPos, (ByteBuffer) context.getStatus());
-                    context.setStatus(result);
-                }
-                if (end) {
-                    currentDecoder = null;
                     item.setActualBodySize(len);
-                    item.setBody(result);
+                    item.setBodyBuffer(result);
                 }
+            } else {
+                context.setStatus(result);
             }
             return true;
         }
@@ -49,6 +49,7 @@ import java.util.List;
 //  fixed64 timestamp = 6;
 //  bytes header = 7;
 //  bytes body = 8;
+//  uint32 flags = 9;
 //}
 public class AppendReqWriteFrame extends WriteFrame {
 
@@ -109,7 +110,8 @@ public class AppendReqWriteFrame extends WriteFrame {
                 + PbUtil.accurateUnsignedIntSize(3, item.getTerm())
                 + PbUtil.accurateFix64Size(4, item.getIndex())
                 + PbUtil.accurateUnsignedIntSize(5, item.getPrevLogTerm())
-                + PbUtil.accurateFix64Size(6, item.getTimestamp());
+                + PbUtil.accurateFix64Size(6, item.getTimestamp())
+                + PbUtil.accurateUnsignedIntSize(9, item.getFlags());
         itemSize = itemHeaderSize
                 + PbUtil.accurateLengthDelimitedSize(7, item.getActualHeaderSize())
                 + PbUtil.accurateLengthDelimitedSize(8, item.getActualBodySize());
@@ -152,6 +154,8 @@ public class AppendReqWriteFrame extends WriteFrame {
                     PbUtil.writeFix64(buf, 4, currentItem.getIndex());
                     PbUtil.writeUnsignedInt32(buf, 5, currentItem.getPrevLogTerm());
                     PbUtil.writeFix64(buf, 6, currentItem.getTimestamp());
+                    // write flags before body, so the receiver knows the body is compressed
+                    PbUtil.writeUnsignedInt32(buf, 9, currentItem.getFlags());
                     writeStatus = WRITE_ITEM_BIZ_HEADER_LEN;
                     break;
                 case WRITE_ITEM_BIZ_HEADER_LEN:
@@ -174,7 +178,7 @@ public class AppendReqWriteFrame extends WriteFrame {
                     writeStatus = WRITE_ITEM_BIZ_BODY_LEN;
                     break;
                 case WRITE_ITEM_BIZ_BODY_LEN:
-                    if (currentItem.getActualHeaderSize() <= 0) {
+                    if (currentItem.getActualBodySize() <= 0) {
                         currentItem = null;
                         encodeLogIndex++;
                         writeStatus = WRITE_ITEM_HEADER;
@@ -20,6 +20,7 @@ import com.github.dtprj.dongting.buf.RefBufferFactory;
 import com.github.dtprj.dongting.codec.EncodeContext;
 import com.github.dtprj.dongting.codec.PbCallback;
 import com.github.dtprj.dongting.codec.PbUtil;
+import com.github.dtprj.dongting.net.ByteBufferWriteFrame;
 import com.github.dtprj.dongting.net.WriteFrame;
 
 import java.nio.ByteBuffer;
@@ -44,6 +45,8 @@ public class InstallSnapshotReq {
     public int lastIncludedTerm;
     public long offset;
     public RefBuffer data;
+    // used by sender only, a mapped region of snapshot file, use it instead of data if not null
+    public ByteBuffer mappedData;
     public boolean done;
     public long nextWritePos;
 
@@ -67,7 +70,7 @@ public class InstallSnapshotReq {
                 case 3:
                     result.leaderId = (int) value;
                     break;
-                case 4:
+                case 5:
                     result.lastIncludedTerm = (int) value;
                     break;
                 case 7:
@@ -117,9 +120,11 @@ public class InstallSnapshotReq {
     public static class InstallReqWriteFrame extends WriteFrame {
 
         private final InstallSnapshotReq req;
+        private final ByteBuffer data;
         private final int headerSize;
         private final int bufferSize;
         private boolean headerWritten = false;
+        private int markedPosition = -1;
 
         public InstallReqWriteFrame(InstallSnapshotReq req) {
             this.req = req;
@@ -131,8 +136,9 @@ public class InstallSnapshotReq {
                     + PbUtil.accurateFix64Size(6, req.offset)
                     + PbUtil.accurateUnsignedIntSize(7, req.done ? 1 : 0)
                     + PbUtil.accurateFix64Size(8, req.nextWritePos);
-            if (req.data != null && req.data.getBuffer().hasRemaining()) {
-                this.bufferSize = req.data.getBuffer().remaining();
+            this.data = req.mappedData != null ? req.mappedData : req.data == null ? null : req.data.getBuffer();
+            if (data != null && data.hasRemaining()) {
+                this.bufferSize = data.remaining();
                 x += PbUtil.accurateLengthDelimitedSize(15, bufferSize);
             } else {
                 this.bufferSize = 0;
@@ -168,8 +174,9 @@ public class InstallSnapshotReq {
             if (bufferSize == 0) {
                 return true;
             }
-            buf.put(req.data.getBuffer());
-            return !req.data.getBuffer().hasRemaining();
+            // not change the position of data
+            markedPosition = ByteBufferWriteFrame.copy(data, buf, markedPosition);
+            return markedPosition == data.limit();
         }
 
         @Override
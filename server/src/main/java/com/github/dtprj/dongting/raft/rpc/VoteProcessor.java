@@ -37,7 +37,7 @@ import com.github.dtprj.dongting.raft.store.StatusManager;
 public class VoteProcessor extends RaftSequenceProcessor<VoteReq> {
     private static final DtLog log = DtLogs.getLogger(VoteProcessor.class);
 
-    private static final PbNoCopyDecoder<VoteReq> decoder = new PbNoCopyDecoder<>(c -> new VoteReq.Callback());
+    private static final PbNoCopyDecoder<VoteReq> decoder = new PbNoCopyDecoder<>(VoteReq.Callback::new);
 
     public VoteProcessor(RaftServer raftServer) {
         super(raftServer);
@@ -32,6 +32,9 @@ public class LogItem extends RefCount {
     public static final int TYPE_DROP_CONFIG_CHANGE = 3;
     public static final int TYPE_COMMIT_CONFIG_CHANGE = 4;
 
+    // flags are persisted in high 4 bits of the type byte in log file
+    public static final int FLAG_BODY_COMPRESSED = 1;
+
     private final ByteBufferPool heapPool;
 
     private int type;
@@ -40,6 +43,7 @@ public class LogItem extends RefCount {
     private long index;
     private int prevLogTerm;
     private long timestamp;
+    private int flags;
 
     private ByteBuffer bodyBuffer;
     private Object body;
@@ -157,6 +161,18 @@ public class LogItem extends RefCount {
         this.timestamp = timestamp;
     }
 
+    public int getFlags() {
+        return flags;
+    }
+
+    public void setFlags(int flags) {
+        this.flags = flags;
+    }
+
+    public boolean isBodyCompressed() {
+        return (flags & FLAG_BODY_COMPRESSED) != 0;
+    }
+
     public ByteBuffer getBodyBuffer() {
         return bodyBuffer;
     }
@@ -181,6 +197,13 @@ public class LogItem extends RefCount {
         this.actualHeaderSize = actualHeaderSize;
     }
 
+    /**
+     * return true if the header/body buffers are borrowed from heap pool and released when the item cleaned.
+     */
+    public boolean isBufferPooled() {
+        return heapPool != null;
+    }
+
     public ByteBuffer getHeaderBuffer() {
         return headerBuffer;
     }
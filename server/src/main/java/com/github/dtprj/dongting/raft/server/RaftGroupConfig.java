@@ -35,6 +35,16 @@ public class RaftGroupConfig {
     private int maxPendingWrites = 10000;
     private long maxPendingWriteBytes = 256 * 1024 * 1024;
 
+    // 0 means not compress log body
+    private int logCompressThreshold = 0;
+    private int logCompressLevel = 1;
+    // compute the crc32c of the log write buffers in io threads instead of the raft thread
+    private boolean logCrcInIoThread = false;
+
+    // max delta snapshots chained to a full snapshot, 0 means always save full snapshot
+    private int maxDeltaSnapshots = 0;
+    // the snapshot is split into shards, which are saved and loaded concurrently
+    private int snapshotShardCount = 1;
 
     public RaftGroupConfig(int groupId, String nodeIdOfMembers, String nodeIdOfObservers) {
         this.groupId = groupId;
@@ -133,4 +143,44 @@ public class RaftGroupConfig {
     public void setStaticConfig(boolean staticConfig) {
         this.staticConfig = staticConfig;
     }
+
+    public int getLogCompressThreshold() {
+        return logCompressThreshold;
+    }
+
+    public void setLogCompressThreshold(int logCompressThreshold) {
+        this.logCompressThreshold = logCompressThreshold;
+    }
+
+    public int getLogCompressLevel() {
+        return logCompressLevel;
+    }
+
+    public void setLogCompressLevel(int logCompressLevel) {
+        this.logCompressLevel = logCompressLevel;
+    }
+
+    public boolean isLogCrcInIoThread() {
+        return logCrcInIoThread;
+    }
+
+    public void setLogCrcInIoThread(boolean logCrcInIoThread) {
+        this.logCrcInIoThread = logCrcInIoThread;
+    }
+
+    public int getMaxDeltaSnapshots() {
+        return maxDeltaSnapshots;
+    }
+
+    public void setMaxDeltaSnapshots(int maxDeltaSnapshots) {
+        this.maxDeltaSnapshots = maxDeltaSnapshots;
+    }
+
+    public int getSnapshotShardCount() {
+        return snapshotShardCount;
+    }
+
+    public void setSnapshotShardCount(int snapshotShardCount) {
+        this.snapshotShardCount = snapshotShardCount;
+    }
 }
@@ -24,6 +24,7 @@ import com.github.dtprj.dongting.fiber.Dispatcher;
 import com.github.dtprj.dongting.fiber.Fiber;
 import com.github.dtprj.dongting.fiber.FiberChannel;
 import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FiberGroup;
 import com.github.dtprj.dongting.fiber.FrameCallResult;
 import com.github.dtprj.dongting.log.DtLog;
@@ -157,6 +158,7 @@ public class RaftServer extends AbstractLifeCircle {
             serviceServerConfig.setPort(serverConfig.getServicePort());
             serviceServerConfig.setName("RaftServiceServer");
             serviceServerConfig.setBizThreads(0);
+            serviceServerConfig.setStrCacheSize(serverConfig.getServiceKeyCacheSize());
             // use multi io threads
             serviceNioServer = new NioServer(serviceServerConfig);
             addRaftGroupProcessor(serviceNioServer, Commands.RAFT_QUERY_LEADER, new QueryLeaderProcessor(this));
@@ -497,11 +499,22 @@ public class RaftServer extends AbstractLifeCircle {
             @Override
             public FrameCallResult execute(Void input) {
                 GroupComponents gc = g.getGroupComponents();
-                gc.getRaftLog().close();
+                FiberFuture<Void> f = gc.getRaftLog().close();
                 gc.getApplyManager().close();
-                gc.getStatusManager().close();
+                // raft log may update status file when close, so close status manager after it
+                return f.await(this::afterRaftLogClose);
+            }
+
+            private FrameCallResult afterRaftLogClose(Void v) {
+                g.getGroupComponents().getStatusManager().close();
                 return Fiber.frameReturn();
             }
+
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                log.error("close raft log failed, groupId={}", g.getGroupId(), ex);
+                return afterRaftLogClose(null);
+            }
         });
 
         // the group shutdown is not finished, but it's ok to call afterGroupShutdown
@@ -41,6 +41,9 @@ public class RaftServerConfig {
 
     private BiFunction<Timestamp, Boolean, ByteBufferPool> poolFactory = TwoLevelPool.getDefaultFactory();
 
+    // the size of the key cache of each io thread of the service port, 0 means disabled
+    private int serviceKeyCacheSize = 0;
+
     public String getServers() {
         return servers;
     }
@@ -121,6 +124,14 @@ public class RaftServerConfig {
         this.poolFactory = poolFactory;
     }
 
+    public int getServiceKeyCacheSize() {
+        return serviceKeyCacheSize;
+    }
+
+    public void setServiceKeyCacheSize(int serviceKeyCacheSize) {
+        this.serviceKeyCacheSize = serviceKeyCacheSize;
+    }
+
     public int getIoThreads() {
         return ioThreads;
     }
@@ -35,13 +35,17 @@ import com.github.dtprj.dongting.raft.store.ForceFrame;
 import com.github.dtprj.dongting.raft.store.StatusFile;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousFileChannel;
 import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.zip.CRC32C;
@@ -58,6 +62,10 @@ public class DefaultSnapshotManager implements SnapshotManager {
 
     private static final String KEY_LAST_INDEX = "lastIncludedIndex";
     private static final String KEY_LAST_TERM = "lastIncludedTerm";
+    // the base name of previous snapshot in the chain, only exists in delta snapshot
+    private static final String KEY_BASE_SNAPSHOT = "baseSnapshot";
+    // the count of data files, each shard has its own data file, absent means 1
+    private static final String KEY_SHARD_COUNT = "shardCount";
 
     private final RaftGroupConfigEx groupConfig;
     private final ExecutorService ioExecutor;
@@ -65,8 +73,10 @@ public class DefaultSnapshotManager implements SnapshotManager {
 
     private File snapshotDir;
 
-    private File lastIdxFile;
-    private File lastDataFile;
+    // the first is a full snapshot, others are delta snapshots based on previous one
+    private ArrayList<SavedSnapshot> savedChain = new ArrayList<>();
+
+    private MappedSnapshotFile savedSnapshot;
 
     private SnapshotSaveTask currentSaveTask;
 
@@ -81,15 +91,64 @@ public class DefaultSnapshotManager implements SnapshotManager {
         return new InitFrame();
     }
 
+    private static class SavedSnapshot {
+        final String baseName;
+        final File idxFile;
+        // one data file for each shard
+        final List<File> dataFiles;
+        final long lastIncludedIndex;
+        final int lastIncludedTerm;
+
+        SavedSnapshot(String baseName, File idxFile, List<File> dataFiles, long lastIncludedIndex, int lastIncludedTerm) {
+            this.baseName = baseName;
+            this.idxFile = idxFile;
+            this.dataFiles = dataFiles;
+            this.lastIncludedIndex = lastIncludedIndex;
+            this.lastIncludedTerm = lastIncludedTerm;
+        }
+    }
+
+    private static ArrayList<File> dataFiles(List<SavedSnapshot> chain) {
+        ArrayList<File> list = new ArrayList<>();
+        for (SavedSnapshot s : chain) {
+            list.addAll(s.dataFiles);
+        }
+        return list;
+    }
+
+    private static List<List<File>> shardFiles(List<SavedSnapshot> chain) {
+        int shardCount = chain.get(0).dataFiles.size();
+        ArrayList<List<File>> list = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            ArrayList<File> files = new ArrayList<>(chain.size());
+            for (SavedSnapshot s : chain) {
+                files.add(s.dataFiles.get(i));
+            }
+            list.add(files);
+        }
+        return list;
+    }
+
+    private File dataFile(String baseName, int shardCount, int shard) {
+        if (shardCount == 1) {
+            return new File(snapshotDir, baseName + DATA_SUFFIX);
+        } else {
+            return new File(snapshotDir, baseName + "_" + shard + DATA_SUFFIX);
+        }
+    }
+
     private class InitFrame extends FiberFrame<Snapshot> {
 
-        private StatusFile snapshotIdxFile;
+        private File[] files;
+        private final ArrayList<File> candidates = new ArrayList<>();
+        private int candidateIndex;
+        private final ArrayList<SavedSnapshot> chain = new ArrayList<>();
 
         @Override
         public FrameCallResult execute(Void input) {
             File dataDir = FileUtil.ensureDir(groupConfig.getDataDir());
             snapshotDir = FileUtil.ensureDir(dataDir, "snapshot");
-            File[] files = snapshotDir.listFiles(f -> f.isFile() &&
+            files = snapshotDir.listFiles(f -> f.isFile() &&
                     (f.getName().endsWith(DATA_SUFFIX) || f.getName().endsWith(IDX_SUFFIX)));
             if (files == null || files.length == 0) {
                 setResult(null);
@@ -98,50 +157,105 @@ public class DefaultSnapshotManager implements SnapshotManager {
             Arrays.sort(files);
             for (int i = files.length - 1; i >= 0; i--) {
                 File f = files[i];
-                if (!f.getName().endsWith(IDX_SUFFIX)) {
-                    continue;
-                }
-                if (f.length() == 0) {
-                    continue;
-                }
-                String baseName = FileUtil.baseName(f);
-                File dataFile = new File(groupConfig.getDataDir(), baseName + DATA_SUFFIX);
-                if (dataFile.exists()) {
-                    lastIdxFile = f;
-                    lastDataFile = dataFile;
-                    break;
-                } else {
-                    log.error("missing data file: {}", f.getPath());
+                if (f.getName().endsWith(IDX_SUFFIX) && f.length() != 0) {
+                    candidates.add(f);
                 }
             }
-            if (lastIdxFile == null) {
+            return loadChain();
+        }
+
+        private FrameCallResult loadChain() {
+            if (candidateIndex >= candidates.size()) {
                 log.info("no saved snapshot found");
                 setResult(null);
                 return Fiber.frameReturn();
-            } else {
-                log.info("use snapshot: {}", lastDataFile.getPath());
             }
+            chain.clear();
+            return readIdxFile(FileUtil.baseName(candidates.get(candidateIndex++)));
+        }
 
+        private FrameCallResult readIdxFile(String baseName) {
+            File idxFile = new File(snapshotDir, baseName + IDX_SUFFIX);
+            if (!idxFile.exists() || idxFile.length() == 0) {
+                log.error("missing snapshot idx file: {}", baseName);
+                return loadChain();
+            }
+            StatusFile sf = new StatusFile(idxFile, ioExecutor, getFiberGroup());
+            return Fiber.call(sf.init(), v -> afterIdxFileRead(sf, baseName, idxFile));
+        }
+
+        private FrameCallResult afterIdxFileRead(StatusFile sf, String baseName, File idxFile) throws Exception {
+            Properties props = sf.getProperties();
+            DtUtil.close(sf);
+            long lastIndex = Long.parseLong(props.getProperty(KEY_LAST_INDEX));
+            int lastTerm = Integer.parseInt(props.getProperty(KEY_LAST_TERM));
+            int shardCount = Integer.parseInt(props.getProperty(KEY_SHARD_COUNT, "1"));
+            ArrayList<File> dataFiles = new ArrayList<>(shardCount);
+            for (int i = 0; i < shardCount; i++) {
+                File f = dataFile(baseName, shardCount, i);
+                if (!f.exists()) {
+                    log.error("missing snapshot data file: {}", f.getPath());
+                    return loadChain();
+                }
+                dataFiles.add(f);
+            }
+            if (!chain.isEmpty() && chain.get(0).dataFiles.size() != shardCount) {
+                log.error("shard count of delta snapshot not match: {}", chain.get(0).baseName);
+                return loadChain();
+            }
+            chain.add(0, new SavedSnapshot(baseName, idxFile, dataFiles, lastIndex, lastTerm));
+            String base = props.getProperty(KEY_BASE_SNAPSHOT);
+            if (base != null) {
+                return readIdxFile(base);
+            }
+
+            // reach the full snapshot
+            savedChain = new ArrayList<>(chain);
+            HashSet<File> used = new HashSet<>();
+            for (SavedSnapshot s : savedChain) {
+                used.add(s.idxFile);
+                used.addAll(s.dataFiles);
+            }
             for (File f : files) {
-                if (f != lastIdxFile && f != lastDataFile) {
+                if (!used.contains(f)) {
                     deleteInIoExecutor(f);
                 }
             }
+            SavedSnapshot last = savedChain.get(savedChain.size() - 1);
+            log.info("use snapshot: {}, delta count: {}, shard count: {}", last.idxFile.getPath(),
+                    savedChain.size() - 1, last.dataFiles.size());
 
-            this.snapshotIdxFile = new StatusFile(lastDataFile, ioExecutor, getFiberGroup());
-
-            return Fiber.call(snapshotIdxFile.init(), this::afterStatusFileInit);
+            FileSnapshot s = new FileSnapshot(groupConfig, last.lastIncludedIndex,
+                    last.lastIncludedTerm, shardFiles(savedChain), ioExecutor);
+            setResult(s);
+            return Fiber.frameReturn();
         }
+    }
 
-        private FrameCallResult afterStatusFileInit(Void unused) throws Exception {
-            String lastIndex = snapshotIdxFile.getProperties().getProperty(KEY_LAST_INDEX);
-            String lastTerm = snapshotIdxFile.getProperties().getProperty(KEY_LAST_TERM);
+    @Override
+    public MappedSnapshotFile openSavedSnapshot(long minIndex) throws IOException {
+        if (savedChain.isEmpty()) {
+            return null;
+        }
+        SavedSnapshot last = savedChain.get(savedChain.size() - 1);
+        if (last.lastIncludedIndex < minIndex) {
+            log.info("saved snapshot is stale, lastIncludedIndex={}, minIndex={}", last.lastIncludedIndex, minIndex);
+            resetSavedSnapshot();
+            return null;
+        }
+        if (savedSnapshot == null) {
+            savedSnapshot = new MappedSnapshotFile(last.lastIncludedIndex, last.lastIncludedTerm, dataFiles(savedChain));
+            log.info("open saved snapshot for install: {}", last.idxFile.getPath());
+        }
+        savedSnapshot.retain();
+        return savedSnapshot;
+    }
 
-            FileSnapshot s = new FileSnapshot(groupConfig, Long.parseLong(lastIndex),
-                    Integer.parseInt(lastTerm), lastDataFile, ioExecutor);
-            log.info("open snapshot file {}", lastDataFile);
-            setResult(s);
-            return Fiber.frameReturn();
+    private void resetSavedSnapshot() {
+        if (savedSnapshot != null) {
+            // the install tasks using it hold their own reference
+            savedSnapshot.release();
+            savedSnapshot = null;
         }
     }
 
@@ -173,18 +287,16 @@ public class DefaultSnapshotManager implements SnapshotManager {
         private final CompletableFuture<Long> result;
         private final long startTime = System.currentTimeMillis();
         private final CompletableFuture<Long> future = new CompletableFuture<>();
-        private final CRC32C crc32c = new CRC32C();
-        private final ByteBuffer headerBuffer = ByteBuffer.allocate(8);
 
-        private DtFile newDataFile;
+        private ShardWriter[] writers;
 
         private File newIdxFile;
         private StatusFile statusFile;
 
         private Snapshot readSnapshot;
-        private RefBuffer readBuffer;
-
-        private long currentWritePos;
+        // not null if this is a delta snapshot
+        private SavedSnapshot baseSnapshot;
+        private String baseName;
 
         public SnapshotSaveTask(StateMachine stateMachine, CompletableFuture<Long> result) {
             this.stateMachine = stateMachine;
@@ -193,6 +305,7 @@ public class DefaultSnapshotManager implements SnapshotManager {
 
         @Override
         protected FrameCallResult handle(Throwable ex) {
+            future.completeExceptionally(ex);
             result.completeExceptionally(ex);
             return Fiber.frameReturn();
         }
@@ -200,42 +313,67 @@ public class DefaultSnapshotManager implements SnapshotManager {
         @Override
         protected FrameCallResult doFinally() {
             currentSaveTask = null;
-            releaseReadBuffer();
-            if (newDataFile != null && newDataFile.getChannel() != null) {
-                DtUtil.close(newDataFile.getChannel());
-            }
             DtUtil.close(statusFile);
-            if (readSnapshot != null) {
-                readSnapshot.close();
-            }
             if (future.isCompletedExceptionally() || future.isCancelled()) {
-                if (newDataFile != null) {
-                    deleteInIoExecutor(newDataFile.getFile());
+                if (writers != null) {
+                    for (ShardWriter w : writers) {
+                        deleteInIoExecutor(w.dataFile);
+                    }
                 }
                 deleteInIoExecutor(newIdxFile);
             }
+            if (readSnapshot != null) {
+                // the writers are finished or will fail when read the closed snapshot
+                readSnapshot.close();
+            }
             return Fiber.frameReturn();
         }
 
         @Override
         public FrameCallResult execute(Void input) {
+            int maxDelta = groupConfig.getMaxDeltaSnapshots();
+            if (maxDelta > 0 && !savedChain.isEmpty() && savedChain.size() <= maxDelta) {
+                SavedSnapshot last = savedChain.get(savedChain.size() - 1);
+                FiberFrame<Snapshot> f = stateMachine.takeDeltaSnapshot(raftStatus.getCurrentTerm(),
+                        last.lastIncludedIndex);
+                if (f != null) {
+                    baseSnapshot = last;
+                    return Fiber.call(f, this::afterTakeSnapshot);
+                }
+            }
+            return takeFullSnapshot();
+        }
+
+        private FrameCallResult takeFullSnapshot() {
+            // compact the chain into a full snapshot
+            baseSnapshot = null;
             return Fiber.call(stateMachine.takeSnapshot(raftStatus.getCurrentTerm()), this::afterTakeSnapshot);
         }
 
         private FrameCallResult afterTakeSnapshot(Snapshot snapshot) throws Exception {
+            int shardCount = snapshot.getShardCount();
+            if (baseSnapshot != null && baseSnapshot.dataFiles.size() != shardCount) {
+                log.info("shard count changed, take full snapshot");
+                snapshot.close();
+                return takeFullSnapshot();
+            }
             readSnapshot = snapshot;
             SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss");
-            String baseName = sdf.format(new Date()) + "_" + readSnapshot.getId();
-            File dataFile = new File(snapshotDir, baseName + DATA_SUFFIX);
+            this.baseName = sdf.format(new Date()) + "_" + readSnapshot.getId();
             this.newIdxFile = new File(snapshotDir, baseName + IDX_SUFFIX);
 
-            HashSet<StandardOpenOption> options = new HashSet<>();
-            options.add(StandardOpenOption.CREATE_NEW);
-            options.add(StandardOpenOption.WRITE);
-            AsynchronousFileChannel channel = AsynchronousFileChannel.open(dataFile.toPath(), options, getFiberGroup().getExecutor());
-            this.newDataFile = new DtFile(dataFile, channel, groupConfig.getFiberGroup());
-
-            return read();
+            writers = new ShardWriter[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                writers[i] = new ShardWriter(i, dataFile(baseName, shardCount, i));
+            }
+            FiberFuture<?>[] futures = new FiberFuture[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                futures[i] = writers[i].done;
+                // the shards are written concurrently
+                Fiber f = new Fiber("saveSnapshotShard-" + i, getFiberGroup(), writers[i]);
+                f.start();
+            }
+            return FiberFuture.allOf(futures).await(this::writeIdxFile);
         }
 
         private boolean checkCancel() {
@@ -243,6 +381,9 @@ public class DefaultSnapshotManager implements SnapshotManager {
                 log.info("snapshot save task is cancelled");
                 return true;
             }
+            if (future.isCompletedExceptionally()) {
+                return true;
+            }
             if (isGroupShouldStopPlain()) {
                 log.info("snapshot save task is cancelled");
                 future.cancel(false);
@@ -251,100 +392,173 @@ public class DefaultSnapshotManager implements SnapshotManager {
             return false;
         }
 
-        private FrameCallResult read() {
+        private FrameCallResult writeIdxFile(Void v) {
             if (checkCancel()) {
                 return Fiber.frameReturn();
             }
-            FiberFuture<RefBuffer> fu = readSnapshot.readNext();
-            return fu.await(this::whenReadFinish);
+            statusFile = new StatusFile(newIdxFile, ioExecutor, getFiberGroup());
+            return Fiber.call(statusFile.init(), this::updateIdxFile);
         }
 
-        private FrameCallResult write(ByteBuffer buf, FrameCall<Void> resumePoint) {
-            AsyncIoTask writeTask = new AsyncIoTask(getFiberGroup(), newDataFile);
-            long newWritePos = currentWritePos + buf.remaining();
-            FiberFuture<Void> writeFuture = writeTask.write(buf, currentWritePos);
-            currentWritePos = newWritePos;
-            return writeFuture.await(resumePoint);
+        private FrameCallResult updateIdxFile(Void v) {
+            statusFile.getProperties().setProperty(KEY_LAST_INDEX, String.valueOf(readSnapshot.getLastIncludedIndex()));
+            statusFile.getProperties().setProperty(KEY_LAST_TERM, String.valueOf(readSnapshot.getLastIncludedTerm()));
+            statusFile.getProperties().setProperty(KEY_SHARD_COUNT, String.valueOf(writers.length));
+            if (baseSnapshot != null) {
+                statusFile.getProperties().setProperty(KEY_BASE_SNAPSHOT, baseSnapshot.baseName);
+            }
+
+            // just for human reading
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS");
+            statusFile.getProperties().setProperty("saveStartTime", sdf.format(new Date(startTime)));
+            statusFile.getProperties().setProperty("saveEndTime", sdf.format(new Date()));
+
+            return statusFile.update(true).await(this::finish2);
         }
 
-        private FrameCallResult whenReadFinish(RefBuffer rb) {
-            this.readBuffer = rb;
-            if (checkCancel()) {
-                return Fiber.frameReturn();
+        private FrameCallResult finish2(Void unused) {
+            log.info("snapshot status file write success: {}", newIdxFile.getPath());
+
+            ArrayList<File> dataFiles = new ArrayList<>(writers.length);
+            for (ShardWriter w : writers) {
+                dataFiles.add(w.dataFile);
             }
-            if (rb != null && rb.getBuffer() != null && rb.getBuffer().hasRemaining()) {
-                ByteBuffer buffer = rb.getBuffer();
-                crc32c.reset();
-                RaftUtil.updateCrc(crc32c, buffer, buffer.position(), buffer.remaining());
-                headerBuffer.clear();
-                headerBuffer.putInt(buffer.remaining());
-                headerBuffer.putInt((int) crc32c.getValue());
-                return write(headerBuffer, this::whenHeaderWriteFinish);
+            SavedSnapshot newSnapshot = new SavedSnapshot(baseName, newIdxFile, dataFiles,
+                    readSnapshot.getLastIncludedIndex(), readSnapshot.getLastIncludedTerm());
+            if (baseSnapshot != null) {
+                savedChain.add(newSnapshot);
             } else {
-                return finishDataFile();
+                ArrayList<SavedSnapshot> oldChain = savedChain;
+                savedChain = new ArrayList<>();
+                savedChain.add(newSnapshot);
+                for (SavedSnapshot s : oldChain) {
+                    deleteInIoExecutor(s.idxFile);
+                    for (File f : s.dataFiles) {
+                        deleteInIoExecutor(f);
+                    }
+                }
             }
+            resetSavedSnapshot();
+            stateMachine.afterSnapshotSaved(newSnapshot.lastIncludedIndex);
+
+            future.complete(newSnapshot.lastIncludedIndex);
+            result.complete(newSnapshot.lastIncludedIndex);
+            return Fiber.frameReturn();
         }
 
-        private FrameCallResult whenHeaderWriteFinish(Void unused) {
-            if (checkCancel()) {
-                return Fiber.frameReturn();
+        private class ShardWriter extends FiberFrame<Void> {
+            private final int shard;
+            private final File dataFile;
+            private final FiberFuture<Void> done;
+            private final CRC32C crc32c = new CRC32C();
+            private final ByteBuffer headerBuffer = ByteBuffer.allocate(8);
+
+            private DtFile newDataFile;
+            private RefBuffer readBuffer;
+            private long currentWritePos;
+
+            ShardWriter(int shard, File dataFile) {
+                this.shard = shard;
+                this.dataFile = dataFile;
+                this.done = FiberGroup.currentGroup().newFuture();
             }
-            return write(readBuffer.getBuffer(), this::whenWriteFinish);
-        }
 
-        private FrameCallResult whenWriteFinish(Void unused) {
-            if (checkCancel()) {
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                done.completeExceptionally(ex);
                 return Fiber.frameReturn();
             }
-            releaseReadBuffer();
-            return read();
-        }
 
-        private FrameCallResult finishDataFile() {
-            if (checkCancel()) {
+            @Override
+            protected FrameCallResult doFinally() {
+                releaseReadBuffer();
+                if (newDataFile != null && newDataFile.getChannel() != null) {
+                    DtUtil.close(newDataFile.getChannel());
+                }
+                if (!done.isDone()) {
+                    // cancelled
+                    done.complete(null);
+                }
                 return Fiber.frameReturn();
             }
-            ForceFrame ff = new ForceFrame(newDataFile.getChannel(), ioExecutor, true);
-            return Fiber.call(ff, this::writeIdxFile);
-        }
 
-        private FrameCallResult writeIdxFile(Void v) {
-            if (checkCancel()) {
-                return Fiber.frameReturn();
+            @Override
+            public FrameCallResult execute(Void input) throws Exception {
+                HashSet<StandardOpenOption> options = new HashSet<>();
+                options.add(StandardOpenOption.CREATE_NEW);
+                options.add(StandardOpenOption.WRITE);
+                AsynchronousFileChannel channel = AsynchronousFileChannel.open(dataFile.toPath(), options,
+                        getFiberGroup().getExecutor());
+                this.newDataFile = new DtFile(dataFile, channel, getFiberGroup());
+                return read();
             }
-            log.info("snapshot data file write success: {}", newDataFile.getFile().getPath());
 
-            statusFile = new StatusFile(newIdxFile, ioExecutor, getFiberGroup());
-            statusFile.init();
-            statusFile.getProperties().setProperty(KEY_LAST_INDEX, String.valueOf(readSnapshot.getLastIncludedIndex()));
-            statusFile.getProperties().setProperty(KEY_LAST_TERM, String.valueOf(readSnapshot.getLastIncludedTerm()));
+            private FrameCallResult read() {
+                if (checkCancel()) {
+                    return Fiber.frameReturn();
+                }
+                FiberFuture<RefBuffer> fu = readSnapshot.readNext(shard);
+                return fu.await(this::whenReadFinish);
+            }
 
-            // just for human reading
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS");
-            statusFile.getProperties().setProperty("saveStartTime", sdf.format(new Date(startTime)));
-            statusFile.getProperties().setProperty("saveEndTime", sdf.format(new Date()));
+            private FrameCallResult write(ByteBuffer buf, FrameCall<Void> resumePoint) {
+                AsyncIoTask writeTask = new AsyncIoTask(getFiberGroup(), newDataFile);
+                long newWritePos = currentWritePos + buf.remaining();
+                FiberFuture<Void> writeFuture = writeTask.write(buf, currentWritePos);
+                currentWritePos = newWritePos;
+                return writeFuture.await(resumePoint);
+            }
 
-            return statusFile.update(true).await(this::finish2);
-        }
+            private FrameCallResult whenReadFinish(RefBuffer rb) {
+                this.readBuffer = rb;
+                if (checkCancel()) {
+                    return Fiber.frameReturn();
+                }
+                if (rb != null && rb.getBuffer() != null && rb.getBuffer().hasRemaining()) {
+                    ByteBuffer buffer = rb.getBuffer();
+                    crc32c.reset();
+                    RaftUtil.updateCrc(crc32c, buffer, buffer.position(), buffer.remaining());
+                    headerBuffer.clear();
+                    headerBuffer.putInt(buffer.remaining());
+                    headerBuffer.putInt((int) crc32c.getValue());
+                    headerBuffer.flip();
+                    return write(headerBuffer, this::whenHeaderWriteFinish);
+                } else {
+                    return finishDataFile();
+                }
+            }
 
-        private FrameCallResult finish2(Void unused) {
-            log.info("snapshot status file write success: {}", newIdxFile.getPath());
+            private FrameCallResult whenHeaderWriteFinish(Void unused) {
+                if (checkCancel()) {
+                    return Fiber.frameReturn();
+                }
+                return write(readBuffer.getBuffer(), this::whenWriteFinish);
+            }
 
-            future.complete(readSnapshot.getLastIncludedIndex());
+            private FrameCallResult whenWriteFinish(Void unused) {
+                if (checkCancel()) {
+                    return Fiber.frameReturn();
+                }
+                releaseReadBuffer();
+                return read();
+            }
 
-            File oldIdxFile = lastIdxFile;
-            File oldDataFile = lastDataFile;
-            lastIdxFile = newIdxFile;
-            lastDataFile = newDataFile.getFile();
-            deleteInIoExecutor(oldIdxFile);
-            deleteInIoExecutor(oldDataFile);
-            return Fiber.frameReturn();
-        }
+            private FrameCallResult finishDataFile() {
+                ForceFrame ff = new ForceFrame(newDataFile.getChannel(), ioExecutor, true);
+                return Fiber.call(ff, this::afterForce);
+            }
 
-        private void releaseReadBuffer() {
-            if (readBuffer != null) {
-                readBuffer.release();
-                readBuffer = null;
+            private FrameCallResult afterForce(Void v) {
+                log.info("snapshot data file write success: {}", dataFile.getPath());
+                done.complete(null);
+                return Fiber.frameReturn();
+            }
+
+            private void releaseReadBuffer() {
+                if (readBuffer != null) {
+                    readBuffer.release();
+                    readBuffer = null;
+                }
             }
         }
     }
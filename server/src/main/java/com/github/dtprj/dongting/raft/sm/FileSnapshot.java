@@ -32,100 +32,164 @@ import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousFileChannel;
 import java.nio.file.StandardOpenOption;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.zip.CRC32C;
 
 /**
+ * Read the saved snapshot files. Each shard has a file chain, the first is in the full snapshot, others are
+ * in delta snapshots. Different shards can be read concurrently by readNext(int).
+ *
  * @author huangli
  */
 public class FileSnapshot extends Snapshot {
     static final int MAX_BLOCK_SIZE = 1024 * 1024 * 1024;
 
-    private final DtFile dtFile;
     private final FiberGroup fiberGroup;
-    private final ByteBuffer headerBuffer = ByteBuffer.allocate(8);
-    private final long fileSize;
-    private final CRC32C crc32C = new CRC32C();
     private final RefBufferFactory directRefBufferFactory;
+    private final ShardReader[] shards;
 
-    private long filePos;
+    private int currentShard;
 
     public FileSnapshot(RaftGroupConfigEx groupConfig, long lastIncludedIndex, int lastIncludedTerm,
-                        File dataFile, ExecutorService ioExecutor) throws IOException {
+                        List<List<File>> shardFiles, ExecutorService ioExecutor) throws IOException {
         super(lastIncludedIndex, lastIncludedTerm);
         this.fiberGroup = groupConfig.getFiberGroup();
-        this.fileSize = dataFile.length();
         this.directRefBufferFactory = new RefBufferFactory(groupConfig.getDirectPool(), 0);
+        this.shards = new ShardReader[shardFiles.size()];
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new ShardReader(shardFiles.get(i));
+            }
+        } catch (IOException e) {
+            doClose();
+            throw e;
+        }
+    }
 
-        HashSet<StandardOpenOption> options = new HashSet<>();
-        options.add(StandardOpenOption.READ);
-        AsynchronousFileChannel channel = AsynchronousFileChannel.open(dataFile.toPath(), options, fiberGroup.getExecutor());
-
-        this.dtFile = new DtFile(dataFile, channel, groupConfig.getFiberGroup());
+    @Override
+    public int getShardCount() {
+        return shards.length;
     }
 
+    /**
+     * read all shards one by one, the shards contain different keys, so the order of shards is not important.
+     */
     @Override
     public FiberFuture<RefBuffer> readNext() {
-        if (filePos >= fileSize) {
-            return FiberFuture.completedFuture(fiberGroup, null);
+        while (currentShard < shards.length - 1 && shards[currentShard].finished()) {
+            currentShard++;
         }
-        FiberFuture<RefBuffer> result = fiberGroup.newFuture();
-
-        AsyncIoTask t = new AsyncIoTask(fiberGroup, dtFile);
-        headerBuffer.clear();
-        FiberFuture<Void> fu = t.read(headerBuffer, filePos);
-        fu.registerCallback((v, ex) -> {
-            if (ex != null) {
-                result.completeExceptionally(ex);
-                return;
+        return readNext(currentShard);
+    }
+
+    @Override
+    public FiberFuture<RefBuffer> readNext(int shard) {
+        return shards[shard].readNext();
+    }
+
+    @Override
+    protected void doClose() {
+        for (ShardReader r : shards) {
+            if (r != null && r.dtFile != null) {
+                DtUtil.close(r.dtFile.getChannel());
             }
-            headerReadFinished(result);
-        });
-        return result;
+        }
     }
 
-    private void headerReadFinished(FiberFuture<RefBuffer> future) {
-        filePos += headerBuffer.capacity();
-        headerBuffer.flip();
-        int size = headerBuffer.getInt();
-        if (size <= 0 || size > MAX_BLOCK_SIZE) {
-            future.completeExceptionally(new RaftException("illegal size " + size));
-            return;
+    private class ShardReader {
+        private final List<File> dataFiles;
+        private final ByteBuffer headerBuffer = ByteBuffer.allocate(8);
+        private final CRC32C crc32C = new CRC32C();
+
+        private int fileIndex;
+        private DtFile dtFile;
+        private long fileSize;
+        private long filePos;
+
+        ShardReader(List<File> dataFiles) throws IOException {
+            this.dataFiles = dataFiles;
+            openFile(dataFiles.get(0));
         }
-        if (filePos + size > fileSize) {
-            future.completeExceptionally(new RaftException("block size " + size + " exceed file size " + fileSize));
-            return;
+
+        private void openFile(File dataFile) throws IOException {
+            HashSet<StandardOpenOption> options = new HashSet<>();
+            options.add(StandardOpenOption.READ);
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(dataFile.toPath(), options, fiberGroup.getExecutor());
+            this.dtFile = new DtFile(dataFile, channel, fiberGroup);
+            this.fileSize = dataFile.length();
+            this.filePos = 0;
+        }
+
+        boolean finished() {
+            return filePos >= fileSize && fileIndex >= dataFiles.size() - 1;
         }
-        int crc = headerBuffer.getInt();
 
-        RefBuffer refBuffer = directRefBufferFactory.create(size);
-        refBuffer.getBuffer().limit(size);
-        AsyncIoTask t = new AsyncIoTask(fiberGroup, dtFile);
+        FiberFuture<RefBuffer> readNext() {
+            while (filePos >= fileSize) {
+                if (fileIndex >= dataFiles.size() - 1) {
+                    return FiberFuture.completedFuture(fiberGroup, null);
+                }
+                DtUtil.close(dtFile.getChannel());
+                try {
+                    openFile(dataFiles.get(++fileIndex));
+                } catch (IOException e) {
+                    return FiberFuture.failedFuture(fiberGroup, e);
+                }
+            }
+            FiberFuture<RefBuffer> result = fiberGroup.newFuture();
+
+            AsyncIoTask t = new AsyncIoTask(fiberGroup, dtFile);
+            headerBuffer.clear();
+            FiberFuture<Void> fu = t.read(headerBuffer, filePos);
+            fu.registerCallback((v, ex) -> {
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                    return;
+                }
+                headerReadFinished(result);
+            });
+            return result;
+        }
 
-        t.read(refBuffer.getBuffer(), filePos).registerCallback((v, ex) -> {
-            if (ex != null) {
-                future.completeExceptionally(ex);
+        private void headerReadFinished(FiberFuture<RefBuffer> future) {
+            filePos += headerBuffer.capacity();
+            headerBuffer.flip();
+            int size = headerBuffer.getInt();
+            if (size <= 0 || size > MAX_BLOCK_SIZE) {
+                future.completeExceptionally(new RaftException("illegal size " + size));
                 return;
             }
-            blockReadFinished(future, crc, refBuffer);
-        });
-    }
+            if (filePos + size > fileSize) {
+                future.completeExceptionally(new RaftException("block size " + size + " exceed file size " + fileSize));
+                return;
+            }
+            int crc = headerBuffer.getInt();
+
+            RefBuffer refBuffer = directRefBufferFactory.create(size);
+            refBuffer.getBuffer().limit(size);
+            AsyncIoTask t = new AsyncIoTask(fiberGroup, dtFile);
 
-    private void blockReadFinished(FiberFuture<RefBuffer> future, int crc, RefBuffer refBuffer) {
-        ByteBuffer dataBuffer = refBuffer.getBuffer();
-        filePos += dataBuffer.limit();
-        dataBuffer.flip();
-        crc32C.reset();
-        RaftUtil.updateCrc(crc32C, dataBuffer, 0, dataBuffer.limit());
-        if (crc != crc32C.getValue()) {
-            future.completeExceptionally(new RaftException("crc mismatch"));
-            return;
+            t.read(refBuffer.getBuffer(), filePos).registerCallback((v, ex) -> {
+                if (ex != null) {
+                    future.completeExceptionally(ex);
+                    return;
+                }
+                blockReadFinished(future, crc, refBuffer);
+            });
         }
-        future.complete(refBuffer);
-    }
 
-    @Override
-    protected void doClose() {
-        DtUtil.close(dtFile.getChannel());
+        private void blockReadFinished(FiberFuture<RefBuffer> future, int crc, RefBuffer refBuffer) {
+            ByteBuffer dataBuffer = refBuffer.getBuffer();
+            filePos += dataBuffer.limit();
+            dataBuffer.flip();
+            crc32C.reset();
+            RaftUtil.updateCrc(crc32C, dataBuffer, 0, dataBuffer.limit());
+            if (crc != (int) crc32C.getValue()) {
+                future.completeExceptionally(new RaftException("crc mismatch"));
+                return;
+            }
+            future.complete(refBuffer);
+        }
     }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.sm;
+
+import com.github.dtprj.dongting.common.DtUtil;
+import com.github.dtprj.dongting.common.RefCount;
+import com.github.dtprj.dongting.raft.RaftException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * The saved snapshot data files used to install snapshot to followers, the first is a full snapshot,
+ * others are delta snapshots, the blocks of all files are read in order. One instance is shared by
+ * all concurrent install tasks, each task use its own Reader. The blocks are returned as slices of
+ * read only mapped regions, so the data is copied from page cache to socket buffer directly, and the
+ * raft fiber don't wait io.
+ * <p>
+ * The retain/release method should be called in raft thread.
+ *
+ * @author huangli
+ */
+public class MappedSnapshotFile extends RefCount {
+    static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int BLOCK_HEADER_SIZE = 8;
+
+    private final long lastIncludedIndex;
+    private final int lastIncludedTerm;
+    private final List<File> files;
+    private final FileChannel[] channels;
+    private final long[] fileSizes;
+
+    public MappedSnapshotFile(long lastIncludedIndex, int lastIncludedTerm, List<File> dataFiles) throws IOException {
+        super(true);
+        this.lastIncludedIndex = lastIncludedIndex;
+        this.lastIncludedTerm = lastIncludedTerm;
+        this.files = dataFiles;
+        this.channels = new FileChannel[dataFiles.size()];
+        this.fileSizes = new long[dataFiles.size()];
+        try {
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = FileChannel.open(dataFiles.get(i).toPath(), StandardOpenOption.READ);
+                fileSizes[i] = channels[i].size();
+            }
+        } catch (IOException e) {
+            DtUtil.close(channels);
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doClean() {
+        // the mapped regions are still valid after the channel closed
+        DtUtil.close(channels);
+    }
+
+    public Reader newReader() {
+        return new Reader();
+    }
+
+    public long getLastIncludedIndex() {
+        return lastIncludedIndex;
+    }
+
+    public int getLastIncludedTerm() {
+        return lastIncludedTerm;
+    }
+
+    public List<File> getFiles() {
+        return files;
+    }
+
+    public long getTotalSize() {
+        long sum = 0;
+        for (long s : fileSizes) {
+            sum += s;
+        }
+        return sum;
+    }
+
+    public class Reader {
+        private int fileIndex;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long filePos;
+
+        private Reader() {
+        }
+
+        /**
+         * return the data of next block (without block header), or null if reach end of file.
+         * the crc of the block is not checked here, the file is checked when it is loaded at startup.
+         */
+        public ByteBuffer next() throws IOException {
+            while (filePos >= fileSizes[fileIndex]) {
+                if (fileIndex >= channels.length - 1) {
+                    return null;
+                }
+                fileIndex++;
+                filePos = 0;
+                window = null;
+            }
+            long fileSize = fileSizes[fileIndex];
+            if (filePos + BLOCK_HEADER_SIZE > fileSize) {
+                throw new RaftException("bad block header, pos=" + filePos + ", fileSize=" + fileSize);
+            }
+            ensureMapped(BLOCK_HEADER_SIZE);
+            int size = window.getInt((int) (filePos - windowStart));
+            if (size <= 0 || size > FileSnapshot.MAX_BLOCK_SIZE) {
+                throw new RaftException("illegal size " + size);
+            }
+            if (filePos + BLOCK_HEADER_SIZE + size > fileSize) {
+                throw new RaftException("block size " + size + " exceed file size " + fileSize);
+            }
+            ensureMapped(BLOCK_HEADER_SIZE + size);
+            int start = (int) (filePos - windowStart) + BLOCK_HEADER_SIZE;
+            ByteBuffer data = window.duplicate();
+            data.limit(start + size);
+            data.position(start);
+            filePos += BLOCK_HEADER_SIZE + size;
+            return data.slice();
+        }
+
+        private void ensureMapped(int len) throws IOException {
+            if (window != null && filePos >= windowStart && filePos + len <= windowStart + window.capacity()) {
+                return;
+            }
+            long mapSize = Math.min(Math.max(MAP_WINDOW_SIZE, len), fileSizes[fileIndex] - filePos);
+            window = channels[fileIndex].map(FileChannel.MapMode.READ_ONLY, filePos, mapSize);
+            windowStart = filePos;
+        }
+
+        public int getFileIndex() {
+            return fileIndex;
+        }
+
+        public long getFilePos() {
+            return filePos;
+        }
+    }
+}
@@ -47,9 +47,28 @@ public abstract class Snapshot {
         return lastIncludedTerm;
     }
 
-
     public abstract FiberFuture<RefBuffer> readNext();
 
+    /**
+     * The snapshot data can be split into several shards, different shards can be read (and saved/loaded)
+     * concurrently. The entries of different shards should be independent, so they can be installed in
+     * any order.
+     */
+    public int getShardCount() {
+        return 1;
+    }
+
+    /**
+     * Read next block of the shard, return null if the shard is finished. Should be overridden if the
+     * shard count is greater than 1.
+     */
+    public FiberFuture<RefBuffer> readNext(int shard) {
+        if (shard != 0) {
+            throw new IllegalArgumentException("shard: " + shard);
+        }
+        return readNext();
+    }
+
     public void close() {
         if (!closed.compareAndSet(false, true)) {
             log.warn("snapshot iterator already closed");
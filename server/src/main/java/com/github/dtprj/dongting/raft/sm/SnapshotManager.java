@@ -17,6 +17,7 @@ package com.github.dtprj.dongting.raft.sm;
 
 import com.github.dtprj.dongting.fiber.FiberFrame;
 
+import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -27,4 +28,13 @@ public interface SnapshotManager {
     FiberFrame<Snapshot> init();
 
     void saveSnapshot(StateMachine stateMachine, CompletableFuture<Long> result);
+
+    /**
+     * Open the latest saved snapshot for install snapshot, the result is shared by concurrent install tasks.
+     * The caller should release it after use. Return null if there is no saved snapshot, or the last included
+     * index of the saved snapshot is less than minIndex (a newer snapshot is installed from the leader, or the
+     * logs after the saved snapshot are truncated), then the caller should take a snapshot from the state machine.
+     * This method should be called in raft thread.
+     */
+    MappedSnapshotFile openSavedSnapshot(long minIndex) throws IOException;
 }
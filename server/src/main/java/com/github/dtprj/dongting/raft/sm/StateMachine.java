@@ -42,4 +42,21 @@ public interface StateMachine extends AutoCloseable, RaftCodecFactory {
      */
     FiberFrame<Snapshot> takeSnapshot(int currentTerm);
 
+    /**
+     * this method is called in raft thread. Take a delta snapshot which only contains the changes after
+     * baseIndex (the lastIncludedIndex of a saved snapshot), the removed keys should be included.
+     * When restore, the full snapshot and the delta snapshots are installed in order, with continuous offset.
+     * Return null if delta snapshot is not supported, then a full snapshot is taken.
+     */
+    default FiberFrame<Snapshot> takeDeltaSnapshot(int currentTerm, long baseIndex) {
+        return null;
+    }
+
+    /**
+     * this method is called in raft thread after a full or delta snapshot is saved, the state kept for
+     * delta snapshot before lastIncludedIndex can be released.
+     */
+    default void afterSnapshotSaved(long lastIncludedIndex) {
+    }
+
 }
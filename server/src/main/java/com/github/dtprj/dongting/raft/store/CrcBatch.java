@@ -0,0 +1,79 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * The ranges of a write buffer whose crc32c are not computed yet, the crc of each range is put in the 4 bytes
+ * following the range. All ranges are computed in one pass before the buffer is written, this can be done in
+ * another thread since the buffer is not modified by the raft thread after it is submitted to write.
+ *
+ * @author huangli
+ */
+final class CrcBatch {
+    private final CRC32C crc32c = new CRC32C();
+
+    // start and len pairs
+    private int[] ranges = new int[64];
+    private int size;
+
+    public void add(int start, int len) {
+        int index = size << 1;
+        if (index == ranges.length) {
+            int[] newRanges = new int[ranges.length << 1];
+            System.arraycopy(ranges, 0, newRanges, 0, index);
+            ranges = newRanges;
+        }
+        ranges[index] = start;
+        ranges[index + 1] = len;
+        size++;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * compute crc of all ranges and put them to the buffer, the position and limit of the buffer is not changed.
+     */
+    public void compute(ByteBuffer buf) {
+        CRC32C crc32c = this.crc32c;
+        int[] ranges = this.ranges;
+        int oldPos = buf.position();
+        int oldLimit = buf.limit();
+        for (int i = 0, count = size << 1; i < count; i += 2) {
+            int start = ranges[i];
+            int end = start + ranges[i + 1];
+            buf.limit(end);
+            buf.position(start);
+            crc32c.reset();
+            crc32c.update(buf);
+            buf.limit(oldLimit);
+            buf.putInt(end, (int) crc32c.getValue());
+        }
+        buf.position(oldPos);
+    }
+}
@@ -22,6 +22,8 @@ import com.github.dtprj.dongting.fiber.FiberFrame;
 import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FiberGroup;
 import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.log.DtLog;
+import com.github.dtprj.dongting.log.DtLogs;
 import com.github.dtprj.dongting.raft.impl.FileUtil;
 import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
 import com.github.dtprj.dongting.raft.impl.RaftUtil;
@@ -29,6 +31,7 @@ import com.github.dtprj.dongting.raft.impl.TailCache;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
 
 import java.io.File;
+import java.util.Properties;
 import java.util.function.Supplier;
 
 import static com.github.dtprj.dongting.raft.store.IdxFileQueue.*;
@@ -37,6 +40,14 @@ import static com.github.dtprj.dongting.raft.store.IdxFileQueue.*;
  * @author huangli
  */
 public class DefaultRaftLog implements RaftLog {
+    private static final DtLog log = DtLogs.getLogger(DefaultRaftLog.class);
+
+    static final String KEY_CLEAN_SHUTDOWN_INDEX = "cleanShutdownIndex";
+    static final String KEY_CLEAN_SHUTDOWN_TERM = "cleanShutdownTerm";
+    static final String KEY_CLEAN_SHUTDOWN_POS = "cleanShutdownPos";
+    static final String KEY_CLEAN_SHUTDOWN_CRC = "cleanShutdownCrc";
+    static final String KEY_CLEAN_SHUTDOWN_NEXT_POS = "cleanShutdownNextPos";
+
     private final RaftGroupConfigEx groupConfig;
     private final Timestamp ts;
     private final RaftStatusImpl raftStatus;
@@ -71,6 +82,8 @@ public class DefaultRaftLog implements RaftLog {
     @Override
     public FiberFrame<Pair<Integer, Long>> init() {
         return new FiberFrame<>() {
+            private Properties cleanShutdownMarker;
+
             @Override
             public FrameCallResult execute(Void input) throws Exception {
                 File dataDir = FileUtil.ensureDir(groupConfig.getDataDir());
@@ -80,6 +93,17 @@ public class DefaultRaftLog implements RaftLog {
                 logFiles = new LogFileQueue(FileUtil.ensureDir(dataDir, "log"),
                         groupConfig, idxFiles, logFileSize);
                 logFiles.initQueue();
+                RaftUtil.checkStop(fiberGroup);
+                cleanShutdownMarker = removeCleanShutdownMarker();
+                if (cleanShutdownMarker != null) {
+                    // the marker must be removed from disk before any new write
+                    statusManager.persistAsync(true);
+                    return statusManager.waitForce(this::initIdxFileQueue);
+                }
+                return initIdxFileQueue(null);
+            }
+
+            private FrameCallResult initIdxFileQueue(Void v) throws Exception {
                 RaftUtil.checkStop(fiberGroup);
                 return Fiber.call(idxFiles.initRestorePos(), this::afterIdxFileQueueInit);
             }
@@ -94,11 +118,31 @@ public class DefaultRaftLog implements RaftLog {
                     long restoreStartPos = p.getRight();
                     long firstValidPos = Long.parseLong(statusManager.getProperties()
                             .getProperty(KEY_NEXT_POS_AFTER_INSTALL_SNAPSHOT, "0"));
+                    Properties m = cleanShutdownMarker;
+                    if (m != null && Long.parseLong(m.getProperty(KEY_CLEAN_SHUTDOWN_INDEX)) == restoreIndex
+                            && Long.parseLong(m.getProperty(KEY_CLEAN_SHUTDOWN_POS)) == restoreStartPos) {
+                        FiberFrame<Boolean> f = logFiles.fastRestore(restoreIndex,
+                                Integer.parseInt(m.getProperty(KEY_CLEAN_SHUTDOWN_TERM)), restoreStartPos,
+                                Integer.parseInt(m.getProperty(KEY_CLEAN_SHUTDOWN_CRC)),
+                                Long.parseLong(m.getProperty(KEY_CLEAN_SHUTDOWN_NEXT_POS)), firstValidPos);
+                        return Fiber.call(f, success -> afterFastRestore(success, p, firstValidPos));
+                    }
+                    if (m != null) {
+                        log.warn("clean shutdown marker not match restore index, {}={}, restoreIndex={}",
+                                KEY_CLEAN_SHUTDOWN_INDEX, m.getProperty(KEY_CLEAN_SHUTDOWN_INDEX), restoreIndex);
+                    }
                     return Fiber.call(logFiles.restore(restoreIndex, restoreStartPos, firstValidPos),
                             this::afterLogRestore);
                 }
             }
 
+            private FrameCallResult afterFastRestore(boolean success, Pair<Long, Long> p, long firstValidPos) {
+                if (success) {
+                    return afterLogRestore(Integer.parseInt(cleanShutdownMarker.getProperty(KEY_CLEAN_SHUTDOWN_TERM)));
+                }
+                return Fiber.call(logFiles.restore(p.getLeft(), p.getRight(), firstValidPos), this::afterLogRestore);
+            }
+
             private FrameCallResult afterBeginInstall(Void unused) {
                 setResult(new Pair<>(0, 0L));
                 return Fiber.frameReturn();
@@ -203,6 +247,11 @@ public class DefaultRaftLog implements RaftLog {
         };
     }
 
+    @Override
+    public long getFirstIndex() {
+        return Math.max(idxFiles.getFirstIndex(), logFiles.getFirstIndexNotMarkDelete());
+    }
+
     @Override
     public FiberFrame<Void> finishInstall(long nextLogIndex, long nextLogPos) {
         logFiles.finishInstall(nextLogIndex, nextLogPos);
@@ -222,12 +271,88 @@ public class DefaultRaftLog implements RaftLog {
         };
     }
 
+    private Properties removeCleanShutdownMarker() {
+        Properties props = statusManager.getProperties();
+        if (props.getProperty(KEY_CLEAN_SHUTDOWN_INDEX) == null) {
+            return null;
+        }
+        Properties m = new Properties();
+        for (String k : new String[]{KEY_CLEAN_SHUTDOWN_INDEX, KEY_CLEAN_SHUTDOWN_TERM, KEY_CLEAN_SHUTDOWN_POS,
+                KEY_CLEAN_SHUTDOWN_CRC, KEY_CLEAN_SHUTDOWN_NEXT_POS}) {
+            String v = (String) props.remove(k);
+            if (v != null) {
+                m.setProperty(k, v);
+            }
+        }
+        log.info("load clean shutdown marker: {}", m);
+        return m.size() == 5 ? m : null;
+    }
+
+    /**
+     * set clean shutdown marker if all items are written, forced, and their idx are persisted.
+     * the next start can skip the restore scan if the marker exists.
+     */
+    private boolean setCleanShutdownMarker() {
+        if (!idxFiles.initialized || !logFiles.initialized || raftStatus.isInstallSnapshot()) {
+            return false;
+        }
+        LogAppender appender = logFiles.logAppender;
+        long lastIndex = idxFiles.getNextIndex() - 1;
+        if (lastIndex <= 0 || appender.writeNotFinish() || appender.nextPersistIndex != lastIndex + 1
+                || appender.lastWriteIndex != lastIndex || idxFiles.getNextPersistIndex() != lastIndex + 1
+                || raftStatus.getLastForceLogIndex() != lastIndex || raftStatus.getLastLogIndex() != lastIndex) {
+            log.info("log not clean, skip clean shutdown marker. lastIndex={}, persistIdxIndex={}, lastForceIndex={}",
+                    lastIndex, idxFiles.getNextPersistIndex() - 1, raftStatus.getLastForceLogIndex());
+            return false;
+        }
+        LongLongSeqMap cache = idxFiles.cache;
+        if (cache.size() == 0 || cache.getLastKey() != lastIndex) {
+            return false;
+        }
+        Properties props = statusManager.getProperties();
+        props.setProperty(KEY_CLEAN_SHUTDOWN_INDEX, String.valueOf(lastIndex));
+        props.setProperty(KEY_CLEAN_SHUTDOWN_TERM, String.valueOf(raftStatus.getLastLogTerm()));
+        props.setProperty(KEY_CLEAN_SHUTDOWN_POS, String.valueOf(cache.get(lastIndex)));
+        props.setProperty(KEY_CLEAN_SHUTDOWN_CRC, String.valueOf(appender.lastWriteHeaderCrc));
+        props.setProperty(KEY_CLEAN_SHUTDOWN_NEXT_POS, String.valueOf(appender.nextPersistPos));
+        return true;
+    }
+
     @Override
     public FiberFuture<Void> close() {
         FiberFuture<Void> f1 = idxFiles.close();
         FiberFuture<Void> f2 = logFiles.close();
+        FiberFuture<Void> closeFuture = fiberGroup.newFuture();
+        Fiber f = new Fiber("close-log-" + groupConfig.getGroupId(), fiberGroup, new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return FiberFuture.allOf(f1, f2).await(this::afterClose);
+            }
+
+            private FrameCallResult afterClose(Void v) {
+                if (!setCleanShutdownMarker()) {
+                    closeFuture.complete(null);
+                    return Fiber.frameReturn();
+                }
+                statusManager.persistAsync(true);
+                return statusManager.waitForce(this::afterMarkerPersist);
+            }
+
+            private FrameCallResult afterMarkerPersist(Void v) {
+                log.info("clean shutdown marker persisted, groupId={}", groupConfig.getGroupId());
+                closeFuture.complete(null);
+                return Fiber.frameReturn();
+            }
+
+            @Override
+            protected FrameCallResult handle(Throwable ex) {
+                closeFuture.completeExceptionally(ex);
+                return Fiber.frameReturn();
+            }
+        });
+        f.start();
         // delete fiber is daemon
-        return FiberFuture.allOf(f1, f2);
+        return closeFuture;
     }
 
     private class DeleteFiberFrame extends FiberFrame<Void> {
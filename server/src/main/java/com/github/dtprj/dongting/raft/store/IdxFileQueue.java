@@ -25,6 +25,7 @@ import com.github.dtprj.dongting.fiber.FiberFrame;
 import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FrameCall;
 import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.fiber.Lock;
 import com.github.dtprj.dongting.log.BugLog;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
@@ -34,11 +35,12 @@ import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
 
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 /**
  * @author huangli
  */
-class IdxFileQueue extends FileQueue implements IdxOps {
+public class IdxFileQueue extends FileQueue implements IdxOps {
     private static final DtLog log = DtLogs.getLogger(IdxFileQueue.class);
     private static final int ITEM_LEN = 8;
     static final String KEY_PERSIST_IDX_INDEX = "persistIdxIndex";
@@ -71,6 +73,10 @@ class IdxFileQueue extends FileQueue implements IdxOps {
 
     private boolean closed;
 
+    // the frames used by loadLogPos, reused to avoid allocation, only accessed in the fiber group thread
+    private final ArrayList<LoadPosFrame> loadPosFramePool = new ArrayList<>();
+    private static final int MAX_POOLED_LOAD_POS_FRAMES = 16;
+
     public IdxFileQueue(File dir, StatusManager statusManager, RaftGroupConfigEx groupConfig,
                         int itemsPerFile, int maxCacheItems) {
         super(dir, groupConfig, (long) ITEM_LEN * itemsPerFile);
@@ -239,16 +245,13 @@ class IdxFileQueue extends FileQueue implements IdxOps {
 
     private class FlushLoopFrame extends FiberFrame<Void> {
 
-        private boolean lastFlushTriggered;
-
         @Override
         public FrameCallResult execute(Void input) {
             if (closed) {
-                if (!lastFlushTriggered || getFlushDiff() <= 0) {
+                // flush all committed items before exit, so the next start can restore from the tail
+                if (getFlushDiff() <= 0 || raftStatus.isInstallSnapshot()) {
                     log.info("idx flush fiber exit, groupId={}", groupConfig.getGroupId());
                     return Fiber.frameReturn();
-                } else {
-                    lastFlushTriggered = true;
                 }
             } else {
                 if (!shouldFlush()) {
@@ -261,7 +264,7 @@ class IdxFileQueue extends FileQueue implements IdxOps {
         }
 
         private FrameCallResult afterPosReady(Void v) {
-            if (!shouldFlush()) {
+            if (!closed && !shouldFlush()) {
                 return needFlushCondition.await(this);
             }
             LogFile logFile = getLogFile(indexToPos(nextPersistIndex));
@@ -378,26 +381,60 @@ class IdxFileQueue extends FileQueue implements IdxOps {
             return Fiber.resume(result, resumePoint);
         }
         long pos = indexToPos(itemIndex);
-        ByteBuffer buffer = ByteBuffer.allocate(8);
         LogFile lf = getLogFile(pos);
         if (lf.isDeleted()) {
             throw new RaftException("file deleted: " + lf.getFile().getPath());
         }
-        FiberFrame<Long> loadFrame = new FiberFrame<>() {
-            @Override
-            public FrameCallResult execute(Void v) {
-                long filePos = pos & fileLenMask;
-                AsyncIoTask t = new AsyncIoTask(getFiberGroup(), lf);
-                return Fiber.call(t.lockRead(buffer, filePos), this::afterLoad);
-            }
+        int size = loadPosFramePool.size();
+        LoadPosFrame loadFrame = size > 0 ? loadPosFramePool.remove(size - 1) : new LoadPosFrame();
+        loadFrame.logFile = lf;
+        loadFrame.filePos = pos & fileLenMask;
+        return Fiber.call(loadFrame, resumePoint);
+    }
 
-            private FrameCallResult afterLoad(Void unused) {
-                buffer.flip();
-                setResult(buffer.getLong());
-                return Fiber.frameReturn();
+    private class LoadPosFrame extends FiberFrame<Long> {
+        private final ByteBuffer buffer = ByteBuffer.allocate(ITEM_LEN);
+        // the frame is reused, so create the resume points once
+        private final FrameCall<Void> afterLockCall = this::afterLock;
+        private final FrameCall<Void> afterReadCall = this::afterRead;
+        private LogFile logFile;
+        private long filePos;
+        private Lock lock;
+        private boolean locked;
+
+        @Override
+        public FrameCallResult execute(Void v) {
+            lock = logFile.getLock().readLock();
+            return lock.lock(afterLockCall);
+        }
+
+        private FrameCallResult afterLock(Void v) {
+            locked = true;
+            AsyncIoTask t = new AsyncIoTask(getFiberGroup(), logFile);
+            return t.read(buffer, filePos).await(afterReadCall);
+        }
+
+        private FrameCallResult afterRead(Void v) {
+            buffer.flip();
+            setResult(buffer.getLong());
+            return Fiber.frameReturn();
+        }
+
+        @Override
+        protected FrameCallResult doFinally() {
+            if (locked) {
+                lock.unlock();
+                locked = false;
             }
-        };
-        return Fiber.call(loadFrame, resumePoint);
+            lock = null;
+            logFile = null;
+            buffer.clear();
+            // the result is read by the caller after this frame popped, and the frame is reset when it reused
+            if (loadPosFramePool.size() < MAX_POOLED_LOAD_POS_FRAMES) {
+                loadPosFramePool.add(this);
+            }
+            return super.doFinally();
+        }
     }
 
     /**
@@ -429,6 +466,10 @@ class IdxFileQueue extends FileQueue implements IdxOps {
         }
     }
 
+    public long getFirstIndex() {
+        return firstIndex;
+    }
+
     public long getNextIndex() {
         return nextIndex;
     }
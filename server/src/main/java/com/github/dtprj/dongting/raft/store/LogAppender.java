@@ -16,7 +16,6 @@
 package com.github.dtprj.dongting.raft.store;
 
 import com.github.dtprj.dongting.codec.EncodeContext;
-import com.github.dtprj.dongting.codec.Encoder;
 import com.github.dtprj.dongting.common.IndexedQueue;
 import com.github.dtprj.dongting.fiber.DoInLockFrame;
 import com.github.dtprj.dongting.fiber.Fiber;
@@ -32,7 +31,6 @@ import com.github.dtprj.dongting.log.DtLogs;
 import com.github.dtprj.dongting.raft.RaftException;
 import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
 import com.github.dtprj.dongting.raft.impl.RaftTask;
-import com.github.dtprj.dongting.raft.impl.RaftUtil;
 import com.github.dtprj.dongting.raft.impl.TailCache;
 import com.github.dtprj.dongting.raft.server.LogItem;
 import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
@@ -40,8 +38,8 @@ import com.github.dtprj.dongting.raft.sm.RaftCodecFactory;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Supplier;
-import java.util.zip.CRC32C;
 
 /**
  * @author huangli
@@ -56,7 +54,6 @@ class LogAppender {
     private final LogFileQueue logFileQueue;
     private final RaftCodecFactory codecFactory;
     private final RaftGroupConfigEx groupConfig;
-    private final CRC32C crc32c = new CRC32C();
     private final EncodeContext encodeContext;
     private final long fileLenMask;
     private final FiberGroup fiberGroup;
@@ -65,6 +62,10 @@ class LogAppender {
     long nextPersistIndex = -1;
     long nextPersistPos = -1;
 
+    // the index and header crc of the last item which write finished, used by clean shutdown marker
+    long lastWriteIndex;
+    int lastWriteHeaderCrc;
+
     private final IndexedQueue<WriteTask> writeTaskQueue = new IndexedQueue<>(32);
     private WriteTask syncWriteTaskQueueHead;
 
@@ -119,11 +120,18 @@ class LogAppender {
 
     private class WriteFiberFrame extends FiberFrame<Void> {
 
-        // 4 temp status fields, should reset in writeData()
+        // temp status fields, should reset in encodeAndWriteItems()
         private final ArrayList<LogItem> items = new ArrayList<>(32);
-        private LogItem lastItem;
         private long writeStartPosInFile;
         private int bytesToWrite;
+        private LogFile currentFile;
+
+        private final LogEncoder encoder = new LogEncoder(codecFactory, encodeContext) {
+            @Override
+            protected ByteBuffer flush(ByteBuffer buffer) {
+                return doWrite(currentFile, buffer);
+            }
+        };
 
         @Override
         protected FrameCallResult handle(Throwable ex) {
@@ -175,12 +183,13 @@ class LogAppender {
         }
 
         private FrameCallResult encodeAndWriteItems(LogFile file) {
-            // reset 4 status fields
+            // reset status fields
             writeStartPosInFile = nextPersistPos & fileLenMask;
             bytesToWrite = 0;
+            currentFile = file;
             ArrayList<LogItem> items = this.items;
             items.clear();
-            lastItem = null;
+            encoder.reset();
 
             boolean writeEndHeader = false;
             boolean rollNextFile = false;
@@ -215,7 +224,7 @@ class LogAppender {
                 if (buffer.remaining() < LogHeader.ITEM_HEADER_SIZE) {
                     buffer = doWrite(file, buffer);
                 }
-                LogHeader.writeEndHeader(crc32c, buffer);
+                LogHeader.writeEndHeader(encoder.crc32c, buffer);
             }
             if (buffer.position() > 0) {
                 doWrite(file, buffer);
@@ -226,6 +235,7 @@ class LogAppender {
             }
 
             items.clear();
+            currentFile = null;
             if (nextPersistPos == file.endPos) {
                 log.info("current file {} has no enough space, nextPersistPos is {}, next file start pos is {}",
                         file.getFile().getName(), nextPersistPos, nextPersistPos);
@@ -250,97 +260,9 @@ class LogAppender {
                     file.firstTerm = li.getTerm();
                     file.firstTimestamp = li.getTimestamp();
                 }
-                if (buffer.remaining() < LogHeader.ITEM_HEADER_SIZE) {
-                    buffer = doWrite(file, buffer);
-                }
-                int len = LogHeader.writeHeader(crc32c, buffer, li);
-                if (!buffer.hasRemaining()) {
-                    buffer = doWrite(file, buffer);
-                }
-                buffer = encodeBizHeader(li, buffer, file);
-                if (!buffer.hasRemaining()) {
-                    buffer = doWrite(file, buffer);
-                }
-                buffer = encodeBizBody(li, buffer, file);
+                buffer = encoder.encode(li, buffer);
                 idxOps.put(li.getIndex(), dataPos);
-                dataPos += len;
-                lastItem = li;
-            }
-            return buffer;
-        }
-
-        private ByteBuffer encodeBizHeader(LogItem li, ByteBuffer buffer, LogFile file) {
-            if (li.getActualHeaderSize() > 0) {
-                crc32c.reset();
-                try {
-                    int totalEncodeLen = 0;
-                    while (true) {
-                        int startPos = buffer.position();
-                        boolean finish;
-                        if (li.getHeaderBuffer() != null) {
-                            finish = ByteBufferEncoder.INSTANCE.encode(encodeContext, buffer, li.getHeaderBuffer());
-                        } else {
-                            //noinspection rawtypes
-                            Encoder encoder = codecFactory.createHeaderEncoder(li.getBizType());
-                            //noinspection unchecked
-                            finish = encoder.encode(encodeContext, buffer, li.getHeader());
-                        }
-                        totalEncodeLen += buffer.position() - startPos;
-                        RaftUtil.updateCrc(crc32c, buffer, startPos, buffer.position() - startPos);
-                        if (finish) {
-                            if(totalEncodeLen != li.getActualHeaderSize()){
-                                throw new RaftException("encode problem, totalEncodeLen != li.getActualHeaderSize()");
-                            }
-                            break;
-                        } else {
-                            buffer = doWrite(file, buffer);
-                        }
-                    }
-                } finally {
-                    encodeContext.reset();
-                }
-                if (buffer.remaining() < 4) {
-                    buffer = doWrite(file, buffer);
-                }
-                buffer.putInt((int) crc32c.getValue());
-            }
-            return buffer;
-        }
-
-        private ByteBuffer encodeBizBody(LogItem li, ByteBuffer buffer, LogFile file) {
-            if (li.getActualBodySize() > 0) {
-                crc32c.reset();
-                try {
-                    int totalEncodeLen = 0;
-                    while (true) {
-                        int startPos = buffer.position();
-                        boolean finish;
-                        if (li.getBodyBuffer() != null) {
-                            finish = ByteBufferEncoder.INSTANCE.encode(encodeContext, buffer, li.getBodyBuffer());
-                        } else {
-                            //noinspection rawtypes
-                            Encoder encoder = codecFactory.createBodyEncoder(li.getBizType());
-                            //noinspection unchecked
-                            finish = encoder.encode(encodeContext, buffer, li.getBody());
-                        }
-                        totalEncodeLen += buffer.position() - startPos;
-                        RaftUtil.updateCrc(crc32c, buffer, startPos, buffer.position() - startPos);
-                        if (finish) {
-                            if(totalEncodeLen != li.getActualBodySize()){
-                                throw new RaftException("encode problem, totalEncodeLen != li.getActualBodySize()");
-                            }
-                            break;
-                        } else {
-                            buffer = doWrite(file, buffer);
-                        }
-                    }
-                } finally {
-                    encodeContext.reset();
-                }
-                if (buffer.remaining() < 4) {
-                    buffer = doWrite(file, buffer);
-                }
-                buffer.putInt((int) crc32c.getValue());
+                dataPos += LogHeader.computeTotalLen(0, li.getActualHeaderSize(), li.getActualBodySize());
             }
             return buffer;
         }
@@ -350,13 +272,32 @@ class LogAppender {
             int bytes = buffer.remaining();
             long[] retry = (logFileQueue.initialized && !logFileQueue.isClosed()) ? groupConfig.getIoRetryInterval() : null;
             WriteTask task = new WriteTask(fiberGroup, file, retry, true, writeStopIndicator);
+            LogEncoder encoder = this.encoder;
+            LogItem lastItem = encoder.lastItem;
             if (lastItem != null) {
                 task.lastTerm = lastItem.getTerm();
                 task.lastIndex = lastItem.getIndex();
+                task.lastHeaderCrc = encoder.lastItemHeaderCrc;
+                task.lastHeaderCrcPos = encoder.lastItemHeaderCrcPos;
             }
 
             // no sync
-            task.write(buffer, writeStartPosInFile);
+            CrcBatch crcBatch = encoder.crcBatch;
+            if (crcBatch.isEmpty()) {
+                task.write(buffer, writeStartPosInFile);
+            } else if (encoder.currentItemHeaderCrcPos == -1 && groupConfig.isLogCrcInIoThread()) {
+                encoder.crcBatch = new CrcBatch();
+                computeCrcAndWriteInIoThread(task, crcBatch, buffer, writeStartPosInFile);
+            } else {
+                task.computeCrc(crcBatch, buffer);
+                if (encoder.currentItemHeaderCrcPos != -1) {
+                    // the current item is split into next buffer, its header crc is required now
+                    encoder.currentItemHeaderCrc = buffer.getInt(encoder.currentItemHeaderCrcPos);
+                    encoder.currentItemHeaderCrcPos = -1;
+                }
+                crcBatch.clear();
+                task.write(buffer, writeStartPosInFile);
+            }
 
             writeTaskQueue.addLast(task);
 
@@ -371,11 +312,29 @@ class LogAppender {
 
             writeStartPosInFile += bytes;
             bytesToWrite -= bytes;
-            lastItem = null;
+            encoder.lastItem = null;
+            encoder.lastItemHeaderCrcPos = -1;
 
             return borrowBuffer(bytesToWrite);
         }
 
+        private void computeCrcAndWriteInIoThread(WriteTask task, CrcBatch b, ByteBuffer buffer, long posInFile) {
+            Runnable r = () -> {
+                try {
+                    task.computeCrc(b, buffer);
+                } catch (Throwable e) {
+                    task.getFuture().fireCompleteExceptionally(e);
+                    return;
+                }
+                task.write(buffer, posInFile);
+            };
+            try {
+                groupConfig.getIoExecutor().execute(r);
+            } catch (RejectedExecutionException e) {
+                r.run();
+            }
+        }
+
         private ByteBuffer borrowBuffer(int size) {
             if (size == 0) {
                 return EMPTY_BUFFER;
@@ -398,6 +357,8 @@ class LogAppender {
                     throw Fiber.fatal(new RaftException("write error", wt.getFuture().getEx()));
                 }
                 if (wt.lastTerm > 0) {
+                    lastWriteIndex = wt.lastIndex;
+                    lastWriteHeaderCrc = wt.lastHeaderCrc;
                     raftStatus.setLastWriteLogIndex(wt.lastIndex);
                     needSignal = true;
                     if (syncWriteTaskQueueHead == null) {
@@ -419,6 +380,9 @@ class LogAppender {
     static class WriteTask extends AsyncIoTask {
         int lastTerm;
         long lastIndex;
+        int lastHeaderCrc;
+        // the position of lastHeaderCrc in the buffer if it is computed by CrcBatch, or -1
+        int lastHeaderCrcPos = -1;
 
         WriteTask nextNeedSyncTask;
 
@@ -426,6 +390,13 @@ class LogAppender {
                          long[] retryInterval, boolean retryForever, Supplier<Boolean> cancelIndicator) {
             super(fiberGroup, dtFile, retryInterval, retryForever, cancelIndicator);
         }
+
+        void computeCrc(CrcBatch crcBatch, ByteBuffer buffer) {
+            crcBatch.compute(buffer);
+            if (lastHeaderCrcPos != -1) {
+                lastHeaderCrc = buffer.getInt(lastHeaderCrcPos);
+            }
+        }
     }
 
     private class SyncLoopFrame extends FiberFrame<Void> {
@@ -491,6 +462,14 @@ class LogAppender {
     public void setNext(long nextPersistIndex, long nextPersistPos) {
         this.nextPersistIndex = nextPersistIndex;
         this.nextPersistPos = nextPersistPos;
+        // the header crc of previous item is unknown after truncate or install snapshot
+        this.lastWriteIndex = 0;
+        this.lastWriteHeaderCrc = 0;
+    }
+
+    public void setLastWrite(long lastWriteIndex, int lastWriteHeaderCrc) {
+        this.lastWriteIndex = lastWriteIndex;
+        this.lastWriteHeaderCrc = lastWriteHeaderCrc;
     }
 
     public boolean writeNotFinish() {
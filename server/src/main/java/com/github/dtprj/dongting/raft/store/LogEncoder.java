@@ -0,0 +1,194 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.codec.Encoder;
+import com.github.dtprj.dongting.raft.RaftException;
+import com.github.dtprj.dongting.raft.impl.RaftUtil;
+import com.github.dtprj.dongting.raft.server.LogItem;
+import com.github.dtprj.dongting.raft.sm.RaftCodecFactory;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Encode log items (item header, biz header and biz body, each followed by its crc) into write buffers.
+ * If a part is fully in the buffer, its crc is computed by the CrcBatch before the buffer is written.
+ * When the buffer is full, it is passed to flush(), which returns the buffer to continue.
+ *
+ * @author huangli
+ */
+abstract class LogEncoder {
+
+    final CRC32C crc32c = new CRC32C();
+    private final EncodeContext encodeContext;
+    private final RaftCodecFactory codecFactory;
+
+    CrcBatch crcBatch = new CrcBatch();
+
+    LogItem lastItem;
+    int lastItemHeaderCrc;
+    // the position of the header crc in current buffer if it is not computed yet, or -1
+    int lastItemHeaderCrcPos = -1;
+    int currentItemHeaderCrc;
+    int currentItemHeaderCrcPos = -1;
+
+    LogEncoder(RaftCodecFactory codecFactory, EncodeContext encodeContext) {
+        this.codecFactory = codecFactory;
+        this.encodeContext = encodeContext;
+    }
+
+    /**
+     * write the buffer (compute the crc of crcBatch first) and return a new buffer to continue encode.
+     */
+    protected abstract ByteBuffer flush(ByteBuffer buffer);
+
+    void reset() {
+        lastItem = null;
+        lastItemHeaderCrc = 0;
+        lastItemHeaderCrcPos = -1;
+        currentItemHeaderCrc = 0;
+        currentItemHeaderCrcPos = -1;
+    }
+
+    /**
+     * encode the item, the header and body size of the item should be computed before.
+     */
+    ByteBuffer encode(LogItem li, ByteBuffer buffer) {
+        if (buffer.remaining() < LogHeader.ITEM_HEADER_SIZE) {
+            buffer = flush(buffer);
+        }
+        int len = LogHeader.computeTotalLen(0, li.getActualHeaderSize(), li.getActualBodySize());
+        if (buffer.remaining() >= len) {
+            // the whole item is in this buffer, compute the crc with other items before write
+            LogHeader.writeHeader(crcBatch, buffer, li);
+            currentItemHeaderCrcPos = buffer.position() - 4;
+        } else {
+            LogHeader.writeHeader(crc32c, buffer, li);
+            currentItemHeaderCrc = buffer.getInt(buffer.position() - 4);
+        }
+        if (!buffer.hasRemaining()) {
+            buffer = flush(buffer);
+        }
+        buffer = encodeBizHeader(li, buffer);
+        if (!buffer.hasRemaining()) {
+            buffer = flush(buffer);
+        }
+        buffer = encodeBizBody(li, buffer);
+        lastItem = li;
+        lastItemHeaderCrc = currentItemHeaderCrc;
+        lastItemHeaderCrcPos = currentItemHeaderCrcPos;
+        currentItemHeaderCrcPos = -1;
+        return buffer;
+    }
+
+    private ByteBuffer encodeBizHeader(LogItem li, ByteBuffer buffer) {
+        if (li.getActualHeaderSize() > 0) {
+            try {
+                int totalEncodeLen = 0;
+                boolean firstPart = true;
+                while (true) {
+                    int startPos = buffer.position();
+                    boolean finish;
+                    if (li.getHeaderBuffer() != null) {
+                        finish = ByteBufferEncoder.INSTANCE.encode(encodeContext, buffer, li.getHeaderBuffer());
+                    } else {
+                        //noinspection rawtypes
+                        Encoder encoder = codecFactory.createHeaderEncoder(li.getBizType());
+                        //noinspection unchecked
+                        finish = encoder.encode(encodeContext, buffer, li.getHeader());
+                    }
+                    int encodeLen = buffer.position() - startPos;
+                    totalEncodeLen += encodeLen;
+                    if (finish && totalEncodeLen != li.getActualHeaderSize()) {
+                        throw new RaftException("encode problem, totalEncodeLen != li.getActualHeaderSize()");
+                    }
+                    if (finish && firstPart && buffer.remaining() >= 4) {
+                        crcBatch.add(startPos, encodeLen);
+                        buffer.position(buffer.position() + 4);
+                        return buffer;
+                    }
+                    if (firstPart) {
+                        crc32c.reset();
+                        firstPart = false;
+                    }
+                    RaftUtil.updateCrc(crc32c, buffer, startPos, encodeLen);
+                    if (finish) {
+                        break;
+                    } else {
+                        buffer = flush(buffer);
+                    }
+                }
+            } finally {
+                encodeContext.reset();
+            }
+            if (buffer.remaining() < 4) {
+                buffer = flush(buffer);
+            }
+            buffer.putInt((int) crc32c.getValue());
+        }
+        return buffer;
+    }
+
+    private ByteBuffer encodeBizBody(LogItem li, ByteBuffer buffer) {
+        if (li.getActualBodySize() > 0) {
+            try {
+                int totalEncodeLen = 0;
+                boolean firstPart = true;
+                while (true) {
+                    int startPos = buffer.position();
+                    boolean finish;
+                    if (li.getBodyBuffer() != null) {
+                        finish = ByteBufferEncoder.INSTANCE.encode(encodeContext, buffer, li.getBodyBuffer());
+                    } else {
+                        //noinspection rawtypes
+                        Encoder encoder = codecFactory.createBodyEncoder(li.getBizType());
+                        //noinspection unchecked
+                        finish = encoder.encode(encodeContext, buffer, li.getBody());
+                    }
+                    int encodeLen = buffer.position() - startPos;
+                    totalEncodeLen += encodeLen;
+                    if (finish && totalEncodeLen != li.getActualBodySize()) {
+                        throw new RaftException("encode problem, totalEncodeLen != li.getActualBodySize()");
+                    }
+                    if (finish && firstPart && buffer.remaining() >= 4) {
+                        crcBatch.add(startPos, encodeLen);
+                        buffer.position(buffer.position() + 4);
+                        return buffer;
+                    }
+                    if (firstPart) {
+                        crc32c.reset();
+                        firstPart = false;
+                    }
+                    RaftUtil.updateCrc(crc32c, buffer, startPos, encodeLen);
+                    if (finish) {
+                        break;
+                    } else {
+                        buffer = flush(buffer);
+                    }
+                }
+            } finally {
+                encodeContext.reset();
+            }
+            if (buffer.remaining() < 4) {
+                buffer = flush(buffer);
+            }
+            buffer.putInt((int) crc32c.getValue());
+        }
+        return buffer;
+    }
+}
@@ -23,6 +23,7 @@ import com.github.dtprj.dongting.fiber.Fiber;
 import com.github.dtprj.dongting.fiber.FiberFrame;
 import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCall;
 import com.github.dtprj.dongting.fiber.FrameCallResult;
 import com.github.dtprj.dongting.log.DtLog;
 import com.github.dtprj.dongting.log.DtLogs;
@@ -135,6 +136,9 @@ class LogFileQueue extends FileQueue {
                         restorer.previousTerm, restorer.previousIndex, writePos,
                         queue.get(queue.size() - 1).getFile().getPath(), restorer.restoreCount);
                 initLogAppender(restorer.previousIndex + 1, writePos);
+                if (restorer.previousIndex > 0) {
+                    logAppender.setLastWrite(restorer.previousIndex, restorer.previousHeaderCrc);
+                }
                 setResult(restorer.previousTerm);
                 return Fiber.frameReturn();
             }
@@ -147,6 +151,115 @@ class LogFileQueue extends FileQueue {
         };
     }
 
+    /**
+     * Restore the queue from the clean shutdown marker, only the last item header and the first item header
+     * of each file are read. The result is false if the marker not match the files, the caller should fall back
+     * to the full restore.
+     */
+    public FiberFrame<Boolean> fastRestore(long lastIndex, int lastTerm, long lastPos, int lastHeaderCrc,
+                                           long nextWritePos, long firstValidPos) {
+        log.info("start fast restore, lastIndex={}, lastPos={}, nextWritePos={}", lastIndex, lastPos, nextWritePos);
+        if (queue.size() == 0 || lastPos < queue.get(0).startPos || nextWritePos <= lastPos
+                || nextWritePos > queueEndPosition) {
+            log.warn("clean shutdown marker is illegal, queueStartPos={}, queueEndPos={}",
+                    queueStartPosition, queueEndPosition);
+            return FiberFrame.completedFrame(false);
+        }
+        return new FiberFrame<>() {
+            private final ByteBuffer buffer = directPool.borrow(LogHeader.ITEM_HEADER_SIZE);
+            private final LogHeader header = new LogHeader();
+            private int i;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                LogFile lf = getLogFile(lastPos);
+                return readHeader(lf, filePos(lastPos), this::afterReadLastHeader);
+            }
+
+            private FrameCallResult readHeader(LogFile lf, long filePos, FrameCall<Void> resumePoint) {
+                buffer.clear();
+                buffer.limit(LogHeader.ITEM_HEADER_SIZE);
+                AsyncIoTask task = new AsyncIoTask(fiberGroup, lf);
+                return task.read(buffer, filePos).await(resumePoint);
+            }
+
+            private FrameCallResult afterReadLastHeader(Void v) {
+                buffer.flip();
+                header.read(buffer);
+                long itemEndPos = lastPos + header.totalLen;
+                if (!header.crcMatch() || header.isEndMagic() || header.headerCrc != lastHeaderCrc
+                        || header.index != lastIndex || header.term != lastTerm
+                        || (nextWritePos != itemEndPos && nextWritePos != nextFilePos(lastPos))) {
+                    log.warn("last item not match clean shutdown marker, index={}, term={}, totalLen={}",
+                            header.index, header.term, header.totalLen);
+                    setResult(false);
+                    return Fiber.frameReturn();
+                }
+                return loadFirstHeader(null);
+            }
+
+            private FrameCallResult loadFirstHeader(Void v) {
+                RaftUtil.checkStop(fiberGroup);
+                while (i < queue.size()) {
+                    LogFile lf = queue.get(i);
+                    if (lf.startPos >= nextWritePos) {
+                        // this file and the rest files has no items
+                        break;
+                    }
+                    long firstItemPos = 0;
+                    if (firstValidPos > lf.startPos && firstValidPos < lf.endPos) {
+                        if (lf.endPos - firstValidPos < LogHeader.ITEM_HEADER_SIZE) {
+                            i++;
+                            continue;
+                        }
+                        firstItemPos = filePos(firstValidPos);
+                    }
+                    return readHeader(lf, firstItemPos, unused -> afterReadFirstHeader(lf));
+                }
+                return finish();
+            }
+
+            private FrameCallResult afterReadFirstHeader(LogFile lf) {
+                buffer.flip();
+                header.read(buffer);
+                if (!header.crcMatch()) {
+                    log.warn("first item header crc not match, file={}", lf.getFile().getPath());
+                    setResult(false);
+                    return Fiber.frameReturn();
+                }
+                if (!header.isEndMagic()) {
+                    lf.firstIndex = header.index;
+                    lf.firstTerm = header.term;
+                    lf.firstTimestamp = header.timestamp;
+                }
+                i++;
+                return loadFirstHeader(null);
+            }
+
+            private FrameCallResult finish() {
+                if (queue.get(0).firstIndex == 0) {
+                    // the first file has no items after install snapshot, let the restorer to delete it
+                    log.info("first file has no items, fall back to full restore");
+                    setResult(false);
+                    return Fiber.frameReturn();
+                }
+                idxOps.put(lastIndex, lastPos);
+                initLogAppender(lastIndex + 1, nextWritePos);
+                logAppender.setLastWrite(lastIndex, lastHeaderCrc);
+                log.info("fast restore finished. lastTerm={}, lastIndex={}, nextWritePos={}, lastFile={}",
+                        lastTerm, lastIndex, nextWritePos, queue.get(queue.size() - 1).getFile().getPath());
+                setResult(true);
+                return Fiber.frameReturn();
+            }
+
+            @Override
+            protected FrameCallResult doFinally() {
+                directPool.release(buffer);
+                return super.doFinally();
+            }
+        };
+    }
+
     private void initLogAppender(long nextPersistIndex, long nextPersistPos) {
         logAppender.setNext(nextPersistIndex, nextPersistPos);
         logAppender.startFiber();
@@ -167,6 +280,19 @@ class LogFileQueue extends FileQueue {
         return 0;
     }
 
+    /**
+     * the first index of the files not marked to delete, 0 if these files are empty.
+     */
+    public long getFirstIndexNotMarkDelete() {
+        for (int i = 0; i < queue.size(); i++) {
+            LogFile logFile = queue.get(i);
+            if (!logFile.shouldDelete()) {
+                return logFile.firstIndex;
+            }
+        }
+        return 0;
+    }
+
     public void markDelete(long boundIndex, long timestampBound, long delayMills) {
         long deleteTimestamp = ts.getWallClockMillis() + delayMills;
         int queueSize = queue.size();
@@ -29,7 +29,7 @@ class LogHeader {
     // context len 4 bytes
     // biz header len 4 bytes
     // body len 4 bytes
-    // type 1 byte
+    // type 1 byte (low 4 bits is type, high 4 bits is flags)
     // bizType 1 byte
     // term 4 bytes
     // prevLogTerm 4 bytes
@@ -38,6 +38,9 @@ class LogHeader {
     // header crc
     static final int ITEM_HEADER_SIZE = 4 + 4 + 4 + 4 + 1 + 1 + 4 + 4 + 8 + 8 + 4;
 
+    private static final int TYPE_MASK = 0x0F;
+    private static final int FLAGS_SHIFT = 4;
+
     // negative value means end of file
     private static final int END_LEN_MAGIC = 0xF19A7BCB;
 
@@ -48,6 +51,7 @@ class LogHeader {
     int bizHeaderLen;
     int bodyLen;
     int type;
+    int flags;
     int bizType;
     int term;
     int prevLogTerm;
@@ -70,7 +74,9 @@ class LogHeader {
         contextLen = buf.getInt();
         bizHeaderLen = buf.getInt();
         bodyLen = buf.getInt();
-        type = buf.get();
+        int typeAndFlags = buf.get() & 0xFF;
+        type = typeAndFlags & TYPE_MASK;
+        flags = typeAndFlags >>> FLAGS_SHIFT;
         bizType = buf.get();
         term = buf.getInt();
         prevLogTerm = buf.getInt();
@@ -97,20 +103,36 @@ class LogHeader {
 
     public static int writeHeader(CRC32C crc, ByteBuffer buffer, LogItem log) {
         int startPos = buffer.position();
+        int len = putFields(buffer, log);
+        crc.reset();
+        RaftUtil.updateCrc(crc, buffer, startPos, ITEM_HEADER_SIZE - 4);
+        buffer.putInt((int) crc.getValue());
+        return len;
+    }
+
+    /**
+     * write the header and skip the header crc, the crc is computed later by the CrcBatch.
+     */
+    static int writeHeader(CrcBatch crcBatch, ByteBuffer buffer, LogItem log) {
+        int startPos = buffer.position();
+        int len = putFields(buffer, log);
+        crcBatch.add(startPos, ITEM_HEADER_SIZE - 4);
+        buffer.position(buffer.position() + 4);
+        return len;
+    }
+
+    private static int putFields(ByteBuffer buffer, LogItem log) {
         int len = computeTotalLen(0, log.getActualHeaderSize(), log.getActualBodySize());
         buffer.putInt(len);
         buffer.putInt(0);
         buffer.putInt(log.getActualHeaderSize());
         buffer.putInt(log.getActualBodySize());
-        buffer.put((byte) log.getType());
+        buffer.put((byte) (log.getType() | (log.getFlags() << FLAGS_SHIFT)));
         buffer.put((byte) log.getBizType());
         buffer.putInt(log.getTerm());
         buffer.putInt(log.getPrevLogTerm());
         buffer.putLong(log.getIndex());
         buffer.putLong(log.getTimestamp());
-        crc.reset();
-        RaftUtil.updateCrc(crc, buffer, startPos, ITEM_HEADER_SIZE - 4);
-        buffer.putInt((int) crc.getValue());
         return len;
     }
 
@@ -143,6 +165,7 @@ class LogHeader {
     public void copy(LogItem li) {
         li.setIndex(index);
         li.setType(type);
+        li.setFlags(flags);
         li.setBizType(bizType);
         li.setTerm(term);
         li.setPrevLogTerm(prevLogTerm);
@@ -69,6 +69,12 @@ public interface RaftLog {
 
     FiberFrame<Long> loadNextItemPos(long index);
 
+    /**
+     * return the index of the first log item which can be loaded, logs in the files marked to delete are excluded.
+     * After install snapshot, it's the next index of the installed snapshot. Return 0 if the log is empty.
+     */
+    long getFirstIndex();
+
     FiberFuture<Void> close();
 
     interface LogIterator extends AutoCloseable {
@@ -61,6 +61,7 @@ class Restorer {
 
     long previousIndex;
     int previousTerm;
+    int previousHeaderCrc;
 
     int restoreCount;
 
@@ -312,6 +313,7 @@ class Restorer {
         if (newState == STATE_ITEM_HEADER) {
             this.previousTerm = header.term;
             this.previousIndex = header.index;
+            this.previousHeaderCrc = header.headerCrc;
             this.restoreCount++;
         }
         state = newState;
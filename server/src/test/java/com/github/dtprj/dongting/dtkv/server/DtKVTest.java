@@ -0,0 +1,198 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.buf.TwoLevelPool;
+import com.github.dtprj.dongting.fiber.BaseFiberTest;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
+import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
+import com.github.dtprj.dongting.raft.server.RaftInput;
+import com.github.dtprj.dongting.raft.sm.DefaultSnapshotManager;
+import com.github.dtprj.dongting.raft.sm.Snapshot;
+import com.github.dtprj.dongting.raft.store.TestDir;
+import com.github.dtprj.dongting.raft.test.MockExecutors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author huangli
+ */
+public class DtKVTest extends BaseFiberTest {
+
+    private RaftGroupConfigEx config;
+    private RaftStatusImpl raftStatus;
+    private DtKV kv;
+    private long index;
+    // the expected content of the kv, null value for removed key
+    private final HashMap<String, String> expect = new HashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        File dir = TestDir.createTestDir(DtKVTest.class.getSimpleName());
+        raftStatus = new RaftStatusImpl(dispatcher.getTs());
+        config = new RaftGroupConfigEx(1, "1", "1");
+        config.setDataDir(dir.getAbsolutePath());
+        config.setIoExecutor(MockExecutors.ioExecutor());
+        config.setFiberGroup(fiberGroup);
+        config.setTs(raftStatus.getTs());
+        config.setDirectPool(TwoLevelPool.getDefaultFactory().apply(config.getTs(), true));
+        config.setHeapPool(new RefBufferFactory(TwoLevelPool.getDefaultFactory().apply(config.getTs(), false), 0));
+        config.setRaftStatus(raftStatus);
+        config.setSnapshotShardCount(4);
+        config.setMaxDeltaSnapshots(2);
+        kv = new DtKV(config);
+    }
+
+    private void put(String key, String value) throws Exception {
+        doInFiber(() -> {
+            byte[] bs = value.getBytes(StandardCharsets.UTF_8);
+            raftStatus.setLastApplied(++index);
+            kv.exec(index, new RaftInput(DtKV.BIZ_TYPE_PUT, key, bs, null, 0));
+        });
+        expect.put(key, value);
+    }
+
+    private void remove(String key) throws Exception {
+        doInFiber(() -> {
+            raftStatus.setLastApplied(++index);
+            kv.exec(index, new RaftInput(DtKV.BIZ_TYPE_REMOVE, key, null, null, 0));
+        });
+        expect.put(key, null);
+    }
+
+    private void save() throws Exception {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                DefaultSnapshotManager m = new DefaultSnapshotManager(config, MockExecutors.ioExecutor());
+                return Fiber.call(m.init(), s -> afterInit(m, s));
+            }
+
+            private FrameCallResult afterInit(DefaultSnapshotManager m, Snapshot s) {
+                if (s != null) {
+                    s.close();
+                }
+                m.saveSnapshot(kv, result);
+                return Fiber.frameReturn();
+            }
+        });
+        assertEquals(index, result.get(5, TimeUnit.SECONDS));
+    }
+
+    // restart and install the saved snapshot, the shards are installed in reverse order
+    private DtKV restart() throws Exception {
+        DtKV newKv = new DtKV(config);
+        doInFiber(new FiberFrame<>() {
+            private Snapshot snapshot;
+            private int shard;
+            private long offset;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                DefaultSnapshotManager m = new DefaultSnapshotManager(config, MockExecutors.ioExecutor());
+                return Fiber.call(m.init(), this::afterInit);
+            }
+
+            private FrameCallResult afterInit(Snapshot s) {
+                this.snapshot = Objects.requireNonNull(s);
+                assertEquals(index, s.getLastIncludedIndex());
+                shard = s.getShardCount() - 1;
+                return snapshot.readNext(shard).await(this::afterRead);
+            }
+
+            private FrameCallResult afterRead(RefBuffer rb) {
+                if (rb == null) {
+                    if (--shard < 0) {
+                        return newKv.installSnapshot(snapshot.getLastIncludedIndex(),
+                                snapshot.getLastIncludedTerm(), offset, true, null).await(this::justReturn);
+                    }
+                    return snapshot.readNext(shard).await(this::afterRead);
+                }
+                long count = rb.getBuffer().remaining();
+                return newKv.installSnapshot(snapshot.getLastIncludedIndex(), snapshot.getLastIncludedTerm(),
+                        offset, false, rb).await(v -> afterInstall(rb, count));
+            }
+
+            private FrameCallResult afterInstall(RefBuffer rb, long count) {
+                rb.release();
+                offset += count;
+                return snapshot.readNext(shard).await(this::afterRead);
+            }
+
+            @Override
+            protected FrameCallResult doFinally() {
+                if (snapshot != null) {
+                    snapshot.close();
+                }
+                return Fiber.frameReturn();
+            }
+        });
+        return newKv;
+    }
+
+    @Test
+    public void testRestartWithDeltaSnapshots() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            put("k" + i, "v" + i);
+        }
+        save();
+
+        for (int i = 0; i < 30; i++) {
+            put("k" + i, "w" + i);
+        }
+        for (int i = 30; i < 50; i++) {
+            remove("k" + i);
+        }
+        save();
+
+        for (int i = 30; i < 35; i++) {
+            put("k" + i, "x" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            remove("k" + i);
+        }
+        put("k50", "y50");
+        put("k100", "v100");
+        save();
+
+        DtKV newKv = restart();
+        for (Map.Entry<String, String> e : expect.entrySet()) {
+            if (e.getValue() == null) {
+                assertNull(newKv.get(e.getKey()), e.getKey());
+            } else {
+                assertArrayEquals(e.getValue().getBytes(StandardCharsets.UTF_8), newKv.get(e.getKey()), e.getKey());
+            }
+        }
+    }
+}
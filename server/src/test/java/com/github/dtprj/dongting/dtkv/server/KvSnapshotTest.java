@@ -0,0 +1,203 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.dtkv.server;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.buf.SimpleByteBufferPool;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.fiber.BaseFiberTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author huangli
+ */
+public class KvSnapshotTest extends BaseFiberTest {
+
+    private KvImpl kv;
+    private KvStatus kvStatus;
+    private RefBufferFactory heapPool;
+
+    @BeforeEach
+    public void setup() {
+        kv = new KvImpl(true);
+        kvStatus = new KvStatus(KvStatus.RUNNING, kv, 0);
+        heapPool = new RefBufferFactory(new SimpleByteBufferPool(new Timestamp(), false), 0);
+    }
+
+    private KvSnapshot open(long lastIncludedIndex, long baseIndex, int shardCount) {
+        return new KvSnapshot(lastIncludedIndex, 1, () -> kvStatus, kvStatus, heapPool, s -> {
+        }, baseIndex, shardCount);
+    }
+
+    // key -> value, null value for tombstone
+    private HashMap<String, byte[]> readAll(KvSnapshot s, int shard) {
+        HashMap<String, byte[]> result = new HashMap<>();
+        RefBuffer rb;
+        while ((rb = s.readNext(shard).getResult()) != null) {
+            ByteBuffer bb = rb.getBuffer();
+            while (bb.hasRemaining()) {
+                bb.getLong();
+                byte[] key = new byte[bb.getInt()];
+                bb.get(key);
+                int len = bb.getInt();
+                byte[] value = null;
+                if (len != KvSnapshot.TOMBSTONE_VALUE_LEN) {
+                    value = new byte[len];
+                    bb.get(value);
+                }
+                result.put(new String(key, StandardCharsets.UTF_8), value);
+            }
+            rb.release();
+        }
+        return result;
+    }
+
+    private static byte[] b(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int readBuffer(RefBuffer rb, HashMap<String, byte[]> result) {
+        ByteBuffer bb = rb.getBuffer();
+        int count = 0;
+        while (bb.hasRemaining()) {
+            bb.getLong();
+            byte[] key = new byte[bb.getInt()];
+            bb.get(key);
+            byte[] value = new byte[bb.getInt()];
+            bb.get(value);
+            assertNull(result.put(new String(key, StandardCharsets.UTF_8), value));
+            count++;
+        }
+        rb.release();
+        return count;
+    }
+
+    @Test
+    public void testFullSnapshot() throws Exception {
+        doInFiber(() -> {
+            byte[] bigValue = new byte[1024];
+            for (int i = 1; i <= 500; i++) {
+                kv.put(i, "k" + i, i == 2 ? b("v2") : bigValue, 0);
+            }
+            kv.remove(501, "k1", 0);
+            int shardCount = 3;
+            KvSnapshot s = open(501, 0, shardCount);
+            HashMap<String, byte[]> all = new HashMap<>();
+            int[] counts = new int[shardCount];
+            boolean[] finished = new boolean[shardCount];
+            int finishedCount = 0;
+            // read the shards in turn, every shard should get a part of the keys
+            while (finishedCount < shardCount) {
+                for (int i = 0; i < shardCount; i++) {
+                    if (finished[i]) {
+                        continue;
+                    }
+                    RefBuffer rb = s.readNext(i).getResult();
+                    if (rb == null) {
+                        finished[i] = true;
+                        finishedCount++;
+                    } else {
+                        counts[i] += readBuffer(rb, all);
+                    }
+                }
+            }
+            for (int c : counts) {
+                assertTrue(c > 0);
+            }
+            assertEquals(499, all.size());
+            assertFalse(all.containsKey("k1"));
+            assertArrayEquals(b("v2"), all.get("k2"));
+            assertArrayEquals(bigValue, all.get("k3"));
+        });
+    }
+
+    @Test
+    public void testDeltaSnapshot() throws Exception {
+        doInFiber(() -> {
+            kv.put(1, "k1", b("v1"), 0);
+            kv.put(2, "k2", b("v2"), 0);
+            kv.put(3, "k3", b("v3"), 0);
+            kv.put(4, "k2", b("v2_1"), 0);
+            kv.remove(5, "k3", 0);
+            kv.put(6, "k4", b("v4"), 0);
+            kv.put(7, "k4", b("v4_1"), 0);
+
+            kv.trimChanges(3, 0);
+            KvSnapshot s = open(7, 3, 2);
+            HashMap<String, byte[]> all = new HashMap<>();
+            all.putAll(readAll(s, 0));
+            all.putAll(readAll(s, 1));
+            assertEquals(3, all.size());
+            assertArrayEquals(b("v2_1"), all.get("k2"));
+            assertTrue(all.containsKey("k3"));
+            assertNull(all.get("k3"));
+            assertArrayEquals(b("v4_1"), all.get("k4"));
+        });
+    }
+
+    @Test
+    public void testDeltaSnapshotWithLaterChanges() throws Exception {
+        doInFiber(() -> {
+            kv.put(1, "k1", b("v1"), 0);
+            kv.put(2, "k2", b("v2"), 0);
+            KvSnapshot s = open(2, 1, 1);
+            kv.put(3, "k2", b("v2_1"), 2);
+            kv.put(4, "k3", b("v3"), 2);
+            HashMap<String, byte[]> all = readAll(s, 0);
+            assertEquals(1, all.size());
+            assertArrayEquals(b("v2"), all.get("k2"));
+        });
+    }
+
+    @Test
+    public void testTrimChanges() {
+        kv.put(1, "k1", b("v1"), 0);
+        kv.put(2, "k1", b("v1_1"), 0);
+        kv.put(3, "k2", b("v2"), 0);
+        assertEquals(3, kv.getChangeCount());
+        // a full snapshot of index 2 is saved
+        kv.trimChanges(2, 0);
+        assertEquals(1, kv.getChangeCount());
+        assertArrayEquals(b("v1_1"), kv.get("k1"));
+        kv.trimChanges(3, 0);
+        assertEquals(0, kv.getChangeCount());
+    }
+
+    @Test
+    public void testCleanTombstones() {
+        kv.put(1, "k1", b("v1"), 0);
+        kv.remove(2, "k1", 0);
+        kv.put(3, "k2", b("v2"), 0);
+        kv.remove(4, "k2", 0);
+        kv.trimChanges(4, 4);
+        assertFalse(kv.getMap().containsKey("k1"));
+        assertTrue(kv.getMap().containsKey("k2"));
+        kv.trimChanges(4, 0);
+        assertFalse(kv.getMap().containsKey("k2"));
+    }
+}
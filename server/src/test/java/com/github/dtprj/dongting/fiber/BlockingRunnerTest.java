@@ -0,0 +1,221 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import com.github.dtprj.dongting.common.DtTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class BlockingRunnerTest extends AbstractFiberTest {
+
+    private BlockingRunner runner;
+
+    @BeforeEach
+    public void setup() {
+        runner = new BlockingRunner(fiberGroup, Thread::new);
+    }
+
+    private CompletableFuture<Boolean> tryLockInFiber(FiberLock lock) {
+        CompletableFuture<Boolean> f = new CompletableFuture<>();
+        fiberGroup.fireFiber("tryLock", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                boolean b = lock.tryLock();
+                if (b) {
+                    lock.unlock();
+                }
+                f.complete(b);
+                return Fiber.frameReturn();
+            }
+        });
+        return f;
+    }
+
+    @Test
+    public void testWait() throws Exception {
+        FiberFuture<String> future = fiberGroup.newFuture();
+        FiberCondition condition = fiberGroup.newCondition("testCondition");
+        FiberChannel<Integer> channel = fiberGroup.newChannel();
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        runner.start("testWait", () -> {
+            assertEquals("a", runner.await(future));
+            runner.await(condition);
+            int sum = runner.take(channel) + runner.take(channel);
+            result.complete(sum);
+        });
+        future.fireComplete("a");
+        AtomicBoolean signaled = new AtomicBoolean();
+        fiberGroup.fireFiber("signal", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (condition.firstWaiter == null) {
+                    // the task is not waiting yet
+                    return Fiber.sleep(1, this);
+                }
+                condition.signal();
+                signaled.set(true);
+                return Fiber.frameReturn();
+            }
+        });
+        channel.fireOffer(1);
+        channel.fireOffer(2);
+        assertEquals(3, result.get(1, TimeUnit.SECONDS));
+        assertTrue(signaled.get());
+    }
+
+    @Test
+    public void testLock() throws Exception {
+        FiberLock lock = fiberGroup.newLock();
+        CompletableFuture<Void> locked = new CompletableFuture<>();
+        FiberFuture<Void> unlock = fiberGroup.newFuture();
+        runner.start("testLock", () -> {
+            try (BlockingRunner.LockHandle ignored = runner.lock(lock)) {
+                locked.complete(null);
+                runner.await(unlock);
+            }
+        });
+        locked.get(1, TimeUnit.SECONDS);
+        assertFalse(tryLockInFiber(lock).get(1, TimeUnit.SECONDS));
+        unlock.fireComplete(null);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!tryLockInFiber(lock).get(1, TimeUnit.SECONDS)) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testNotBlockDispatcher() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        CompletableFuture<Void> taskFinished = new CompletableFuture<>();
+        runner.start("blockTask", () -> {
+            // the task thread blocks, but the fiber of the task is suspended and the dispatcher runs other fibers
+            latch.await();
+            taskFinished.complete(null);
+        });
+        CompletableFuture<Void> fiberFinished = new CompletableFuture<>();
+        fiberGroup.fireFiber("otherFiber", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return Fiber.sleep(1, this::afterSleep);
+            }
+
+            private FrameCallResult afterSleep(Void v) {
+                fiberFinished.complete(null);
+                return Fiber.frameReturn();
+            }
+        });
+        fiberFinished.get(1, TimeUnit.SECONDS);
+        assertFalse(taskFinished.isDone());
+        latch.countDown();
+        taskFinished.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCallInFiber() throws Exception {
+        int[] counter = new int[1];
+        int loop = 1000;
+        CompletableFuture<Void> fiberFinished = new CompletableFuture<>();
+        CompletableFuture<Void> taskFinished = new CompletableFuture<>();
+        fiberGroup.fireFiber("incFiber", new FiberFrame<>() {
+            private int i;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (i++ == loop) {
+                    fiberFinished.complete(null);
+                    return Fiber.frameReturn();
+                }
+                int v = counter[0];
+                Thread.yield();
+                counter[0] = v + 1;
+                return Fiber.yield(this);
+            }
+        });
+        FiberFuture<Void> f = fiberGroup.newFuture();
+        runner.start("incTask", () -> {
+            for (int i = 0; i < loop; i++) {
+                // the shared state is accessed in the frame, which runs in the dispatcher thread
+                runner.call(new FiberFrame<Void>() {
+                    @Override
+                    public FrameCallResult execute(Void input) {
+                        int v = counter[0];
+                        Thread.yield();
+                        counter[0] = v + 1;
+                        // other fibers can run when it suspends
+                        return Fiber.yield(this::justReturn);
+                    }
+                });
+            }
+            runner.call(new FiberFrame<Void>() {
+                @Override
+                public FrameCallResult execute(Void input) {
+                    f.complete(null);
+                    return Fiber.frameReturn();
+                }
+            });
+            taskFinished.complete(null);
+        });
+        fiberFinished.get(5, TimeUnit.SECONDS);
+        taskFinished.get(5, TimeUnit.SECONDS);
+        assertTrue(f.isDone());
+        assertEquals(loop * 2, counter[0]);
+    }
+
+    @Test
+    public void testThreadStartFail() {
+        BlockingRunner r = new BlockingRunner(fiberGroup, task -> new Thread(task) {
+            @Override
+            public synchronized void start() {
+                throw new IllegalStateException("mock start fail");
+            }
+        });
+        assertThrows(IllegalStateException.class, () -> r.start("failTask", () -> {
+        }));
+    }
+
+    @Test
+    public void testCallNotInTask() {
+        assertThrows(FiberException.class, () -> runner.await(fiberGroup.newFuture()));
+    }
+
+    @Test
+    public void testGroupFinish() throws Exception {
+        FiberCondition condition = fiberGroup.newCondition("testCondition");
+        CompletableFuture<Throwable> result = new CompletableFuture<>();
+        runner.start("testGroupFinish", () -> {
+            try {
+                runner.await(condition);
+                result.complete(null);
+            } catch (Throwable e) {
+                result.complete(e);
+            }
+        });
+        Thread.sleep(10);
+        dispatcher.stop(new DtTime(1, TimeUnit.SECONDS));
+        assertInstanceOf(FiberException.class, result.get(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import com.github.dtprj.dongting.raft.test.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class FiberChannelTest extends AbstractFiberTest {
+
+    private Integer takeInFiber(FiberChannel<Integer> channel) throws Exception {
+        CompletableFuture<Integer> f = new CompletableFuture<>();
+        fiberGroup.fireFiber("take", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return channel.take(this::resume);
+            }
+
+            private FrameCallResult resume(Integer v) {
+                f.complete(v);
+                return Fiber.frameReturn();
+            }
+        });
+        return f.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFireOfferFull() throws Exception {
+        FiberChannel<Integer> channel = fiberGroup.newChannel(2);
+        assertTrue(channel.fireOffer(1));
+        assertTrue(channel.fireOffer(2));
+        assertFalse(channel.fireOffer(3));
+        assertEquals(1, takeInFiber(channel));
+        assertTrue(channel.fireOffer(4));
+        assertEquals(2, takeInFiber(channel));
+        assertEquals(4, takeInFiber(channel));
+    }
+
+    @Test
+    public void testBlockingFireOffer() throws Exception {
+        FiberChannel<Integer> channel = fiberGroup.newChannel(1);
+        assertTrue(channel.fireOffer(1, 10));
+        assertFalse(channel.fireOffer(2, 10));
+        CompletableFuture<Boolean> blocked = new CompletableFuture<>();
+        Thread t = new Thread(() -> {
+            try {
+                blocked.complete(channel.fireOffer(3, 5000));
+            } catch (InterruptedException e) {
+                blocked.completeExceptionally(e);
+            }
+        });
+        t.start();
+        Thread.sleep(10);
+        assertFalse(blocked.isDone());
+        assertEquals(1, takeInFiber(channel));
+        assertTrue(blocked.get(1, TimeUnit.SECONDS));
+        assertEquals(3, takeInFiber(channel));
+    }
+
+    @Test
+    public void testOfferSuspend() throws Exception {
+        FiberChannel<Integer> channel = fiberGroup.newChannel(2);
+        List<Integer> result = new ArrayList<>();
+        CompletableFuture<Void> producerFinish = new CompletableFuture<>();
+        fiberGroup.fireFiber("producer", new FiberFrame<>() {
+            private int i;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (i == 10) {
+                    producerFinish.complete(null);
+                    return Fiber.frameReturn();
+                }
+                // the channel never exceeds the capacity
+                assertTrue(channel.queue.size() <= 2);
+                return channel.offer(i++, this);
+            }
+        });
+        fiberGroup.fireFiber("consumer", new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                if (result.size() == 10) {
+                    return Fiber.frameReturn();
+                }
+                return Fiber.sleep(1, this::take);
+            }
+
+            private FrameCallResult take(Void v) {
+                return channel.take(this::afterTake);
+            }
+
+            private FrameCallResult afterTake(Integer v) {
+                result.add(v);
+                return execute(null);
+            }
+        });
+        producerFinish.get(1, TimeUnit.SECONDS);
+        TestUtil.waitUtil(10, result::size);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, result.get(i));
+        }
+    }
+
+    @Test
+    public void testTakeAllMaxItems() throws Exception {
+        FiberChannel<Integer> channel = fiberGroup.newChannel(10);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(channel.fireOffer(i));
+        }
+        assertFalse(channel.fireOffer(10));
+        CompletableFuture<List<Integer>> f = new CompletableFuture<>();
+        fiberGroup.fireFiber("takeAll", new FiberFrame<>() {
+            private final ArrayList<Integer> list = new ArrayList<>();
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                return channel.takeAll(list, 3, this::resume);
+            }
+
+            private FrameCallResult resume(Void v) {
+                f.complete(list);
+                return Fiber.frameReturn();
+            }
+        });
+        assertEquals(List.of(0, 1, 2), f.get(1, TimeUnit.SECONDS));
+        // 3 slots released
+        for (int i = 0; i < 3; i++) {
+            assertTrue(channel.fireOffer(i));
+        }
+        assertFalse(channel.fireOffer(10));
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.github.dtprj.dongting.fiber;
 
+import com.github.dtprj.dongting.common.BackoffIdleStrategy;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -108,6 +109,20 @@ public class FiberQueueTest {
         Assertions.assertTrue(get.get());
     }
 
+    @Test
+    public void testIdleStrategy() throws Exception {
+        FiberQueue q = new FiberQueue();
+        q.idleStrategy = new BackoffIdleStrategy(10, 10, 10);
+        long t = System.nanoTime();
+        Assertions.assertNull(q.poll(5, TimeUnit.MILLISECONDS));
+        Assertions.assertTrue(System.nanoTime() - t >= TimeUnit.MILLISECONDS.toNanos(5));
+
+        Thread producer = new Thread(() -> q.offer(t1));
+        producer.start();
+        Assertions.assertSame(t1, q.poll(1, TimeUnit.SECONDS));
+        producer.join();
+    }
+
     @Test
     public void testShutdown() {
         FiberQueue q = new FiberQueue();
@@ -0,0 +1,160 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import com.github.dtprj.dongting.raft.test.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class ProfileTest extends AbstractFiberTest {
+
+    // the fibers wait the main fiber which sleeps 50ms, the sleep may end early since the timestamp of the
+    // dispatcher is not refreshed in every round, so check with a smaller value
+    private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(15);
+
+    private HashMap<String, FiberStat> snapshot(boolean reset) throws Exception {
+        List<FiberStat> list = fiberGroup.fireProfileSnapshot(reset).get(1, TimeUnit.SECONDS);
+        HashMap<String, FiberStat> map = new HashMap<>();
+        for (FiberStat s : list) {
+            assertNull(map.put(s.getFiberName(), s));
+        }
+        return map;
+    }
+
+    private Fiber waiter(String name, AtomicInteger finishCount, FiberFrame<Void> frame) {
+        return new Fiber(name, fiberGroup, new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return Fiber.call(frame, this::resume);
+            }
+
+            private FrameCallResult resume(Void v) {
+                finishCount.incrementAndGet();
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
+    @Test
+    public void testWaitSource() throws Exception {
+        dispatcher.setProfileEnabled(true);
+        FiberLock lock = fiberGroup.newLock();
+        FiberFuture<Void> future = fiberGroup.newFuture();
+        FiberCondition condition = fiberGroup.newCondition("testCondition");
+        AtomicInteger finishCount = new AtomicInteger();
+        Fiber main = waiter("main", finishCount, new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return lock.lock(this::afterLock);
+            }
+
+            private FrameCallResult afterLock(Void v) {
+                Fiber self = getFiber();
+                waiter("lockWaiter", finishCount, new FiberFrame<>() {
+                    @Override
+                    public FrameCallResult execute(Void input) {
+                        return lock.lock(v -> {
+                            lock.unlock();
+                            return Fiber.frameReturn();
+                        });
+                    }
+                }).start();
+                waiter("futureWaiter", finishCount, new FiberFrame<>() {
+                    @Override
+                    public FrameCallResult execute(Void input) {
+                        return future.await(v -> Fiber.frameReturn());
+                    }
+                }).start();
+                waiter("conditionWaiter", finishCount, new FiberFrame<>() {
+                    @Override
+                    public FrameCallResult execute(Void input) {
+                        return condition.await(v -> Fiber.frameReturn());
+                    }
+                }).start();
+                waiter("joiner", finishCount, new FiberFrame<>() {
+                    @Override
+                    public FrameCallResult execute(Void input) {
+                        return self.join(v -> Fiber.frameReturn());
+                    }
+                }).start();
+                return Fiber.sleep(50, this::afterSleep);
+            }
+
+            private FrameCallResult afterSleep(Void v) {
+                lock.unlock();
+                future.complete(null);
+                condition.signal();
+                return Fiber.frameReturn();
+            }
+        });
+        fiberGroup.fireFiber(main);
+        TestUtil.waitUtil(5, finishCount::get);
+
+        HashMap<String, FiberStat> map = snapshot(true);
+        FiberStat s = map.get("main");
+        assertTrue(s.isFinished());
+        assertEquals(1, s.getFiberCount());
+        assertTrue(s.getResumeCount() >= 2);
+        assertTrue(s.getRunNanos() > 0);
+        assertTrue(s.getSleepNanos() >= WAIT_NANOS);
+        assertTrue(map.get("lockWaiter").getLockWaitNanos() >= WAIT_NANOS);
+        assertTrue(map.get("futureWaiter").getFutureWaitNanos() >= WAIT_NANOS);
+        assertTrue(map.get("conditionWaiter").getConditionWaitNanos() >= WAIT_NANOS);
+        assertTrue(map.get("joiner").getJoinWaitNanos() >= WAIT_NANOS);
+        assertEquals(0, map.get("futureWaiter").getLockWaitNanos());
+
+        // the finished stat is cleared by reset
+        assertTrue(snapshot(false).values().stream().noneMatch(FiberStat::isFinished));
+    }
+
+    @Test
+    public void testMergeAndDisable() throws Exception {
+        dispatcher.setProfileEnabled(true);
+        AtomicInteger finishCount = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            fiberGroup.fireFiber(waiter("yielder", finishCount, new FiberFrame<>() {
+                private int count;
+
+                @Override
+                public FrameCallResult execute(Void input) {
+                    if (count++ < 5) {
+                        return Fiber.yield(this);
+                    }
+                    return Fiber.frameReturn();
+                }
+            }));
+        }
+        TestUtil.waitUtil(3, finishCount::get);
+        FiberStat s = snapshot(false).get("yielder");
+        assertEquals(3, s.getFiberCount());
+        assertEquals(18, s.getResumeCount());
+
+        dispatcher.setProfileEnabled(false);
+        assertTrue(snapshot(false).values().stream().noneMatch(FiberStat::isFinished));
+        fiberGroup.fireFiber(waiter("yielder", finishCount, new EmptyFiberFrame()));
+        TestUtil.waitUtil(4, finishCount::get);
+        assertTrue(snapshot(false).values().stream().noneMatch(FiberStat::isFinished));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.fiber;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class TimingWheelTest {
+
+    private static final long START = 1_000_000_000L;
+
+    private FiberGroup group;
+    private TimingWheel wheel;
+    private final ArrayList<Fiber> expired = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        group = new FiberGroup("g", new Dispatcher("d"));
+        wheel = new TimingWheel(START);
+        expired.clear();
+    }
+
+    private Fiber fiber(long scheduleNanoTime) {
+        Fiber f = new Fiber("f", group, new EmptyFiberFrame());
+        f.scheduleNanoTime = scheduleNanoTime;
+        return f;
+    }
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testExpire() {
+        Fiber f1 = fiber(START + ms(1));
+        Fiber f2 = fiber(START + ms(300));
+        Fiber f3 = fiber(START + ms(70_000));
+        wheel.add(f1);
+        wheel.add(f2);
+        wheel.add(f3);
+        assertEquals(3, wheel.size());
+
+        wheel.advance(START + ms(1) - 1, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + ms(1), expired);
+        assertEquals(1, expired.size());
+        assertSame(f1, expired.get(0));
+
+        expired.clear();
+        wheel.advance(START + ms(299), expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + ms(300), expired);
+        assertSame(f2, expired.get(0));
+
+        expired.clear();
+        for (long t = 300; t < 70_000; t += 30) {
+            wheel.advance(START + ms(t), expired);
+            assertTrue(expired.isEmpty());
+        }
+        wheel.advance(START + ms(70_000), expired);
+        assertSame(f3, expired.get(0));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testExpireInTick() {
+        wheel.advance(START + ms(5) + 100, expired);
+        Fiber f1 = fiber(START + ms(5) + 200);
+        Fiber f2 = fiber(START + ms(6) + 300);
+        Fiber f3 = fiber(START + ms(5));
+        wheel.add(f1);
+        wheel.add(f2);
+        wheel.add(f3);
+        assertEquals(-100, wheel.nextExpireDelay(START + ms(5) + 100));
+
+        wheel.advance(START + ms(5) + 100, expired);
+        assertEquals(1, expired.size());
+        assertSame(f3, expired.get(0));
+        expired.clear();
+        assertEquals(100, wheel.nextExpireDelay(START + ms(5) + 100));
+
+        wheel.advance(START + ms(5) + 200, expired);
+        assertEquals(1, expired.size());
+        assertSame(f1, expired.get(0));
+        expired.clear();
+        assertEquals(ms(1) - 200, wheel.nextExpireDelay(START + ms(5) + 200));
+
+        wheel.advance(START + ms(6), expired);
+        assertTrue(expired.isEmpty());
+        assertEquals(300, wheel.nextExpireDelay(START + ms(6)));
+        wheel.advance(START + ms(6) + 299, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + ms(6) + 300, expired);
+        assertSame(f2, expired.get(0));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRemove() {
+        Fiber f1 = fiber(START + ms(10));
+        Fiber f2 = fiber(START + ms(10));
+        Fiber f3 = fiber(START + ms(10));
+        wheel.add(f1);
+        wheel.add(f2);
+        wheel.add(f3);
+        wheel.remove(f2);
+        wheel.remove(f2);
+        assertEquals(2, wheel.size());
+        wheel.advance(START + ms(10), expired);
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains(f1));
+        assertTrue(expired.contains(f3));
+    }
+
+    @Test
+    public void testRandom() {
+        Random r = new Random();
+        HashSet<Fiber> all = new HashSet<>();
+        long now = START;
+        for (int i = 0; i < 20000; i++) {
+            Fiber f = fiber(now + r.nextInt(100_000_000) * 100L);
+            wheel.add(f);
+            all.add(f);
+            if (r.nextInt(5) == 0) {
+                wheel.remove(f);
+                all.remove(f);
+            }
+            if (r.nextInt(10) == 0) {
+                now += r.nextInt(3_000_000);
+                wheel.advance(now, expired);
+                for (Fiber e : expired) {
+                    assertTrue(e.scheduleNanoTime - now <= 0);
+                    assertTrue(all.remove(e));
+                }
+                expired.clear();
+            }
+        }
+        while (!all.isEmpty()) {
+            long delay = wheel.nextExpireDelay(now);
+            assertTrue(delay > 0);
+            // all fibers expired in the range are found by nextExpireDelay
+            for (Fiber f : all) {
+                assertTrue(f.scheduleNanoTime - now > 0);
+            }
+            now += Math.max(delay, 1);
+            wheel.advance(now, expired);
+            for (Fiber e : expired) {
+                assertTrue(e.scheduleNanoTime - now <= 0);
+                // not delay more than 1 tick
+                assertTrue(now - e.scheduleNanoTime < TimingWheel.TICK_NANOS);
+                assertTrue(all.remove(e));
+            }
+            expired.clear();
+        }
+        assertEquals(0, wheel.size());
+        assertEquals(Long.MAX_VALUE, wheel.nextExpireDelay(now));
+    }
+
+    @Test
+    public void testTimeJump() {
+        Fiber f1 = fiber(START + ms(100));
+        Fiber f2 = fiber(START + TimeUnit.HOURS.toNanos(2));
+        wheel.add(f1);
+        wheel.add(f2);
+        wheel.advance(START + TimeUnit.HOURS.toNanos(1), expired);
+        assertEquals(1, expired.size());
+        assertSame(f1, expired.get(0));
+        expired.clear();
+
+        // time go back
+        wheel.advance(START, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advance(START + TimeUnit.HOURS.toNanos(3), expired);
+        assertSame(f2, expired.get(0));
+        assertEquals(0, wheel.size());
+    }
+}
@@ -22,15 +22,22 @@ import com.github.dtprj.dongting.codec.Decoder;
 import com.github.dtprj.dongting.codec.EncodeContext;
 import com.github.dtprj.dongting.codec.Encoder;
 import com.github.dtprj.dongting.codec.PbParser;
+import com.github.dtprj.dongting.raft.impl.LogBodyCompressor;
 import com.github.dtprj.dongting.raft.server.LogItem;
+import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
 import com.github.dtprj.dongting.raft.sm.RaftCodecFactory;
+import com.github.dtprj.dongting.raft.store.ByteBufferEncoder;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -125,6 +132,159 @@ public class AppendReqWriteFrameTest {
         check(f, c);
     }
 
+    @Test
+    public void testCompressedBody() {
+        RaftGroupConfigEx groupConfig = new RaftGroupConfigEx(1, "1", "1");
+        groupConfig.setLogCompressThreshold(100);
+        LogBodyCompressor compressor = new LogBodyCompressor(groupConfig);
+
+        AppendReqWriteFrame f = createFrame(true, false);
+        byte[] body = new byte[1000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i % 10);
+        }
+        for (LogItem li : f.logs) {
+            li.setBody(body);
+            compressor.compress(li, raftCodecFactory);
+            assertTrue(li.isBodyCompressed());
+            assertTrue(li.getActualBodySize() < body.length);
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(f.actualBodySize());
+        assertTrue(f.encodeBody(new EncodeContext(null), buf));
+        buf.clear();
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        AppendReqCallback c = new AppendReqCallback(new DecodeContext(), g -> raftCodecFactory);
+        PbParser p = PbParser.singleParser(c, f.actualBodySize());
+        p.parse(buf);
+
+        for (int i = 0; i < f.logs.size(); i++) {
+            LogItem l1 = f.logs.get(i);
+            LogItem l2 = c.getLogs().get(i);
+            assertTrue(l2.isBodyCompressed());
+            assertNull(l2.getBody());
+            assertEquals(l1.getActualBodySize(), l2.getActualBodySize());
+            assertEquals(l1.getBodyBuffer(), l2.getBodyBuffer());
+            assertEquals(ByteBuffer.wrap((byte[]) l1.getHeader()), l2.getHeaderBuffer());
+            assertArrayEquals(body, compressor.decompress(l2.getBodyBuffer()).array());
+        }
+    }
+
+    private byte[] encodeFrame(List<LogItem> logs, Random r) {
+        AppendReqWriteFrame f = new AppendReqWriteFrame(raftCodecFactory);
+        f.setGroupId(1);
+        f.setTerm(4);
+        f.setLeaderId(2);
+        f.setLogs(logs);
+        ByteBuffer all = ByteBuffer.allocate(f.actualBodySize());
+        EncodeContext context = new EncodeContext(null);
+        while (true) {
+            ByteBuffer buf = ByteBuffer.allocate(r.nextInt(300) + 1);
+            boolean finish = f.encodeBody(context, buf);
+            buf.flip();
+            all.put(buf);
+            if (finish) {
+                assertFalse(all.hasRemaining());
+                return all.array();
+            }
+        }
+    }
+
+    private byte[] encodeToLog(List<LogItem> logs, Random r) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        EncodeContext context = new EncodeContext(null);
+        for (LogItem li : logs) {
+            for (ByteBuffer src : new ByteBuffer[]{li.getHeaderBuffer(), li.getBodyBuffer()}) {
+                while (true) {
+                    ByteBuffer buf = ByteBuffer.allocate(r.nextInt(300) + 1);
+                    boolean finish = ByteBufferEncoder.INSTANCE.encode(context, buf, src);
+                    bos.write(buf.array(), 0, buf.position());
+                    if (finish) {
+                        context.reset();
+                        break;
+                    }
+                }
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testConcurrentWriteSharedBuffer() throws Exception {
+        // the buffers of the items in tail cache are written to the log file by the raft thread,
+        // and replicated to several followers by the io threads at the same time
+        Random r = new Random();
+        ArrayList<LogItem> logs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            LogItem li = new LogItem(null);
+            li.setType(LogItem.TYPE_NORMAL);
+            li.setIndex(i + 1);
+            li.setHeaderBuffer(ByteBuffer.wrap(createBytes(r.nextInt(100) + 1)));
+            ByteBuffer body = ByteBuffer.allocateDirect(r.nextInt(2000) + 1);
+            body.put(createBytes(body.capacity()));
+            body.clear();
+            li.setBodyBuffer(body);
+            logs.add(li);
+        }
+        byte[] expectFrame = encodeFrame(logs, r);
+        byte[] expectLog = encodeToLog(logs, r);
+
+        int loop = 200;
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[3];
+        for (int i = 0; i < threads.length; i++) {
+            boolean follower = i > 0;
+            threads[i] = new Thread(() -> {
+                try {
+                    Random tr = new Random();
+                    startLatch.await();
+                    for (int j = 0; j < loop; j++) {
+                        if (follower) {
+                            assertArrayEquals(expectFrame, encodeFrame(logs, tr));
+                        } else {
+                            assertArrayEquals(expectLog, encodeToLog(logs, tr));
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+            threads[i].start();
+        }
+        startLatch.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(error.get());
+        for (LogItem li : logs) {
+            assertEquals(0, li.getHeaderBuffer().position());
+            assertEquals(0, li.getBodyBuffer().position());
+        }
+    }
+
+    @Test
+    public void testNotCompressSmallBody() {
+        RaftGroupConfigEx groupConfig = new RaftGroupConfigEx(1, "1", "1");
+        groupConfig.setLogCompressThreshold(100);
+        LogBodyCompressor compressor = new LogBodyCompressor(groupConfig);
+        LogItem li = new LogItem(null);
+        li.setType(LogItem.TYPE_NORMAL);
+        li.setBody(createBytes(20));
+        compressor.compress(li, raftCodecFactory);
+        assertFalse(li.isBodyCompressed());
+        assertNull(li.getBodyBuffer());
+
+        // random bytes can't be compressed
+        li.setBody(createBytes(200));
+        li.setActualBodySize(0);
+        compressor.compress(li, raftCodecFactory);
+        assertFalse(li.isBodyCompressed());
+        assertEquals(200, li.getActualBodySize());
+        // the body is encoded by LogAppender and replication as usual
+        assertNull(li.getBodyBuffer());
+    }
+
     private AppendReqWriteFrame createFrame(boolean addHeader, boolean addBody) {
         AppendReqWriteFrame f = new AppendReqWriteFrame(raftCodecFactory);
         f.setGroupId(12345);
@@ -154,6 +314,10 @@ public class AppendReqWriteFrameTest {
         return f;
     }
 
+    private static ByteBuffer wrap(Object bytes) {
+        return bytes == null ? null : ByteBuffer.wrap((byte[]) bytes);
+    }
+
     private void check(AppendReqWriteFrame f, AppendReqCallback c) {
         assertEquals(f.groupId, c.getGroupId());
         assertEquals(f.term, c.getTerm());
@@ -170,8 +334,11 @@ public class AppendReqWriteFrameTest {
             assertEquals(l1.getTerm(), l2.getTerm());
             assertEquals(l1.getTimestamp(), l2.getTimestamp());
             assertEquals(l1.getType(), l2.getType());
-            assertArrayEquals((byte[]) l1.getHeader(), (byte[]) l2.getHeader());
-            assertArrayEquals((byte[]) l1.getBody(), (byte[]) l2.getBody());
+            // the header and body are not decoded by AppendReqCallback, only the raw bytes are kept
+            assertNull(l2.getHeader());
+            assertNull(l2.getBody());
+            assertEquals(wrap(l1.getHeader()), l2.getHeaderBuffer());
+            assertEquals(wrap(l1.getBody()), l2.getBodyBuffer());
         }
     }
 }
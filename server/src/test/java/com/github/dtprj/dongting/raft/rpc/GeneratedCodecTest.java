@@ -0,0 +1,164 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.rpc;
+
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.buf.TwoLevelPool;
+import com.github.dtprj.dongting.codec.DecodeContext;
+import com.github.dtprj.dongting.codec.PbParser;
+import com.github.dtprj.dongting.common.Timestamp;
+import com.github.dtprj.dongting.raft.impl.DtRaftServer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the classes generated by dongting-codegen from src/main/dtproto and src/test/dtproto.
+ *
+ * @author huangli
+ */
+public class GeneratedCodecTest {
+
+    private static ByteBuffer encode(int size, CodegenTestMsg.CodegenTestMsgWriteFrame f) {
+        assertEquals(size, f.actualBodySize());
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        f.encodeBody(buf);
+        assertEquals(size, buf.position());
+        buf.flip();
+        return buf;
+    }
+
+    private static CodegenTestMsg createMsg() {
+        CodegenTestMsg m = new CodegenTestMsg();
+        m.setI32(-1);
+        m.setU64(Long.MAX_VALUE);
+        m.setFlag(true);
+        m.setF32(12345);
+        m.setF64(-2);
+        m.setFloatValue(1.5f);
+        m.setDoubleValue(-2.25);
+        m.setStr("hello 你好");
+        m.setData(new byte[]{1, 2, 3});
+        CodegenTestItem item = new CodegenTestItem();
+        item.setId(1);
+        item.setName("item1");
+        m.setItem(item);
+        for (int i = 0; i < 3; i++) {
+            CodegenTestItem e = new CodegenTestItem();
+            e.setId(100 + i);
+            e.setName("e" + i);
+            m.getItems().add(e);
+        }
+        m.setStrs(List.of("a", "bb"));
+        m.setDatas(List.of(new byte[]{4}, new byte[]{5, 6}));
+        return m;
+    }
+
+    private static void check(CodegenTestMsg expect, CodegenTestMsg m) {
+        assertEquals(expect.getI32(), m.getI32());
+        assertEquals(expect.getU64(), m.getU64());
+        assertEquals(expect.isFlag(), m.isFlag());
+        assertEquals(expect.getF32(), m.getF32());
+        assertEquals(expect.getF64(), m.getF64());
+        assertEquals(expect.getFloatValue(), m.getFloatValue());
+        assertEquals(expect.getDoubleValue(), m.getDoubleValue());
+        assertEquals(expect.getStr(), m.getStr());
+        assertArrayEquals(expect.getData(), m.getData());
+        assertEquals(expect.getItem().getId(), m.getItem().getId());
+        assertEquals(expect.getItem().getName(), m.getItem().getName());
+        assertEquals(expect.getItems().size(), m.getItems().size());
+        for (int i = 0; i < expect.getItems().size(); i++) {
+            assertEquals(expect.getItems().get(i).getId(), m.getItems().get(i).getId());
+            assertEquals(expect.getItems().get(i).getName(), m.getItems().get(i).getName());
+        }
+        assertEquals(expect.getStrs(), m.getStrs());
+        assertEquals(expect.getDatas().size(), m.getDatas().size());
+        for (int i = 0; i < expect.getDatas().size(); i++) {
+            assertArrayEquals(expect.getDatas().get(i), m.getDatas().get(i));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        CodegenTestMsg m = createMsg();
+        int size = m.pbSize();
+        ByteBuffer buf = encode(size, new CodegenTestMsg.CodegenTestMsgWriteFrame(m));
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        CodegenTestMsg.Callback c = new CodegenTestMsg.Callback(new DecodeContext());
+        PbParser p = PbParser.singleParser(c, size);
+        p.parse(buf);
+        check(m, c.getResult());
+
+        // reuse the callback and the message, parse byte by byte
+        DecodeContext context = new DecodeContext();
+        context.setHeapPool(new RefBufferFactory(TwoLevelPool.getDefaultFactory().apply(new Timestamp(), false), 0));
+        CodegenTestMsg result = c.getResult();
+        c = new CodegenTestMsg.Callback(context, result);
+        p = PbParser.singleParser(c, size);
+        buf.clear();
+        for (int i = 0; i < size; i++) {
+            ByteBuffer b = ByteBuffer.wrap(buf.array(), i, 1).order(ByteOrder.LITTLE_ENDIAN);
+            p.parse(b);
+        }
+        assertSame(result, c.getResult());
+        check(m, result);
+    }
+
+    @Test
+    public void testEmpty() {
+        CodegenTestMsg m = new CodegenTestMsg();
+        assertEquals(0, m.pbSize());
+        CodegenTestMsg.Callback c = new CodegenTestMsg.Callback(new DecodeContext());
+        PbParser.singleParser(c, 0).parse(ByteBuffer.allocate(0));
+        CodegenTestMsg r = c.getResult();
+        assertEquals(0, r.getI32());
+        assertNull(r.getStr());
+        assertNull(r.getItem());
+        assertTrue(r.getItems().isEmpty());
+    }
+
+    @Test
+    public void testVoteCompatible() throws Exception {
+        VoteReq req = new VoteReq();
+        req.setGroupId(1);
+        req.setTerm(2);
+        req.setCandidateId(3);
+        req.setLastLogIndex(4);
+        req.setLastLogTerm(5);
+        req.setPreVote(true);
+        ByteBuffer buf = ByteBuffer.allocate(req.pbSize());
+        req.pbEncode(buf);
+        buf.flip();
+        DtRaftServer.RequestVoteReq pbReq = DtRaftServer.RequestVoteReq.parseFrom(buf);
+        assertEquals(1, pbReq.getGroupId());
+        assertEquals(2, pbReq.getTerm());
+        assertEquals(3, pbReq.getCandidateId());
+        assertEquals(4, pbReq.getLastLogIndex());
+        assertEquals(5, pbReq.getLastLogTerm());
+        assertEquals(1, pbReq.getPreVote());
+
+        byte[] bs = DtRaftServer.RequestVoteResp.newBuilder().setTerm(7).setVoteGranted(1).build().toByteArray();
+        VoteResp.Callback c = new VoteResp.Callback(null);
+        PbParser.singleParser(c, bs.length).parse(ByteBuffer.wrap(bs).order(ByteOrder.LITTLE_ENDIAN));
+        assertEquals(7, c.getResult().getTerm());
+        assertTrue(c.getResult().isVoteGranted());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.rpc;
+
+import com.github.dtprj.dongting.codec.EncodeContext;
+import com.github.dtprj.dongting.raft.sm.MappedSnapshotFile;
+import com.github.dtprj.dongting.raft.sm.MappedSnapshotFileTest;
+import com.github.dtprj.dongting.raft.store.TestDir;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * @author huangli
+ */
+public class InstallSnapshotReqTest {
+    @Test
+    public void testEncodeMappedData() throws Exception {
+        File dir = TestDir.createTestDir(InstallSnapshotReqTest.class.getSimpleName());
+        File file = new File(dir, "1.data");
+        byte[] data = MappedSnapshotFileTest.writeBlocks(file, 1000);
+        MappedSnapshotFile f = new MappedSnapshotFile(100, 2, Collections.singletonList(file));
+        ByteBuffer block = f.newReader().next();
+
+        InstallSnapshotReq req = new InstallSnapshotReq();
+        req.mappedData = block;
+        InstallSnapshotReq.InstallReqWriteFrame wf = new InstallSnapshotReq.InstallReqWriteFrame(req);
+        ByteBuffer dest = ByteBuffer.allocate(wf.actualBodySize());
+        EncodeContext c = new EncodeContext(null);
+        ByteBuffer small = ByteBuffer.allocate(100);
+        boolean finish = false;
+        while (!finish) {
+            small.clear();
+            finish = wf.encodeBody(c, small);
+            small.flip();
+            dest.put(small);
+        }
+        assertFalse(dest.hasRemaining());
+        // the mapped buffer is not changed
+        assertEquals(1000, block.remaining());
+        dest.position(dest.limit() - 1000);
+        assertEquals(ByteBuffer.wrap(data), dest);
+        f.release();
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.sm;
+
+import com.github.dtprj.dongting.buf.RefBuffer;
+import com.github.dtprj.dongting.buf.RefBufferFactory;
+import com.github.dtprj.dongting.buf.TwoLevelPool;
+import com.github.dtprj.dongting.fiber.BaseFiberTest;
+import com.github.dtprj.dongting.fiber.Fiber;
+import com.github.dtprj.dongting.fiber.FiberFrame;
+import com.github.dtprj.dongting.fiber.FiberFuture;
+import com.github.dtprj.dongting.fiber.FiberGroup;
+import com.github.dtprj.dongting.fiber.FrameCallResult;
+import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
+import com.github.dtprj.dongting.raft.server.RaftGroupConfigEx;
+import com.github.dtprj.dongting.raft.server.RaftInput;
+import com.github.dtprj.dongting.raft.store.TestDir;
+import com.github.dtprj.dongting.raft.test.MockExecutors;
+import com.github.dtprj.dongting.raft.test.TestUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class DefaultSnapshotManagerTest extends BaseFiberTest {
+
+    private File dir;
+    private RaftGroupConfigEx config;
+    private RaftStatusImpl raftStatus;
+
+    @BeforeEach
+    public void setup() {
+        dir = TestDir.createTestDir(DefaultSnapshotManagerTest.class.getSimpleName());
+        raftStatus = new RaftStatusImpl(dispatcher.getTs());
+        config = new RaftGroupConfigEx(1, "1", "1");
+        config.setDataDir(dir.getAbsolutePath());
+        config.setIoExecutor(MockExecutors.ioExecutor());
+        config.setFiberGroup(fiberGroup);
+        config.setTs(raftStatus.getTs());
+        config.setDirectPool(TwoLevelPool.getDefaultFactory().apply(config.getTs(), true));
+        config.setHeapPool(new RefBufferFactory(TwoLevelPool.getDefaultFactory().apply(config.getTs(), false), 0));
+        config.setRaftStatus(raftStatus);
+    }
+
+    private class MockSnapshot extends Snapshot {
+        private final byte[][] shardData;
+        private final boolean[] read;
+
+        MockSnapshot(long lastIncludedIndex, byte[]... shardData) {
+            super(lastIncludedIndex, 1);
+            this.shardData = shardData;
+            this.read = new boolean[shardData.length];
+        }
+
+        @Override
+        public int getShardCount() {
+            return shardData.length;
+        }
+
+        @Override
+        public FiberFuture<RefBuffer> readNext() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FiberFuture<RefBuffer> readNext(int shard) {
+            RefBuffer rb = null;
+            if (!read[shard]) {
+                read[shard] = true;
+                rb = config.getHeapPool().create(shardData[shard].length);
+                rb.getBuffer().put(shardData[shard]);
+                rb.getBuffer().flip();
+            }
+            return FiberFuture.completedFuture(FiberGroup.currentGroup(), rb);
+        }
+
+        @Override
+        protected void doClose() {
+        }
+    }
+
+    private static class MockStateMachine extends MockRaftCodecFactory implements StateMachine {
+        Snapshot full;
+        Snapshot delta;
+        long savedIndex;
+
+        @Override
+        public Object exec(long index, RaftInput input) {
+            return null;
+        }
+
+        @Override
+        public FiberFuture<Void> installSnapshot(long lastIncludeIndex, int lastIncludeTerm, long offset,
+                                                 boolean done, RefBuffer data) {
+            return null;
+        }
+
+        @Override
+        public FiberFrame<Snapshot> takeSnapshot(int currentTerm) {
+            return FiberFrame.completedFrame(full);
+        }
+
+        @Override
+        public FiberFrame<Snapshot> takeDeltaSnapshot(int currentTerm, long baseIndex) {
+            return delta == null ? null : FiberFrame.completedFrame(delta);
+        }
+
+        @Override
+        public void afterSnapshotSaved(long lastIncludedIndex) {
+            savedIndex = lastIncludedIndex;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private void save(StateMachine sm) throws Exception {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                DefaultSnapshotManager m = new DefaultSnapshotManager(config, MockExecutors.ioExecutor());
+                return Fiber.call(m.init(), s -> afterInit(m, s));
+            }
+
+            private FrameCallResult afterInit(DefaultSnapshotManager m, Snapshot s) {
+                if (s != null) {
+                    s.close();
+                }
+                m.saveSnapshot(sm, result);
+                return Fiber.frameReturn();
+            }
+        });
+        result.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testOpenStaleSavedSnapshot() throws Exception {
+        MockStateMachine sm = new MockStateMachine();
+        sm.full = new MockSnapshot(100, "a".getBytes(), "bb".getBytes());
+        save(sm);
+        doInFiber(new FiberFrame<>() {
+            private DefaultSnapshotManager m;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                m = new DefaultSnapshotManager(config, MockExecutors.ioExecutor());
+                return Fiber.call(m.init(), this::afterInit);
+            }
+
+            private FrameCallResult afterInit(Snapshot s) throws Exception {
+                s.close();
+                MappedSnapshotFile f = m.openSavedSnapshot(100);
+                assertNotNull(f);
+                assertEquals(100, f.getLastIncludedIndex());
+                f.release();
+
+                // this node installed the snapshot of index 200 from the leader, then become leader,
+                // the raft log starts at 201, so the saved snapshot can't be used
+                assertNull(m.openSavedSnapshot(201));
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
+    // return the data of each shard
+    private String[] load() throws Exception {
+        String[][] result = new String[1][];
+        doInFiber(new FiberFrame<>() {
+            private Snapshot snapshot;
+            private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            private int shard;
+
+            @Override
+            public FrameCallResult execute(Void input) {
+                DefaultSnapshotManager m = new DefaultSnapshotManager(config, MockExecutors.ioExecutor());
+                return Fiber.call(m.init(), this::afterInit);
+            }
+
+            private FrameCallResult afterInit(Snapshot s) {
+                this.snapshot = Objects.requireNonNull(s);
+                result[0] = new String[s.getShardCount()];
+                return snapshot.readNext(shard).await(this::afterRead);
+            }
+
+            private FrameCallResult afterRead(RefBuffer rb) {
+                if (rb != null) {
+                    byte[] bs = new byte[rb.getBuffer().remaining()];
+                    rb.getBuffer().get(bs);
+                    bos.write(bs, 0, bs.length);
+                    rb.release();
+                } else {
+                    result[0][shard++] = bos.toString();
+                    bos.reset();
+                    if (shard >= snapshot.getShardCount()) {
+                        return Fiber.frameReturn();
+                    }
+                }
+                return snapshot.readNext(shard).await(this::afterRead);
+            }
+
+            @Override
+            protected FrameCallResult doFinally() {
+                if (snapshot != null) {
+                    snapshot.close();
+                }
+                return Fiber.frameReturn();
+            }
+        });
+        return result[0];
+    }
+
+    private int dataFileCount() {
+        String[] files = new File(dir, "snapshot").list((d, n) -> n.endsWith(".data"));
+        return files == null ? 0 : files.length;
+    }
+
+    @Test
+    public void testShards() throws Exception {
+        MockStateMachine sm = new MockStateMachine();
+        sm.full = new MockSnapshot(100, "a".getBytes(), "bb".getBytes(), "ccc".getBytes());
+        save(sm);
+        assertEquals(3, dataFileCount());
+        assertArrayEquals(new String[]{"a", "bb", "ccc"}, load());
+    }
+
+    @Test
+    public void testDeltaChain() throws Exception {
+        config.setMaxDeltaSnapshots(1);
+        MockStateMachine sm = new MockStateMachine();
+        sm.full = new MockSnapshot(100, "a".getBytes(), "bb".getBytes());
+        save(sm);
+
+        assertEquals(100, sm.savedIndex);
+
+        sm.delta = new MockSnapshot(200, "x".getBytes(), "y".getBytes());
+        save(sm);
+        assertEquals(200, sm.savedIndex);
+        assertEquals(4, dataFileCount());
+        // the delta is read after the full snapshot in each shard
+        assertArrayEquals(new String[]{"ax", "bby"}, load());
+
+        // the chain is full, compact to a full snapshot and delete the old chain
+        sm.full = new MockSnapshot(300, "1".getBytes(), "2".getBytes());
+        save(sm);
+        // the old chain is deleted asynchronously in io executor
+        TestUtil.waitUtil(2, this::dataFileCount);
+        assertArrayEquals(new String[]{"1", "2"}, load());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.sm;
+
+import com.github.dtprj.dongting.raft.store.TestDir;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class MappedSnapshotFileTest {
+
+    public static byte[] writeBlocks(File file, int... sizes) throws Exception {
+        Random r = new Random();
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        byte[] data = new byte[total];
+        r.nextBytes(data);
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            int pos = 0;
+            for (int size : sizes) {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                header.putInt(size);
+                header.putInt(0);
+                fos.write(header.array());
+                fos.write(data, pos, size);
+                pos += size;
+            }
+        }
+        return data;
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        File dir = TestDir.createTestDir(MappedSnapshotFileTest.class.getSimpleName());
+        File file = new File(dir, "1.data");
+        int[] sizes = {100, 1, 5000};
+        byte[] data = writeBlocks(file, sizes);
+
+        MappedSnapshotFile f = new MappedSnapshotFile(100, 2, Collections.singletonList(file));
+        assertEquals(100, f.getLastIncludedIndex());
+        assertEquals(2, f.getLastIncludedTerm());
+        // two readers share the file
+        MappedSnapshotFile.Reader r1 = f.newReader();
+        MappedSnapshotFile.Reader r2 = f.newReader();
+        int pos = 0;
+        for (int size : sizes) {
+            ByteBuffer b1 = r1.next();
+            ByteBuffer b2 = r2.next();
+            assertEquals(size, b1.remaining());
+            assertEquals(ByteBuffer.wrap(data, pos, size), b1);
+            assertEquals(b1, b2);
+            pos += size;
+        }
+        assertNull(r1.next());
+        assertNull(r2.next());
+        assertEquals(f.getTotalSize(), r1.getFilePos());
+        f.release();
+    }
+
+    @Test
+    public void testReadChain() throws Exception {
+        File dir = TestDir.createTestDir(MappedSnapshotFileTest.class.getSimpleName());
+        File f1 = new File(dir, "1.data");
+        File f2 = new File(dir, "2.data");
+        File f3 = new File(dir, "3.data");
+        byte[] d1 = writeBlocks(f1, 10, 20);
+        writeBlocks(f2);
+        byte[] d3 = writeBlocks(f3, 30);
+
+        MappedSnapshotFile f = new MappedSnapshotFile(100, 2, Arrays.asList(f1, f2, f3));
+        MappedSnapshotFile.Reader r = f.newReader();
+        assertEquals(ByteBuffer.wrap(d1, 0, 10), r.next());
+        assertEquals(ByteBuffer.wrap(d1, 10, 20), r.next());
+        assertEquals(ByteBuffer.wrap(d3, 0, 30), r.next());
+        assertEquals(2, r.getFileIndex());
+        assertNull(r.next());
+        assertEquals(f1.length() + f3.length(), f.getTotalSize());
+        f.release();
+    }
+
+    @Test
+    public void testBadBlock() throws Exception {
+        File dir = TestDir.createTestDir(MappedSnapshotFileTest.class.getSimpleName());
+        File file = new File(dir, "1.data");
+        writeBlocks(file, 100);
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            fos.write(new byte[]{0, 0, 1, 0, 0, 0, 0, 0, 1});
+        }
+        MappedSnapshotFile f = new MappedSnapshotFile(100, 2, Collections.singletonList(file));
+        MappedSnapshotFile.Reader r = f.newReader();
+        assertNotNull(r.next());
+        assertThrows(Exception.class, r::next);
+        f.release();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright The Dongting Project
+ *
+ * The Dongting Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.dtprj.dongting.raft.store;
+
+import com.github.dtprj.dongting.raft.impl.RaftUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author huangli
+ */
+public class CrcBatchTest {
+
+    @Test
+    public void testCompute() {
+        Random r = new Random();
+        ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+        CrcBatch batch = new CrcBatch();
+        int[] starts = new int[200];
+        int[] lens = new int[200];
+        // more than the initial capacity of the batch
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = buf.position();
+            lens[i] = 1 + r.nextInt(200);
+            byte[] bs = new byte[lens[i]];
+            r.nextBytes(bs);
+            buf.put(bs);
+            batch.add(starts[i], lens[i]);
+            buf.position(buf.position() + 4);
+        }
+        assertEquals(starts.length, batch.size());
+        buf.flip();
+        int limit = buf.limit();
+        batch.compute(buf);
+        assertEquals(0, buf.position());
+        assertEquals(limit, buf.limit());
+
+        CRC32C crc32c = new CRC32C();
+        for (int i = 0; i < starts.length; i++) {
+            crc32c.reset();
+            RaftUtil.updateCrc(crc32c, buf, starts[i], lens[i]);
+            assertEquals((int) crc32c.getValue(), buf.getInt(starts[i] + lens[i]));
+        }
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+    }
+}
@@ -21,7 +21,6 @@ import com.github.dtprj.dongting.common.Pair;
 import com.github.dtprj.dongting.fiber.BaseFiberTest;
 import com.github.dtprj.dongting.fiber.Fiber;
 import com.github.dtprj.dongting.fiber.FiberFrame;
-import com.github.dtprj.dongting.fiber.FiberFuture;
 import com.github.dtprj.dongting.fiber.FrameCallResult;
 import com.github.dtprj.dongting.raft.impl.InitFiberFrame;
 import com.github.dtprj.dongting.raft.impl.RaftStatusImpl;
@@ -40,7 +39,9 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.util.function.Supplier;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 /**
  * @author huangli
@@ -51,6 +52,7 @@ public class DefaultRaftLogTest extends BaseFiberTest {
     private RaftGroupConfigEx config;
     private StatusManager statusManager;
     private DefaultRaftLog raftLog;
+    private Pair<Integer, Long> initResult;
 
     @BeforeEach
     public void setup() throws Exception {
@@ -70,9 +72,8 @@ public class DefaultRaftLogTest extends BaseFiberTest {
         config.setHeapPool(new RefBufferFactory(TwoLevelPool.getDefaultFactory().apply(config.getTs(), false), 0));
 
         raftStatus.setTailCache(new TailCache(config, raftStatus));
-        statusManager = new StatusManager(config);
-        statusManager.initStatusFile();
         config.setRaftStatus(raftStatus);
+        statusManager = new StatusManager(config);
 
         raftLog = new DefaultRaftLog(config, statusManager, 1);
         raftLog.idxItemsPerFile = 8;
@@ -82,10 +83,15 @@ public class DefaultRaftLogTest extends BaseFiberTest {
             @Override
             public FrameCallResult execute(Void input) {
                 InitFiberFrame.initRaftStatus(raftStatus, fiberGroup, serverConfig);
+                return Fiber.call(statusManager.initStatusFile(), this::afterStatusInit);
+            }
+
+            private FrameCallResult afterStatusInit(Void v) {
                 return Fiber.call(raftLog.init(), this::resume);
             }
 
             private FrameCallResult resume(Pair<Integer, Long> integerLongPair) {
+                initResult = integerLongPair;
                 return Fiber.frameReturn();
             }
         });
@@ -96,9 +102,11 @@ public class DefaultRaftLogTest extends BaseFiberTest {
         doInFiber(new FiberFrame<>() {
             @Override
             public FrameCallResult execute(Void input) {
-                FiberFuture<Void> f1 = raftLog.close();
-                FiberFuture<Void> f2 = statusManager.close();
-                return FiberFuture.allOf(f1, f2).await(this::justReturn);
+                return raftLog.close().await(this::afterLogClose);
+            }
+
+            private FrameCallResult afterLogClose(Void v) {
+                return statusManager.close().await(this::justReturn);
             }
         });
     }
@@ -140,6 +148,68 @@ public class DefaultRaftLogTest extends BaseFiberTest {
         init();
     }
 
+    @Test
+    public void testCleanShutdownRestart() throws Exception {
+        int[] totalSizes = new int[]{400, 400, 512};
+        int[] bizHeaderLen = new int[]{1, 0, 400};
+        append(1, totalSizes, bizHeaderLen);
+        raftStatus.setCommitIndex(3);
+        raftStatus.setLastLogIndex(3);
+        raftStatus.setLastLogTerm(100);
+        tearDown();
+        assertEquals("3", statusManager.getProperties().getProperty(DefaultRaftLog.KEY_CLEAN_SHUTDOWN_INDEX));
+
+        init();
+        assertNull(statusManager.getProperties().getProperty(DefaultRaftLog.KEY_CLEAN_SHUTDOWN_INDEX));
+        assertEquals(100, initResult.getLeft());
+        assertEquals(3L, initResult.getRight());
+
+        // append after fast restart, and restart again
+        raftStatus.setCommitIndex(3);
+        append(4, totalSizes, bizHeaderLen);
+        raftStatus.setCommitIndex(6);
+        raftStatus.setLastLogIndex(6);
+        raftStatus.setLastLogTerm(100);
+        tearDown();
+        assertEquals("6", statusManager.getProperties().getProperty(DefaultRaftLog.KEY_CLEAN_SHUTDOWN_INDEX));
+        init();
+        assertEquals(6L, initResult.getRight());
+    }
+
+    @Test
+    public void testBadCleanShutdownMarker() throws Exception {
+        int[] totalSizes = new int[]{400, 400, 512};
+        int[] bizHeaderLen = new int[]{1, 0, 400};
+        append(1, totalSizes, bizHeaderLen);
+        raftStatus.setCommitIndex(3);
+        raftStatus.setLastLogIndex(3);
+        raftStatus.setLastLogTerm(100);
+        tearDown();
+
+        // corrupt the marker, should fall back to full restore
+        StatusManager sm = new StatusManager(config);
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) {
+                return Fiber.call(sm.initStatusFile(), this::afterInit);
+            }
+
+            private FrameCallResult afterInit(Void v) {
+                sm.getProperties().setProperty(DefaultRaftLog.KEY_CLEAN_SHUTDOWN_CRC, "1");
+                sm.persistAsync(true);
+                return sm.waitForce(this::afterPersist);
+            }
+
+            private FrameCallResult afterPersist(Void v) {
+                return sm.close().await(this::justReturn);
+            }
+        });
+        init();
+        assertNull(statusManager.getProperties().getProperty(DefaultRaftLog.KEY_CLEAN_SHUTDOWN_INDEX));
+        assertEquals(100, initResult.getLeft());
+        assertEquals(3L, initResult.getRight());
+    }
+
     @Test
     public void testDelete() throws Exception {
         int[] totalSizes = new int[]{400, 400, 512, 200, 400};
@@ -172,6 +242,35 @@ public class DefaultRaftLogTest extends BaseFiberTest {
         }
     }
 
+    @Test
+    public void testFirstIndex() throws Exception {
+        int[] totalSizes = new int[]{400, 400, 512, 200, 400};
+        int[] bizHeaderLen = new int[]{1, 0, 400, 100, 1};
+        append(1, totalSizes, bizHeaderLen);
+        raftStatus.setCommitIndex(5);
+        raftStatus.setLastApplied(5);
+        raftStatus.setLastLogIndex(5);
+        append(6, totalSizes, bizHeaderLen);
+        assertEquals(1, raftLog.getFirstIndex());
+
+        // the logs in the files marked to delete can't be loaded
+        doInFiber(() -> raftLog.markTruncateByIndex(3, 1000));
+        assertEquals(3, raftLog.getFirstIndex());
+
+        // after install snapshot, the old logs are deleted
+        doInFiber(new FiberFrame<>() {
+            @Override
+            public FrameCallResult execute(Void input) throws Exception {
+                return Fiber.call(raftLog.beginInstall(), this::afterBeginInstall);
+            }
+
+            private FrameCallResult afterBeginInstall(Void v) throws Exception {
+                return Fiber.call(raftLog.finishInstall(201, 2048), this::justReturn);
+            }
+        });
+        assertEquals(201, raftLog.getFirstIndex());
+    }
+
     private static Supplier<Boolean> fileDeleted(File dir, long startPos) {
         return () -> {
             String[] names = dir.list();
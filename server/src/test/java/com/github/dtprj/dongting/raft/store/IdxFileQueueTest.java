@@ -226,6 +226,63 @@ public class IdxFileQueueTest extends BaseFiberTest {
         });
     }
 
+    @Test
+    public void testConcurrentLoadFromFile() throws Exception {
+        doInFiber(new FiberFrame<>() {
+            private int finishCount;
+
+            @Override
+            public FrameCallResult execute(Void input) throws Throwable {
+                return Fiber.call(idxFileQueue.initRestorePos(), this::resume);
+            }
+
+            private FrameCallResult resume(Pair<Long, Long> longLongPair) {
+                idxFileQueue.setInitialized(true);
+                for (int i = 1; i <= 30; i++) {
+                    raftStatus.setCommitIndex(i - 1);
+                    idxFileQueue.put(i, i * 100);
+                }
+                raftStatus.setCommitIndex(30);
+                return waitFlush(null);
+            }
+
+            private FrameCallResult waitFlush(Void v) {
+                if (idxFileQueue.getNextPersistIndex() <= 20 || idxFileQueue.cache.getFirstKey() <= 20) {
+                    if (idxFileQueue.needWaitFlush()) {
+                        return Fiber.call(idxFileQueue.waitFlush(), this::waitFlush);
+                    }
+                    return Fiber.sleep(1, this::waitFlush);
+                }
+                // the load frames are reused by the fibers
+                for (int i = 0; i < 4; i++) {
+                    int start = i;
+                    Fiber f = new Fiber("load" + i, getFiberGroup(), new FiberFrame<>() {
+                        private int count;
+
+                        @Override
+                        public FrameCallResult execute(Void input) {
+                            if (count == 20) {
+                                finishCount++;
+                                return Fiber.frameReturn();
+                            }
+                            long index = (start * 5 + count++) % 20 + 1;
+                            return Fiber.call(new LoadLogPosFrame(index, index * 100), this);
+                        }
+                    });
+                    f.start();
+                }
+                return waitLoad(null);
+            }
+
+            private FrameCallResult waitLoad(Void v) {
+                if (finishCount < 4) {
+                    return Fiber.sleep(1, this::waitLoad);
+                }
+                return Fiber.frameReturn();
+            }
+        });
+    }
+
     @Test
     public void testSyncLoad() throws Exception {
         doInFiber(new FiberFrame<>() {
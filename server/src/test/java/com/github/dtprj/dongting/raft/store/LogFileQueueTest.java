@@ -331,6 +331,21 @@ public class LogFileQueueTest extends BaseFiberTest {
         append(true, 0L, len, len, 1024 - len - len, 500);
     }
 
+    @Test
+    public void testAppendCrcInIoThread() throws Exception {
+        setup(1024, 256);
+        config.setLogCrcInIoThread(true);
+        // some items are split into several write buffers
+        append(true, 0L, 200, 200, 300, 300, 1024);
+        LogHeader header = new LogHeader();
+        header.read(load(1024L));
+        assertEquals(header.headerCrc, logFileQueue.logAppender.lastWriteHeaderCrc);
+        append(true, 2048L, 100 + LogHeader.ITEM_HEADER_SIZE + bizHeaderLen + 8, 1024);
+        header.read(load(3072L));
+        assertEquals(header.headerCrc, logFileQueue.logAppender.lastWriteHeaderCrc);
+        closeThenRestore(256, 8, 4096);
+    }
+
     @Test
     public void testRestore1() throws Exception {
         setup(1024, 1024);
@@ -31,6 +31,7 @@ public class LogHeaderTest {
     public void testWriteAndRead() {
         LogItem item = new LogItem(null);
         item.setType(1);
+        item.setFlags(LogItem.FLAG_BODY_COMPRESSED);
         item.setBizType(2);
         item.setTerm(1000);
         item.setPrevLogTerm(2000);
@@ -46,6 +47,7 @@ public class LogHeaderTest {
         LogHeader header = new LogHeader();
         header.read(buf);
         assertEquals(1, header.type);
+        assertEquals(LogItem.FLAG_BODY_COMPRESSED, header.flags);
         assertEquals(2, header.bizType);
         assertEquals(1000, header.term);
         assertEquals(2000, header.prevLogTerm);